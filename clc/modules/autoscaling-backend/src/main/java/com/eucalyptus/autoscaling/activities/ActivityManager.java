@@ -40,6 +40,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
@@ -169,10 +170,12 @@ import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -423,19 +426,58 @@ public class ActivityManager {
    */
   private void runningInstanceChecks() {
     final Map<String,AutoScalingGroupCoreView> autoScalingAccounts = Maps.newHashMap( );
+    final boolean batch = AutoScalingConfiguration.isBatchInstanceMonitoring( );
+    final ListMultimap<String,MonitoringScalingProcessTask> accountMonitoringTasks = ArrayListMultimap.create( );
     try {
       for ( final AutoScalingGroupCoreView group : autoScalingGroups.listRequiringMonitoring( selectors( ), TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupCoreView.class ) ) ) {
         autoScalingAccounts.put( group.getOwnerAccountNumber(), group );
-        final List<String> groupInstancesPending = autoScalingInstances.listByGroup( group, LifecycleState.Pending, instanceId() );
-        final List<String> groupInstancesInService = autoScalingInstances.listByGroup( group, LifecycleState.InService, instanceId() );
+        final List<String> groupInstancesPending;
+        final List<String> groupInstancesInService;
+        if ( batch ) {
+          if ( taskInProgress( group.getArn( ) ) ) continue;
+          final List<AutoScalingInstanceCoreView> groupInstances = autoScalingInstances.listByGroup(
+              group,
+              Predicates.or( LifecycleState.Pending, LifecycleState.InService ),
+              TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+          groupInstancesPending = Lists.newArrayList( Iterables.transform(
+              Iterables.filter( groupInstances, LifecycleState.Pending.forView( ) ),
+              RestrictedTypes.toDisplayName( ) ) );
+          groupInstancesInService = Lists.newArrayList( Iterables.transform(
+              Iterables.filter( groupInstances, LifecycleState.InService.forView( ) ),
+              RestrictedTypes.toDisplayName( ) ) );
+        } else {
+          groupInstancesPending = autoScalingInstances.listByGroup( group, LifecycleState.Pending, instanceId() );
+          groupInstancesInService = autoScalingInstances.listByGroup( group, LifecycleState.InService, instanceId() );
+        }
         if ( !groupInstancesPending.isEmpty() || !groupInstancesInService.isEmpty() ) {
-          runTask( new MonitoringScalingProcessTask( group, groupInstancesPending, groupInstancesInService ) );
+          final MonitoringScalingProcessTask task =
+              new MonitoringScalingProcessTask( group, groupInstancesPending, groupInstancesInService );
+          if ( batch && task.shouldRun( ) ) {
+            // reserve each group so other tasks for the group are not run during the account check
+            if ( reserveTask( task ) ) {
+              accountMonitoringTasks.put( group.getOwnerAccountNumber( ), task );
+            }
+          } else {
+            runTask( task );
+          }
         }
       }
     } catch ( Exception e ) {
       logger.error( e, e );
     }
 
+    // Check instance health for each account, group tasks are reserved so the account task is run directly
+    for ( final String accountNumber : accountMonitoringTasks.keySet( ) ) {
+      final AccountMonitoringScalingProcessTask task =
+          new AccountMonitoringScalingProcessTask( accountMonitoringTasks.get( accountNumber ) );
+      try {
+        task.runTask( );
+      } catch ( Exception e ) {
+        logger.error( e, e );
+        task.failGroups( );
+      }
+    }
+
     // Terminate rogue instances
     try {
       for ( final AutoScalingGroupCoreView group : autoScalingAccounts.values() ) {
@@ -1065,6 +1107,10 @@ public class ActivityManager {
     runner.runTask( task );
   }
 
+  boolean reserveTask( final ScalingProcessTask task ) {
+    return runner.reserveTask( task );
+  }
+
   boolean taskInProgress( final String groupArn ) {
     return runner.taskInProgress( groupArn );
   }
@@ -1419,6 +1465,10 @@ public class ActivityManager {
     void failure( final List<AT> tasks ) {
     }
 
+    boolean isDispatched() {
+      return taskFuture != null;
+    }
+
     Future<Boolean> getFuture() {
       Future<Boolean> future = taskFuture;
       if ( future == null ) {
@@ -1480,6 +1530,7 @@ public class ActivityManager {
   private class LaunchInstanceScalingActivityTask extends ScalingActivityTask<AutoScalingGroupScalingView,RunInstancesResponseType> {
     private final String availabilityZone;
     private final String clientToken;
+    private final int launchCount;
     private final AtomicReference<List<String>> instanceIds = new AtomicReference<>(
         Collections.emptyList()
     );
@@ -1487,10 +1538,12 @@ public class ActivityManager {
     private LaunchInstanceScalingActivityTask( final AutoScalingGroupScalingView group,
                                                final ScalingActivity activity,
                                                final String availabilityZone,
-                                               final String clientToken ) {
+                                               final String clientToken,
+                                               final int launchCount ) {
       super( group, activity );
       this.availabilityZone = availabilityZone;
       this.clientToken = clientToken;
+      this.launchCount = launchCount;
     }
 
     @Override
@@ -1498,7 +1551,7 @@ public class ActivityManager {
                            final Callback.Checked<RunInstancesResponseType> callback ) {
       setActivityStatus( ActivityStatusCode.InProgress, 50 );
       final EucalyptusClient client = context.getEucalyptusClient();
-      client.dispatch( runInstances( getGroup(), availabilityZone, clientToken, 1 ), callback );
+      client.dispatch( runInstances( getGroup(), availabilityZone, clientToken, launchCount ), callback );
     }
 
     @Override
@@ -1562,25 +1615,42 @@ public class ActivityManager {
       final Map<String,Integer> zoneCounts =
           buildAvailabilityZoneInstanceCounts( instances, zonesToUse );
       final int attemptToLaunch = Math.min( AutoScalingConfiguration.getMaxLaunchIncrement(), launchCount );
+      final boolean batch = AutoScalingConfiguration.isBatchInstanceLaunch( );
+      final Map<String,Integer> zoneLaunchCounts = Maps.newLinkedHashMap( );
       final List<LaunchInstanceScalingActivityTask> activities = Lists.newArrayList();
       for ( int i=0; i<attemptToLaunch; i++ ) {
         final Map.Entry<String,Integer> entry = selectEntry( zoneCounts, Ordering.natural() );
         if ( entry != null ) {
           final String zone = entry.getKey();
-          final String clientToken = String.format( "%1$s_%2$s_1",
-              UUID.randomUUID().toString(),
-              Iterables.getFirst( Splitter.fixedLength( 24 ).split( zone ), "" ) );
           entry.setValue( entry.getValue() + 1 );
-          activities.add( new LaunchInstanceScalingActivityTask(
-              getGroup(),
-              newActivity("Launching a new EC2 instance", 30, clientToken, Lists.newArrayList( cause( cause ) ), ActivityStatusCode.PreInService),
-              zone,
-              clientToken ) );
+          if ( batch ) {
+            zoneLaunchCounts.put( zone, MoreObjects.firstNonNull( zoneLaunchCounts.get( zone ), 0 ) + 1 );
+          } else {
+            activities.add( launchActivityTask( zone, 1 ) );
+          }
         }
       }
+      for ( final Map.Entry<String,Integer> entry : zoneLaunchCounts.entrySet( ) ) {
+        activities.add( launchActivityTask( entry.getKey( ), entry.getValue( ) ) );
+      }
       return activities;
     }
 
+    private LaunchInstanceScalingActivityTask launchActivityTask( final String zone, final int count ) {
+      final String clientToken = String.format( "%1$s_%2$s_1",
+          UUID.randomUUID().toString(),
+          Iterables.getFirst( Splitter.fixedLength( 24 ).split( zone ), "" ) );
+      final String description = count == 1 ?
+          "Launching a new EC2 instance" :
+          String.format( "Launching %1$d new EC2 instances", count );
+      return new LaunchInstanceScalingActivityTask(
+          getGroup(),
+          newActivity( description, 30, clientToken, Lists.newArrayList( cause( cause ) ), ActivityStatusCode.PreInService ),
+          zone,
+          clientToken,
+          count );
+    }
+
     @Override
     void failure( final List<LaunchInstanceScalingActivityTask> tasks ) {
       // Check to see if we should suspend activities for this group
@@ -2410,15 +2480,19 @@ public class ActivityManager {
         logger.trace( "Expected pending instances: " + pendingInstanceIds );
         logger.trace( "Expected running instances: " + expectedRunningInstanceIds );
       }
-      final List<String> instanceIds = Lists.newArrayList( Iterables.concat(
+      return Collections.singletonList( new MonitoringScalingActivityTask( getGroup(), newActivity(), getInstanceIds( ) ) );
+    }
+
+    List<String> getInstanceIds( ) {
+      return Lists.newArrayList( Iterables.concat(
           pendingInstanceIds,
           expectedRunningInstanceIds
       ) );
-      return Collections.singletonList( new MonitoringScalingActivityTask( getGroup(), newActivity(), instanceIds ) );
     }
 
     @Override
     void partialSuccess( final List<MonitoringScalingActivityTask> tasks ) {
+      final Set<String> instanceIds = Sets.newHashSet( getInstanceIds( ) );
       final Set<String> transitionToInService = Sets.newHashSet( pendingInstanceIds );
       final Set<String> transitionToUnhealthy = Sets.newHashSet( pendingInstanceIds );
       final Set<String> transitionToUnhealthyIfExpired = Sets.newHashSet( pendingInstanceIds );
@@ -2429,6 +2503,9 @@ public class ActivityManager {
         knownInstanceIds.addAll( task.getKnownInstanceIds( ) );
         healthyInstanceIds.addAll( task.getHealthyInstanceIds( ) );
       }
+      // tasks may be shared with other groups in the account
+      knownInstanceIds.retainAll( instanceIds );
+      healthyInstanceIds.retainAll( instanceIds );
 
       if ( logger.isTraceEnabled() ) {
         logger.trace( "EC2 health check known instances: " + knownInstanceIds );
@@ -2471,6 +2548,87 @@ public class ActivityManager {
     }
   }
 
+  /**
+   * Health check for the groups in an account using a single activity.
+   *
+   * <p>The group tasks must be reserved, each group task is completed with
+   * the result of the account task so back off applies per group.</p>
+   */
+  private class AccountMonitoringScalingProcessTask extends ScalingProcessTask<AutoScalingGroupCoreView,MonitoringScalingActivityTask> {
+    private final List<MonitoringScalingProcessTask> groupTasks;
+    private final AtomicBoolean groupsCompleted = new AtomicBoolean( false );
+
+    AccountMonitoringScalingProcessTask( final List<MonitoringScalingProcessTask> groupTasks ) {
+      super( groupTasks.get( 0 ).getGroup( ).getOwnerAccountNumber( ) + ":Monitor", groupTasks.get( 0 ).getGroup( ), "Monitor" );
+      this.groupTasks = ImmutableList.copyOf( groupTasks );
+    }
+
+    @Override
+    boolean shouldRun() {
+      return !groupTasks.isEmpty( );
+    }
+
+    @Override
+    boolean shouldAddScalingCauses( ) {
+      return false;
+    }
+
+    @Override
+    void runTask( ) {
+      super.runTask( );
+      if ( !isDispatched( ) ) {
+        failGroups( );
+      }
+    }
+
+    @Override
+    ScalingProcessTask onSuccess() {
+      if ( groupsCompleted.compareAndSet( false, true ) ) {
+        for ( final MonitoringScalingProcessTask groupTask : groupTasks ) {
+          groupTask.success( );
+        }
+      }
+      return null;
+    }
+
+    @Override
+    List<MonitoringScalingActivityTask> buildActivityTasks() throws AutoScalingMetadataException {
+      final List<String> instanceIds = Lists.newArrayList( );
+      for ( final MonitoringScalingProcessTask groupTask : groupTasks ) {
+        instanceIds.addAll( groupTask.getInstanceIds( ) );
+      }
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Performing EC2 health check of " + instanceIds.size( ) + " instance(s) for " +
+            groupTasks.size( ) + " group(s) in account: " + getGroup().getOwnerAccountNumber( ) );
+      }
+      return Collections.singletonList( new MonitoringScalingActivityTask( getGroup(), newActivity(), instanceIds ) );
+    }
+
+    @Override
+    void partialSuccess( final List<MonitoringScalingActivityTask> tasks ) {
+      for ( final MonitoringScalingProcessTask groupTask : groupTasks ) {
+        try {
+          groupTask.partialSuccess( tasks );
+        } catch ( final Exception e ) {
+          logger.error( "Error processing health check for group: " + groupTask.getGroup( ).getArn( ), e );
+        }
+      }
+    }
+
+    @Override
+    void failure( final List<MonitoringScalingActivityTask> tasks ) {
+      failGroups( );
+    }
+
+    void failGroups( ) {
+      if ( groupsCompleted.compareAndSet( false, true ) ) {
+        for ( final MonitoringScalingProcessTask groupTask : groupTasks ) {
+          groupTask.failure( );
+        }
+      }
+    }
+  }
+
   private class MetricsSubmissionScalingActivityTask extends ScalingActivityTask<AutoScalingGroupMetricsView,PutMetricDataResponseType> {
     private final List<AutoScalingInstanceCoreView> autoScalingInstances;
 
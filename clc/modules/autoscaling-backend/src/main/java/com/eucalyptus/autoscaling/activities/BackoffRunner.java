@@ -63,6 +63,19 @@ public class BackoffRunner {
     return run;
   }
 
+  /**
+   * Register a task as in progress without running it.
+   *
+   * <p>The caller must run the task or complete it with success or failure.</p>
+   */
+  boolean reserveTask( final TaskWithBackOff task ) {
+    boolean reserved = doRunTask( task, timestamp() );
+    if ( !reserved ) {
+      logger.info( "Not reserving task " + task );
+    }
+    return reserved;
+  }
+
   protected long timestamp() {
     return System.currentTimeMillis();
   }
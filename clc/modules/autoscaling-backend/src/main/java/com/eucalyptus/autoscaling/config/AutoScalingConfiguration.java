@@ -57,6 +57,12 @@ public class AutoScalingConfiguration {
   @ConfigurableField( initial = "20", description = "Maximum instances to launch at one time." )
   public static volatile int maxLaunchIncrement = 20;
 
+  @ConfigurableField( initial = "false", description = "Launch instances for a group in each availability zone using a single request." )
+  public static volatile boolean batchInstanceLaunch = false;
+
+  @ConfigurableField( initial = "false", description = "Check the health of instances for all groups in an account using a single request." )
+  public static volatile boolean batchInstanceMonitoring = false;
+
   @ConfigurableField( initial = "5", description = "Number of times to attempt load balancer registration for each instance." )
   public static volatile int maxRegistrationRetries = 5;
 
@@ -102,6 +108,14 @@ public class AutoScalingConfiguration {
     return maxLaunchIncrement;
   }
 
+  public static boolean isBatchInstanceLaunch() {
+    return batchInstanceLaunch;
+  }
+
+  public static boolean isBatchInstanceMonitoring() {
+    return batchInstanceMonitoring;
+  }
+
   public static int getMaxRegistrationRetries() {
     return maxRegistrationRetries;
   }
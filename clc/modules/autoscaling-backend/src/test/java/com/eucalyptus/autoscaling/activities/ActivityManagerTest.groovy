@@ -24,6 +24,7 @@ import com.eucalyptus.auth.api.PrincipalProvider
 import com.eucalyptus.auth.principal.AccountFullName
 import com.eucalyptus.auth.principal.TestProvider
 import com.eucalyptus.autoscaling.common.AutoScalingMetadata
+import com.eucalyptus.autoscaling.config.AutoScalingConfiguration
 import com.eucalyptus.autoscaling.configurations.LaunchConfiguration
 import com.eucalyptus.autoscaling.configurations.LaunchConfigurations
 import com.eucalyptus.autoscaling.groups.AutoScalingGroup
@@ -410,6 +411,187 @@ class ActivityManagerTest {
     assertEquals( "Scaling activity count", 0, scalingActivities.size() )
   }
 
+  @Test
+  void testEC2HealthCheckBatched() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    AutoScalingGroup group = new AutoScalingGroup(
+        id: "1",
+        naturalId: "1",
+        availabilityZones: [ "Zone1" ],
+        healthCheckType: HealthCheckType.EC2,
+        displayName: "Group1",
+        launchConfiguration: new LaunchConfiguration(
+            id: "1",
+            naturalId: "1",
+            ownerAccountNumber: "000000000000",
+            displayName: "Config1",
+            imageId: "emi-00000001",
+            instanceType: "m1.small",
+        ),
+        scalingRequired: false,
+        desiredCapacity: 3,
+        capacity:  3,
+        minSize: 1,
+        maxSize: 3,
+        ownerAccountNumber: "000000000000",
+        version: 1,
+    )
+    List<AutoScalingInstance> instances = [
+        new AutoScalingInstance(
+            id: "2",
+            naturalId: "1",
+            uniqueName: "1",
+            displayName: "i-00000001",
+            ownerAccountNumber: "000000000000",
+            availabilityZone: "Zone1",
+            healthStatus: HealthStatus.Healthy,
+            autoScalingGroup: group,
+            autoScalingGroupName: group.autoScalingGroupName,
+            launchConfigurationName: "Config1",
+            lifecycleState: LifecycleState.InService,
+            configurationState: ConfigurationState.Registered,
+            registrationAttempts: 0,
+        ),
+        new AutoScalingInstance(
+            id: "2",
+            naturalId: "2",
+            uniqueName: "2",
+            displayName: "i-00000002",
+            ownerAccountNumber: "000000000000",
+            availabilityZone: "Zone1",
+            healthStatus: HealthStatus.Healthy,
+            autoScalingGroup: group,
+            autoScalingGroupName: group.autoScalingGroupName,
+            launchConfigurationName: "Config1",
+            lifecycleState: LifecycleState.InService,
+            configurationState: ConfigurationState.Registered,
+            registrationAttempts: 0,
+        ),
+        new AutoScalingInstance(
+            id: "2",
+            naturalId: "3",
+            uniqueName: "3",
+            displayName: "i-00000003",
+            ownerAccountNumber: "000000000000",
+            availabilityZone: "Zone1",
+            healthStatus: HealthStatus.Healthy,
+            autoScalingGroup: group,
+            autoScalingGroupName: group.autoScalingGroupName,
+            launchConfigurationName: "Config1",
+            lifecycleState: LifecycleState.Pending,
+            configurationState: ConfigurationState.Instantiated,
+            registrationAttempts: 0,
+        ),
+    ]
+    List<ScalingActivity> scalingActivities = []
+    ActivityManager manager = activityManager( group, scalingActivities, instances, true, ["i-00000002"] )
+
+    AutoScalingConfiguration.batchInstanceMonitoring = true
+    try {
+      manager.doScaling()
+    } finally {
+      AutoScalingConfiguration.batchInstanceMonitoring = false
+    }
+
+    assertEquals( "Group capacity", 3, group.capacity )
+    assertEquals( "Instance count", 3, instances.size() )
+    assertEquals( "Instances 1 health status", HealthStatus.Healthy, instances.get(0).healthStatus )
+    assertEquals( "Instances 2 health status", HealthStatus.Unhealthy, instances.get(1).healthStatus )
+    assertEquals( "Instances 3 health status", HealthStatus.Healthy, instances.get(2).healthStatus )
+    assertEquals( "Instances 3 lifecycle state", LifecycleState.InService, instances.get(2).lifecycleState )
+  }
+
+  /**
+   * Groups in a batched health check are in progress for the check.
+   */
+  @Test
+  void testEC2HealthCheckBatchedGroupInProgress() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+    AutoScalingGroup group = healthCheckGroup( )
+    List<AutoScalingInstance> instances = [
+        instance( 1, group, "Zone1" ),
+        instance( 2, group, "Zone1" ),
+    ]
+    ActivityManager manager = activityManager( group, [], instances, true, ["i-00000002"] )
+    List<Boolean> groupInProgress = []
+    manager.describeInstanceStatusListener = { groupInProgress << manager.runner.taskInProgress( group.arn ) }
+
+    AutoScalingConfiguration.batchInstanceMonitoring = true
+    try {
+      manager.doScaling()
+    } finally {
+      AutoScalingConfiguration.batchInstanceMonitoring = false
+    }
+
+    assertEquals( "Group in progress during check", [ true ], groupInProgress )
+    assertFalse( "Group in progress after check", manager.runner.taskInProgress( group.arn ) )
+    assertEquals( "Instances 2 health status", HealthStatus.Unhealthy, instances.get(1).healthStatus )
+  }
+
+  /**
+   * A group with a task in progress is skipped by the batched health check.
+   */
+  @Test
+  void testEC2HealthCheckBatchedSkipsGroupInProgress() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+    AutoScalingGroup group = healthCheckGroup( )
+    List<AutoScalingInstance> instances = [
+        instance( 1, group, "Zone1" ),
+        instance( 2, group, "Zone1" ),
+    ]
+    ActivityManager manager = activityManager( group, [], instances, true, ["i-00000002"] )
+    BackoffRunner.TaskWithBackOff groupTask = new BackoffRunner.TaskWithBackOff( group.arn, "Launch" ){
+      @Override
+      void runTask() {
+      }
+    }
+    assertTrue( "Group task reserved", manager.runner.reserveTask( groupTask ) )
+
+    AutoScalingConfiguration.batchInstanceMonitoring = true
+    try {
+      manager.doScaling()
+      assertEquals( "Instances 2 health status while group in progress", HealthStatus.Healthy, instances.get(1).healthStatus )
+
+      groupTask.success()
+      manager.doScaling()
+      assertEquals( "Instances 2 health status", HealthStatus.Unhealthy, instances.get(1).healthStatus )
+    } finally {
+      AutoScalingConfiguration.batchInstanceMonitoring = false
+    }
+  }
+
+  /**
+   * A failed batched health check fails each group so back off is per group.
+   */
+  @Test
+  void testEC2HealthCheckBatchedFailure() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+    AutoScalingGroup group = healthCheckGroup( )
+    List<AutoScalingInstance> instances = [
+        instance( 1, group, "Zone1" ),
+        instance( 2, group, "Zone1" ),
+    ]
+    ActivityManager manager = activityManager( group, [], instances, true, ["i-00000002"] )
+    int describeCount = 0
+    manager.describeInstanceStatusListener = {
+      if ( describeCount++ == 0 ) throw new RuntimeException( "Test error triggered by describe instance status" )
+    }
+
+    AutoScalingConfiguration.batchInstanceMonitoring = true
+    try {
+      manager.doScaling()
+      assertFalse( "Group in progress after failure", manager.runner.taskInProgress( group.arn ) )
+      assertEquals( "Instances 2 health status after failure", HealthStatus.Healthy, instances.get(1).healthStatus )
+
+      manager.doScaling()
+      assertEquals( "Describe count", 2, describeCount )
+      assertEquals( "Instances 2 health status", HealthStatus.Unhealthy, instances.get(1).healthStatus )
+    } finally {
+      AutoScalingConfiguration.batchInstanceMonitoring = false
+    }
+  }
+
   @Test
   void testELBHealthCheckFailure() {
     for ( HealthCheckType type : HealthCheckType.values() ) {
@@ -702,6 +884,55 @@ class ActivityManagerTest {
     }
   }
 
+  @Test
+  void testLaunchInstancesMultipleAvailabilityZonesBatched() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    AutoScalingGroup group = new AutoScalingGroup(
+        id: "1",
+        naturalId: "1",
+        availabilityZones: [ "Zone1", "Zone2", "Zone3", "Zone4" ],
+        displayName: "Group1",
+        launchConfiguration: new LaunchConfiguration(
+            id: "1",
+            naturalId: "1",
+            ownerAccountNumber: "000000000000",
+            displayName: "Config1",
+            imageId: "emi-00000001",
+            instanceType: "m1.small",
+        ),
+        scalingRequired: true,
+        desiredCapacity: 8,
+        capacity:  0,
+        minSize: 8,
+        maxSize: 8,
+        ownerAccountNumber: "000000000000",
+        version: 1,
+    )
+    List<AutoScalingInstance> instances = []
+    List<ScalingActivity> scalingActivities = []
+    ActivityManager manager = activityManager( group, scalingActivities, instances )
+
+    AutoScalingConfiguration.batchInstanceLaunch = true
+    try {
+      doScaling( scalingActivities, manager )
+    } finally {
+      AutoScalingConfiguration.batchInstanceLaunch = false
+    }
+
+    assertEquals( "Group capacity", 8, group.capacity )
+    assertFalse( "Group scaling required", group.scalingRequired )
+    assertEquals( "Instance count", 8, instances.size() )
+    [ "Zone1", "Zone2", "Zone3", "Zone4" ].each { String zone ->
+      assertEquals( "Instance count for " + zone, 2, instances.count { AutoScalingInstance instance -> zone == instance.availabilityZone } )
+    }
+    assertEquals( "Scaling activity count", 4, scalingActivities.size() )
+    for ( int i=0; i<4; i++ ) {
+      assertEquals( "Scaling activity "+(i+1)+" status", ActivityStatusCode.Successful, scalingActivities.get(i).statusCode )
+      assertNotNull( "Scaling activity "+(i+1)+" has end date", scalingActivities.get(i).endTime )
+    }
+  }
+
   @Test
   void testLaunchInstancesMultipleAvailabilityZonesSkipsUnavailable() {
     Accounts.setIdentityProvider( identityProvider( ) )
@@ -1099,6 +1330,31 @@ class ActivityManagerTest {
     Timestamps.parseIso8601Timestamp( text )
   }
 
+  AutoScalingGroup healthCheckGroup( ) {
+    new AutoScalingGroup(
+        id: "1",
+        naturalId: "1",
+        availabilityZones: [ "Zone1" ],
+        healthCheckType: HealthCheckType.EC2,
+        displayName: "Group1",
+        launchConfiguration: new LaunchConfiguration(
+            id: "1",
+            naturalId: "1",
+            ownerAccountNumber: "000000000000",
+            displayName: "Config1",
+            imageId: "emi-00000001",
+            instanceType: "m1.small",
+        ),
+        scalingRequired: false,
+        desiredCapacity: 2,
+        capacity:  2,
+        minSize: 1,
+        maxSize: 2,
+        ownerAccountNumber: "000000000000",
+        version: 1,
+    )
+  }
+
   AutoScalingInstance instance( int id,
                                 AutoScalingGroup group,
                                 String availabilityZone,
@@ -1151,6 +1407,7 @@ class ActivityManagerTest {
     ) {
       long timeOffset = 0
       int instanceCount = 0
+      Closure<?> describeInstanceStatusListener = { }
       BackoffRunner runner = new BackoffRunner() {
         @Override
         protected long timestamp() {
@@ -1178,6 +1435,11 @@ class ActivityManagerTest {
         runner.runTask( task )
       }
 
+      @Override
+      boolean reserveTask(ActivityManager.ScalingProcessTask task) {
+        runner.reserveTask( task )
+      }
+
       @Override
       boolean taskInProgress(String groupArn) {
         false
@@ -1187,6 +1449,7 @@ class ActivityManagerTest {
       def ComputeClient createComputeClientForUser(final AccountFullName accountFullName) {
         new TestClients.TestComputeClient( accountFullName, { request ->
           if ( request instanceof DescribeInstanceStatusType ) {
+            describeInstanceStatusListener.call( )
             new DescribeInstanceStatusResponseType(
                 instanceStatusSet: new InstanceStatusSetType(
                     item: request.instancesSet.collect { instanceId ->
@@ -1215,12 +1478,12 @@ class ActivityManagerTest {
                 throw new WebServicesException( "Test error triggered by using emi-00000000" )
             new RunInstancesResponseType(
                   rsvInfo: new ReservationInfoType(
-                      instancesSet: [
+                      instancesSet: ( 1..Math.max( 1, ((RunInstancesType) request).maxCount ) ).collect {
                           new RunningInstancesItemType(
                               instanceId: "i-0000000" + (++instanceCount),
                               placement: ((RunInstancesType) request).availabilityZone,
                           )
-                      ]
+                      }
                   )
               )
           } else if ( request instanceof CreateTagsType ||
@@ -145,8 +145,8 @@ import com.eucalyptus.entities.TransactionException;
 import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.storage.common.CheckerTask;
 import com.eucalyptus.util.EucalyptusCloudException;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
@@ -498,7 +498,7 @@ public class BlockStorageController implements BlockStorageService {
       LOG.error("Failed UnexportVolume due to: " + e.getMessage(), e);
       throw new EucalyptusCloudException(e);
     }
-    ThruputMetrics.addDataPoint(MonitoredAction.UNEXPORT_VOLUME, System.currentTimeMillis() - startTime);
+    ActionMetrics.record(MonitoredAction.UNEXPORT_VOLUME, System.currentTimeMillis() - startTime);
     return reply;
   }
 
@@ -617,7 +617,7 @@ public class BlockStorageController implements BlockStorageService {
       LOG.error("Failed ExportVolume transaction due to: " + e.getMessage(), e);
       throw new EucalyptusCloudException("Failed to add export", e);
     }
-    ThruputMetrics.addDataPoint(MonitoredAction.EXPORT_VOLUME, System.currentTimeMillis() - startTime);
+    ActionMetrics.record(MonitoredAction.EXPORT_VOLUME, System.currentTimeMillis() - startTime);
     return reply;
   }
 
@@ -677,7 +677,7 @@ public class BlockStorageController implements BlockStorageService {
       } else if (status.equals(StorageProperties.Status.available.toString())) {
         // Set status, for cleanup thread to find.
         LOG.trace("Marking volume " + volumeId + " for deletion");
-        ThruputMetrics.startOperation(MonitoredAction.DELETE_VOLUME, volumeId, startTime);
+        ActionMetrics.startOperation(MonitoredAction.DELETE_VOLUME, volumeId, startTime);
         foundVolume.setStatus(StorageProperties.Status.deleting.toString());
       } else if (status.equals(StorageProperties.Status.deleting.toString()) || status.equals(StorageProperties.Status.deleted.toString())
           || status.equals(StorageProperties.Status.failed.toString())) {
@@ -775,7 +775,7 @@ public class BlockStorageController implements BlockStorageService {
       if (!sourceVolumeInfo.getStatus().equals(StorageProperties.Status.available.toString())) {
         throw new VolumeNotReadyException(volumeId);
       } else {
-        ThruputMetrics.startOperation(MonitoredAction.CREATE_SNAPSHOT, snapshotId, actionStart);
+        ActionMetrics.startOperation(MonitoredAction.CREATE_SNAPSHOT, snapshotId, actionStart);
         // create snapshot
         if (StorageProperties.shouldEnforceUsageLimits) {
           int maxSize = -1;
@@ -972,7 +972,7 @@ public class BlockStorageController implements BlockStorageService {
       String status = snapshotInfo.getStatus();
       if (status.equals(StorageProperties.Status.available.toString())) {
         snapshotInfo.setStatus(StorageProperties.Status.deleting.toString());
-        ThruputMetrics.startOperation(MonitoredAction.DELETE_SNAPSHOT, snapshotId, startTime);
+        ActionMetrics.startOperation(MonitoredAction.DELETE_SNAPSHOT, snapshotId, startTime);
       } else if (status.equals(StorageProperties.Status.deleting.toString()) || status.equals(StorageProperties.Status.deleted.toString())
           || status.equals(StorageProperties.Status.deletedfromebs.toString()) || status.equals(StorageProperties.Status.failed.toString())) {
         LOG.debug("Snapshot " + snapshotId + " already in deleting/deleted/failed. No-op for delete request.");
@@ -1088,7 +1088,7 @@ public class BlockStorageController implements BlockStorageService {
     try {
       // create volume asynchronously
       VolumeCreator volumeCreator = new VolumeCreator(volumeId, "snapset", snapshotId, parentVolumeId, sizeAsInt, blockManager);
-      ThruputMetrics.startOperation(snapshotId != null ? MonitoredAction.CREATE_VOLUME_FROM_SNAPSHOT : MonitoredAction.CREATE_VOLUME, volumeId,
+      ActionMetrics.startOperation(snapshotId != null ? MonitoredAction.CREATE_VOLUME_FROM_SNAPSHOT : MonitoredAction.CREATE_VOLUME, volumeId,
           actionStart);
       VolumeThreadPool.add(volumeCreator);
     } catch (Exception e) {
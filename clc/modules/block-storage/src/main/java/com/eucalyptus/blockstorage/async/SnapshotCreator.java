@@ -89,8 +89,8 @@ import com.eucalyptus.entities.TransactionException;
 import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.util.EucalyptusCloudException;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 
@@ -331,7 +331,7 @@ public class SnapshotCreator implements Runnable {
     };
 
     Entities.asTransaction(SnapshotInfo.class, updateFunction).apply(snapshotId);
-    ThruputMetrics.endOperation(MonitoredAction.CREATE_SNAPSHOT, snapshotId, System.currentTimeMillis());
+    ActionMetrics.endOperation(MonitoredAction.CREATE_SNAPSHOT, snapshotId, System.currentTimeMillis());
   }
 
   private void markSnapshotFailed() throws TransactionException, NoSuchElementException {
@@ -81,8 +81,8 @@ import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.storage.common.CheckerTask;
 import com.eucalyptus.util.EucalyptusCloudException;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 
 import edu.ucsb.eucalyptus.util.EucaSemaphore;
 import edu.ucsb.eucalyptus.util.EucaSemaphoreDirectory;
@@ -159,7 +159,7 @@ public class SnapshotDeleter extends CheckerTask {
             LOG.warn("Failed to process deletion for " + snap.getSnapshotId() + " on EBS backend", e);
             continue;
           } finally {
-            ThruputMetrics.endOperation(MonitoredAction.DELETE_SNAPSHOT, snap.getSnapshotId(), System.currentTimeMillis());
+            ActionMetrics.endOperation(MonitoredAction.DELETE_SNAPSHOT, snap.getSnapshotId(), System.currentTimeMillis());
           }
         }
       } else {
@@ -89,8 +89,8 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.util.EucalyptusCloudException;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Strings;
 
 import edu.ucsb.eucalyptus.util.EucaSemaphore;
@@ -345,7 +345,7 @@ public class VolumeCreator implements Runnable {
       if (foundVolumeInfo != null) {
         if (success) {
           foundVolumeInfo.setStatus(StorageProperties.Status.available.toString());
-          ThruputMetrics.endOperation(snapshotId != null ? MonitoredAction.CREATE_VOLUME_FROM_SNAPSHOT : MonitoredAction.CREATE_VOLUME, volumeId,
+          ActionMetrics.endOperation(snapshotId != null ? MonitoredAction.CREATE_VOLUME_FROM_SNAPSHOT : MonitoredAction.CREATE_VOLUME, volumeId,
               System.currentTimeMillis());
         } else {
           foundVolumeInfo.setStatus(StorageProperties.Status.failed.toString());
@@ -71,8 +71,10 @@ import com.eucalyptus.component.annotation.ComponentPart;
 import com.eucalyptus.ws.Handlers;
 import com.eucalyptus.ws.handlers.BindingHandler;
 import com.eucalyptus.ws.server.FilteredPipeline;
+import com.eucalyptus.ws.server.PipelineDispatch;
 import com.eucalyptus.ws.stages.ExternalSCAuthenticationStage;
 import com.eucalyptus.ws.stages.UnrollableStage;
+import com.google.common.collect.ImmutableSet;
 
 @ComponentPart(Storage.class)
 public class ExternalStorageControllerSoapPipeline extends FilteredPipeline {
@@ -86,6 +88,11 @@ public class ExternalStorageControllerSoapPipeline extends FilteredPipeline {
         && message.getHeaderNames().contains("SOAPAction") && message.getHeader("SOAPAction").trim().startsWith("\"EucalyptusSC#");
   }
 
+  @Override
+  public PipelineDispatch getDispatch() {
+    return PipelineDispatch.pathSuffixes(PipelineDispatch.RequestType.Soap, ImmutableSet.of("/services/Storage", "/services/Storage/"), false);
+  }
+
   @Override
   public String getName() {
     return "storage-controller-external-soap";
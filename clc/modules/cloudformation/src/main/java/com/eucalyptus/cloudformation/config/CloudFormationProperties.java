@@ -75,6 +75,12 @@ public class CloudFormationProperties {
       changeListener = Config.WorkflowWorkerConfigurationValidatingChangeListener.class )
   public static volatile String SWF_WORKFLOW_WORKER_CONFIG = DEFAULT_SWF_WORKFLOW_WORKER_CONFIG;
 
+  @ConfigurableField(
+      initial = "500",
+      description = "The interval (in milliseconds) between describe requests for resources that steps are waiting on",
+      changeListener = PropertyChangeListeners.IsNonNegativeInteger.class )
+  public static volatile Integer RESOURCE_STATE_WATCH_INTERVAL_MILLIS = 500;
+
   // In case we are using AWS SWF
   public static boolean USE_AWS_SWF = "true".equalsIgnoreCase(System.getProperty("cloudformation.use_aws_swf"));
   public static String AWS_ACCESS_KEY = System.getProperty("cloudformation.aws_access_key", "");
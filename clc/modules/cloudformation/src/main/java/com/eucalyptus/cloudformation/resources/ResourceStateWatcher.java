@@ -0,0 +1,319 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.resources;
+
+import com.eucalyptus.cloudformation.config.CloudFormationProperties;
+import com.eucalyptus.cloudformation.util.MessageHelper;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.compute.common.Compute;
+import com.eucalyptus.compute.common.DescribeInstancesResponseType;
+import com.eucalyptus.compute.common.DescribeInstancesType;
+import com.eucalyptus.compute.common.DescribeVolumesResponseType;
+import com.eucalyptus.compute.common.DescribeVolumesType;
+import com.eucalyptus.compute.common.Filter;
+import com.eucalyptus.compute.common.ReservationInfoType;
+import com.eucalyptus.compute.common.RunningInstancesItemType;
+import com.eucalyptus.compute.common.Volume;
+import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.async.AsyncRequests;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import org.apache.log4j.Logger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Observes the state of EC2 resources for stack resource steps.
+ *
+ * Resources that a step is waiting on are watched by a periodic describe on
+ * a dedicated scheduler, one describe per user for all watched resources, so
+ * many resources waiting on the same condition share describe calls rather
+ * than polling individually. Checking a watched resource never blocks the
+ * calling (activity) thread, the most recent observed state is used.
+ */
+public class ResourceStateWatcher<T> {
+
+  private static final Logger LOG = Logger.getLogger( ResourceStateWatcher.class );
+
+  static final int MAX_DESCRIBE_BATCH_SIZE = 200;
+
+  /**
+   * Resources that are not checked for this long are no longer watched
+   */
+  static final long WATCH_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+
+  private final Describer<T> describer;
+  private final Supplier<Integer> watchIntervalMillis;
+  private final ScheduledExecutorService scheduler;
+  private final ConcurrentMap<WatchKey,Watch<T>> watches = Maps.newConcurrentMap( );
+  private final AtomicBoolean started = new AtomicBoolean( false );
+
+  public interface Describer<T> {
+    /**
+     * Describe the given resources, the result is keyed by resource identifier.
+     */
+    Map<String,T> describe( String effectiveUserId, Collection<String> resourceIds ) throws Exception;
+  }
+
+  public ResourceStateWatcher( final Describer<T> describer,
+                               final Supplier<Integer> watchIntervalMillis,
+                               final ScheduledExecutorService scheduler ) {
+    this.describer = describer;
+    this.watchIntervalMillis = watchIntervalMillis;
+    this.scheduler = scheduler;
+  }
+
+  public static ResourceStateWatcher<RunningInstancesItemType> instances( ) {
+    return Watchers.instanceWatcher;
+  }
+
+  public static ResourceStateWatcher<Volume> volumes( ) {
+    return Watchers.volumeWatcher;
+  }
+
+  public static Predicate<Optional<RunningInstancesItemType>> instanceInState( final String stateName ) {
+    return new Predicate<Optional<RunningInstancesItemType>>( ) {
+      @Override
+      public boolean apply( final Optional<RunningInstancesItemType> instance ) {
+        return instance.isPresent( ) && stateName.equals( instance.get( ).getStateName( ) );
+      }
+    };
+  }
+
+  public static <T> Predicate<Optional<T>> absent( ) {
+    return new Predicate<Optional<T>>( ) {
+      @Override
+      public boolean apply( final Optional<T> resource ) {
+        return !resource.isPresent( );
+      }
+    };
+  }
+
+  /**
+   * Observe the current state of a resource with a direct describe.
+   *
+   * @return The resource or absent if the resource was not found
+   */
+  public Optional<T> observe( final String effectiveUserId, final String resourceId ) throws Exception {
+    return Optional.fromNullable(
+        describer.describe( effectiveUserId, Collections.singleton( resourceId ) ).get( resourceId ) );
+  }
+
+  /**
+   * Check the state of a resource against a condition without waiting.
+   *
+   * The first check for a resource is a direct describe. If the condition is
+   * not met the resource is watched and later checks use the state from the
+   * most recent periodic describe. The resource is no longer watched once the
+   * condition is met.
+   *
+   * @return The last observed state of the resource
+   */
+  public Optional<T> check( final String effectiveUserId,
+                            final String resourceId,
+                            final Predicate<? super Optional<T>> condition ) throws Exception {
+    final WatchKey key = new WatchKey( effectiveUserId, resourceId );
+    final Watch<T> watch = watches.get( key );
+    final Optional<T> observed;
+    if ( watch == null ) {
+      observed = observe( effectiveUserId, resourceId );
+      if ( !condition.apply( observed ) ) {
+        watches.putIfAbsent( key, new Watch<>( observed ) );
+        start( );
+      }
+    } else {
+      observed = watch.check( );
+      if ( condition.apply( observed ) ) {
+        watches.remove( key, watch );
+      }
+    }
+    return observed;
+  }
+
+  /**
+   * Number of watched resources
+   */
+  int watching( ) {
+    return watches.size( );
+  }
+
+  private void start( ) {
+    if ( started.compareAndSet( false, true ) ) {
+      schedule( );
+    }
+  }
+
+  private void schedule( ) {
+    scheduler.schedule( new Runnable( ) {
+      @Override
+      public void run( ) {
+        try {
+          describeWatched( );
+        } finally {
+          schedule( );
+        }
+      }
+    }, Math.max( 10, watchIntervalMillis.get( ) ), TimeUnit.MILLISECONDS );
+  }
+
+  /**
+   * Describe all watched resources, removing expired watches.
+   */
+  void describeWatched( ) {
+    final long expiry = System.currentTimeMillis( ) - WATCH_EXPIRY_MILLIS;
+    final ListMultimap<String,String> resourceIdsByUser = ArrayListMultimap.create( );
+    for ( final Map.Entry<WatchKey,Watch<T>> entry : watches.entrySet( ) ) {
+      if ( entry.getValue( ).lastChecked( ) < expiry ) {
+        watches.remove( entry.getKey( ), entry.getValue( ) );
+      } else {
+        resourceIdsByUser.put( entry.getKey( ).effectiveUserId, entry.getKey( ).resourceId );
+      }
+    }
+    for ( final String effectiveUserId : resourceIdsByUser.keySet( ) ) {
+      for ( final List<String> resourceIdBatch : Iterables.partition( resourceIdsByUser.get( effectiveUserId ), MAX_DESCRIBE_BATCH_SIZE ) ) {
+        try {
+          final Map<String,T> resources = describer.describe( effectiveUserId, resourceIdBatch );
+          for ( final String resourceId : resourceIdBatch ) {
+            final Watch<T> watch = watches.get( new WatchKey( effectiveUserId, resourceId ) );
+            if ( watch != null ) {
+              watch.observed( Optional.fromNullable( resources.get( resourceId ) ) );
+            }
+          }
+        } catch ( Exception e ) {
+          LOG.warn( "Error describing " + resourceIdBatch.size( ) + " watched resources: " + e.getMessage( ) );
+          LOG.debug( e, e );
+        }
+      }
+    }
+  }
+
+  private static final class WatchKey {
+    private final String effectiveUserId;
+    private final String resourceId;
+
+    private WatchKey( final String effectiveUserId, final String resourceId ) {
+      this.effectiveUserId = effectiveUserId;
+      this.resourceId = resourceId;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final WatchKey watchKey = (WatchKey) o;
+      return Objects.equals( effectiveUserId, watchKey.effectiveUserId ) &&
+          Objects.equals( resourceId, watchKey.resourceId );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hash( effectiveUserId, resourceId );
+    }
+  }
+
+  private static final class Watch<T> {
+    private volatile Optional<T> state;
+    private volatile long lastChecked;
+
+    private Watch( final Optional<T> state ) {
+      this.state = state;
+      this.lastChecked = System.currentTimeMillis( );
+    }
+
+    Optional<T> check( ) {
+      lastChecked = System.currentTimeMillis( );
+      return state;
+    }
+
+    void observed( final Optional<T> state ) {
+      this.state = state;
+    }
+
+    long lastChecked( ) {
+      return lastChecked;
+    }
+  }
+
+  private static final class Watchers {
+    private static final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudformation-resource-state-%d" ) );
+
+    private static final ResourceStateWatcher<RunningInstancesItemType> instanceWatcher =
+        new ResourceStateWatcher<>( new InstanceDescriber( ), new CloudFormationPropertySupplier( ), scheduler );
+
+    private static final ResourceStateWatcher<Volume> volumeWatcher =
+        new ResourceStateWatcher<>( new VolumeDescriber( ), new CloudFormationPropertySupplier( ), scheduler );
+  }
+
+  private static final class CloudFormationPropertySupplier implements Supplier<Integer> {
+    @Override
+    public Integer get( ) {
+      return CloudFormationProperties.RESOURCE_STATE_WATCH_INTERVAL_MILLIS;
+    }
+  }
+
+  private static final class InstanceDescriber implements Describer<RunningInstancesItemType> {
+    @Override
+    public Map<String,RunningInstancesItemType> describe( final String effectiveUserId,
+                                                         final Collection<String> instanceIds ) throws Exception {
+      final DescribeInstancesType describeInstancesType = MessageHelper.createMessage( DescribeInstancesType.class, effectiveUserId );
+      describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", instanceIds ) );
+      final DescribeInstancesResponseType describeInstancesResponseType =
+          AsyncRequests.sendSync( Topology.lookup( Compute.class ), describeInstancesType );
+      final Map<String,RunningInstancesItemType> instances = Maps.newHashMap( );
+      if ( describeInstancesResponseType.getReservationSet( ) != null ) {
+        for ( final ReservationInfoType reservation : describeInstancesResponseType.getReservationSet( ) ) {
+          for ( final RunningInstancesItemType instance : reservation.getInstancesSet( ) ) {
+            instances.put( instance.getInstanceId( ), instance );
+          }
+        }
+      }
+      return instances;
+    }
+  }
+
+  private static final class VolumeDescriber implements Describer<Volume> {
+    @Override
+    public Map<String,Volume> describe( final String effectiveUserId,
+                                        final Collection<String> volumeIds ) throws Exception {
+      final DescribeVolumesType describeVolumesType = MessageHelper.createMessage( DescribeVolumesType.class, effectiveUserId );
+      describeVolumesType.getFilterSet( ).add( Filter.filter( "volume-id", volumeIds ) );
+      final DescribeVolumesResponseType describeVolumesResponseType =
+          AsyncRequests.sendSync( Topology.lookup( Compute.class ), describeVolumesType );
+      final Map<String,Volume> volumes = Maps.newHashMap( );
+      if ( describeVolumesResponseType.getVolumeSet( ) != null ) {
+        for ( final Volume volume : describeVolumesResponseType.getVolumeSet( ) ) {
+          volumes.put( volume.getVolumeId( ), volume );
+        }
+      }
+      return volumes;
+    }
+  }
+}
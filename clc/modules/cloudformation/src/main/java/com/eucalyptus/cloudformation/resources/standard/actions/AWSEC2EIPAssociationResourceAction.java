@@ -27,6 +27,7 @@ import com.eucalyptus.cloudformation.resources.EC2Helper;
 import com.eucalyptus.cloudformation.resources.ResourceAction;
 import com.eucalyptus.cloudformation.resources.ResourceInfo;
 import com.eucalyptus.cloudformation.resources.ResourceProperties;
+import com.eucalyptus.cloudformation.resources.ResourceStateWatcher;
 import com.eucalyptus.cloudformation.resources.standard.info.AWSEC2EIPAssociationResourceInfo;
 import com.eucalyptus.cloudformation.resources.standard.propertytypes.AWSEC2EIPAssociationProperties;
 import com.eucalyptus.cloudformation.template.JsonHelper;
@@ -42,8 +43,6 @@ import com.eucalyptus.compute.common.AssociateAddressType;
 import com.eucalyptus.compute.common.Compute;
 import com.eucalyptus.compute.common.DescribeAddressesResponseType;
 import com.eucalyptus.compute.common.DescribeAddressesType;
-import com.eucalyptus.compute.common.DescribeInstancesResponseType;
-import com.eucalyptus.compute.common.DescribeInstancesType;
 import com.eucalyptus.compute.common.DescribeNetworkInterfacesResponseType;
 import com.eucalyptus.compute.common.DescribeNetworkInterfacesType;
 import com.eucalyptus.compute.common.DisassociateAddressResponseType;
@@ -147,10 +146,7 @@ public class AWSEC2EIPAssociationResourceAction extends StepBasedResourceAction
           throw new ValidationErrorException("Either instance ID or network interface id must be specified");
         }
         if (action.properties.getInstanceId() != null) {
-          DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, action.info.getEffectiveUserId());
-          describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", action.properties.getInstanceId() ) );
-          DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-          if (describeInstancesResponseType.getReservationSet() == null || describeInstancesResponseType.getReservationSet().isEmpty()) {
+          if (!ResourceStateWatcher.instances( ).observe( action.info.getEffectiveUserId( ), action.properties.getInstanceId( ) ).isPresent( )) {
             throw new ValidationErrorException("No such instance " + action.properties.getInstanceId());
           }
           associateAddressType.setInstanceId(action.properties.getInstanceId());
@@ -299,10 +295,7 @@ public class AWSEC2EIPAssociationResourceAction extends StepBasedResourceAction
           throw new ValidationErrorException("Either instance ID or network interface id must be specified");
         }
         if (newAction.properties.getInstanceId() != null) {
-          DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, newAction.info.getEffectiveUserId());
-          describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", newAction.properties.getInstanceId() ) );
-          DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-          if (describeInstancesResponseType.getReservationSet() == null || describeInstancesResponseType.getReservationSet().isEmpty()) {
+          if (!ResourceStateWatcher.instances( ).observe( newAction.info.getEffectiveUserId( ), newAction.properties.getInstanceId( ) ).isPresent( )) {
             throw new ValidationErrorException("No such instance " + newAction.properties.getInstanceId());
           }
           associateAddressType.setInstanceId(newAction.properties.getInstanceId());
@@ -27,6 +27,7 @@ import com.eucalyptus.cloudformation.resources.EC2Helper;
 import com.eucalyptus.cloudformation.resources.ResourceAction;
 import com.eucalyptus.cloudformation.resources.ResourceInfo;
 import com.eucalyptus.cloudformation.resources.ResourceProperties;
+import com.eucalyptus.cloudformation.resources.ResourceStateWatcher;
 import com.eucalyptus.cloudformation.resources.standard.info.AWSEC2EIPResourceInfo;
 import com.eucalyptus.cloudformation.resources.standard.propertytypes.AWSEC2EIPProperties;
 import com.eucalyptus.cloudformation.template.JsonHelper;
@@ -45,11 +46,8 @@ import com.eucalyptus.compute.common.AssociateAddressType;
 import com.eucalyptus.compute.common.Compute;
 import com.eucalyptus.compute.common.DescribeAddressesResponseType;
 import com.eucalyptus.compute.common.DescribeAddressesType;
-import com.eucalyptus.compute.common.DescribeInstancesResponseType;
-import com.eucalyptus.compute.common.DescribeInstancesType;
 import com.eucalyptus.compute.common.DisassociateAddressResponseType;
 import com.eucalyptus.compute.common.DisassociateAddressType;
-import com.eucalyptus.compute.common.Filter;
 import com.eucalyptus.compute.common.ReleaseAddressResponseType;
 import com.eucalyptus.compute.common.ReleaseAddressType;
 import com.eucalyptus.util.async.AsyncRequests;
@@ -135,10 +133,7 @@ public class AWSEC2EIPResourceAction extends StepBasedResourceAction {
         AWSEC2EIPResourceAction action = (AWSEC2EIPResourceAction) resourceAction;
         ServiceConfiguration configuration = Topology.lookup(Compute.class);
         if (action.properties.getInstanceId() != null) {
-          DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, action.info.getEffectiveUserId());
-          describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", action.properties.getInstanceId( ) ) );
-          DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-          if (describeInstancesResponseType.getReservationSet() == null || describeInstancesResponseType.getReservationSet().isEmpty()) {
+          if (!ResourceStateWatcher.instances( ).observe( action.info.getEffectiveUserId( ), action.properties.getInstanceId( ) ).isPresent( )) {
             throw new ValidationErrorException("No such instance " + action.properties.getInstanceId());
           }
           AssociateAddressType associateAddressType = MessageHelper.createMessage(AssociateAddressType.class, action.info.getEffectiveUserId());
@@ -271,10 +266,7 @@ public class AWSEC2EIPResourceAction extends StepBasedResourceAction {
 
         if (!Objects.equals(oldInstanceId, newAction.properties.getInstanceId())) {
           if (newAction.properties.getInstanceId() != null) {
-            DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, newAction.info.getEffectiveUserId());
-            describeInstancesType.getFilterSet().add(Filter.filter("instance-id", newAction.properties.getInstanceId()));
-            DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync(configuration, describeInstancesType);
-            if (describeInstancesResponseType.getReservationSet() == null || describeInstancesResponseType.getReservationSet().isEmpty()) {
+            if (!ResourceStateWatcher.instances( ).observe( newAction.info.getEffectiveUserId( ), newAction.properties.getInstanceId( ) ).isPresent( )) {
               throw new ValidationErrorException("No such instance " + newAction.properties.getInstanceId());
             }
           }
@@ -29,6 +29,7 @@ import com.eucalyptus.cloudformation.resources.EC2Helper;
 import com.eucalyptus.cloudformation.resources.ResourceAction;
 import com.eucalyptus.cloudformation.resources.ResourceInfo;
 import com.eucalyptus.cloudformation.resources.ResourceProperties;
+import com.eucalyptus.cloudformation.resources.ResourceStateWatcher;
 import com.eucalyptus.cloudformation.resources.standard.TagHelper;
 import com.eucalyptus.cloudformation.resources.standard.info.AWSEC2InstanceResourceInfo;
 import com.eucalyptus.cloudformation.resources.standard.propertytypes.AWSEC2InstanceProperties;
@@ -103,6 +104,8 @@ import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.util.async.AsyncRequests;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -117,6 +120,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import static com.eucalyptus.cloudformation.resources.ResourceStateWatcher.instanceInState;
 import static com.eucalyptus.util.async.AsyncExceptions.asWebServiceErrorMessage;
 
 /**
@@ -386,14 +390,12 @@ public class AWSEC2InstanceResourceAction extends StepBasedResourceAction {
       @Override
       public ResourceAction perform(ResourceAction resourceAction) throws Exception {
         AWSEC2InstanceResourceAction action = (AWSEC2InstanceResourceAction) resourceAction;
-        ServiceConfiguration configuration = Topology.lookup(Compute.class);
-        DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, action.info.getEffectiveUserId());
-        describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", action.info.getPhysicalResourceId( ) ) );
-        DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-        if (describeInstancesResponseType.getReservationSet().size() == 0) {
+        Optional<RunningInstancesItemType> instance = ResourceStateWatcher.instances( ).check(
+            action.info.getEffectiveUserId( ), action.info.getPhysicalResourceId( ), instanceInState( "running" ) );
+        if (!instance.isPresent()) {
           throw new RetryAfterConditionCheckFailedException("Instance " + action.info.getPhysicalResourceId( ) + " does not yet exist");
         }
-        RunningInstancesItemType runningInstancesItemType = describeInstancesResponseType.getReservationSet().get(0).getInstancesSet().get(0);
+        RunningInstancesItemType runningInstancesItemType = instance.get();
         if ("running".equals(runningInstancesItemType.getStateName())) {
           action.info.setPrivateIp(JsonHelper.getStringFromJsonNode(new TextNode(runningInstancesItemType.getPrivateIpAddress())));
           action.info.setPublicIp(JsonHelper.getStringFromJsonNode(new TextNode(runningInstancesItemType.getIpAddress())));
@@ -580,17 +582,16 @@ public class AWSEC2InstanceResourceAction extends StepBasedResourceAction {
       @Override
       public ResourceAction perform(ResourceAction resourceAction) throws Exception {
         AWSEC2InstanceResourceAction action = (AWSEC2InstanceResourceAction) resourceAction;
-        ServiceConfiguration configuration = Topology.lookup(Compute.class);
         // See if instance was ever populated
         if (!Boolean.TRUE.equals(action.info.getCreatedEnoughToDelete())) return action;
-        DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, action.info.getEffectiveUserId());
-        describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", action.info.getPhysicalResourceId( ) ) );
-        DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-        if (describeInstancesResponseType.getReservationSet().size() == 0) return action; // already terminated
-        if ("terminated".equals(describeInstancesResponseType.getReservationSet().get(0).getInstancesSet().get(0).getStateName())) {
+        Optional<RunningInstancesItemType> instance = ResourceStateWatcher.instances( ).check(
+            action.info.getEffectiveUserId( ), action.info.getPhysicalResourceId( ),
+            Predicates.or( ResourceStateWatcher.<RunningInstancesItemType>absent( ), instanceInState( "terminated" ) ) );
+        if (!instance.isPresent()) return action; // already terminated
+        if ("terminated".equals(instance.get().getStateName())) {
           return action;
         }
-        throw new RetryAfterConditionCheckFailedException(("Instance " + action.info.getPhysicalResourceId() + " is not yet terminated, currently " + describeInstancesResponseType.getReservationSet().get(0).getInstancesSet().get(0).getStateName()));
+        throw new RetryAfterConditionCheckFailedException(("Instance " + action.info.getPhysicalResourceId() + " is not yet terminated, currently " + instance.get().getStateName()));
       }
 
       @Override
@@ -24,6 +24,7 @@ import com.eucalyptus.cloudformation.ValidationErrorException;
 import com.eucalyptus.cloudformation.resources.ResourceAction;
 import com.eucalyptus.cloudformation.resources.ResourceInfo;
 import com.eucalyptus.cloudformation.resources.ResourceProperties;
+import com.eucalyptus.cloudformation.resources.ResourceStateWatcher;
 import com.eucalyptus.cloudformation.resources.standard.info.AWSEC2VolumeAttachmentResourceInfo;
 import com.eucalyptus.cloudformation.resources.standard.propertytypes.AWSEC2VolumeAttachmentProperties;
 import com.eucalyptus.cloudformation.template.JsonHelper;
@@ -38,17 +39,19 @@ import com.eucalyptus.compute.common.AttachVolumeResponseType;
 import com.eucalyptus.compute.common.AttachVolumeType;
 import com.eucalyptus.compute.common.AttachedVolume;
 import com.eucalyptus.compute.common.Compute;
-import com.eucalyptus.compute.common.DescribeInstancesResponseType;
-import com.eucalyptus.compute.common.DescribeInstancesType;
 import com.eucalyptus.compute.common.DescribeVolumesResponseType;
 import com.eucalyptus.compute.common.DescribeVolumesType;
 import com.eucalyptus.compute.common.DetachVolumeResponseType;
 import com.eucalyptus.compute.common.DetachVolumeType;
 import com.eucalyptus.compute.common.Filter;
+import com.eucalyptus.compute.common.Volume;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.util.async.AsyncRequests;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 
 import javax.annotation.Nullable;
 import java.util.Objects;
@@ -101,10 +104,7 @@ public class AWSEC2VolumeAttachmentResourceAction extends StepBasedResourceActio
       public ResourceAction perform(ResourceAction resourceAction) throws Exception {
         AWSEC2VolumeAttachmentResourceAction action = (AWSEC2VolumeAttachmentResourceAction) resourceAction;
         ServiceConfiguration configuration = Topology.lookup(Compute.class);
-        DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, action.info.getEffectiveUserId());
-        describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", action.properties.getInstanceId( ) ) );
-        DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-        if (describeInstancesResponseType.getReservationSet() == null || describeInstancesResponseType.getReservationSet().isEmpty()) {
+        if (!ResourceStateWatcher.instances( ).observe( action.info.getEffectiveUserId( ), action.properties.getInstanceId( ) ).isPresent( )) {
           throw new ValidationErrorException("No such instance " + action.properties.getInstanceId());
         }
         DescribeVolumesType describeVolumesType = MessageHelper.createMessage(DescribeVolumesType.class, action.info.getEffectiveUserId());
@@ -131,30 +131,14 @@ public class AWSEC2VolumeAttachmentResourceAction extends StepBasedResourceActio
       @Override
       public ResourceAction perform(ResourceAction resourceAction) throws Exception {
         AWSEC2VolumeAttachmentResourceAction action = (AWSEC2VolumeAttachmentResourceAction) resourceAction;
-        ServiceConfiguration configuration = Topology.lookup(Compute.class);
-        boolean attached = false;
-        DescribeVolumesType describeVolumesType = MessageHelper.createMessage(DescribeVolumesType.class, action.info.getEffectiveUserId());
-        describeVolumesType.getFilterSet( ).add( Filter.filter( "volume-id", action.properties.getVolumeId( ) ) );
-        DescribeVolumesResponseType describeVolumesResponseType;
+        final Predicate<Optional<Volume>> attached = attachmentInState(action, "attached");
+        Optional<Volume> volume;
         try {
-          describeVolumesResponseType = AsyncRequests.sendSync( configuration, describeVolumesType );
+          volume = ResourceStateWatcher.volumes( ).check( action.info.getEffectiveUserId( ), action.properties.getVolumeId( ), attached );
         } catch ( Exception e ) {
           throw new ValidationErrorException("Error describing volume " + action.properties.getVolumeId() + ":" + asWebServiceErrorMessage( e, e.getMessage() ) );
         }
-        if (describeVolumesResponseType.getVolumeSet().size() == 0) {
-          throwNotAttachedMessage(action.properties.getVolumeId(), action.properties.getInstanceId());
-        }
-        if (describeVolumesResponseType.getVolumeSet().get(0).getAttachmentSet() == null || describeVolumesResponseType.getVolumeSet().get(0).getAttachmentSet().isEmpty()) {
-          throwNotAttachedMessage(action.properties.getVolumeId(), action.properties.getInstanceId());
-        }
-        for (AttachedVolume attachedVolume: describeVolumesResponseType.getVolumeSet().get(0).getAttachmentSet()) {
-          if (attachedVolume.getInstanceId().equals(action.properties.getInstanceId()) &&
-            attachedVolume.getDevice().equals(action.properties.getDevice()) && attachedVolume.getStatus().equals("attached")) {
-            attached = true;
-            break;
-          }
-        }
-        if (!attached) {
+        if (!attached.apply(volume)) {
           throwNotAttachedMessage(action.properties.getVolumeId(), action.properties.getInstanceId());
         }
         return action;
@@ -209,29 +193,16 @@ public class AWSEC2VolumeAttachmentResourceAction extends StepBasedResourceActio
         AWSEC2VolumeAttachmentResourceAction action = (AWSEC2VolumeAttachmentResourceAction) resourceAction;
         ServiceConfiguration configuration = Topology.lookup(Compute.class);
         if (notCreatedOrNoInstanceOrNoVolume(action, configuration)) return action;
-        boolean detached = false;
-        DescribeVolumesType describeVolumesType = MessageHelper.createMessage(DescribeVolumesType.class, action.info.getEffectiveUserId());
-        describeVolumesType.getFilterSet( ).add( Filter.filter( "volume-id", action.properties.getVolumeId( ) ) );
-        DescribeVolumesResponseType describeVolumesResponseType;
+        // volume is gone, not attached to anything or detached
+        final Predicate<Optional<Volume>> detached = Predicates.or(
+            ResourceStateWatcher.<Volume>absent( ), notAttached( ), attachmentInState(action, "detached") );
+        Optional<Volume> volume;
         try {
-          describeVolumesResponseType = AsyncRequests.sendSync( configuration, describeVolumesType );
+          volume = ResourceStateWatcher.volumes( ).check( action.info.getEffectiveUserId( ), action.properties.getVolumeId( ), detached );
         } catch ( Exception e ) {
           throw new ValidationErrorException("Error describing volume " + action.properties.getVolumeId() + ":" + asWebServiceErrorMessage( e, e.getMessage() ) );
         }
-        if (describeVolumesResponseType.getVolumeSet().size() == 0) {
-          return action; // volume is gone
-        }
-        if (describeVolumesResponseType.getVolumeSet().get(0).getAttachmentSet() == null || describeVolumesResponseType.getVolumeSet().get(0).getAttachmentSet().isEmpty()) {
-          return action; // volume not attached to anything
-        }
-        for (AttachedVolume attachedVolume: describeVolumesResponseType.getVolumeSet().get(0).getAttachmentSet()) {
-          if (attachedVolume.getInstanceId().equals(action.properties.getInstanceId())
-            && attachedVolume.getDevice().equals(action.properties.getDevice()) && attachedVolume.getStatus().equals("detached")) {
-            detached = true;
-            break;
-          }
-        }
-        if (detached == true) return action;
+        if (detached.apply(volume)) return action;
         throw new RetryAfterConditionCheckFailedException("Volume " + action.properties.getVolumeId() + " is not yet detached from instance " + action.properties.getInstanceId());
       }
 
@@ -249,10 +220,7 @@ public class AWSEC2VolumeAttachmentResourceAction extends StepBasedResourceActio
 
     private static boolean notCreatedOrNoInstanceOrNoVolume(AWSEC2VolumeAttachmentResourceAction action, ServiceConfiguration configuration) throws Exception {
       if (!Boolean.TRUE.equals(action.info.getCreatedEnoughToDelete())) return true;
-      DescribeInstancesType describeInstancesType = MessageHelper.createMessage(DescribeInstancesType.class, action.info.getEffectiveUserId());
-      describeInstancesType.getFilterSet( ).add( Filter.filter( "instance-id", action.properties.getInstanceId( ) ) );
-      DescribeInstancesResponseType describeInstancesResponseType = AsyncRequests.sendSync( configuration, describeInstancesType );
-      if (describeInstancesResponseType.getReservationSet() == null || describeInstancesResponseType.getReservationSet().isEmpty()) {
+      if (!ResourceStateWatcher.instances( ).observe( action.info.getEffectiveUserId( ), action.properties.getInstanceId( ) ).isPresent( )) {
         return true; // can't be attached to a nonexistent instance;
       }
       DescribeVolumesType describeVolumesType = MessageHelper.createMessage(DescribeVolumesType.class, action.info.getEffectiveUserId());
@@ -271,6 +239,32 @@ public class AWSEC2VolumeAttachmentResourceAction extends StepBasedResourceActio
   }
 
 
+  private static Predicate<Optional<Volume>> attachmentInState(final AWSEC2VolumeAttachmentResourceAction action, final String status) {
+    return new Predicate<Optional<Volume>>() {
+      @Override
+      public boolean apply(final Optional<Volume> volume) {
+        if (volume.isPresent() && volume.get().getAttachmentSet() != null) {
+          for (AttachedVolume attachedVolume: volume.get().getAttachmentSet()) {
+            if (attachedVolume.getInstanceId().equals(action.properties.getInstanceId()) &&
+              attachedVolume.getDevice().equals(action.properties.getDevice()) && attachedVolume.getStatus().equals(status)) {
+              return true;
+            }
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  private static Predicate<Optional<Volume>> notAttached() {
+    return new Predicate<Optional<Volume>>() {
+      @Override
+      public boolean apply(final Optional<Volume> volume) {
+        return volume.isPresent() && (volume.get().getAttachmentSet() == null || volume.get().getAttachmentSet().isEmpty());
+      }
+    };
+  }
+
   @Override
   public ResourceProperties getResourceProperties() {
     return properties;
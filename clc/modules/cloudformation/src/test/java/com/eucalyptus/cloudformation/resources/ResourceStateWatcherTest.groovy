@@ -0,0 +1,187 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudformation.resources
+
+import com.google.common.base.Optional
+import com.google.common.base.Predicate
+import com.google.common.base.Supplier
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ *
+ */
+class ResourceStateWatcherTest {
+
+  private ScheduledExecutorService scheduler
+
+  @Before
+  void setUp( ) {
+    scheduler = Executors.newSingleThreadScheduledExecutor( )
+  }
+
+  @After
+  void tearDown( ) {
+    scheduler.shutdownNow( )
+  }
+
+  @Test
+  void testObserve( ) {
+    AtomicInteger describes = new AtomicInteger( )
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      describes.incrementAndGet( )
+      ids.findAll{ it.startsWith( 'i-' ) }.collectEntries{ [ it, 'running' ] }
+    } as ResourceStateWatcher.Describer<String>, { 500 } as Supplier<Integer>, scheduler )
+
+    assertEquals( 'Observed state', Optional.of( 'running' ), watcher.observe( 'user', 'i-00000001' ) )
+    assertEquals( 'Observed state', Optional.absent( ), watcher.observe( 'user', 'vol-00000001' ) )
+    assertEquals( 'Describe count', 2, describes.get( ) )
+    assertEquals( 'Watching', 0, watcher.watching( ) )
+  }
+
+  @Test
+  void testObserveFailure( ) {
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      throw new IllegalStateException( 'describe failed' )
+    } as ResourceStateWatcher.Describer<String>, { 500 } as Supplier<Integer>, scheduler )
+
+    try {
+      watcher.observe( 'user', 'i-00000001' )
+      fail( 'Expected failure' )
+    } catch ( IllegalStateException e ) {
+      assertEquals( 'Failure message', 'describe failed', e.message )
+    }
+  }
+
+  @Test
+  void testCheckWatchesUntilConditionMet( ) {
+    AtomicInteger describes = new AtomicInteger( )
+    String state = 'pending'
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      describes.incrementAndGet( )
+      ids.collectEntries{ [ it, state ] }
+    } as ResourceStateWatcher.Describer<String>, { 60000 } as Supplier<Integer>, scheduler )
+    Predicate<Optional<String>> running = { Optional<String> s -> s.orNull( ) == 'running' } as Predicate
+
+    assertEquals( 'Initial state', Optional.of( 'pending' ), watcher.check( 'user', 'i-00000001', running ) )
+    assertEquals( 'Watching', 1, watcher.watching( ) )
+    assertEquals( 'Describe count', 1, describes.get( ) )
+
+    state = 'running'
+    assertEquals( 'Watched state', Optional.of( 'pending' ), watcher.check( 'user', 'i-00000001', running ) )
+    assertEquals( 'Describe count', 1, describes.get( ) )
+
+    watcher.describeWatched( )
+    assertEquals( 'Describe count', 2, describes.get( ) )
+    assertEquals( 'Watched state', Optional.of( 'running' ), watcher.check( 'user', 'i-00000001', running ) )
+    assertEquals( 'Watching', 0, watcher.watching( ) )
+  }
+
+  @Test
+  void testCheckDoesNotBlock( ) {
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      ids.collectEntries{ [ it, 'pending' ] }
+    } as ResourceStateWatcher.Describer<String>, { 500 } as Supplier<Integer>, scheduler )
+    Predicate<Optional<String>> running = { Optional<String> s -> s.orNull( ) == 'running' } as Predicate
+
+    long start = System.currentTimeMillis( )
+    ( 1..100 ).each {
+      assertEquals( 'Observed state', Optional.of( 'pending' ), watcher.check( 'user', 'i-00000001', running ) )
+    }
+    assertTrue( 'Checks did not wait for describe interval', ( System.currentTimeMillis( ) - start ) < 500 )
+  }
+
+  @Test
+  void testWatchedDescribeFailure( ) {
+    boolean fail = false
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      if ( fail ) throw new IllegalStateException( 'describe failed' )
+      ids.collectEntries{ [ it, 'pending' ] }
+    } as ResourceStateWatcher.Describer<String>, { 60000 } as Supplier<Integer>, scheduler )
+    Predicate<Optional<String>> running = { Optional<String> s -> s.orNull( ) == 'running' } as Predicate
+
+    watcher.check( 'user', 'i-00000001', running )
+    fail = true
+    watcher.describeWatched( )
+    assertEquals( 'State retained', Optional.of( 'pending' ), watcher.check( 'user', 'i-00000001', running ) )
+    assertEquals( 'Watching', 1, watcher.watching( ) )
+  }
+
+  @Test
+  void testWatchedResourceRemoved( ) {
+    boolean exists = true
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      exists ? ids.collectEntries{ [ it, 'shutting-down' ] } : [:]
+    } as ResourceStateWatcher.Describer<String>, { 60000 } as Supplier<Integer>, scheduler )
+    Predicate<Optional<String>> terminated = ResourceStateWatcher.<String>absent( )
+
+    assertEquals( 'Initial state', Optional.of( 'shutting-down' ), watcher.check( 'user', 'i-00000001', terminated ) )
+    exists = false
+    watcher.describeWatched( )
+    assertEquals( 'Watched state', Optional.absent( ), watcher.check( 'user', 'i-00000001', terminated ) )
+    assertEquals( 'Watching', 0, watcher.watching( ) )
+  }
+
+  /**
+   * Synthetic stack with many instances waiting until running. Checks while
+   * watched do not describe, each periodic describe covers all watched
+   * instances in batches.
+   */
+  @Test
+  void testLargeStackCoalescing( ) {
+    List<String> instanceIds = ( 1..500 ).collect { int index -> String.format( 'i-%08x', index ) }
+    String state = 'pending'
+    List<Integer> batchSizes = [ ]
+    ResourceStateWatcher<String> watcher = new ResourceStateWatcher<>( { String userId, Collection<String> ids ->
+      batchSizes << ids.size( )
+      ids.collectEntries{ [ it, state ] }
+    } as ResourceStateWatcher.Describer<String>, { 60000 } as Supplier<Integer>, scheduler )
+    Predicate<Optional<String>> running = { Optional<String> s -> s.orNull( ) == 'running' } as Predicate
+
+    instanceIds.each { assertEquals( 'Initial state', Optional.of( 'pending' ), watcher.check( 'user', it, running ) ) }
+    assertEquals( 'Initial describe count', instanceIds.size( ), batchSizes.size( ) )
+    assertEquals( 'Watching', instanceIds.size( ), watcher.watching( ) )
+
+    batchSizes.clear( )
+    10.times {
+      instanceIds.each { assertEquals( 'Watched state', Optional.of( 'pending' ), watcher.check( 'user', it, running ) ) }
+    }
+    assertEquals( 'Describe count for watched checks', 0, batchSizes.size( ) )
+
+    state = 'running'
+    watcher.describeWatched( )
+    assertEquals( 'Describe batch sizes',
+        instanceIds.collate( ResourceStateWatcher.MAX_DESCRIBE_BATCH_SIZE )*.size( ), batchSizes )
+    instanceIds.each { assertEquals( 'Watched state', Optional.of( 'running' ), watcher.check( 'user', it, running ) ) }
+    assertEquals( 'Watching', 0, watcher.watching( ) )
+  }
+
+  @Test
+  void testPredicates( ) {
+    assertTrue( 'Absent', ResourceStateWatcher.<String>absent( ).apply( Optional.absent( ) ) )
+    assertFalse( 'Absent', ResourceStateWatcher.<String>absent( ).apply( Optional.of( 'present' ) ) )
+  }
+}
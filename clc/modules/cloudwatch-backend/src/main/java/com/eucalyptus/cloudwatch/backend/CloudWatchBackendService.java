@@ -58,6 +58,7 @@ import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmNotFoundExce
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
 import com.eucalyptus.cloudwatch.common.policy.CloudWatchPolicySpec;
 import com.eucalyptus.cloudwatch.workflow.DBCleanupService;
+import com.eucalyptus.cloudwatch.workflow.MetricRollupService;
 import com.eucalyptus.cloudwatch.workflow.alarms.AlarmStateEvaluationDispatcher;
 import com.eucalyptus.component.Faults;
 import com.eucalyptus.component.annotation.ComponentNamed;
@@ -99,6 +100,10 @@ public class CloudWatchBackendService {
         .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-db-cleanup-pool-%d" ) );
     dbCleanupService.scheduleAtFixedRate(new DBCleanupService(), 1, 24,
         TimeUnit.HOURS);
+    ScheduledExecutorService metricRollupService = Executors
+        .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-metric-rollup-pool-%d" ) );
+    metricRollupService.scheduleWithFixedDelay(new MetricRollupService(), 1, 1,
+        TimeUnit.MINUTES);
   }
 
   private static final Logger LOG = Logger.getLogger(CloudWatchBackendService.class);
@@ -28,6 +28,7 @@ import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupManager;
 import com.eucalyptus.component.Topology;
 
 public class DBCleanupService implements Runnable {
@@ -51,6 +52,12 @@ public class DBCleanupService implements Runnable {
       LOG.error(ex);
       LOG.error(ex, ex);
     }
+    try {
+      MetricRollupManager.deleteRollups(new Date());
+    } catch (Exception ex) {
+      LOG.error(ex);
+      LOG.error(ex, ex);
+    }
     try {
       ListMetricManager.deleteMetrics(twoWeeksAgo);
     } catch (Exception ex) {
@@ -0,0 +1,45 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.workflow;
+
+import java.util.Date;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupManager;
+import com.eucalyptus.component.Topology;
+
+/**
+ * Periodically rolls up metric data into the downsampled storage tiers.
+ */
+public class MetricRollupService implements Runnable {
+  private static final Logger LOG = Logger.getLogger(MetricRollupService.class);
+
+  @Override
+  public void run() {
+    if (!( Bootstrap.isOperational() &&
+        Topology.isEnabled( CloudWatchBackend.class ) )) {
+      return;
+    }
+    try {
+      MetricRollupManager.rollup(new Date());
+    } catch (Exception ex) {
+      LOG.error(ex, ex);
+    }
+  }
+}
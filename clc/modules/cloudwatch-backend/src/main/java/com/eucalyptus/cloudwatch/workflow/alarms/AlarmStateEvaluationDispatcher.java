@@ -37,37 +37,53 @@
 
 package com.eucalyptus.cloudwatch.workflow.alarms;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 
+import com.eucalyptus.cloudwatch.common.CloudWatch;
 import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmRegistry;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntityFactory;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
-import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricWindowStore;
+import com.eucalyptus.component.ServiceConfiguration;
+import com.eucalyptus.component.ServiceConfigurations;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.apache.log4j.Logger;
-import org.hibernate.Criteria;
 
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
 import com.eucalyptus.component.Topology;
-import com.eucalyptus.entities.Entities;
 
+/**
+ * Dispatches evaluation of alarms that may have changed state.
+ *
+ * Alarms are evaluated when their definition or state changes, when their
+ * metric receives data, or when a period has passed since they were last
+ * evaluated. Metric activity is only known when all metric data is put via
+ * this host, otherwise every alarm is evaluated on each run.
+ */
 public class AlarmStateEvaluationDispatcher implements Runnable {
   private static final Logger LOG = Logger.getLogger(AlarmStateEvaluationDispatcher.class);
   ExecutorService executorService;
+  private final Map<String, Long> lastEvaluatedTimes = Maps.newHashMap();
+  private boolean metricWindowsTracked = false;
 
   public AlarmStateEvaluationDispatcher(ExecutorService executorService) {
     super();
@@ -79,22 +95,54 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
     if (!CloudWatchConfigProperties.isDisabledCloudWatchService() && Bootstrap.isOperational( ) && Topology.isEnabledLocally( CloudWatchBackend.class )) {
       LOG.debug("Kicking off AlarmStateEvaluationDispatcher");
 
-      int size = 0;
-      long before = 0;
+      Date now = new Date();
+      long before = System.currentTimeMillis();
       List<List<AlarmEntity>> resultsList = null;
-      try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
-        Criteria criteria = Entities.createCriteria(AlarmEntity.class);
-        List<AlarmEntity> results = (List<AlarmEntity>) criteria.list();
+      int size = 0;
+      int total = 0;
+      boolean useMetricWindows = false;
+      try {
+        AlarmRegistry alarmRegistry = AlarmRegistry.getInstance();
+        Set<String> changedAlarmIds = alarmRegistry.refresh(now);
+        MetricWindowStore metricWindowStore = MetricWindowStore.getInstance();
+        Set<MetricWindowStore.Key> activeMetricKeys = null;
+        if (isMetricDataPutLocally()) {
+          metricWindowStore.track(alarmRegistry.getWindowHorizons(CloudWatchConfigProperties.ALARM_EVALUATION_WINDOW_MINUTES), now);
+          Set<MetricWindowStore.Key> dirtyKeys = metricWindowStore.drainDirty();
+          // activity is unknown for the run where tracking starts
+          activeMetricKeys = metricWindowsTracked ? dirtyKeys : null;
+          metricWindowsTracked = true;
+          useMetricWindows = true;
+        } else if (metricWindowsTracked) {
+          metricWindowStore.clear();
+          metricWindowsTracked = false;
+        }
+        List<AlarmEntity> alarmEntities = alarmRegistry.getAlarms();
+        List<AlarmEntity> results = Lists.newArrayList();
+        Set<String> alarmIds = Sets.newHashSet();
+        long evaluationTime = MetricUtils.stripSeconds(now).getTime();
+        for (AlarmEntity alarmEntity: alarmEntities) {
+          alarmIds.add(alarmEntity.getNaturalId());
+          if (isEvaluationDue(alarmEntity, changedAlarmIds, activeMetricKeys, evaluationTime)) {
+            lastEvaluatedTimes.put(alarmEntity.getNaturalId(), evaluationTime);
+            results.add(alarmEntity);
+          }
+        }
+        lastEvaluatedTimes.keySet().retainAll(alarmIds);
         resultsList = makeResultsList(results);
-        before = System.currentTimeMillis();
         size = results.size();
+        total = alarmEntities.size();
+      } catch (Exception e) {
+        // reload everything next time in case a change notification was lost
+        AlarmRegistry.getInstance().resync();
+        LOG.error(e, e);
       }
       try {
         if (resultsList != null) {
           ExecutorCompletionService executorCompletionService = new ExecutorCompletionService(executorService);
           Set<Future> futures = Sets.newHashSet();
           for (List<AlarmEntity> alarmEntityList: resultsList) {
-            futures.add(executorCompletionService.submit(new AlarmStateEvaluationWorker(alarmEntityList), new Object()));
+            futures.add(executorCompletionService.submit(new AlarmStateEvaluationWorker(alarmEntityList, useMetricWindows), new Object()));
           }
           Future completedFuture;
           while (futures.size() > 0) {
@@ -108,7 +156,7 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
             }
           }
           long after = System.currentTimeMillis();
-          LOG.debug("Done evaluating " + size + " alarms, time = " + (after - before) + " ms");
+          LOG.debug("Done evaluating " + size + " of " + total + " alarms, time = " + (after - before) + " ms");
         }
       } catch (InterruptedException e) {
         LOG.debug(e);
@@ -116,6 +164,24 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
     }
   }
 
+  private boolean isEvaluationDue(AlarmEntity alarmEntity, Set<String> changedAlarmIds,
+                                  Set<MetricWindowStore.Key> activeMetricKeys, long evaluationTime) {
+    Long lastEvaluatedTime = lastEvaluatedTimes.get(alarmEntity.getNaturalId());
+    return activeMetricKeys == null ||
+      lastEvaluatedTime == null ||
+      changedAlarmIds.contains(alarmEntity.getNaturalId()) ||
+      evaluationTime - lastEvaluatedTime >= 1000L * alarmEntity.getPeriod() ||
+      activeMetricKeys.contains(AlarmRegistry.getMetricKey(alarmEntity));
+  }
+
+  /**
+   * In memory metric windows are only complete if all metric data is put via this host.
+   */
+  private static boolean isMetricDataPutLocally() {
+    Collection<ServiceConfiguration> configurations = Topology.enabledServices(CloudWatch.class);
+    return !configurations.isEmpty() && Iterables.all(configurations, ServiceConfigurations.filterHostLocal());
+  }
+
   private List<List<AlarmEntity>> makeResultsList(List<AlarmEntity> results) {
     Multimap<Class, AlarmEntity> classMultiMap = LinkedListMultimap.create();
     for (AlarmEntity alarmEntity: results) {
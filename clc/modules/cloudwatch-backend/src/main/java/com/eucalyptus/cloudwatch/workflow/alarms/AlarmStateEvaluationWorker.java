@@ -52,6 +52,7 @@ import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmState;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmUtils;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricWindowStore;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.log4j.Logger;
@@ -65,10 +66,19 @@ import com.eucalyptus.component.Topology;
 
 public class AlarmStateEvaluationWorker implements Runnable {
   private Collection<AlarmEntity> alarmEntities;
+  private boolean useMetricWindows;
   private static final Logger LOG = Logger.getLogger(AlarmStateEvaluationWorker.class);
   public AlarmStateEvaluationWorker(Collection<AlarmEntity> alarmEntities) {
+    this(alarmEntities, false);
+  }
+
+  /**
+   * @param useMetricWindows True to use in-memory metric data where it covers the evaluation range
+   */
+  public AlarmStateEvaluationWorker(Collection<AlarmEntity> alarmEntities, boolean useMetricWindows) {
     super();
     this.alarmEntities = alarmEntities;
+    this.useMetricWindows = useMetricWindows;
   }
   @Override
   public void run() {
@@ -111,16 +121,16 @@ public class AlarmStateEvaluationWorker implements Runnable {
       Date startDate = new Date(endDate.getTime() - 1000L * alarmEntity.getPeriod() * alarmEntity.getEvaluationPeriods());
       // We put in a slight buffer in addition to the regular window time (two additional periods or 5 minutes, whichever is greater) to delay
       // insufficient data from going down...
-      Date bufferStartDate = new Date(startDate.getTime() - 1000L * alarmEntity.getPeriod() * numBufferPeriods(alarmEntity.getPeriod()));
+      Date bufferStartDate = new Date(startDate.getTime() - 1000L * alarmEntity.getPeriod() * AlarmUtils.numBufferPeriods(alarmEntity.getPeriod()));
       getMetricStatisticsParamses.add(new MetricManager.GetMetricStatisticsParams(alarmEntity.getAccountId(), alarmEntity.getMetricName(), alarmEntity.getNamespace(), alarmEntity.getDimensionMap(), alarmEntity.getMetricType(), alarmEntity.getUnit(), bufferStartDate, endDate, alarmEntity.getPeriod()));
     }
-    List<Collection<MetricStatistics>> manyMetricsStatisticsList = MetricManager.getManyMetricStatistics(getMetricStatisticsParamses);
+    List<Collection<MetricStatistics>> manyMetricsStatisticsList = getManyMetricStatistics(getMetricStatisticsParamses);
     int count = 0;
     for (AlarmEntity alarmEntity: alarmEntities) {
       Date startDate = new Date(endDate.getTime() - 1000L * alarmEntity.getPeriod() * alarmEntity.getEvaluationPeriods());
       // We put in a slight buffer in addition to the regular window time (two additional periods or 5 minutes, whichever is greater) to delay
       // insufficient data from going down...
-      Date bufferStartDate = new Date(startDate.getTime() - 1000L * alarmEntity.getPeriod() * numBufferPeriods(alarmEntity.getPeriod()));
+      Date bufferStartDate = new Date(startDate.getTime() - 1000L * alarmEntity.getPeriod() * AlarmUtils.numBufferPeriods(alarmEntity.getPeriod()));
       Collection<MetricStatistics> metricStatisticsList = manyMetricsStatisticsList.get(count++);
       TreeMap<Long, StateAndMetricValue> dataPointMap = new TreeMap<Long, StateAndMetricValue>();
       for (long L = bufferStartDate.getTime(); L < endDate.getTime(); L += alarmEntity.getPeriod() * 1000L) {
@@ -227,12 +237,28 @@ public class AlarmStateEvaluationWorker implements Runnable {
       return metricValue;
     }
   }
-  private Integer numBufferPeriods(Integer period) {
-    // it is the greater of 5 minutes or two periods, but it should be a whole number of periods.
-    Integer periodMinutes = period / 60;
-    if (periodMinutes == 1) return 5;
-    if (periodMinutes == 2) return 3;
-    return 2;
+  private List<Collection<MetricStatistics>> getManyMetricStatistics(List<MetricManager.GetMetricStatisticsParams> getMetricStatisticsParamses) {
+    List<Collection<MetricStatistics>> manyMetricsStatisticsList = Lists.newArrayList();
+    List<MetricManager.GetMetricStatisticsParams> databaseParamses = Lists.newArrayList();
+    List<Integer> databaseIndexes = Lists.newArrayList();
+    for (MetricManager.GetMetricStatisticsParams getMetricStatisticsParams: getMetricStatisticsParamses) {
+      Collection<MetricStatistics> metricStatisticsList = useMetricWindows ?
+        MetricWindowStore.getInstance().getMetricStatistics(getMetricStatisticsParams) :
+        null;
+      if (metricStatisticsList == null) {
+        // not (yet) covered in memory, read from the database
+        databaseIndexes.add(manyMetricsStatisticsList.size());
+        databaseParamses.add(getMetricStatisticsParams);
+      }
+      manyMetricsStatisticsList.add(metricStatisticsList);
+    }
+    if (!databaseParamses.isEmpty()) {
+      List<Collection<MetricStatistics>> databaseMetricsStatisticsList = MetricManager.getManyMetricStatistics(databaseParamses);
+      for (int i = 0; i < databaseIndexes.size(); i++) {
+        manyMetricsStatisticsList.set(databaseIndexes.get(i), databaseMetricsStatisticsList.get(i));
+      }
+    }
+    return manyMetricsStatisticsList;
   }
 
 }
@@ -19,6 +19,7 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.common.config;
 
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricDataWriter;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.PropertyChangeListeners;
@@ -31,6 +32,30 @@ public class CloudWatchConfigProperties {
   @ConfigurableField(initial = "1000", description = "Size of the reporting data set that stores cloud watch queues performance info (debug only prop)")
   public static volatile int CLOUDWATCH_MONITORING_HISTORY_SIZE = 1000;
 
+  @ConfigurableField(initial = "15", description = "Interval in seconds between flushes of completed minutes of aggregated metric data to the database", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_DATA_FLUSH_INTERVAL_SECONDS = 15;
+
+  @ConfigurableField(initial = "500000", description = "Maximum number of aggregated metric data entries held in memory before metric data is rejected", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_DATA_MAX_AGGREGATED_ENTRIES = 500000;
+
+  @ConfigurableField(initial = "batch", description = "Method used to write metric data to the database (orm, batch or copy)", changeListener = MetricDataWriter.MetricDataWriterChangeListener.class)
+  public static volatile String METRIC_DATA_WRITER = "batch";
+
+  @ConfigurableField(initial = "4", description = "Maximum number of threads writing metric data shards to the database in parallel", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_DATA_WRITER_THREADS = 4;
+
+  @ConfigurableField(initial = "63", description = "Number of days to retain metric data rolled up to five minute intervals", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_DATA_FIVE_MINUTE_RETENTION_DAYS = 63;
+
+  @ConfigurableField(initial = "455", description = "Number of days to retain metric data rolled up to one hour intervals", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_DATA_ONE_HOUR_RETENTION_DAYS = 455;
+
+  @ConfigurableField(initial = "360", description = "Maximum number of minutes of recent metric data held in memory for alarm evaluation", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int ALARM_EVALUATION_WINDOW_MINUTES = 360;
+
+  @ConfigurableField(initial = "10", description = "Interval in minutes between full reloads of the in-memory alarm registry", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int ALARM_REGISTRY_RESYNC_MINUTES = 10;
+
   public static Boolean isDisabledCloudWatchService() {
     return !ENABLE_CLOUDWATCH_SERVICE;
   }
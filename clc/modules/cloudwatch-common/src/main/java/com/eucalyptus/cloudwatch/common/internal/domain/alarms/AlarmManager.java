@@ -185,6 +185,7 @@ public class AlarmManager {
       }
       db.commit();
     }
+    AlarmRegistry.getInstance().changed(alarmEntity.getNaturalId());
   }
 
   static void addAlarmHistoryItem(String accountId, String alarmName,
@@ -352,6 +353,9 @@ public class AlarmManager {
       }
       CollectionUtils.each( alarmEntities, update );
       db.commit();
+      for ( final AlarmEntity alarmEntity : alarmEntities ) {
+        AlarmRegistry.getInstance().changed( alarmEntity.getNaturalId() );
+      }
       return true;
     }
   }
@@ -410,6 +414,7 @@ public class AlarmManager {
         AlarmManager.executeActions(alarmEntity, newState, true, evaluationDate);
       }
       db.commit();
+      AlarmRegistry.getInstance().changed(alarmEntity.getNaturalId());
     }
   }
 
@@ -757,6 +762,7 @@ public class AlarmManager {
       }
       db.commit();
     }
+    AlarmRegistry.getInstance().changed(statesToUpdate.keySet());
   }
 
   public static void addAlarmHistoryEvents(List<AlarmHistory> historyList) {
@@ -0,0 +1,190 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.alarms;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricWindowStore;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.google.common.base.Objects;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory registry of alarm definitions for alarm evaluation.
+ *
+ * AlarmManager notifies the registry of alarms it changes so that only those
+ * alarms are reloaded. Alarms changed on other hosts are picked up by a
+ * periodic full reload.
+ */
+public class AlarmRegistry {
+  private static final Logger LOG = Logger.getLogger(AlarmRegistry.class);
+  private static final AlarmRegistry instance = new AlarmRegistry(new PersistenceAlarmLoader());
+
+  private final AlarmLoader alarmLoader;
+  private final Set<String> changedAlarmIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final Map<String, AlarmEntity> alarms = Maps.newHashMap();
+  private volatile boolean resyncRequested = true;
+  private long lastResync = 0L;
+
+  AlarmRegistry(AlarmLoader alarmLoader) {
+    this.alarmLoader = alarmLoader;
+  }
+
+  public static AlarmRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * Notify the registry that an alarm was created, updated or deleted.
+   *
+   * @param naturalId The natural identifier of the alarm
+   */
+  public void changed(String naturalId) {
+    if (naturalId != null) {
+      changedAlarmIds.add(naturalId);
+    }
+  }
+
+  public void changed(Collection<String> naturalIds) {
+    for (String naturalId : naturalIds) {
+      changed(naturalId);
+    }
+  }
+
+  /**
+   * Request a full reload on the next refresh.
+   */
+  public void resync() {
+    resyncRequested = true;
+  }
+
+  /**
+   * Bring the registry up to date with the database.
+   *
+   * @param now The current time
+   * @return The natural identifiers of alarms added or changed since the last refresh
+   */
+  public synchronized Set<String> refresh(Date now) {
+    Set<String> changedIds = Sets.newHashSet();
+    for (String naturalId : changedAlarmIds) {
+      if (changedAlarmIds.remove(naturalId)) {
+        changedIds.add(naturalId);
+      }
+    }
+    Set<String> updatedIds = Sets.newHashSet();
+    if (resyncRequested || now.getTime() - lastResync >= TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.ALARM_REGISTRY_RESYNC_MINUTES)) {
+      resyncRequested = false;
+      lastResync = now.getTime();
+      Map<String, AlarmEntity> loadedAlarms = Maps.newHashMap();
+      for (AlarmEntity alarmEntity : alarmLoader.loadAll()) {
+        loadedAlarms.put(alarmEntity.getNaturalId(), alarmEntity);
+      }
+      for (AlarmEntity alarmEntity : loadedAlarms.values()) {
+        AlarmEntity previous = alarms.get(alarmEntity.getNaturalId());
+        if (previous == null || changedIds.contains(alarmEntity.getNaturalId()) ||
+            !Objects.equal(previous.getVersion(), alarmEntity.getVersion())) {
+          updatedIds.add(alarmEntity.getNaturalId());
+        }
+      }
+      alarms.clear();
+      alarms.putAll(loadedAlarms);
+      LOG.debug("Reloaded " + alarms.size() + " alarms, " + updatedIds.size() + " changed");
+    } else if (!changedIds.isEmpty()) {
+      for (AlarmEntity alarmEntity : alarmLoader.load(changedIds)) {
+        alarms.put(alarmEntity.getNaturalId(), alarmEntity);
+        updatedIds.add(alarmEntity.getNaturalId());
+      }
+      alarms.keySet().removeAll(Sets.difference(changedIds, updatedIds));
+    }
+    return updatedIds;
+  }
+
+  public synchronized List<AlarmEntity> getAlarms() {
+    return Lists.newArrayList(alarms.values());
+  }
+
+  /**
+   * Get the number of minutes of recent metric data needed to evaluate the
+   * registered alarms, for each alarmed metric.
+   *
+   * @param maxMinutes The maximum number of minutes for any metric
+   */
+  public synchronized Map<MetricWindowStore.Key, Integer> getWindowHorizons(int maxMinutes) {
+    Map<MetricWindowStore.Key, Integer> horizons = Maps.newHashMap();
+    for (AlarmEntity alarmEntity : alarms.values()) {
+      // allow a couple of minutes for the evaluation end time to lag the current time
+      int minutes = Math.min(maxMinutes, (int) TimeUnit.SECONDS.toMinutes(AlarmUtils.evaluationRangeSeconds(alarmEntity)) + 2);
+      MetricWindowStore.Key key = getMetricKey(alarmEntity);
+      Integer current = horizons.get(key);
+      if (current == null || current < minutes) {
+        horizons.put(key, minutes);
+      }
+    }
+    return horizons;
+  }
+
+  public static MetricWindowStore.Key getMetricKey(AlarmEntity alarmEntity) {
+    return new MetricWindowStore.Key(
+        alarmEntity.getAccountId(),
+        alarmEntity.getNamespace(),
+        alarmEntity.getMetricName(),
+        alarmEntity.getMetricType(),
+        MetricManager.hash(alarmEntity.getDimensionMap()));
+  }
+
+  interface AlarmLoader {
+    List<AlarmEntity> loadAll();
+
+    List<AlarmEntity> load(Collection<String> naturalIds);
+  }
+
+  private static final class PersistenceAlarmLoader implements AlarmLoader {
+    @Override
+    public List<AlarmEntity> loadAll() {
+      try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
+        return (List<AlarmEntity>) Entities.createCriteria(AlarmEntity.class).list();
+      }
+    }
+
+    @Override
+    public List<AlarmEntity> load(Collection<String> naturalIds) {
+      List<AlarmEntity> alarmEntities = Lists.newArrayList();
+      try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
+        for (List<String> naturalIdsPartition : Iterables.partition(naturalIds, 500)) {
+          alarmEntities.addAll((List<AlarmEntity>) Entities.createCriteria(AlarmEntity.class)
+              .add(Restrictions.in("naturalId", naturalIdsPartition)).list());
+        }
+      }
+      return alarmEntities;
+    }
+  }
+}
@@ -159,4 +159,18 @@ public class AlarmUtils {
     return builder.toString();
   }
 
+  public static Integer numBufferPeriods(Integer period) {
+    // it is the greater of 5 minutes or two periods, but it should be a whole number of periods.
+    Integer periodMinutes = period / 60;
+    if (periodMinutes == 1) return 5;
+    if (periodMinutes == 2) return 3;
+    return 2;
+  }
+
+  /**
+   * The number of seconds of metric data an alarm evaluation looks at, including the buffer periods.
+   */
+  public static long evaluationRangeSeconds(AlarmEntity alarmEntity) {
+    return (long) alarmEntity.getPeriod() * (alarmEntity.getEvaluationPeriods() + numBufferPeriods(alarmEntity.getPeriod()));
+  }
 }
@@ -0,0 +1,240 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.persistence.Table;
+
+import org.apache.log4j.Logger;
+import org.hibernate.jdbc.Work;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import com.eucalyptus.configurable.ConfigurableProperty;
+import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.PropertyChangeListener;
+import com.eucalyptus.entities.Entities;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+
+/**
+ * Strategies for writing metric data rows to a metric data shard table.
+ *
+ * Writers are invoked within a transaction for the entity class of the shard.
+ */
+public enum MetricDataWriter {
+
+  /**
+   * Persist each entity via the entity manager, flushing the session periodically.
+   */
+  Orm {
+    @Override
+    void write( final Class entityClass, final List<MetricEntity> entities ) {
+      int numOperations = 0;
+      for ( final MetricEntity me : entities ) {
+        numOperations++;
+        if ( numOperations % MetricManager.METRIC_DATA_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0 ) {
+          Entities.flushSession( entityClass );
+          Entities.clearSession( entityClass );
+        }
+        Entities.persist( me );
+      }
+    }
+  },
+
+  /**
+   * Insert rows using JDBC statement batching.
+   */
+  Batch {
+    @Override
+    void write( final Class entityClass, final List<MetricEntity> entities ) {
+      Entities.doWork( entityClass, new Work( ) {
+        @Override
+        public void execute( final Connection connection ) throws SQLException {
+          batchInsert( connection, tableName( entityClass ), entities );
+        }
+      } );
+    }
+  },
+
+  /**
+   * Stream rows using the PostgreSQL COPY protocol, falling back to batching
+   * if the connection does not support COPY.
+   */
+  Copy {
+    @Override
+    void write( final Class entityClass, final List<MetricEntity> entities ) {
+      Entities.doWork( entityClass, new Work( ) {
+        @Override
+        public void execute( final Connection connection ) throws SQLException {
+          final String table = tableName( entityClass );
+          final BaseConnection baseConnection = unwrap( connection );
+          if ( baseConnection != null ) {
+            copyIn( baseConnection, table, entities );
+          } else {
+            LOG.debug( "COPY not supported for connection, using batch insert for " + table );
+            batchInsert( connection, table, entities );
+          }
+        }
+      } );
+    }
+  },
+  ;
+
+  private static final Logger LOG = Logger.getLogger( MetricDataWriter.class );
+  private static final int JDBC_BATCH_SIZE = 500;
+  private static final String COLUMNS = Joiner.on( ", " ).join(
+      "id", "account_id", "namespace", "metric_name", "dimension_hash", "units", "metric_type",
+      "timestamp", "sample_size", "sample_max", "sample_min", "sample_sum" );
+
+  /**
+   * Write the given entities to the table for the entity class.
+   *
+   * @param entityClass The metric entity class for the shard
+   * @param entities The entities to write, all of which must be of the given class
+   */
+  abstract void write( Class entityClass, List<MetricEntity> entities );
+
+  public static MetricDataWriter fromString( @Nullable final String value ) {
+    for ( final MetricDataWriter writer : values( ) ) {
+      if ( writer.name( ).equalsIgnoreCase( Strings.nullToEmpty( value ).trim( ) ) ) {
+        return writer;
+      }
+    }
+    throw new IllegalArgumentException( "Invalid metric data writer: " + value );
+  }
+
+  private static String tableName( final Class entityClass ) {
+    final Table table = (Table) entityClass.getAnnotation( Table.class );
+    if ( table == null ) throw new IllegalArgumentException( "No table for " + entityClass );
+    return table.name( );
+  }
+
+  private static String newId( ) {
+    return UUID.randomUUID( ).toString( ).replace( "-", "" );
+  }
+
+  @Nullable
+  private static BaseConnection unwrap( final Connection connection ) {
+    try {
+      return connection.isWrapperFor( BaseConnection.class ) ?
+          connection.unwrap( BaseConnection.class ) :
+          null;
+    } catch ( final SQLException | AbstractMethodError e ) {
+      return null;
+    }
+  }
+
+  private static void batchInsert(
+      final Connection connection,
+      final String table,
+      final Collection<MetricEntity> entities
+  ) throws SQLException {
+    final String sql = "insert into " + table + " (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    try ( final PreparedStatement statement = connection.prepareStatement( sql ) ) {
+      int batched = 0;
+      for ( final MetricEntity me : entities ) {
+        statement.setString( 1, newId( ) );
+        statement.setString( 2, me.getAccountId( ) );
+        statement.setString( 3, me.getNamespace( ) );
+        statement.setString( 4, me.getMetricName( ) );
+        statement.setString( 5, me.getDimensionHash( ) );
+        statement.setString( 6, me.getUnits( ).name( ) );
+        statement.setString( 7, me.getMetricType( ).name( ) );
+        statement.setTimestamp( 8, new Timestamp( me.getTimestamp( ).getTime( ) ) );
+        statement.setDouble( 9, me.getSampleSize( ) );
+        statement.setDouble( 10, me.getSampleMax( ) );
+        statement.setDouble( 11, me.getSampleMin( ) );
+        statement.setDouble( 12, me.getSampleSum( ) );
+        statement.addBatch( );
+        if ( ++batched % JDBC_BATCH_SIZE == 0 ) {
+          statement.executeBatch( );
+        }
+      }
+      if ( batched % JDBC_BATCH_SIZE != 0 ) {
+        statement.executeBatch( );
+      }
+    }
+  }
+
+  private static void copyIn(
+      final BaseConnection connection,
+      final String table,
+      final Collection<MetricEntity> entities
+  ) throws SQLException {
+    // timestamps are written in local time, as for hibernate
+    final DateFormat timestampFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss.SSS" );
+    final StringBuilder data = new StringBuilder( entities.size( ) * 192 );
+    for ( final MetricEntity me : entities ) {
+      data.append( newId( ) ).append( '\t' );
+      appendCopyText( data, me.getAccountId( ) ).append( '\t' );
+      appendCopyText( data, me.getNamespace( ) ).append( '\t' );
+      appendCopyText( data, me.getMetricName( ) ).append( '\t' );
+      appendCopyText( data, me.getDimensionHash( ) ).append( '\t' );
+      data.append( me.getUnits( ).name( ) ).append( '\t' );
+      data.append( me.getMetricType( ).name( ) ).append( '\t' );
+      data.append( timestampFormat.format( me.getTimestamp( ) ) ).append( '\t' );
+      data.append( me.getSampleSize( ) ).append( '\t' );
+      data.append( me.getSampleMax( ) ).append( '\t' );
+      data.append( me.getSampleMin( ) ).append( '\t' );
+      data.append( me.getSampleSum( ) ).append( '\n' );
+    }
+    try {
+      new CopyManager( connection ).copyIn(
+          "copy " + table + " (" + COLUMNS + ") from stdin",
+          new StringReader( data.toString( ) ) );
+    } catch ( final IOException e ) {
+      throw new SQLException( "Error copying metric data to " + table, e );
+    }
+  }
+
+  private static StringBuilder appendCopyText( final StringBuilder builder, final String value ) {
+    for ( int i = 0; i < value.length( ); i++ ) {
+      final char c = value.charAt( i );
+      switch ( c ) {
+        case '\\': builder.append( "\\\\" ); break;
+        case '\t': builder.append( "\\t" ); break;
+        case '\n': builder.append( "\\n" ); break;
+        case '\r': builder.append( "\\r" ); break;
+        default: builder.append( c );
+      }
+    }
+    return builder;
+  }
+
+  public static final class MetricDataWriterChangeListener implements PropertyChangeListener {
+    @Override
+    public void fireChange( final ConfigurableProperty t, final Object newValue ) throws ConfigurablePropertyException {
+      try {
+        fromString( String.valueOf( newValue ) );
+      } catch ( final IllegalArgumentException e ) {
+        throw new ConfigurablePropertyException( "Invalid value " + newValue + ", expected one of orm, batch, copy" );
+      }
+    }
+  }
+}
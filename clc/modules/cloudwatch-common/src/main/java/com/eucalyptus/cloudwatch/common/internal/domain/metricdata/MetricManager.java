@@ -23,6 +23,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -30,14 +31,24 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.persistence.EntityTransaction;
 
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.AbstractPersistentWithDimensions;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.PropertyChangeListeners;
 import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.util.metrics.ActionMetrics;
+import com.eucalyptus.util.metrics.MonitoredAction;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedListMultimap;
 import org.apache.log4j.Logger;
@@ -68,6 +79,10 @@ public class MetricManager {
   public static volatile Integer METRIC_DATA_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH = 50;
 
   public static final Logger LOG = Logger.getLogger(MetricManager.class);
+
+  private static final ExecutorService writerExecutor =
+      Executors.newCachedThreadPool(Threads.threadFactory("cloudwatch-metric-data-writer-%d"));
+
   public static void addMetric(String accountId, 
       String metricName, String namespace, Map<String, String> dimensionMap,
       MetricType metricType, Units units, Date timestamp, Double sampleSize,
@@ -85,7 +100,9 @@ public class MetricManager {
     simpleMetricEntity.setTimestamp(timestamp);
     simpleMetricEntity.setUnits(units);
     validateMetricQueueItem(simpleMetricEntity);
-    addManyMetrics(makeMetricMap(hash(simpleMetricEntity)));
+    if (!addManyMetrics(makeMetricMap(hash(simpleMetricEntity))).isEmpty()) {
+      throw new MetricBatchPersistenceException(Collections.singletonList(simpleMetricEntity));
+    }
   }
   
   private static Multimap<Class, MetricEntity> makeMetricMap(Collection<MetricEntity> entities) {
@@ -128,23 +145,80 @@ public class MetricManager {
     return returnValue;
   }
 
-  private static void addManyMetrics(Multimap<Class, MetricEntity> metricMap) {
-    for (Class c : metricMap.keySet()) {
-      for (List<MetricEntity> dataBatchPartial : Iterables.partition(metricMap.get(c), METRIC_DATA_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
-        try (final TransactionResource db = Entities.transactionFor(c)) {
-          int numOperations = 0;
-          for (MetricEntity me : dataBatchPartial) {
-            numOperations++;
-            if (numOperations % METRIC_DATA_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0) {
-              Entities.flushSession(c);
-              Entities.clearSession(c);
+  /**
+   * Write metrics to their shard tables.
+   *
+   * Shard tables and partitions of each table are committed independently, a
+   * failure writing one partition does not prevent writing the others.
+   *
+   * @return The metrics that were not written.
+   */
+  private static List<MetricEntity> addManyMetrics(final Multimap<Class, MetricEntity> metricMap) {
+    final MetricDataWriter writer = MetricDataWriter.fromString(CloudWatchConfigProperties.METRIC_DATA_WRITER);
+    final int numWriters = Math.max(1, Math.min(metricMap.keySet().size(), CloudWatchConfigProperties.METRIC_DATA_WRITER_THREADS));
+    final long before = System.currentTimeMillis();
+    final List<MetricEntity> failed = Lists.newArrayList();
+    if (numWriters == 1) {
+      for (Class c : metricMap.keySet()) {
+        failed.addAll(addShardMetrics(writer, c, metricMap.get(c)));
+      }
+    } else {
+      // each writer handles a subset of the shard tables
+      final List<List<Class>> shardsByWriter = Lists.newArrayList();
+      for (int i = 0; i < numWriters; i++) {
+        shardsByWriter.add(Lists.<Class>newArrayList());
+      }
+      int shard = 0;
+      for (Class c : metricMap.keySet()) {
+        shardsByWriter.get(shard++ % numWriters).add(c);
+      }
+      final List<Future<List<MetricEntity>>> writes = Lists.newArrayList();
+      for (final List<Class> shards : shardsByWriter) {
+        writes.add(writerExecutor.submit(new Callable<List<MetricEntity>>() {
+          @Override
+          public List<MetricEntity> call() {
+            final List<MetricEntity> shardsFailed = Lists.newArrayList();
+            for (Class c : shards) {
+              shardsFailed.addAll(addShardMetrics(writer, c, metricMap.get(c)));
             }
-            Entities.persist(me);
+            return shardsFailed;
+          }
+        }));
+      }
+      for (int i = 0; i < writes.size(); i++) {
+        try {
+          failed.addAll(writes.get(i).get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw Exceptions.toUndeclared(e);
+        } catch (ExecutionException e) {
+          LOG.error("Error writing metric data", e.getCause());
+          for (Class c : shardsByWriter.get(i)) {
+            failed.addAll(metricMap.get(c));
           }
-          db.commit();
         }
       }
     }
+    final long elapsed = Math.max(1L, System.currentTimeMillis() - before);
+    final long rowsPerSecond = (metricMap.size() - failed.size()) * 1000L / elapsed;
+    ActionMetrics.record(MonitoredAction.PUT_DATA_WRITE_ROWS_PER_SECOND, rowsPerSecond);
+    LOG.debug("Wrote " + (metricMap.size() - failed.size()) + " metric rows using " + writer + " writer with " + numWriters +
+        " thread(s) in " + elapsed + "ms (" + rowsPerSecond + " rows/sec)" + (failed.isEmpty() ? "" : ", " + failed.size() + " rows failed"));
+    return failed;
+  }
+
+  private static List<MetricEntity> addShardMetrics(MetricDataWriter writer, Class c, Collection<MetricEntity> metrics) {
+    final List<MetricEntity> failed = Lists.newArrayList();
+    for (List<MetricEntity> dataBatchPartial : Iterables.partition(metrics, METRIC_DATA_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
+      try (final TransactionResource db = Entities.transactionFor(c)) {
+        writer.write(c, dataBatchPartial);
+        db.commit();
+      } catch (RuntimeException e) {
+        LOG.error("Error writing " + dataBatchPartial.size() + " metric rows to " + c.getSimpleName(), e);
+        failed.addAll(dataBatchPartial);
+      }
+    }
+    return failed;
   }
 
   public static String hash(Map<String, String> dimensionMap) {
@@ -446,13 +520,24 @@ public class MetricManager {
     getMetricStatisticsParams.validate(now);
     Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(getMetricStatisticsParams.getMetricType(), getMetricStatisticsParams.getDimensionHash());
     Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
+    // use a rolled up tier for as much of the range as possible
+    for (MetricRollupManager.QueryInterval interval : MetricRollupManager.planQuery(getMetricStatisticsParams)) {
+      aggregateMetricStatistics(interval.getTier() == null ? metricEntityClass : interval.getTier().getEntityClass(),
+          getMetricStatisticsParams, interval.getFrom(), interval.getTo(), aggregationMap);
+    }
+    return Lists.newArrayList(aggregationMap.values());
+  }
+
+  private static void aggregateMetricStatistics(Class metricEntityClass, GetMetricStatisticsParams getMetricStatisticsParams,
+                                                Date startTime, Date endTime,
+                                                Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap) {
     try (final TransactionResource db = Entities.transactionFor(metricEntityClass)) {
       Criteria criteria = Entities.createCriteria(metricEntityClass);
       criteria = criteria.add(Restrictions.eq("accountId", getMetricStatisticsParams.getAccountId()));
       criteria = criteria.add(Restrictions.eq("metricName", getMetricStatisticsParams.getMetricName()));
       criteria = criteria.add(Restrictions.eq("namespace", getMetricStatisticsParams.getNamespace()));
-      criteria = criteria.add(Restrictions.lt("timestamp", getMetricStatisticsParams.getEndTime()));
-      criteria = criteria.add(Restrictions.ge("timestamp", getMetricStatisticsParams.getStartTime()));
+      criteria = criteria.add(Restrictions.lt("timestamp", endTime));
+      criteria = criteria.add(Restrictions.ge("timestamp", startTime));
       criteria = criteria.add(Restrictions.eq("dimensionHash", getMetricStatisticsParams.getDimensionHash()));
       if (getMetricStatisticsParams.getUnits() != null) {
         criteria = criteria.add(Restrictions.eq("units", getMetricStatisticsParams.getUnits()));
@@ -483,10 +568,9 @@ public class MetricManager {
         }
       }
     }
-    return Lists.newArrayList(aggregationMap.values());
   }
 
-  private static MetricEntity getMetricEntity(ScrollableResults results) {
+  static MetricEntity getMetricEntity(ScrollableResults results) {
     Double sampleMax = (Double) results.get(0);
     Double sampleMin = (Double) results.get(1);
     Double sampleSize = (Double) results.get(2);
@@ -552,13 +636,56 @@ public class MetricManager {
     return allResults;
   }
 
+  /**
+   * Persist a batch of metric data.
+   *
+   * @throws MetricBatchPersistenceException If some of the batch could not be persisted
+   */
   public static void addMetricBatch(List<SimpleMetricEntity> dataBatch) {
-    ArrayList<MetricEntity> metricEntities = new ArrayList<MetricEntity>();
+    final Map<MetricEntity, SimpleMetricEntity> metricEntities = Maps.newIdentityHashMap();
     for (SimpleMetricEntity simpleMetricEntity: dataBatch) {
       validateMetricQueueItem(simpleMetricEntity);
-      metricEntities.addAll(hash(simpleMetricEntity));
+      for (MetricEntity metricEntity : hash(simpleMetricEntity)) {
+        metricEntities.put(metricEntity, simpleMetricEntity);
+      }
+    }
+    final List<MetricEntity> failed = addManyMetrics(makeMetricMap(metricEntities.keySet()));
+    List<SimpleMetricEntity> persisted = dataBatch;
+    final Set<SimpleMetricEntity> unpersisted = Sets.newIdentityHashSet();
+    if (!failed.isEmpty()) {
+      for (MetricEntity metricEntity : failed) {
+        unpersisted.add(metricEntities.get(metricEntity));
+      }
+      persisted = Lists.newArrayList();
+      for (SimpleMetricEntity simpleMetricEntity: dataBatch) {
+        if (!unpersisted.contains(simpleMetricEntity)) {
+          persisted.add(simpleMetricEntity);
+        }
+      }
+    }
+    MetricRollupManager.added(persisted, new Date());
+    MetricWindowStore.getInstance().addAll(persisted);
+    if (!unpersisted.isEmpty()) {
+      throw new MetricBatchPersistenceException(Lists.newArrayList(unpersisted));
+    }
+  }
+
+  /**
+   * Failure persisting a metric batch, the batch was partially persisted if
+   * some entries are not listed as unpersisted.
+   */
+  public static final class MetricBatchPersistenceException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final List<SimpleMetricEntity> unpersisted;
+
+    public MetricBatchPersistenceException(final List<SimpleMetricEntity> unpersisted) {
+      super("Error persisting " + unpersisted.size() + " metric data entries");
+      this.unpersisted = unpersisted;
+    }
+
+    public List<SimpleMetricEntity> getUnpersisted() {
+      return unpersisted;
     }
-    addManyMetrics(makeMetricMap(metricEntities));
   }
 
   private static void validateMetricQueueItem(SimpleMetricEntity simpleMetricEntity) {
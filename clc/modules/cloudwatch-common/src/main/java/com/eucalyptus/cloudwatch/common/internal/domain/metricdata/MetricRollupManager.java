@@ -0,0 +1,504 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager.GetMetricStatisticsParams;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Rolls up metric data into the downsampled storage tiers.
+ *
+ * Each tier is rolled up in order of increasing time, tracking the range
+ * covered in a MetricRollupState. Data is rolled up after a delay to allow
+ * for data in flight. Data arriving for an interval that may already be
+ * rolled up is recorded in the state for the first tier and the affected
+ * intervals are rolled up again (and then in the following tiers). Until
+ * then queries read the raw data for those intervals.
+ */
+public class MetricRollupManager {
+
+  private static final Logger LOG = Logger.getLogger(MetricRollupManager.class);
+
+  /**
+   * Delay before raw metric data is rolled up
+   */
+  private static final long ROLLUP_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * How far back to roll up raw metric data when there is no existing state
+   */
+  private static final long INITIAL_ROLLUP_MILLIS = TimeUnit.DAYS.toMillis(14);
+
+  /**
+   * Rolled up ranges for queries, changes made locally invalidate the cache
+   * so this only delays seeing rollups performed elsewhere.
+   */
+  private static final LoadingCache<MetricRollupTier, Optional<RolledUpRange>> rolledUpRangeCache = CacheBuilder
+      .newBuilder()
+      .expireAfterWrite(30, TimeUnit.SECONDS)
+      .build(new CacheLoader<MetricRollupTier, Optional<RolledUpRange>>() {
+        @Override
+        public Optional<RolledUpRange> load(final MetricRollupTier tier) {
+          return Optional.fromNullable(RolledUpRange.of(getState(tier)));
+        }
+      });
+
+  private static final Function<MetricRollupTier, Optional<RolledUpRange>> ROLLED_UP_RANGE_LOOKUP =
+      new Function<MetricRollupTier, Optional<RolledUpRange>>() {
+        @Override
+        public Optional<RolledUpRange> apply(final MetricRollupTier tier) {
+          return rolledUpRangeCache.getUnchecked(tier);
+        }
+      };
+
+  public static void rollup(final Date now) {
+    for (final MetricRollupTier tier : MetricRollupTier.values()) {
+      try {
+        reroll(tier);
+        rollup(tier, now.getTime());
+      } catch (Exception ex) {
+        LOG.error("Error rolling up metric data for tier " + tier, ex);
+      } finally {
+        rolledUpRangeCache.invalidate(tier);
+      }
+    }
+  }
+
+  /**
+   * Delete rolled up metric data that is older than the retention period for its tier.
+   */
+  public static void deleteRollups(final Date now) {
+    for (final MetricRollupTier tier : MetricRollupTier.values()) {
+      final Date before = new Date(now.getTime() - TimeUnit.DAYS.toMillis(tier.getRetentionDays()));
+      try (final TransactionResource db = Entities.transactionFor(tier.getEntityClass())) {
+        Entities.deleteAllMatching(tier.getEntityClass(), "WHERE timestamp < :before",
+            ImmutableMap.of("before", before));
+        db.commit();
+      }
+    }
+  }
+
+  /**
+   * Record receipt of the given metric data.
+   *
+   * Data older than the rollup delay may be for an interval that is rolled
+   * up, such intervals are rolled up again.
+   */
+  public static void added(final Collection<SimpleMetricEntity> metricData, final Date now) {
+    final Date lateFrom = lateDataFrom(metricData, now);
+    if (lateFrom != null) {
+      try {
+        markReroll(firstTier(), lateFrom);
+      } catch (Exception ex) {
+        // the data is stored so this must not fail the write
+        LOG.error("Error recording late metric data from " + lateFrom, ex);
+      } finally {
+        rolledUpRangeCache.invalidate(firstTier());
+      }
+    }
+  }
+
+  /**
+   * Split a query into the part that can be answered from a rolled up tier and the
+   * part that must use raw metric data.
+   *
+   * @param getMetricStatisticsParams The validated query parameters
+   * @return The intervals to query, in order
+   */
+  public static List<QueryInterval> planQuery(final GetMetricStatisticsParams getMetricStatisticsParams) {
+    return planQuery(getMetricStatisticsParams.getStartTime(), getMetricStatisticsParams.getEndTime(),
+        getMetricStatisticsParams.getPeriod(), ROLLED_UP_RANGE_LOOKUP);
+  }
+
+  /**
+   * Split a query into intervals using the coarsest tier that has the
+   * resolution for the query for the part of the range that is rolled up.
+   */
+  static List<QueryInterval> planQuery(
+      final Date startTime,
+      final Date endTime,
+      final int period,
+      final Function<MetricRollupTier, Optional<RolledUpRange>> rangeLookup
+  ) {
+    final List<QueryInterval> intervals = Lists.newArrayList();
+    Date rawStartTime = startTime;
+    for (final MetricRollupTier tier : Lists.reverse(Arrays.asList(MetricRollupTier.values()))) {
+      if (tier.supports(startTime.getTime(), period)) {
+        final Optional<RolledUpRange> range = rangeLookup.apply(tier);
+        if (range.isPresent() && range.get().contains(startTime.getTime())) {
+          final Date rollupEndTime = range.get().getTo().before(endTime) ? range.get().getTo() : endTime;
+          intervals.add(new QueryInterval(tier, startTime, rollupEndTime));
+          rawStartTime = rollupEndTime;
+          break;
+        }
+      }
+    }
+    if (rawStartTime.before(endTime)) {
+      intervals.add(new QueryInterval(null, rawStartTime, endTime));
+    }
+    return intervals;
+  }
+
+  /**
+   * Earliest timestamp of metric data that may be for an interval that is
+   * already rolled up.
+   */
+  @Nullable
+  static Date lateDataFrom(final Collection<SimpleMetricEntity> metricData, final Date now) {
+    final long rolledUpBefore = now.getTime() - ROLLUP_DELAY_MILLIS;
+    Date lateFrom = null;
+    for (final SimpleMetricEntity entity : metricData) {
+      final Date timestamp = entity.getTimestamp();
+      if (timestamp != null && timestamp.getTime() < rolledUpBefore && (lateFrom == null || timestamp.before(lateFrom))) {
+        lateFrom = timestamp;
+      }
+    }
+    return lateFrom;
+  }
+
+  /**
+   * Roll up again any intervals for which data arrived late
+   */
+  private static void reroll(final MetricRollupTier tier) {
+    final MetricRollupState state = getState(tier);
+    if (state == null || state.getRerollFrom() == null) {
+      return;
+    }
+    final Integer version = state.getVersion();
+    final long from = Math.max(floor(state.getRerollFrom().getTime(), tier.getResolutionMillis()), state.getRolledUpFrom().getTime());
+    final long to = state.getRolledUpTo().getTime();
+    if (from < to) {
+      final int rows = rollupRange(tier, from, to);
+      for (final MetricRollupTier dependent : MetricRollupTier.values()) {
+        if (dependent.getSource() == tier) {
+          markReroll(dependent, new Date(from));
+          rolledUpRangeCache.invalidate(dependent);
+        }
+      }
+      LOG.debug("Rolled up again " + rows + " " + tier + " metric rows for " + new Date(from) + " to " + new Date(to));
+    }
+    // clear only if no data arrived late since the state was loaded
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupState.class)) {
+      Entities.updateAllMatching(MetricRollupState.class,
+          "SET rerollFrom = NULL WHERE tier = :tier AND version = :version",
+          ImmutableMap.<String, Object>of("tier", tier, "version", version));
+      db.commit();
+    }
+  }
+
+  /**
+   * Mark the tier for rolling up again from the given time.
+   *
+   * The version is always updated so that a reroll in progress will not
+   * clear the mark.
+   */
+  private static void markReroll(final MetricRollupTier tier, final Date from) {
+    final Map<String, Object> parameters = ImmutableMap.<String, Object>of("tier", tier, "from", from);
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupState.class)) {
+      if (Entities.updateAllMatching(MetricRollupState.class,
+          "SET version = version + 1 WHERE tier = :tier AND rolledUpFrom <= :from", parameters) > 0) {
+        Entities.updateAllMatching(MetricRollupState.class,
+            "SET rerollFrom = :from WHERE tier = :tier AND (rerollFrom IS NULL OR rerollFrom > :from)", parameters);
+      }
+      db.commit();
+    }
+  }
+
+  private static void rollup(final MetricRollupTier tier, final long now) {
+    final long resolution = tier.getResolutionMillis();
+    final long sourceFrom;
+    final long sourceTo;
+    if (tier.getSource() == null) {
+      sourceFrom = now - INITIAL_ROLLUP_MILLIS;
+      sourceTo = now - ROLLUP_DELAY_MILLIS;
+    } else {
+      final MetricRollupState sourceState = getState(tier.getSource());
+      if (sourceState == null) {
+        return;
+      }
+      sourceFrom = sourceState.getRolledUpFrom().getTime();
+      sourceTo = sourceState.getRolledUpTo().getTime();
+    }
+
+    final MetricRollupState state = getState(tier);
+    final long from = state == null ? ceil(sourceFrom, resolution) : state.getRolledUpTo().getTime();
+    final long to = Math.min(floor(sourceTo, resolution), from + tier.getMaxIntervalsPerRollup() * resolution);
+    if (state == null) {
+      try (final TransactionResource db = Entities.transactionFor(MetricRollupState.class)) {
+        Entities.persist(new MetricRollupState(tier, new Date(from), new Date(from)));
+        db.commit();
+      }
+    }
+    if (to <= from) {
+      return;
+    }
+
+    final int rows = rollupRange(tier, from, to);
+
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupState.class)) {
+      lookupState(tier).setRolledUpTo(new Date(to));
+      db.commit();
+    }
+    LOG.debug("Rolled up " + rows + " " + tier + " metric rows for " + new Date(from) + " to " + new Date(to));
+  }
+
+  /**
+   * Replace any rolled up data for the range with data rolled up from the source.
+   */
+  private static int rollupRange(final MetricRollupTier tier, final long from, final long to) {
+    // remove any rows left by an earlier incomplete rollup of this range
+    deleteRollups(tier, new Date(from), new Date(to));
+    final Collection<Class> sourceClasses = tier.getSource() == null ?
+        MetricEntityFactory.getAllClassesForEntitiesGet() :
+        Collections.<Class>singleton(tier.getSource().getEntityClass());
+    final MetricDataWriter writer = MetricDataWriter.fromString(CloudWatchConfigProperties.METRIC_DATA_WRITER);
+    int rows = 0;
+    for (final Class sourceClass : sourceClasses) {
+      final List<MetricEntity> rollups = aggregate(tier, sourceClass, new Date(from), new Date(to));
+      if (!rollups.isEmpty()) {
+        try (final TransactionResource db = Entities.transactionFor(tier.getEntityClass())) {
+          writer.write(tier.getEntityClass(), rollups);
+          db.commit();
+        }
+        rows += rollups.size();
+      }
+    }
+    return rows;
+  }
+
+  private static List<MetricEntity> aggregate(
+      final MetricRollupTier tier,
+      final Class sourceClass,
+      final Date from,
+      final Date to
+  ) {
+    final Rollups rollups = new Rollups(tier);
+    try (final TransactionResource db = Entities.transactionFor(sourceClass)) {
+      Criteria criteria = Entities.createCriteria(sourceClass);
+      criteria = criteria.add(Restrictions.ge("timestamp", from));
+      criteria = criteria.add(Restrictions.lt("timestamp", to));
+
+      ProjectionList projectionList = Projections.projectionList();
+      projectionList.add(Projections.max("sampleMax"));
+      projectionList.add(Projections.min("sampleMin"));
+      projectionList.add(Projections.sum("sampleSize"));
+      projectionList.add(Projections.sum("sampleSum"));
+      projectionList.add(Projections.groupProperty("units"));
+      projectionList.add(Projections.groupProperty("timestamp"));
+      projectionList.add(Projections.groupProperty("accountId"));
+      projectionList.add(Projections.groupProperty("metricName"));
+      projectionList.add(Projections.groupProperty("metricType"));
+      projectionList.add(Projections.groupProperty("namespace"));
+      projectionList.add(Projections.groupProperty("dimensionHash"));
+      criteria.setProjection(projectionList);
+
+      ScrollableResults results = criteria.setCacheMode(CacheMode.IGNORE).scroll(ScrollMode.FORWARD_ONLY);
+      while (results.next()) {
+        rollups.add(MetricManager.getMetricEntity(results));
+      }
+    }
+    return rollups.list();
+  }
+
+  private static void deleteRollups(final MetricRollupTier tier, final Date from, final Date to) {
+    try (final TransactionResource db = Entities.transactionFor(tier.getEntityClass())) {
+      Entities.deleteAllMatching(tier.getEntityClass(), "WHERE timestamp >= :from AND timestamp < :to",
+          ImmutableMap.of("from", from, "to", to));
+      db.commit();
+    }
+  }
+
+  private static MetricRollupTier firstTier() {
+    return MetricRollupTier.values()[0];
+  }
+
+  @Nullable
+  private static MetricRollupState getState(final MetricRollupTier tier) {
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupState.class)) {
+      return lookupState(tier);
+    }
+  }
+
+  @Nullable
+  private static MetricRollupState lookupState(final MetricRollupTier tier) {
+    return (MetricRollupState) Entities.createCriteria(MetricRollupState.class)
+        .add(Restrictions.eq("tier", tier))
+        .uniqueResult();
+  }
+
+  static long floor(final long time, final long resolution) {
+    return time - time % resolution;
+  }
+
+  static long ceil(final long time, final long resolution) {
+    final long floor = floor(time, resolution);
+    return floor == time ? time : floor + resolution;
+  }
+
+  /**
+   * Accumulates metric rows into rollup rows for a tier
+   */
+  static final class Rollups {
+    private final MetricRollupTier tier;
+    private final Map<List<Object>, MetricEntity> rollups = Maps.newHashMap();
+
+    Rollups(final MetricRollupTier tier) {
+      this.tier = tier;
+    }
+
+    void add(final MetricEntity me) {
+      final long intervalStart = floor(me.getTimestamp().getTime(), tier.getResolutionMillis());
+      final List<Object> key = Arrays.<Object>asList(me.getAccountId(), me.getNamespace(), me.getMetricName(),
+          me.getMetricType(), me.getDimensionHash(), me.getUnits(), intervalStart);
+      final MetricEntity rollup = rollups.get(key);
+      if (rollup == null) {
+        final MetricEntity newRollup = tier.newMetricEntity();
+        newRollup.setAccountId(me.getAccountId());
+        newRollup.setNamespace(me.getNamespace());
+        newRollup.setMetricName(me.getMetricName());
+        newRollup.setMetricType(me.getMetricType());
+        newRollup.setDimensionHash(me.getDimensionHash());
+        newRollup.setUnits(me.getUnits());
+        newRollup.setTimestamp(new Date(intervalStart));
+        newRollup.setSampleMax(me.getSampleMax());
+        newRollup.setSampleMin(me.getSampleMin());
+        newRollup.setSampleSize(me.getSampleSize());
+        newRollup.setSampleSum(me.getSampleSum());
+        rollups.put(key, newRollup);
+      } else {
+        rollup.setSampleMax(Math.max(me.getSampleMax(), rollup.getSampleMax()));
+        rollup.setSampleMin(Math.min(me.getSampleMin(), rollup.getSampleMin()));
+        rollup.setSampleSize(rollup.getSampleSize() + me.getSampleSize());
+        rollup.setSampleSum(rollup.getSampleSum() + me.getSampleSum());
+      }
+    }
+
+    List<MetricEntity> list() {
+      return Lists.newArrayList(rollups.values());
+    }
+  }
+
+  /**
+   * The range of a tier that can be used for queries.
+   *
+   * The range excludes any intervals that are to be rolled up again due to
+   * late data.
+   */
+  public static final class RolledUpRange {
+    private final MetricRollupTier tier;
+    private final Date from;
+    private final Date to;
+
+    RolledUpRange(final MetricRollupTier tier, final Date from, final Date to) {
+      this.tier = tier;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Nullable
+    static RolledUpRange of(@Nullable final MetricRollupState state) {
+      if (state == null) {
+        return null;
+      }
+      long to = state.getRolledUpTo().getTime();
+      if (state.getRerollFrom() != null) {
+        to = Math.min(to, floor(state.getRerollFrom().getTime(), state.getTier().getResolutionMillis()));
+      }
+      return new RolledUpRange(state.getTier(), state.getRolledUpFrom(), new Date(Math.max(to, state.getRolledUpFrom().getTime())));
+    }
+
+    public MetricRollupTier getTier() {
+      return tier;
+    }
+
+    public Date getFrom() {
+      return from;
+    }
+
+    public Date getTo() {
+      return to;
+    }
+
+    boolean contains(final long time) {
+      return time >= from.getTime() && time < to.getTime();
+    }
+  }
+
+  /**
+   * Part of a query range, for a rolled up tier or for the raw metric data.
+   */
+  public static final class QueryInterval {
+    private final MetricRollupTier tier;
+    private final Date from;
+    private final Date to;
+
+    QueryInterval(@Nullable final MetricRollupTier tier, final Date from, final Date to) {
+      this.tier = tier;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * The tier to query, null for raw metric data
+     */
+    @Nullable
+    public MetricRollupTier getTier() {
+      return tier;
+    }
+
+    public Date getFrom() {
+      return from;
+    }
+
+    public Date getTo() {
+      return to;
+    }
+
+    @Override
+    public String toString() {
+      return "QueryInterval [tier=" + tier + ", from=" + from + ", to=" + to + "]";
+    }
+  }
+}
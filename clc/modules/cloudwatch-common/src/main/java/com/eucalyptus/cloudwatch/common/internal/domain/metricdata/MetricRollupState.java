@@ -0,0 +1,114 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import com.eucalyptus.component.annotation.RemotablePersistence;
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Tracks the time range that has been rolled up for a metric data tier.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+@RemotablePersistence
+@Table(name = "metric_rollup_state")
+public class MetricRollupState extends AbstractPersistent {
+  private static final long serialVersionUID = 1L;
+
+  @Column(name = "tier", nullable = false, unique = true)
+  @Enumerated(EnumType.STRING)
+  private MetricRollupTier tier;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "rolled_up_from", nullable = false)
+  private Date rolledUpFrom;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "rolled_up_to", nullable = false)
+  private Date rolledUpTo;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "reroll_from")
+  private Date rerollFrom;
+
+  public MetricRollupState() {
+  }
+
+  public MetricRollupState(final MetricRollupTier tier, final Date rolledUpFrom, final Date rolledUpTo) {
+    this.tier = tier;
+    this.rolledUpFrom = rolledUpFrom;
+    this.rolledUpTo = rolledUpTo;
+  }
+
+  public MetricRollupTier getTier() {
+    return tier;
+  }
+
+  public void setTier(MetricRollupTier tier) {
+    this.tier = tier;
+  }
+
+  /**
+   * Start of the rolled up range (inclusive)
+   */
+  public Date getRolledUpFrom() {
+    return rolledUpFrom;
+  }
+
+  public void setRolledUpFrom(Date rolledUpFrom) {
+    this.rolledUpFrom = rolledUpFrom;
+  }
+
+  /**
+   * End of the rolled up range (exclusive)
+   */
+  public Date getRolledUpTo() {
+    return rolledUpTo;
+  }
+
+  public void setRolledUpTo(Date rolledUpTo) {
+    this.rolledUpTo = rolledUpTo;
+  }
+
+  /**
+   * Earliest timestamp of metric data received after its interval may have
+   * been rolled up, null if there is no such data.
+   */
+  public Date getRerollFrom() {
+    return rerollFrom;
+  }
+
+  public void setRerollFrom(Date rerollFrom) {
+    this.rerollFrom = rerollFrom;
+  }
+
+  @Override
+  public String toString() {
+    return "MetricRollupState [tier=" + tier + ", rolledUpFrom=" + rolledUpFrom
+        + ", rolledUpTo=" + rolledUpTo + ", rerollFrom=" + rerollFrom + "]";
+  }
+}
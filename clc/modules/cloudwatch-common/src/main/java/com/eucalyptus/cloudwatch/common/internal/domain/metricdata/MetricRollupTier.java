@@ -0,0 +1,143 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.component.annotation.RemotablePersistence;
+
+/**
+ * Downsampled storage tiers for metric data.
+ *
+ * Each tier holds one row per metric (and units) per interval of the tier
+ * resolution. Tiers are listed from finest to coarsest, a tier is rolled up
+ * from its source tier or from the raw metric data if it has no source.
+ */
+public enum MetricRollupTier {
+
+  FiveMinute( TimeUnit.MINUTES.toSeconds( 5 ), 6, FiveMinuteMetricEntity.class, null ) {
+    @Override
+    public int getRetentionDays( ) {
+      return CloudWatchConfigProperties.METRIC_DATA_FIVE_MINUTE_RETENTION_DAYS;
+    }
+
+    @Override
+    public MetricEntity newMetricEntity( ) {
+      return new FiveMinuteMetricEntity( );
+    }
+  },
+
+  OneHour( TimeUnit.HOURS.toSeconds( 1 ), 1, OneHourMetricEntity.class, FiveMinute ) {
+    @Override
+    public int getRetentionDays( ) {
+      return CloudWatchConfigProperties.METRIC_DATA_ONE_HOUR_RETENTION_DAYS;
+    }
+
+    @Override
+    public MetricEntity newMetricEntity( ) {
+      return new OneHourMetricEntity( );
+    }
+  },
+  ;
+
+  private final long resolutionSeconds;
+  private final int maxIntervalsPerRollup;
+  private final Class<? extends MetricEntity> entityClass;
+  private final MetricRollupTier source;
+
+  MetricRollupTier(
+      final long resolutionSeconds,
+      final int maxIntervalsPerRollup,
+      final Class<? extends MetricEntity> entityClass,
+      final MetricRollupTier source
+  ) {
+    this.resolutionSeconds = resolutionSeconds;
+    this.maxIntervalsPerRollup = maxIntervalsPerRollup;
+    this.entityClass = entityClass;
+    this.source = source;
+  }
+
+  public abstract int getRetentionDays( );
+
+  public abstract MetricEntity newMetricEntity( );
+
+  public long getResolutionSeconds( ) {
+    return resolutionSeconds;
+  }
+
+  public long getResolutionMillis( ) {
+    return TimeUnit.SECONDS.toMillis( resolutionSeconds );
+  }
+
+  /**
+   * The maximum number of intervals processed by a single rollup run.
+   */
+  public int getMaxIntervalsPerRollup( ) {
+    return maxIntervalsPerRollup;
+  }
+
+  public Class<? extends MetricEntity> getEntityClass( ) {
+    return entityClass;
+  }
+
+  /**
+   * The tier this tier is rolled up from, null for the raw metric data.
+   */
+  @Nullable
+  public MetricRollupTier getSource( ) {
+    return source;
+  }
+
+  /**
+   * Does this tier have the resolution to answer a query with the given start and period.
+   */
+  public boolean supports( final long startTimeMillis, final int periodSeconds ) {
+    return periodSeconds % resolutionSeconds == 0 && startTimeMillis % getResolutionMillis( ) == 0;
+  }
+
+  @Entity
+  @PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+  @RemotablePersistence
+  @Table(name = "metric_data_5m", indexes = {
+      @Index( name = "metric_data_5m_metric_idx", columnList = "account_id, namespace, metric_name, dimension_hash, timestamp" ),
+      @Index( name = "metric_data_5m_timestamp_idx", columnList = "timestamp" )
+  } )
+  public static class FiveMinuteMetricEntity extends MetricEntity {
+    public FiveMinuteMetricEntity() {
+      super();
+    }
+  }
+
+  @Entity
+  @PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+  @RemotablePersistence
+  @Table(name = "metric_data_1h", indexes = {
+      @Index( name = "metric_data_1h_metric_idx", columnList = "account_id, namespace, metric_name, dimension_hash, timestamp" ),
+      @Index( name = "metric_data_1h_timestamp_idx", columnList = "timestamp" )
+  } )
+  public static class OneHourMetricEntity extends MetricEntity {
+    public OneHourMetricEntity() {
+      super();
+    }
+  }
+}
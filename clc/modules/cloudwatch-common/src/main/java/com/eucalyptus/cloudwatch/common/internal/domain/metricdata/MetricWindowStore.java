@@ -0,0 +1,296 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Sliding windows of recent per minute metric data for alarmed metrics.
+ *
+ * Windows are only kept for tracked metrics and are fed from the put path as
+ * metric data is written. A window can answer a statistics query only for the
+ * time it has been fed, so callers must fall back to the database when a
+ * query is not covered.
+ */
+public class MetricWindowStore {
+
+  private static final MetricWindowStore instance = new MetricWindowStore( );
+
+  private volatile Map<Key, Window> windows = ImmutableMap.of( );
+  private volatile Set<String> trackedMetricNames = ImmutableSet.of( );
+  private final Set<Key> dirtyKeys = Collections.newSetFromMap( new ConcurrentHashMap<Key, Boolean>( ) );
+
+  public static MetricWindowStore getInstance( ) {
+    return instance;
+  }
+
+  /**
+   * Set the metrics to keep windows for.
+   *
+   * Existing windows are retained (and trimmed to the new horizon), windows
+   * for new metrics are covered from the start of the next minute.
+   *
+   * @param horizons The number of minutes of data required for each metric
+   * @param now The current time
+   */
+  public synchronized void track( final Map<Key, Integer> horizons, final Date now ) {
+    final long coveredFrom = MetricUtils.stripSeconds( now ).getTime( ) + TimeUnit.MINUTES.toMillis( 1 );
+    final Map<Key, Window> currentWindows = windows;
+    final ImmutableMap.Builder<Key, Window> windowsBuilder = ImmutableMap.builder( );
+    final ImmutableSet.Builder<String> metricNamesBuilder = ImmutableSet.builder( );
+    for ( final Map.Entry<Key, Integer> entry : horizons.entrySet( ) ) {
+      Window window = currentWindows.get( entry.getKey( ) );
+      if ( window == null ) {
+        window = new Window( coveredFrom );
+      }
+      window.trim( now.getTime( ) - TimeUnit.MINUTES.toMillis( entry.getValue( ) ) );
+      windowsBuilder.put( entry.getKey( ), window );
+      metricNamesBuilder.add( entry.getKey( ).getMetricName( ) );
+    }
+    windows = windowsBuilder.build( );
+    trackedMetricNames = metricNamesBuilder.build( );
+    dirtyKeys.retainAll( horizons.keySet( ) );
+  }
+
+  /**
+   * Discard all windows, used when data may have been written elsewhere.
+   */
+  public synchronized void clear( ) {
+    windows = ImmutableMap.of( );
+    trackedMetricNames = ImmutableSet.of( );
+    dirtyKeys.clear( );
+  }
+
+  /**
+   * Add data for any tracked metrics.
+   *
+   * @param dataBatch Validated metric data, timestamps must be on a minute boundary
+   */
+  public void addAll( final Collection<SimpleMetricEntity> dataBatch ) {
+    final Map<Key, Window> currentWindows = windows;
+    final Set<String> currentMetricNames = trackedMetricNames;
+    if ( currentWindows.isEmpty( ) ) return;
+    for ( final SimpleMetricEntity simpleMetricEntity : dataBatch ) {
+      if ( !currentMetricNames.contains( simpleMetricEntity.getMetricName( ) ) ) continue;
+      final Key key = new Key(
+          simpleMetricEntity.getAccountId( ),
+          simpleMetricEntity.getNamespace( ),
+          simpleMetricEntity.getMetricName( ),
+          simpleMetricEntity.getMetricType( ),
+          MetricManager.hash( simpleMetricEntity.getDimensionMap( ) ) );
+      final Window window = currentWindows.get( key );
+      if ( window != null ) {
+        window.add( simpleMetricEntity );
+        dirtyKeys.add( key );
+      }
+    }
+  }
+
+  /**
+   * Get and reset the metrics that received data since the last call.
+   */
+  public Set<Key> drainDirty( ) {
+    final Set<Key> drained = Sets.newHashSet( );
+    for ( final Key key : dirtyKeys ) {
+      if ( dirtyKeys.remove( key ) ) {
+        drained.add( key );
+      }
+    }
+    return drained;
+  }
+
+  /**
+   * Get statistics for the given parameters from the in-memory window.
+   *
+   * @return The statistics or null if the window does not cover the query
+   */
+  @Nullable
+  public Collection<MetricStatistics> getMetricStatistics( final MetricManager.GetMetricStatisticsParams params ) {
+    final Window window = windows.get( new Key(
+        params.getAccountId( ),
+        params.getNamespace( ),
+        params.getMetricName( ),
+        params.getMetricType( ),
+        params.getDimensionHash( ) ) );
+    return window == null ?
+        null :
+        window.getMetricStatistics( params );
+  }
+
+  public int size( ) {
+    return windows.size( );
+  }
+
+  public static final class Key {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final String dimensionHash;
+
+    public Key( final String accountId,
+                final String namespace,
+                final String metricName,
+                final MetricType metricType,
+                final String dimensionHash ) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.dimensionHash = dimensionHash;
+    }
+
+    public String getMetricName( ) {
+      return metricName;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final Key key = (Key) o;
+      return Objects.equal( accountId, key.accountId ) &&
+          Objects.equal( namespace, key.namespace ) &&
+          Objects.equal( metricName, key.metricName ) &&
+          metricType == key.metricType &&
+          Objects.equal( dimensionHash, key.dimensionHash );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( accountId, namespace, metricName, metricType, dimensionHash );
+    }
+
+    @Override
+    public String toString( ) {
+      return accountId + "/" + namespace + "/" + metricName + "/" + metricType + "/" + dimensionHash;
+    }
+  }
+
+  private static final class Window {
+    private long coveredFrom;
+    private final TreeMap<Long, Map<Units, Datapoint>> minutes = Maps.newTreeMap( );
+
+    private Window( final long coveredFrom ) {
+      this.coveredFrom = coveredFrom;
+    }
+
+    private synchronized void trim( final long before ) {
+      minutes.headMap( before ).clear( );
+      coveredFrom = Math.max( coveredFrom, before );
+    }
+
+    private synchronized void add( final SimpleMetricEntity simpleMetricEntity ) {
+      final Long minute = simpleMetricEntity.getTimestamp( ).getTime( );
+      Map<Units, Datapoint> datapoints = minutes.get( minute );
+      if ( datapoints == null ) {
+        datapoints = Maps.newHashMap( );
+        minutes.put( minute, datapoints );
+      }
+      final Datapoint datapoint = datapoints.get( simpleMetricEntity.getUnits( ) );
+      if ( datapoint == null ) {
+        datapoints.put( simpleMetricEntity.getUnits( ), new Datapoint( simpleMetricEntity ) );
+      } else {
+        datapoint.add( simpleMetricEntity );
+      }
+    }
+
+    private synchronized Collection<MetricStatistics> getMetricStatistics( final MetricManager.GetMetricStatisticsParams params ) {
+      final long startTime = params.getStartTime( ).getTime( );
+      if ( startTime < coveredFrom ) {
+        return null;
+      }
+      final Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap =
+          new TreeMap<>( GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE );
+      for ( final Map.Entry<Long, Map<Units, Datapoint>> entry :
+          minutes.subMap( startTime, params.getEndTime( ).getTime( ) ).entrySet( ) ) {
+        for ( final Map.Entry<Units, Datapoint> unitsEntry : entry.getValue( ).entrySet( ) ) {
+          if ( params.getUnits( ) != null && params.getUnits( ) != unitsEntry.getKey( ) ) continue;
+          final MetricEntity me = unitsEntry.getValue( ).toMetricEntity( params, unitsEntry.getKey( ), new Date( entry.getKey( ) ) );
+          final GetMetricStatisticsAggregationKey key =
+              new GetMetricStatisticsAggregationKey( me, params.getStartTime( ), params.getPeriod( ), params.getDimensionHash( ) );
+          final MetricStatistics item = new MetricStatistics( me, params.getStartTime( ), params.getPeriod( ), params.getDimensions( ) );
+          final MetricStatistics totalSoFar = aggregationMap.get( key );
+          if ( totalSoFar == null ) {
+            aggregationMap.put( key, item );
+          } else {
+            totalSoFar.setSampleMax( Math.max( item.getSampleMax( ), totalSoFar.getSampleMax( ) ) );
+            totalSoFar.setSampleMin( Math.min( item.getSampleMin( ), totalSoFar.getSampleMin( ) ) );
+            totalSoFar.setSampleSize( totalSoFar.getSampleSize( ) + item.getSampleSize( ) );
+            totalSoFar.setSampleSum( totalSoFar.getSampleSum( ) + item.getSampleSum( ) );
+          }
+        }
+      }
+      return Lists.newArrayList( aggregationMap.values( ) );
+    }
+  }
+
+  private static final class Datapoint {
+    private double sampleMax;
+    private double sampleMin;
+    private double sampleSize;
+    private double sampleSum;
+
+    private Datapoint( final SimpleMetricEntity simpleMetricEntity ) {
+      sampleMax = simpleMetricEntity.getSampleMax( );
+      sampleMin = simpleMetricEntity.getSampleMin( );
+      sampleSize = simpleMetricEntity.getSampleSize( );
+      sampleSum = simpleMetricEntity.getSampleSum( );
+    }
+
+    private void add( final SimpleMetricEntity simpleMetricEntity ) {
+      sampleMax = Math.max( sampleMax, simpleMetricEntity.getSampleMax( ) );
+      sampleMin = Math.min( sampleMin, simpleMetricEntity.getSampleMin( ) );
+      sampleSize += simpleMetricEntity.getSampleSize( );
+      sampleSum += simpleMetricEntity.getSampleSum( );
+    }
+
+    private MetricEntity toMetricEntity( final MetricManager.GetMetricStatisticsParams params,
+                                         final Units units,
+                                         final Date timestamp ) {
+      final MetricEntity me = MetricEntityFactory.getNewMetricEntity( params.getMetricType( ), params.getDimensionHash( ) );
+      me.setAccountId( params.getAccountId( ) );
+      me.setMetricName( params.getMetricName( ) );
+      me.setNamespace( params.getNamespace( ) );
+      me.setMetricType( params.getMetricType( ) );
+      me.setDimensionHash( params.getDimensionHash( ) );
+      me.setUnits( units );
+      me.setTimestamp( timestamp );
+      me.setSampleMax( sampleMax );
+      me.setSampleMin( sampleMin );
+      me.setSampleSize( sampleSize );
+      me.setSampleSum( sampleSum );
+      return me;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.alarms
+
+import static org.junit.Assert.*
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricWindowStore
+
+/**
+ * Unit tests for the alarm registry
+ */
+class AlarmRegistryTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 )
+  private static final long BASE = 1475280000000L // hour aligned
+
+  @Test
+  void testInitialResync( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )
+    loader.put( alarm( 'alarm-2', 'NetworkIn', 300, 3 ) )
+    AlarmRegistry registry = new AlarmRegistry( loader )
+
+    assertEquals( 'Updated alarms', [ 'alarm-1', 'alarm-2' ] as Set, registry.refresh( new Date( BASE ) ) )
+    assertEquals( 'Full loads', 1, loader.loadAllCount )
+    assertEquals( 'Registered alarms', [ 'alarm-1', 'alarm-2' ] as Set, registry.alarms*.naturalId as Set )
+  }
+
+  @Test
+  void testRefreshWithoutChanges( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )
+    AlarmRegistry registry = new AlarmRegistry( loader )
+    registry.refresh( new Date( BASE ) )
+
+    assertEquals( 'Updated alarms', [] as Set, registry.refresh( new Date( BASE + MINUTE ) ) )
+    assertEquals( 'Full loads', 1, loader.loadAllCount )
+    assertEquals( 'Partial loads', [], loader.loadedIds )
+  }
+
+  @Test
+  void testChangedAlarmAdded( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )
+    AlarmRegistry registry = new AlarmRegistry( loader )
+    registry.refresh( new Date( BASE ) )
+
+    loader.put( alarm( 'alarm-2', 'NetworkIn', 300, 3 ) )
+    registry.changed( 'alarm-2' )
+    assertEquals( 'Updated alarms', [ 'alarm-2' ] as Set, registry.refresh( new Date( BASE + MINUTE ) ) )
+    assertEquals( 'Full loads', 1, loader.loadAllCount )
+    assertEquals( 'Partial loads', [ [ 'alarm-2' ] as Set ], loader.loadedIds )
+    assertEquals( 'Registered alarms', [ 'alarm-1', 'alarm-2' ] as Set, registry.alarms*.naturalId as Set )
+  }
+
+  @Test
+  void testChangedAlarmRemoved( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )
+    loader.put( alarm( 'alarm-2', 'NetworkIn', 300, 3 ) )
+    AlarmRegistry registry = new AlarmRegistry( loader )
+    registry.refresh( new Date( BASE ) )
+
+    loader.remove( 'alarm-2' )
+    registry.changed( [ 'alarm-2' ] )
+    assertEquals( 'Updated alarms', [] as Set, registry.refresh( new Date( BASE + MINUTE ) ) )
+    assertEquals( 'Registered alarms', [ 'alarm-1' ] as Set, registry.alarms*.naturalId as Set )
+  }
+
+  @Test
+  void testPeriodicResync( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )
+    loader.put( alarm( 'alarm-2', 'NetworkIn', 300, 3 ) )
+    loader.put( alarm( 'alarm-3', 'NetworkOut', 300, 3 ) )
+    AlarmRegistry registry = new AlarmRegistry( loader )
+    registry.refresh( new Date( BASE ) )
+
+    // changes made on another host are not notified
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 2, 1 ) )
+    loader.remove( 'alarm-3' )
+    assertEquals( 'Updated alarms before resync', [] as Set, registry.refresh( new Date( BASE + 9 * MINUTE ) ) )
+    assertEquals( 'Registered alarms before resync', [ 'alarm-1', 'alarm-2', 'alarm-3' ] as Set, registry.alarms*.naturalId as Set )
+
+    assertEquals( 'Updated alarms', [ 'alarm-1' ] as Set, registry.refresh( new Date( BASE + 10 * MINUTE ) ) )
+    assertEquals( 'Full loads', 2, loader.loadAllCount )
+    assertEquals( 'Registered alarms', [ 'alarm-1', 'alarm-2' ] as Set, registry.alarms*.naturalId as Set )
+    assertEquals( 'Evaluation periods', 2, registry.alarms.find{ it.naturalId == 'alarm-1' }.evaluationPeriods )
+  }
+
+  @Test
+  void testRequestedResync( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )
+    AlarmRegistry registry = new AlarmRegistry( loader )
+    registry.refresh( new Date( BASE ) )
+
+    registry.resync( )
+    assertEquals( 'Updated alarms', [] as Set, registry.refresh( new Date( BASE + MINUTE ) ) )
+    assertEquals( 'Full loads', 2, loader.loadAllCount )
+  }
+
+  @Test
+  void testWindowHorizons( ) {
+    TestLoader loader = new TestLoader( )
+    loader.put( alarm( 'alarm-1', 'CPUUtilization', 60, 1 ) )   // 6 minutes + 2
+    loader.put( alarm( 'alarm-2', 'CPUUtilization', 300, 3 ) )  // 25 minutes + 2
+    loader.put( alarm( 'alarm-3', 'NetworkIn', 60, 1 ) )        // 6 minutes + 2
+    loader.put( alarm( 'alarm-4', 'NetworkOut', 3600, 5 ) )     // 420 minutes + 2
+    AlarmRegistry registry = new AlarmRegistry( loader )
+    registry.refresh( new Date( BASE ) )
+
+    Map<MetricWindowStore.Key, Integer> horizons = registry.getWindowHorizons( 60 )
+    assertEquals( 'Horizon count', 3, horizons.size( ) )
+    assertEquals( 'CPUUtilization horizon', 27, horizons.get( key( 'CPUUtilization' ) ) )
+    assertEquals( 'NetworkIn horizon', 8, horizons.get( key( 'NetworkIn' ) ) )
+    assertEquals( 'NetworkOut horizon', 60, horizons.get( key( 'NetworkOut' ) ) )
+  }
+
+  private static MetricWindowStore.Key key( String metricName ) {
+    AlarmRegistry.getMetricKey( alarm( 'alarm', metricName, 60, 1 ) )
+  }
+
+  private static AlarmEntity alarm( String naturalId, String metricName, int period, int evaluationPeriods, int version = 0 ) {
+    AlarmEntity alarmEntity = new AlarmEntity( )
+    alarmEntity.naturalId = naturalId
+    alarmEntity.version = version
+    alarmEntity.accountId = '000000000000'
+    alarmEntity.namespace = 'AWS/EC2'
+    alarmEntity.metricName = metricName
+    alarmEntity.metricType = MetricType.System
+    alarmEntity.period = period
+    alarmEntity.evaluationPeriods = evaluationPeriods
+    alarmEntity
+  }
+
+  private static final class TestLoader implements AlarmRegistry.AlarmLoader {
+    private final Map<String, AlarmEntity> alarms = [:]
+    int loadAllCount = 0
+    List<Set<String>> loadedIds = [ ]
+
+    void put( AlarmEntity alarmEntity ) {
+      alarms.put( alarmEntity.naturalId, alarmEntity )
+    }
+
+    void remove( String naturalId ) {
+      alarms.remove( naturalId )
+    }
+
+    @Override
+    List<AlarmEntity> loadAll( ) {
+      loadAllCount++
+      alarms.values( ) as List
+    }
+
+    @Override
+    List<AlarmEntity> load( Collection<String> naturalIds ) {
+      loadedIds << ( naturalIds as Set )
+      naturalIds.findResults{ alarms.get( it ) }
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata
+
+import static com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupTier.FiveMinute
+import static com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupTier.OneHour
+import static org.junit.Assert.*
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupManager.QueryInterval
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupManager.RolledUpRange
+import com.google.common.base.Function
+import com.google.common.base.Optional
+
+/**
+ * Unit tests for metric data rollup and query planning
+ */
+class MetricRollupManagerTest {
+
+  private static final long HOUR = TimeUnit.HOURS.toMillis( 1 )
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 )
+  private static final long BASE = 1475280000000L // hour aligned
+
+  @Test
+  void testQueryRawOnly( ) {
+    List<QueryInterval> intervals = plan( BASE, BASE + HOUR, 300, [:] )
+    assertEquals( 'Interval count', 1, intervals.size( ) )
+    assertInterval( intervals[0], null, BASE, BASE + HOUR )
+  }
+
+  @Test
+  void testQueryRollupThenRaw( ) {
+    List<QueryInterval> intervals = plan( BASE, BASE + 3 * HOUR, 300, [
+        (FiveMinute): state( FiveMinute, BASE - HOUR, BASE + 2 * HOUR, null )
+    ] )
+    assertEquals( 'Interval count', 2, intervals.size( ) )
+    assertInterval( intervals[0], FiveMinute, BASE, BASE + 2 * HOUR )
+    assertInterval( intervals[1], null, BASE + 2 * HOUR, BASE + 3 * HOUR )
+  }
+
+  @Test
+  void testQueryRollupOnly( ) {
+    List<QueryInterval> intervals = plan( BASE, BASE + HOUR, 300, [
+        (FiveMinute): state( FiveMinute, BASE - HOUR, BASE + 2 * HOUR, null )
+    ] )
+    assertEquals( 'Interval count', 1, intervals.size( ) )
+    assertInterval( intervals[0], FiveMinute, BASE, BASE + HOUR )
+  }
+
+  @Test
+  void testQueryCoarsestTier( ) {
+    Map<MetricRollupTier,MetricRollupState> states = [
+        (FiveMinute): state( FiveMinute, BASE - HOUR, BASE + 3 * HOUR, null ),
+        (OneHour): state( OneHour, BASE - HOUR, BASE + 2 * HOUR, null ),
+    ]
+    List<QueryInterval> hourly = plan( BASE, BASE + 4 * HOUR, 3600, states )
+    assertEquals( 'Interval count', 2, hourly.size( ) )
+    assertInterval( hourly[0], OneHour, BASE, BASE + 2 * HOUR )
+    assertInterval( hourly[1], null, BASE + 2 * HOUR, BASE + 4 * HOUR )
+
+    List<QueryInterval> fiveMinute = plan( BASE, BASE + 4 * HOUR, 600, states )
+    assertInterval( fiveMinute[0], FiveMinute, BASE, BASE + 3 * HOUR )
+  }
+
+  @Test
+  void testQueryUnsupportedPeriodOrStart( ) {
+    Map<MetricRollupTier,MetricRollupState> states = [
+        (FiveMinute): state( FiveMinute, BASE - HOUR, BASE + 2 * HOUR, null )
+    ]
+    assertInterval( plan( BASE, BASE + HOUR, 60, states )[0], null, BASE, BASE + HOUR )
+    assertInterval( plan( BASE + MINUTE, BASE + HOUR, 300, states )[0], null, BASE + MINUTE, BASE + HOUR )
+  }
+
+  @Test
+  void testQueryStartOutsideRollup( ) {
+    Map<MetricRollupTier,MetricRollupState> states = [
+        (FiveMinute): state( FiveMinute, BASE, BASE + 2 * HOUR, null )
+    ]
+    assertInterval( plan( BASE - HOUR, BASE + HOUR, 300, states )[0], null, BASE - HOUR, BASE + HOUR )
+    assertInterval( plan( BASE + 2 * HOUR, BASE + 3 * HOUR, 300, states )[0], null, BASE + 2 * HOUR, BASE + 3 * HOUR )
+  }
+
+  @Test
+  void testQueryLateDataUsesRaw( ) {
+    // late data at 00:37 excludes rolled up data from 00:35 until rolled up again
+    Map<MetricRollupTier,MetricRollupState> states = [
+        (FiveMinute): state( FiveMinute, BASE - HOUR, BASE + 2 * HOUR, BASE + 37 * MINUTE )
+    ]
+    List<QueryInterval> intervals = plan( BASE, BASE + 2 * HOUR, 300, states )
+    assertEquals( 'Interval count', 2, intervals.size( ) )
+    assertInterval( intervals[0], FiveMinute, BASE, BASE + 35 * MINUTE )
+    assertInterval( intervals[1], null, BASE + 35 * MINUTE, BASE + 2 * HOUR )
+
+    // query starting after the late data reads only raw data
+    List<QueryInterval> laterIntervals = plan( BASE + HOUR, BASE + 2 * HOUR, 300, states )
+    assertEquals( 'Interval count', 1, laterIntervals.size( ) )
+    assertInterval( laterIntervals[0], null, BASE + HOUR, BASE + 2 * HOUR )
+
+    // late data before the rolled up range
+    RolledUpRange range = RolledUpRange.of( state( FiveMinute, BASE, BASE + HOUR, BASE - HOUR ) )
+    assertEquals( 'Range to', BASE, range.to.time )
+  }
+
+  @Test
+  void testLateDataFrom( ) {
+    Date now = new Date( BASE + HOUR )
+    assertNull( 'No data', MetricRollupManager.lateDataFrom( [ ], now ) )
+    assertNull( 'Recent data', MetricRollupManager.lateDataFrom( [
+        metricData( BASE + HOUR ),
+        metricData( BASE + HOUR - 4 * MINUTE ),
+    ], now ) )
+    assertEquals( 'Late data', new Date( BASE + 10 * MINUTE ), MetricRollupManager.lateDataFrom( [
+        metricData( BASE + HOUR ),
+        metricData( BASE + 20 * MINUTE ),
+        metricData( BASE + 10 * MINUTE ),
+        metricData( BASE + 50 * MINUTE ),
+    ], now ) )
+  }
+
+  @Test
+  void testRollups( ) {
+    MetricRollupManager.Rollups rollups = new MetricRollupManager.Rollups( FiveMinute )
+    rollups.add( metric( 'a', BASE, 1d, 1d, 1d, 1d ) )
+    rollups.add( metric( 'a', BASE + MINUTE, 3d, 2d, 2d, 5d ) )
+    rollups.add( metric( 'a', BASE + 5 * MINUTE, 4d, 4d, 1d, 4d ) )
+    rollups.add( metric( 'b', BASE + 2 * MINUTE, 7d, 7d, 1d, 7d ) )
+    List<MetricEntity> rows = rollups.list( ).sort{ MetricEntity me -> [ me.metricName, me.timestamp ] }
+    assertEquals( 'Rollup count', 3, rows.size( ) )
+
+    assertTrue( 'Rollup entity type', rows[0] instanceof MetricRollupTier.FiveMinuteMetricEntity )
+    assertEquals( 'Interval start', new Date( BASE ), rows[0].timestamp )
+    assertEquals( 'Sample max', 3d, rows[0].sampleMax, 0d )
+    assertEquals( 'Sample min', 1d, rows[0].sampleMin, 0d )
+    assertEquals( 'Sample size', 3d, rows[0].sampleSize, 0d )
+    assertEquals( 'Sample sum', 6d, rows[0].sampleSum, 0d )
+
+    assertEquals( 'Interval start', new Date( BASE + 5 * MINUTE ), rows[1].timestamp )
+    assertEquals( 'Sample sum', 4d, rows[1].sampleSum, 0d )
+
+    assertEquals( 'Metric name', 'b', rows[2].metricName )
+    assertEquals( 'Interval start', new Date( BASE ), rows[2].timestamp )
+  }
+
+  @Test
+  void testRollupOfRollups( ) {
+    MetricRollupManager.Rollups fiveMinute = new MetricRollupManager.Rollups( FiveMinute )
+    ( 0..<120 ).each { int minute -> fiveMinute.add( metric( 'a', BASE + minute * MINUTE, 1d, 1d, 1d, 1d ) ) }
+    MetricRollupManager.Rollups oneHour = new MetricRollupManager.Rollups( OneHour )
+    fiveMinute.list( ).each{ MetricEntity me -> oneHour.add( me ) }
+    List<MetricEntity> rows = oneHour.list( ).sort{ MetricEntity me -> me.timestamp }
+    assertEquals( 'Five minute rollup count', 24, fiveMinute.list( ).size( ) )
+    assertEquals( 'One hour rollup count', 2, rows.size( ) )
+    assertEquals( 'Sample size', 60d, rows[0].sampleSize, 0d )
+    assertEquals( 'Sample sum', 60d, rows[1].sampleSum, 0d )
+  }
+
+  private static List<QueryInterval> plan(
+      final long start,
+      final long end,
+      final int period,
+      final Map<MetricRollupTier,MetricRollupState> states
+  ) {
+    MetricRollupManager.planQuery( new Date( start ), new Date( end ), period, { MetricRollupTier tier ->
+      Optional.fromNullable( RolledUpRange.of( states.get( tier ) ) )
+    } as Function<MetricRollupTier, Optional<RolledUpRange>> )
+  }
+
+  private static void assertInterval( final QueryInterval interval, final MetricRollupTier tier, final long from, final long to ) {
+    assertEquals( "Tier ${interval}".toString( ), tier, interval.tier )
+    assertEquals( "From ${interval}".toString( ), new Date( from ), interval.from )
+    assertEquals( "To ${interval}".toString( ), new Date( to ), interval.to )
+  }
+
+  private static MetricRollupState state( final MetricRollupTier tier, final long from, final long to, final Long rerollFrom ) {
+    MetricRollupState state = new MetricRollupState( tier, new Date( from ), new Date( to ) )
+    state.rerollFrom = rerollFrom == null ? null : new Date( rerollFrom )
+    state
+  }
+
+  private static SimpleMetricEntity metricData( final long timestamp ) {
+    new SimpleMetricEntity( timestamp: new Date( timestamp ) )
+  }
+
+  private static MetricEntity metric( String name, long timestamp, double max, double min, double size, double sum ) {
+    MetricEntity entity = new MetricRollupTier.FiveMinuteMetricEntity( )
+    entity.accountId = '000000000000'
+    entity.namespace = 'Test'
+    entity.metricName = name
+    entity.metricType = MetricEntity.MetricType.Custom
+    entity.dimensionHash = 'hash'
+    entity.units = Units.Count
+    entity.timestamp = new Date( timestamp )
+    entity.sampleMax = max
+    entity.sampleMin = min
+    entity.sampleSize = size
+    entity.sampleSum = sum
+    entity
+  }
+}
@@ -0,0 +1,172 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata
+
+import static org.junit.Assert.*
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+
+/**
+ * Unit tests for in-memory metric windows
+ */
+class MetricWindowStoreTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 )
+  private static final long BASE = 1475280000000L // hour aligned
+  private static final Map<String,String> DIMENSIONS = [ InstanceId: 'i-00000001' ]
+  private static final MetricWindowStore.Key KEY = new MetricWindowStore.Key(
+      '000000000000', 'AWS/EC2', 'CPUUtilization', MetricType.System, MetricManager.hash( DIMENSIONS ) )
+
+  @Test
+  void testQueryBeforeCoverage( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE + 30000 ) )
+    store.addAll( [ datum( BASE + MINUTE, 1d ) ] )
+
+    assertNull( 'Statistics before coverage', store.getMetricStatistics( params( BASE, BASE + 5 * MINUTE, 60 ) ) )
+    assertNotNull( 'Statistics from coverage', store.getMetricStatistics( params( BASE + MINUTE, BASE + 5 * MINUTE, 60 ) ) )
+  }
+
+  @Test
+  void testUntrackedMetric( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE ) )
+    store.addAll( [ datum( BASE + MINUTE, 1d, 'NetworkIn' ) ] )
+
+    assertEquals( 'Dirty keys', [] as Set, store.drainDirty( ) )
+    assertNull( 'Untracked statistics', store.getMetricStatistics(
+        params( BASE + MINUTE, BASE + 5 * MINUTE, 60, 'NetworkIn' ) ) )
+    assertEquals( 'Tracked statistics', [], store.getMetricStatistics( params( BASE + MINUTE, BASE + 5 * MINUTE, 60 ) ) )
+  }
+
+  @Test
+  void testAggregation( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE ) )
+    store.addAll( [
+        datum( BASE + MINUTE, 1d ),
+        datum( BASE + MINUTE, 5d ),
+        datum( BASE + 2 * MINUTE, 3d ),
+        datum( BASE + 5 * MINUTE, 7d ),
+        datum( BASE + 6 * MINUTE, 9d ),
+    ] )
+
+    List<MetricStatistics> statistics = store.getMetricStatistics( params( BASE + MINUTE, BASE + 11 * MINUTE, 300 ) ) as List
+    assertEquals( 'Statistics count', 2, statistics.size( ) )
+    statistics.sort{ it.timestamp }
+    assertStatistics( statistics[0], BASE + MINUTE, 4d, 16d, 1d, 7d )
+    assertStatistics( statistics[1], BASE + 6 * MINUTE, 1d, 9d, 9d, 9d )
+  }
+
+  @Test
+  void testUnitsFilter( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE ) )
+    store.addAll( [
+        datum( BASE + MINUTE, 1d ),
+        datum( BASE + MINUTE, 5d, 'CPUUtilization', Units.Count ),
+    ] )
+
+    List<MetricStatistics> statistics = store.getMetricStatistics(
+        params( BASE + MINUTE, BASE + 2 * MINUTE, 60, 'CPUUtilization', Units.Count ) ) as List
+    assertEquals( 'Statistics count', 1, statistics.size( ) )
+    assertStatistics( statistics[0], BASE + MINUTE, 1d, 5d, 5d, 5d )
+    assertEquals( 'Units', Units.Count, statistics[0].units )
+    assertEquals( 'Unfiltered statistics count', 2,
+        store.getMetricStatistics( params( BASE + MINUTE, BASE + 2 * MINUTE, 60 ) ).size( ) )
+  }
+
+  @Test
+  void testEviction( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE ) )
+    ( 1..9 ).each{ int minute -> store.addAll( [ datum( BASE + minute * MINUTE, minute as double ) ] ) }
+
+    store.track( [ (KEY): 5 ], new Date( BASE + 10 * MINUTE ) )
+    assertNull( 'Statistics for evicted data', store.getMetricStatistics( params( BASE + MINUTE, BASE + 10 * MINUTE, 60 ) ) )
+    List<MetricStatistics> statistics = store.getMetricStatistics( params( BASE + 5 * MINUTE, BASE + 10 * MINUTE, 60 ) ) as List
+    assertEquals( 'Retained minutes', [ 5d, 6d, 7d, 8d, 9d ], statistics*.sampleSum.sort( ) )
+
+    store.track( [ : ], new Date( BASE + 10 * MINUTE ) )
+    assertEquals( 'Windows after untracking', 0, store.size( ) )
+    assertNull( 'Statistics after untracking', store.getMetricStatistics( params( BASE + 5 * MINUTE, BASE + 10 * MINUTE, 60 ) ) )
+  }
+
+  @Test
+  void testDrainDirty( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE ) )
+    assertEquals( 'Dirty keys before data', [] as Set, store.drainDirty( ) )
+
+    store.addAll( [ datum( BASE + MINUTE, 1d ), datum( BASE + 2 * MINUTE, 1d ) ] )
+    assertEquals( 'Dirty keys', [ KEY ] as Set, store.drainDirty( ) )
+    assertEquals( 'Dirty keys after drain', [] as Set, store.drainDirty( ) )
+  }
+
+  @Test
+  void testClear( ) {
+    MetricWindowStore store = new MetricWindowStore( )
+    store.track( [ (KEY): 10 ], new Date( BASE ) )
+    store.addAll( [ datum( BASE + MINUTE, 1d ) ] )
+
+    store.clear( )
+    assertEquals( 'Windows after clear', 0, store.size( ) )
+    assertEquals( 'Dirty keys after clear', [] as Set, store.drainDirty( ) )
+    assertNull( 'Statistics after clear', store.getMetricStatistics( params( BASE + MINUTE, BASE + 5 * MINUTE, 60 ) ) )
+  }
+
+  private static void assertStatistics( MetricStatistics statistics,
+                                        long timestamp,
+                                        double size,
+                                        double sum,
+                                        double min,
+                                        double max ) {
+    assertEquals( 'Timestamp', new Date( timestamp ), statistics.timestamp )
+    assertEquals( 'Sample size', size, statistics.sampleSize, 0d )
+    assertEquals( 'Sample sum', sum, statistics.sampleSum, 0d )
+    assertEquals( 'Sample min', min, statistics.sampleMin, 0d )
+    assertEquals( 'Sample max', max, statistics.sampleMax, 0d )
+  }
+
+  private static MetricManager.GetMetricStatisticsParams params( long start,
+                                                                 long end,
+                                                                 int period,
+                                                                 String metricName = 'CPUUtilization',
+                                                                 Units units = null ) {
+    new MetricManager.GetMetricStatisticsParams( '000000000000', metricName, 'AWS/EC2', DIMENSIONS,
+        MetricType.System, units, new Date( start ), new Date( end ), period )
+  }
+
+  private static SimpleMetricEntity datum( long timestamp,
+                                           double value,
+                                           String metricName = 'CPUUtilization',
+                                           Units units = Units.Percent ) {
+    SimpleMetricEntity entity = new SimpleMetricEntity( )
+    entity.accountId = '000000000000'
+    entity.namespace = 'AWS/EC2'
+    entity.metricName = metricName
+    entity.metricType = MetricType.System
+    entity.dimensionMap = DIMENSIONS
+    entity.units = units
+    entity.timestamp = new Date( timestamp )
+    entity.sampleSize = 1d
+    entity.sampleSum = value
+    entity.sampleMin = value
+    entity.sampleMax = value
+    entity
+  }
+}
@@ -23,8 +23,8 @@ import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetric;
 import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
 import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -95,23 +95,23 @@ public class ListMetricQueue {
       try {
         List<ListMetricQueueItem> dataBatch = Lists.newArrayList();
         dataQueue.drainTo(dataBatch);
-        ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_SIZE, dataBatch.size( ));
+        ActionMetrics.record(MonitoredAction.LIST_METRIC_SIZE, dataBatch.size( ));
         long t2 = System.currentTimeMillis();
         dataBatch = prune(dataBatch);
         long t3 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_PRUNE, t3-t2);
+        ActionMetrics.record(MonitoredAction.LIST_METRIC_PRUNE, t3-t2);
         List<ListMetric> listMetrics = convertToListMetrics(dataBatch);
         long t4 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_CONVERT, t4-t3);
+        ActionMetrics.record(MonitoredAction.LIST_METRIC_CONVERT, t4-t3);
         ListMetricManager.addMetricBatch(listMetrics);
         long t5 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_MERTIC_ADD_BATCH, t5-t4);
+        ActionMetrics.record(MonitoredAction.LIST_METRIC_MERTIC_ADD_BATCH, t5-t4);
       } catch (Throwable ex) {
         LOG.debug("ListMetricQueue:error");
         ex.printStackTrace();
         LOG.error(ex,ex);
       } finally {
-        ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_TIMING, System.currentTimeMillis()-before);
+        ActionMetrics.record(MonitoredAction.LIST_METRIC_TIMING, System.currentTimeMillis()-before);
       }
     }
   };
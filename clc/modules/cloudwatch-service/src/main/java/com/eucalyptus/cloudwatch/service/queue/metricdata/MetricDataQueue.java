@@ -19,21 +19,23 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.service.queue.metricdata;
 
-import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager.MetricBatchPersistenceException;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
 import com.eucalyptus.cloudwatch.common.msgs.Dimension;
 import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
+import com.eucalyptus.cloudwatch.service.CloudWatchUnavailableException;
 import com.eucalyptus.cloudwatch.service.queue.listmetrics.ListMetricQueue;
 import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
-import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import org.apache.log4j.Logger;
 
@@ -43,14 +45,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class MetricDataQueue {
   private static final Logger LOG = Logger.getLogger(MetricDataQueue.class);
-  final static LinkedBlockingQueue<MetricQueueItem> dataQueue = new LinkedBlockingQueue<MetricQueueItem>();
+  private static final int ROLLUP_STORE_STRIPES = 64;
+  private static final MetricDataRollupStore rollupStore = new MetricDataRollupStore(ROLLUP_STORE_STRIPES);
 
   private static final ScheduledExecutorService dataFlushTimer = Executors
       .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-metric-data-flush-%d" ) );
@@ -65,44 +69,107 @@ public class MetricDataQueue {
     return singleton;
   }
 
-  private void queue(Supplier<MetricQueueItem> metriMetaDataSupplier) {
-    final MetricQueueItem metricData = metriMetaDataSupplier.get();
-    dataQueue.offer(metricData);
-  }
-
   private static Runnable safeRunner = new Runnable() {
+    private long lastFlush = System.currentTimeMillis();
+
     @Override
     public void run() {
-      long before = System.currentTimeMillis();
-      try {
-        List<MetricQueueItem> dataBatch = Lists.newArrayList();
-        dataQueue.drainTo(dataBatch);
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_SIZE, dataBatch.size( ));
-        long t1 = System.currentTimeMillis();
-        List<SimpleMetricEntity> simpleDataBatch = convertToSimpleDataBatch(dataBatch);
-        long t2 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_CONVERT, t2-t1);
-        simpleDataBatch = aggregate(simpleDataBatch);
-        long t3 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_AGGREGATE, t3-t2);
-        MetricManager.addMetricBatch(simpleDataBatch);
-        long t4 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_ADD_BATCH, t4-t3);
-        ListMetricQueue.getInstance().addAll(simpleDataBatch);
-        long t5 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL, t5-t4);
-      } catch (Throwable ex) {
-        LOG.debug("PutMetricDataQueue:error");
-        ex.printStackTrace();
-        LOG.error(ex,ex);
-      } finally {
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_TIMING, System.currentTimeMillis()-before);
+      final long now = System.currentTimeMillis();
+      // flush everything when nearing capacity, otherwise only minutes that are complete
+      final boolean nearCapacity =
+          rollupStore.size() >= CloudWatchConfigProperties.METRIC_DATA_MAX_AGGREGATED_ENTRIES / 4 * 3;
+      if (nearCapacity ||
+          now - lastFlush >= TimeUnit.SECONDS.toMillis(CloudWatchConfigProperties.METRIC_DATA_FLUSH_INTERVAL_SECONDS)) {
+        lastFlush = now;
+        flush(nearCapacity ? null : MetricUtils.stripSeconds(new Date(now)));
       }
     }
   };
 
   static {
-    dataFlushTimer.scheduleAtFixedRate(safeRunner, 0, 1, TimeUnit.MINUTES);
+    dataFlushTimer.scheduleWithFixedDelay(safeRunner, 1, 1, TimeUnit.SECONDS);
+  }
+
+  private static void flush(final Date before) {
+    flush(rollupStore, before, new Consumer<List<SimpleMetricEntity>>() {
+      @Override
+      public void accept(final List<SimpleMetricEntity> simpleDataBatch) {
+        persist(simpleDataBatch, MetricManager::addMetricBatch, ListMetricQueue.getInstance()::addAll);
+      }
+    });
+  }
+
+  /**
+   * Persist entries and queue them for ListMetrics.
+   *
+   * On partial failure the persisted entries are still queued for
+   * ListMetrics before the failure is rethrown.
+   */
+  static void persist(final List<SimpleMetricEntity> simpleDataBatch,
+                      final Consumer<List<SimpleMetricEntity>> metricPersister,
+                      final Consumer<List<SimpleMetricEntity>> listMetricQueuer) {
+    long t2 = System.currentTimeMillis();
+    try {
+      metricPersister.accept(simpleDataBatch);
+    } catch (MetricBatchPersistenceException e) {
+      final Set<SimpleMetricEntity> unpersisted = Sets.newIdentityHashSet();
+      unpersisted.addAll(e.getUnpersisted());
+      final List<SimpleMetricEntity> persisted = Lists.newArrayList();
+      for (SimpleMetricEntity simpleMetricEntity : simpleDataBatch) {
+        if (!unpersisted.contains(simpleMetricEntity)) {
+          persisted.add(simpleMetricEntity);
+        }
+      }
+      if (!persisted.isEmpty()) {
+        listMetricQueuer.accept(persisted);
+      }
+      throw e;
+    }
+    long t3 = System.currentTimeMillis();
+    ActionMetrics.record(MonitoredAction.PUT_DATA_QUEUE_MERTIC_ADD_BATCH, t3-t2);
+    listMetricQueuer.accept(simpleDataBatch);
+    long t4 = System.currentTimeMillis();
+    ActionMetrics.record(MonitoredAction.PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL, t4-t3);
+  }
+
+  /**
+   * Drain entries from the store and persist them.
+   *
+   * Entries that could not be persisted are returned to the store to be
+   * retried by a later flush.
+   */
+  static void flush(final MetricDataRollupStore store,
+                    final Date before,
+                    final Consumer<List<SimpleMetricEntity>> persister) {
+    long t1 = System.currentTimeMillis();
+    try {
+      final long datapointsFlushed = store.getDatapointsFlushed();
+      final List<SimpleMetricEntity> simpleDataBatch = store.drain(before);
+      long t2 = System.currentTimeMillis();
+      final long datapoints = store.getDatapointsFlushed() - datapointsFlushed;
+      ActionMetrics.record(MonitoredAction.PUT_DATA_QUEUE_SIZE, datapoints);
+      ActionMetrics.record(MonitoredAction.PUT_DATA_ROLLUP_ENTRIES, simpleDataBatch.size());
+      ActionMetrics.record(MonitoredAction.PUT_DATA_ROLLUP_STORE_SIZE, store.size());
+      ActionMetrics.record(MonitoredAction.PUT_DATA_ROLLUP_COLLAPSE_RATIO, Math.round(store.getCollapseRatio()));
+      ActionMetrics.record(MonitoredAction.PUT_DATA_QUEUE_AGGREGATE, t2-t1);
+      if (simpleDataBatch.isEmpty()) {
+        return;
+      }
+      LOG.debug("Flushing " + simpleDataBatch.size() + " aggregated metric entries for " + datapoints + " data points");
+      try {
+        persister.accept(simpleDataBatch);
+      } catch (MetricBatchPersistenceException e) {
+        store.restore(e.getUnpersisted());
+        LOG.warn("Restored " + e.getUnpersisted().size() + " of " + simpleDataBatch.size() +
+            " aggregated metric entries after flush failure");
+        throw e;
+      }
+    } catch (Throwable ex) {
+      LOG.debug("PutMetricDataQueue:error");
+      LOG.error(ex,ex);
+    } finally {
+      ActionMetrics.record(MonitoredAction.PUT_DATA_TIMING, System.currentTimeMillis()-t1);
+    }
   }
 
   public static List<SimpleMetricEntity> aggregate(List<SimpleMetricEntity> dataBatch) {
@@ -163,24 +230,28 @@ public class MetricDataQueue {
   }
 
   public void insertMetricData(final String ownerAccountId, final String nameSpace,
-                               final List<MetricDatum> metricDatum, final MetricType metricType) {
+                               final List<MetricDatum> metricDatum, final MetricType metricType)
+      throws CloudWatchUnavailableException {
+    if (rollupStore.size() >= CloudWatchConfigProperties.METRIC_DATA_MAX_AGGREGATED_ENTRIES) {
+      ActionMetrics.record(MonitoredAction.PUT_DATA_ROLLUP_REJECTED, metricDatum.size());
+      throw new CloudWatchUnavailableException("Metric data is arriving faster than it can be stored, please retry");
+    }
     // Some points do not actually go in.  If a data point represents an absolute value, the first one does not go in.
     // Also, some data points are added while we go through the list (derived metrics)
     Date now = new Date();
 
+    List<MetricQueueItem> dataBatch = Lists.newArrayListWithCapacity(metricDatum.size());
     for (final MetricDatum datum : metricDatum) {
       scrub(datum, now);
-      queue(new Supplier<MetricQueueItem>() {
-        @Override
-        public MetricQueueItem get() {
-          MetricQueueItem metricMetadata = new MetricQueueItem();
-          metricMetadata.setAccountId(ownerAccountId);
-          metricMetadata.setMetricDatum(datum);
-          metricMetadata.setNamespace(nameSpace);
-          metricMetadata.setMetricType(metricType);
-          return metricMetadata;
-        }
-      });
+      MetricQueueItem metricMetadata = new MetricQueueItem();
+      metricMetadata.setAccountId(ownerAccountId);
+      metricMetadata.setMetricDatum(datum);
+      metricMetadata.setNamespace(nameSpace);
+      metricMetadata.setMetricType(metricType);
+      dataBatch.add(metricMetadata);
+    }
+    for (SimpleMetricEntity item : convertToSimpleDataBatch(dataBatch)) {
+      rollupStore.add(item);
     }
   }
 
@@ -0,0 +1,192 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.service.queue.metricdata;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Striped in-memory store that aggregates metric data as it is put.
+ *
+ * Data points are collapsed on arrival into one entry per aggregation key
+ * (account, namespace, metric, dimension hash, minute, ...) so that a flush
+ * only has to persist a single row per metric-minute. Each stripe is guarded
+ * by its own monitor so concurrent puts for unrelated metrics do not contend.
+ */
+public class MetricDataRollupStore {
+
+  private final Stripe[] stripes;
+  private final AtomicInteger size = new AtomicInteger( );
+  private final AtomicLong datapointsReceived = new AtomicLong( );
+  private final AtomicLong datapointsFlushed = new AtomicLong( );
+  private final AtomicLong entriesFlushed = new AtomicLong( );
+
+  public MetricDataRollupStore( final int numStripes ) {
+    if ( numStripes < 1 ) throw new IllegalArgumentException( "numStripes must be positive" );
+    stripes = new Stripe[ numStripes ];
+    for ( int i = 0; i < numStripes; i++ ) {
+      stripes[ i ] = new Stripe( );
+    }
+  }
+
+  /**
+   * Add a data point to the store, merging with any existing entry for the same key.
+   *
+   * The timestamp of the given item is truncated to the minute.
+   */
+  public void add( final SimpleMetricEntity item ) {
+    add( item, 1 );
+    datapointsReceived.incrementAndGet( );
+  }
+
+  /**
+   * Return drained entries that were not persisted to the store.
+   *
+   * Restored entries merge with any entries added since they were drained.
+   * Entries must only be restored if none of their data was persisted.
+   */
+  public void restore( final List<SimpleMetricEntity> items ) {
+    for ( final SimpleMetricEntity item : items ) {
+      add( item, 0 );
+    }
+    entriesFlushed.addAndGet( -items.size( ) );
+  }
+
+  private void add( final SimpleMetricEntity item, final long datapoints ) {
+    item.setTimestamp( MetricUtils.stripSeconds( item.getTimestamp( ) ) );
+    final PutMetricDataAggregationKey key = new PutMetricDataAggregationKey( item );
+    final Stripe stripe = stripeFor( key );
+    synchronized ( stripe ) {
+      final RollupEntry entry = stripe.entries.get( key );
+      if ( entry == null ) {
+        stripe.entries.put( key, new RollupEntry( item, datapoints ) );
+        size.incrementAndGet( );
+      } else {
+        entry.accumulate( item, datapoints );
+      }
+    }
+  }
+
+  /**
+   * Remove and return all entries with a timestamp before the given time.
+   *
+   * @param before The exclusive upper bound for entry timestamps, null to drain all entries
+   * @return The drained entries
+   */
+  public List<SimpleMetricEntity> drain( final Date before ) {
+    final List<SimpleMetricEntity> drained = Lists.newArrayList( );
+    long datapoints = 0;
+    for ( final Stripe stripe : stripes ) {
+      synchronized ( stripe ) {
+        final Iterator<RollupEntry> iterator = stripe.entries.values( ).iterator( );
+        while ( iterator.hasNext( ) ) {
+          final RollupEntry entry = iterator.next( );
+          if ( before == null || entry.timestamp < before.getTime( ) ) {
+            iterator.remove( );
+            size.decrementAndGet( );
+            drained.add( entry.toSimpleMetricEntity( ) );
+            datapoints += entry.datapoints;
+          }
+        }
+      }
+    }
+    datapointsFlushed.addAndGet( datapoints );
+    entriesFlushed.addAndGet( drained.size( ) );
+    return drained;
+  }
+
+  /**
+   * The number of aggregated entries currently held.
+   */
+  public int size( ) {
+    return size.get( );
+  }
+
+  public long getDatapointsReceived( ) {
+    return datapointsReceived.get( );
+  }
+
+  public long getDatapointsFlushed( ) {
+    return datapointsFlushed.get( );
+  }
+
+  public long getEntriesFlushed( ) {
+    return entriesFlushed.get( );
+  }
+
+  /**
+   * The average number of put data points collapsed into each flushed entry.
+   */
+  public double getCollapseRatio( ) {
+    final long entries = entriesFlushed.get( );
+    return entries == 0 ? 0d : (double) datapointsFlushed.get( ) / entries;
+  }
+
+  private Stripe stripeFor( final PutMetricDataAggregationKey key ) {
+    final int hash = key.hashCode( );
+    return stripes[ ( ( hash ^ ( hash >>> 16 ) ) & 0x7fffffff ) % stripes.length ];
+  }
+
+  private static final class Stripe {
+    private final Map<PutMetricDataAggregationKey, RollupEntry> entries = Maps.newHashMap( );
+  }
+
+  private static final class RollupEntry {
+    private final SimpleMetricEntity template;
+    private final long timestamp;
+    private long datapoints;
+    private double sampleMax;
+    private double sampleMin;
+    private double sampleSum;
+    private double sampleSize;
+
+    private RollupEntry( final SimpleMetricEntity item, final long datapoints ) {
+      this.template = item;
+      this.timestamp = item.getTimestamp( ).getTime( );
+      this.datapoints = datapoints;
+      this.sampleMax = item.getSampleMax( );
+      this.sampleMin = item.getSampleMin( );
+      this.sampleSum = item.getSampleSum( );
+      this.sampleSize = item.getSampleSize( );
+    }
+
+    private void accumulate( final SimpleMetricEntity item, final long datapoints ) {
+      this.datapoints += datapoints;
+      this.sampleMax = Math.max( sampleMax, item.getSampleMax( ) );
+      this.sampleMin = Math.min( sampleMin, item.getSampleMin( ) );
+      this.sampleSum += item.getSampleSum( );
+      this.sampleSize += item.getSampleSize( );
+    }
+
+    private SimpleMetricEntity toSimpleMetricEntity( ) {
+      final SimpleMetricEntity entity = new SimpleMetricEntity( template );
+      entity.setSampleMax( sampleMax );
+      entity.setSampleMin( sampleMin );
+      entity.setSampleSum( sampleSum );
+      entity.setSampleSize( sampleSize );
+      return entity;
+    }
+  }
+}
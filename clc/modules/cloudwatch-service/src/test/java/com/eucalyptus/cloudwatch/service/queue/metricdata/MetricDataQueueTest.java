@@ -0,0 +1,184 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.service.queue.metricdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager.MetricBatchPersistenceException;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class MetricDataQueueTest {
+
+  private static final double TOLERANCE = 0.000000001;
+
+  @Test
+  public void testFlush() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    final Date now = MetricUtils.stripSeconds( new Date( ) );
+    store.add( entity( "metric1", now, 1 ) );
+    store.add( entity( "metric2", now, 2 ) );
+
+    final List<SimpleMetricEntity> persisted = Lists.newArrayList( );
+    MetricDataQueue.flush( store, null, persisted::addAll );
+    assertEquals( 2, persisted.size( ) );
+    assertEquals( 0, store.size( ) );
+  }
+
+  /**
+   * Entries that were not persisted are restored and merged with data put
+   * since the flush, persisted entries are not retried.
+   */
+  @Test
+  public void testFlushPartialFailure() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    final Date now = MetricUtils.stripSeconds( new Date( ) );
+    store.add( entity( "metric1", now, 1 ) );
+    store.add( entity( "metric2", now, 2 ) );
+
+    MetricDataQueue.flush( store, null, failing( "metric2" ) );
+    assertEquals( 1, store.size( ) );
+
+    store.add( entity( "metric2", now, 3 ) );
+    final List<SimpleMetricEntity> persisted = Lists.newArrayList( );
+    MetricDataQueue.flush( store, null, persisted::addAll );
+    assertEquals( 1, persisted.size( ) );
+    final SimpleMetricEntity metric2 = persisted.get( 0 );
+    assertEquals( "metric2", metric2.getMetricName( ) );
+    assertEquals( 2.0, metric2.getSampleSize( ), TOLERANCE );
+    assertEquals( 5.0, metric2.getSampleSum( ), TOLERANCE );
+    assertEquals( 3.0, metric2.getSampleMax( ), TOLERANCE );
+    assertEquals( 2.0, metric2.getSampleMin( ), TOLERANCE );
+    assertEquals( 0, store.size( ) );
+    assertEquals( 3, store.getDatapointsReceived( ) );
+    assertEquals( 2, store.getEntriesFlushed( ) );
+  }
+
+  /**
+   * Entries that were persisted are queued for ListMetrics when other
+   * entries in the batch fail.
+   */
+  @Test
+  public void testPersistPartialFailure() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    final Date now = MetricUtils.stripSeconds( new Date( ) );
+    store.add( entity( "metric1", now, 1 ) );
+    store.add( entity( "metric2", now, 2 ) );
+    store.add( entity( "metric3", now, 3 ) );
+
+    final List<SimpleMetricEntity> listed = Lists.newArrayList( );
+    MetricDataQueue.flush( store, null, batch -> MetricDataQueue.persist( batch, failing( "metric2" ), listed::addAll ) );
+    assertEquals( 2, listed.size( ) );
+    final Set<String> listedNames = Sets.newHashSet( );
+    for ( final SimpleMetricEntity entity : listed ) {
+      listedNames.add( entity.getMetricName( ) );
+    }
+    assertEquals( Sets.newHashSet( "metric1", "metric3" ), listedNames );
+    assertEquals( 1, store.size( ) );
+
+    listed.clear( );
+    MetricDataQueue.flush( store, null, batch -> MetricDataQueue.persist( batch, persisted -> { }, listed::addAll ) );
+    assertEquals( 1, listed.size( ) );
+    assertEquals( "metric2", listed.get( 0 ).getMetricName( ) );
+    assertEquals( 0, store.size( ) );
+  }
+
+  @Test
+  public void testPersistFailure() {
+    final List<SimpleMetricEntity> batch = Lists.newArrayList(
+        entity( "metric1", new Date( ), 1 ),
+        entity( "metric2", new Date( ), 2 ) );
+    final List<SimpleMetricEntity> listed = Lists.newArrayList( );
+    try {
+      MetricDataQueue.persist( batch, failing( "metric1", "metric2" ), listed::addAll );
+      fail( "Expected failure" );
+    } catch ( MetricBatchPersistenceException e ) {
+      assertEquals( 2, e.getUnpersisted( ).size( ) );
+    }
+    assertEquals( 0, listed.size( ) );
+  }
+
+  @Test
+  public void testFlushFailure() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    final Date now = MetricUtils.stripSeconds( new Date( ) );
+    store.add( entity( "metric1", now, 1 ) );
+    store.add( entity( "metric2", now, 2 ) );
+
+    MetricDataQueue.flush( store, null, failing( "metric1", "metric2" ) );
+    assertEquals( 2, store.size( ) );
+
+    final List<SimpleMetricEntity> persisted = Lists.newArrayList( );
+    MetricDataQueue.flush( store, null, persisted::addAll );
+    assertEquals( 2, persisted.size( ) );
+  }
+
+  /**
+   * Failures without details of the unpersisted entries are not retried.
+   */
+  @Test
+  public void testFlushUnexpectedFailure() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    store.add( entity( "metric1", MetricUtils.stripSeconds( new Date( ) ), 1 ) );
+
+    MetricDataQueue.flush( store, null, batch -> { throw new IllegalArgumentException( "invalid" ); } );
+    assertEquals( 0, store.size( ) );
+  }
+
+  private static Consumer<List<SimpleMetricEntity>> failing( final String... metricNames ) {
+    return batch -> {
+      final List<SimpleMetricEntity> unpersisted = Lists.newArrayList( );
+      for ( final SimpleMetricEntity entity : batch ) {
+        if ( Lists.newArrayList( metricNames ).contains( entity.getMetricName( ) ) ) {
+          unpersisted.add( entity );
+        }
+      }
+      throw new MetricBatchPersistenceException( Collections.unmodifiableList( unpersisted ) );
+    };
+  }
+
+  private static SimpleMetricEntity entity( final String metricName,
+                                            final Date timestamp,
+                                            final double value ) {
+    final SimpleMetricEntity entity = new SimpleMetricEntity( );
+    entity.setAccountId( "account1" );
+    entity.setDimensionMap( new TreeMap<String, String>( ) );
+    entity.setMetricName( metricName );
+    entity.setMetricType( MetricType.Custom );
+    entity.setNamespace( "namespace1" );
+    entity.setSampleMax( value );
+    entity.setSampleMin( value );
+    entity.setSampleSize( 1.0 );
+    entity.setSampleSum( value );
+    entity.setTimestamp( timestamp );
+    entity.setUnits( Units.None );
+    return entity;
+  }
+}
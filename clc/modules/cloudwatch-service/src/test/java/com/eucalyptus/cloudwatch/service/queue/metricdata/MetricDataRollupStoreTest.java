@@ -0,0 +1,96 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.service.queue.metricdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
+
+public class MetricDataRollupStoreTest {
+
+  private static final double TOLERANCE = 0.000000001;
+
+  @Test
+  public void testAggregation() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    final Date now = MetricUtils.stripSeconds( new Date( ) );
+    for ( int i = 0; i < 10; i++ ) {
+      store.add( entity( "account" + ( i % 2 ), "metric1", new Date( now.getTime( ) + i * 1000L ), i ) );
+    }
+    assertEquals( 2, store.size( ) );
+    assertEquals( 10, store.getDatapointsReceived( ) );
+
+    final List<SimpleMetricEntity> drained = store.drain( null );
+    assertEquals( 2, drained.size( ) );
+    assertEquals( 0, store.size( ) );
+    assertEquals( 5.0, store.getCollapseRatio( ), TOLERANCE );
+    for ( final SimpleMetricEntity entity : drained ) {
+      final boolean even = "account0".equals( entity.getAccountId( ) );
+      assertEquals( even ? 8.0 : 9.0, entity.getSampleMax( ), TOLERANCE );
+      assertEquals( even ? 0.0 : 1.0, entity.getSampleMin( ), TOLERANCE );
+      assertEquals( even ? 20.0 : 25.0, entity.getSampleSum( ), TOLERANCE );
+      assertEquals( 5.0, entity.getSampleSize( ), TOLERANCE );
+      assertEquals( now, entity.getTimestamp( ) );
+    }
+  }
+
+  @Test
+  public void testDrainCompletedMinutes() {
+    final MetricDataRollupStore store = new MetricDataRollupStore( 4 );
+    final Date now = MetricUtils.stripSeconds( new Date( ) );
+    final Date previous = new Date( now.getTime( ) - 60000L );
+    store.add( entity( "account1", "metric1", previous, 1 ) );
+    store.add( entity( "account1", "metric1", now, 2 ) );
+    store.add( entity( "account1", "metric2", now, 3 ) );
+    assertEquals( 3, store.size( ) );
+
+    final List<SimpleMetricEntity> drained = store.drain( now );
+    assertEquals( 1, drained.size( ) );
+    assertEquals( previous, drained.get( 0 ).getTimestamp( ) );
+    assertEquals( 2, store.size( ) );
+    assertEquals( 3, store.getDatapointsReceived( ) );
+    assertTrue( store.drain( null ).size( ) == 2 );
+  }
+
+  private static SimpleMetricEntity entity( final String accountId,
+                                            final String metricName,
+                                            final Date timestamp,
+                                            final double value ) {
+    final SimpleMetricEntity entity = new SimpleMetricEntity( );
+    entity.setAccountId( accountId );
+    entity.setDimensionMap( new TreeMap<String, String>( ) );
+    entity.setMetricName( metricName );
+    entity.setMetricType( MetricType.Custom );
+    entity.setNamespace( "namespace1" );
+    entity.setSampleMax( value );
+    entity.setSampleMin( value );
+    entity.setSampleSize( 1.0 );
+    entity.setSampleSum( value );
+    entity.setTimestamp( timestamp );
+    entity.setUnits( Units.None );
+    return entity;
+  }
+}
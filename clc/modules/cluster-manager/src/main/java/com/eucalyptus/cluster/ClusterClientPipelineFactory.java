@@ -84,6 +84,7 @@ import org.jboss.netty.channel.SimpleChannelHandler;
 import com.eucalyptus.component.annotation.ComponentPart;
 import com.eucalyptus.component.id.ClusterController;
 import com.eucalyptus.http.MappingHttpRequest;
+import com.eucalyptus.util.async.ChannelPools;
 import com.eucalyptus.ws.Handlers;
 import com.eucalyptus.ws.StackConfiguration;
 import com.eucalyptus.ws.handlers.ClusterWsSecHandler;
@@ -95,7 +96,7 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
 @ComponentPart( ClusterController.class )
-public final class ClusterClientPipelineFactory implements ChannelPipelineFactory {
+public final class ClusterClientPipelineFactory implements ChannelPipelineFactory, ChannelPools.ConnectionLimit {
   private static Logger LOG = Logger.getLogger( ClusterClientPipelineFactory.class );
   private enum ClusterWsSec implements Supplier<ChannelHandler> {
     INSTANCE;
@@ -123,6 +124,14 @@ public final class ClusterClientPipelineFactory implements ChannelPipelineFactor
                                                                                    };
   private static final LoadingCache<InetAddress, Semaphore> counters               = CacheBuilder.newBuilder( ).build( loader );
 
+  /**
+   * Pooled connections hold a permit while open, so pools must not exceed the permits.
+   */
+  @Override
+  public int getMaxConnections( ) {
+    return CLUSTER_CLIENT_PERMITS.get( );
+  }
+
   @Override
   public ChannelPipeline getPipeline( ) throws Exception {
     final ChannelHandler limitSockets = new SimpleChannelHandler( ) {
@@ -69,6 +69,7 @@ import static com.eucalyptus.compute.common.internal.vm.VmInstance.VmState.STOPP
 import static com.eucalyptus.compute.common.internal.vm.VmInstance.VmStateSet.TORNDOWN;
 import static com.eucalyptus.compute.common.internal.vm.VmInstances.TerminatedInstanceException;
 
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -79,6 +80,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -102,6 +104,8 @@ import com.eucalyptus.util.CollectionUtils;
 import com.eucalyptus.util.Either;
 import com.eucalyptus.util.HasName;
 import com.eucalyptus.util.NonNullFunction;
+import com.eucalyptus.util.metrics.ActionMetrics;
+import com.eucalyptus.util.metrics.MonitoredAction;
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -109,6 +113,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import org.apache.log4j.Logger;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 
 import com.eucalyptus.bootstrap.Databases;
@@ -157,7 +162,8 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
               Restrictions.not( VmInstance.criterion( TORNDOWN.array( ) ) ),
               Sets.newHashSet( "transientVolumeState.attachments"),
               Sets.newHashSet( "bootRecord.machineImage", "bootRecord.vmType", "networkGroups" ),
-              TypeMappers.lookup( VmInstance.class, VmStateView.class )  ),
+              TypeMappers.lookup( VmInstance.class, VmStateView.class ),
+              TimeUnit.SECONDS.toMillis( 10 ) ),
           10,
           TimeUnit.SECONDS );
 
@@ -232,11 +238,15 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     final Set<String> unknownInstances =
         Sets.newHashSet( Sets.difference( reportedInstances, this.initialInstances.get( ) ) );
 
+    final ReconcileCycle cycle = new ReconcileCycle( this.getSubject( ).getName( ), reply.getVms( ).size( ) );
     final List<Optional<Runnable>> taskList = Lists.newArrayList( );
+    final List<VmStateContext> reportedList = Lists.newArrayList( );
 
     for ( final VmInfo runVm : reply.getVms( ) ) {
       if ( this.initialInstances.get( ).contains( runVm.getInstanceId( ) ) ) {
-        taskList.add( UpdateTaskFunction.REPORTED.apply( context( localState, runVm ) ) );
+        if ( pendingUpdates.putIfAbsent( runVm.getInstanceId( ), System.currentTimeMillis( ) ) == null ) {
+          reportedList.add( context( localState, runVm ) );
+        }
       } else if ( unknownInstances.contains( runVm.getInstanceId( ) ) ) {
         taskList.add( UpdateTaskFunction.UNKNOWN.apply( context( localState, runVm ) ) );
       }
@@ -244,6 +254,28 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     for ( final String vmId : unreportedInstances ) {
       taskList.add( UpdateTaskFunction.UNREPORTED.apply( context( localState, vmId ) ) );
     }
+    final List<Runnable> cycleTasks = Lists.newArrayList( );
+    for ( final List<VmStateContext> batch :
+        Iterables.partition( reportedList, Math.max( 1, VmInstances.VM_STATE_UPDATE_BATCH_SIZE ) ) ) {
+      cycleTasks.add( cycle.track( new Runnable( ) {
+        @Override
+        public void run( ) {
+          try {
+            VmStateCallback.handleReportedStates( batch, cycle );
+          } catch ( Exception e ) {
+            LOG.error( "Failed to handle reported instances because of " + e.getMessage( ) );
+          } finally {
+            for ( final VmStateContext context : batch ) {
+              pendingUpdates.remove( context.getInput( ).getRight( ).getInstanceId( ) );
+            }
+          }
+        }
+      } ) );
+    }
+    for ( final Runnable task : Optional.presentInstances( taskList ) ) {
+      cycleTasks.add( cycle.track( task ) );
+    }
+    cycle.tracked( );
     final Optional<Runnable> broadcastRequestRunnable = requestBroadcast ?
         Optional.<Runnable>of( new Runnable( ) {
           @Override
@@ -253,8 +285,7 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
         } ) :
         Optional.<Runnable>absent( );
 
-    for ( final Runnable task :
-        Iterables.concat( Optional.presentInstances( taskList ), broadcastRequestRunnable.asSet( ) ) ) {
+    for ( final Runnable task : Iterables.concat( cycleTasks, broadcastRequestRunnable.asSet( ) ) ) {
       Threads.enqueue(
           ClusterController.class,
           VmStateCallback.class,
@@ -300,67 +331,9 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
   
   private static void handleReportedState( final VmStateContext vmStateContext ) {
     final VmInfo runVm = vmStateContext.getInput( ).getRight( );
-    final VmState runVmState = VmState.Mapper.get( runVm.getStateName( ) );
     try {
-      final VmStateView vmView = vmStateContext.getLocalState( ).get( runVm.getInstanceId( ) );
-      MigrationState migrationState = MigrationState.defaultValueOf( runVm.getMigrationStateName() );
-      boolean updateRequired = false;
-      if ( vmView != null ) {
-        if ( vmView.inState( VmStateSet.DONE ) ) {
-          if ( vmView.getReason( ) == VmInstance.Reason.EXPIRED ) {
-            VmStateCallback.handleUnknown( vmStateContext );
-          } else {
-            LOG.trace( "Ignore state update to terminated instance: " + runVm.getInstanceId( ) );
-          }
-          return;
-        } else if ( vmView.getState( ) == VmState.RUNNING && System.currentTimeMillis( ) > vmView.getExpires( )  ) {
-          updateRequired = true;
-        } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
-          updateRequired = true;
-        } else if ( !vmView.inState( VmStateSet.RUN ) && VmStateSet.RUN.contains( runVmState )
-            && ( System.currentTimeMillis( ) - vmView.getLastUpdated( ) ) > ( VmInstances.VOLATILE_STATE_TIMEOUT_SEC * 1000l ) ) {
-          updateRequired = true;
-        } else if ( vmView.inState( VmStateSet.RUN ) ) {
-          updateRequired =
-                  vmView.isBundling( ) ||
-                  vmView.isMigrating( ) ||
-                  migrationState.isMigrating( ) ||
-                  runVmState != vmView.getState( ) ||
-                  !Objects.equals( vmView.getGuestState( ), runVm.getGuestStateName( ) ) ||
-                  !Objects.equals( vmView.getServiceTag( ), runVm.getServiceTag( ) ) ||
-                  ( System.currentTimeMillis( ) - vmView.getLastUpdated( ) ) > VmInstances.Timeout.UNTOUCHED.getMilliseconds( ) || // for running and pending states
-                  vmView.getReachabilityStatus( ) != ReachabilityStatus.Passed ||
-                  ( vmView.getState( ) == VmState.RUNNING && !vmView.getVolumeAttachments( ).equals(
-                      runVm.getVolumes( ).stream( )
-                          .map( TypeMappers.lookupF( AttachedVolume.class, VmStateVolumeAttachmentView.class ) )
-                          .collect( Collectors.toMap( HasName.GET_NAME, volumeView -> volumeView ) ) ) ) ||
-                  ( vmView.getState( ) == VmState.RUNNING && !vmView.getNetworkInterfaceAttachments( ).equals(
-                      runVm.getSecondaryNetConfigList( ).stream( )
-                          .map( TypeMappers.lookupF( NetworkConfigType.class, VmStateNetworkInterfaceAttachmentView.class ) )
-                          .collect( Collectors.toMap( HasName.GET_NAME, niView -> niView ) ) ) )
-          ;
-        }
-      }
-      if ( updateRequired ) try ( final TransactionResource db = Entities.transactionFor( VmInstance.class ) ) {
-        VmInstance vm = VmInstances.lookupAny( runVm.getInstanceId() );
-        if ( VmInstances.Timeout.EXPIRED.apply( vm ) ) {
-          if ( vm.isBlockStorage( ) ) {
-            VmInstances.stopped( vm );
-          } else {
-            VmInstances.shutDown( vm );
-          }
-        } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
-          db.rollback();
-          VmStateCallback.handleReportedTeardown( vm, runVm );
-          return;
-        } else {
-          VmInstances.doUpdate( vm ).apply( runVm );
-        }
-        Entities.commit( db );
-      } catch ( Exception ex ) {
-        LOG.error( ex );
-        Logs.extreme( ).error( ex, ex );
-        throw ex;
+      if ( isReportedStateUpdateRequired( vmStateContext ) ) {
+        updateReportedState( runVm );
       }
     } catch ( TerminatedInstanceException ex1 ) {
       LOG.trace( "Ignore state update to terminated instance: " + runVm.getInstanceId( ) );
@@ -372,12 +345,169 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     }
   }
 
-  enum UpdateTaskFunction implements NonNullFunction<VmStateContext, Optional<Runnable>> {
-    REPORTED {
-      void task( final VmStateContext context ) {
-        VmStateCallback.handleReportedState( context );
+  /**
+   * Check if a reported instance state should be persisted using the cached instance view.
+   */
+  private static boolean isReportedStateUpdateRequired( final VmStateContext vmStateContext ) {
+    final VmInfo runVm = vmStateContext.getInput( ).getRight( );
+    final VmState runVmState = VmState.Mapper.get( runVm.getStateName( ) );
+    final VmStateView vmView = vmStateContext.getLocalState( ).get( runVm.getInstanceId( ) );
+    MigrationState migrationState = MigrationState.defaultValueOf( runVm.getMigrationStateName() );
+    boolean updateRequired = false;
+    if ( vmView != null ) {
+      if ( vmView.inState( VmStateSet.DONE ) ) {
+        if ( vmView.getReason( ) == VmInstance.Reason.EXPIRED ) {
+          VmStateCallback.handleUnknown( vmStateContext );
+        } else {
+          LOG.trace( "Ignore state update to terminated instance: " + runVm.getInstanceId( ) );
+        }
+        return false;
+      } else if ( vmView.getState( ) == VmState.RUNNING && System.currentTimeMillis( ) > vmView.getExpires( )  ) {
+        updateRequired = true;
+      } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
+        updateRequired = true;
+      } else if ( !vmView.inState( VmStateSet.RUN ) && VmStateSet.RUN.contains( runVmState )
+          && ( System.currentTimeMillis( ) - vmView.getLastUpdated( ) ) > ( VmInstances.VOLATILE_STATE_TIMEOUT_SEC * 1000l ) ) {
+        updateRequired = true;
+      } else if ( vmView.inState( VmStateSet.RUN ) ) {
+        updateRequired =
+                vmView.isBundling( ) ||
+                vmView.isMigrating( ) ||
+                migrationState.isMigrating( ) ||
+                runVmState != vmView.getState( ) ||
+                !Objects.equals( vmView.getGuestState( ), runVm.getGuestStateName( ) ) ||
+                !Objects.equals( vmView.getServiceTag( ), runVm.getServiceTag( ) ) ||
+                ( System.currentTimeMillis( ) - vmView.getLastUpdated( ) ) > VmInstances.Timeout.UNTOUCHED.getMilliseconds( ) || // for running and pending states
+                vmView.getReachabilityStatus( ) != ReachabilityStatus.Passed ||
+                ( vmView.getState( ) == VmState.RUNNING && !vmView.getVolumeAttachments( ).equals(
+                    runVm.getVolumes( ).stream( )
+                        .map( TypeMappers.lookupF( AttachedVolume.class, VmStateVolumeAttachmentView.class ) )
+                        .collect( Collectors.toMap( HasName.GET_NAME, volumeView -> volumeView ) ) ) ) ||
+                ( vmView.getState( ) == VmState.RUNNING && !vmView.getNetworkInterfaceAttachments( ).equals(
+                    runVm.getSecondaryNetConfigList( ).stream( )
+                        .map( TypeMappers.lookupF( NetworkConfigType.class, VmStateNetworkInterfaceAttachmentView.class ) )
+                        .collect( Collectors.toMap( HasName.GET_NAME, niView -> niView ) ) ) )
+        ;
       }
-    },
+    }
+    return updateRequired;
+  }
+
+  private static void updateReportedState( final VmInfo runVm ) throws Exception {
+    final VmState runVmState = VmState.Mapper.get( runVm.getStateName( ) );
+    try ( final TransactionResource db = Entities.transactionFor( VmInstance.class ) ) {
+      VmInstance vm = VmInstances.lookupAny( runVm.getInstanceId() );
+      if ( VmInstances.Timeout.EXPIRED.apply( vm ) ) {
+        if ( vm.isBlockStorage( ) ) {
+          VmInstances.stopped( vm );
+        } else {
+          VmInstances.shutDown( vm );
+        }
+      } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
+        db.rollback();
+        VmStateCallback.handleReportedTeardown( vm, runVm );
+        return;
+      } else {
+        VmInstances.doUpdate( vm ).apply( runVm );
+      }
+      Entities.commit( db );
+    } catch ( Exception ex ) {
+      LOG.error( ex );
+      Logs.extreme( ).error( ex, ex );
+      throw ex;
+    }
+  }
+
+  /**
+   * Reconcile a batch of reported instance states.
+   *
+   * Instances requiring an update are loaded and updated in a single
+   * transaction. Instances that are expiring or shutting down, or all
+   * instances if the batch update fails, are updated individually.
+   */
+  private static void handleReportedStates( final List<VmStateContext> vmStateContexts, final ReconcileCycle cycle ) {
+    final Map<String,VmInfo> updates = Maps.newLinkedHashMap( );
+    for ( final VmStateContext vmStateContext : vmStateContexts ) {
+      final VmInfo runVm = vmStateContext.getInput( ).getRight( );
+      try {
+        if ( isReportedStateUpdateRequired( vmStateContext ) ) {
+          updates.put( runVm.getInstanceId( ), runVm );
+        }
+      } catch ( Exception ex ) {
+        LOG.error( ex );
+        Logs.extreme( ).error( ex, ex );
+      }
+    }
+    if ( !updates.isEmpty( ) ) {
+      cycle.updated( updates.size( ) );
+      final long start = System.currentTimeMillis( );
+      for ( final VmInfo runVm : updateReportedStates( updates ) ) {
+        try {
+          updateReportedState( runVm );
+        } catch ( TerminatedInstanceException | NoSuchElementException ex ) {
+          LOG.trace( "Ignore state update for instance " + runVm.getInstanceId( ) + ": " + ex.getMessage( ) );
+        } catch ( Exception ex ) {
+          // logged by update
+        }
+      }
+      ActionMetrics.record( MonitoredAction.VM_STATE_UPDATE_BATCH, System.currentTimeMillis( ) - start );
+    }
+  }
+
+  /**
+   * Update reported states in a single transaction.
+   *
+   * @return The reported states that must be updated individually
+   */
+  private static Collection<VmInfo> updateReportedStates( final Map<String,VmInfo> updates ) {
+    return VmStateUpdateBatch.update( updates, VmInstanceUpdater.INSTANCE );
+  }
+
+  private enum VmInstanceUpdater implements VmStateUpdateBatch.Updater<VmInstance> {
+    INSTANCE;
+
+    @SuppressWarnings( "unchecked" )
+    @Override
+    public List<VmInstance> load( final Collection<String> instanceIds ) {
+      return (List<VmInstance>) Entities.createCriteria( VmInstance.class )
+          .add( Restrictions.in( "displayName", instanceIds ) )
+          .addOrder( Order.asc( "displayName" ) )
+          .list( );
+    }
+
+    @Override
+    public String getInstanceId( final VmInstance instance ) {
+      return instance.getDisplayName( );
+    }
+
+    /**
+     * Batch updates for pending or running instances reported as pending or
+     * running, other updates can terminate, stop or restart instances.
+     */
+    @Override
+    public boolean isBatchable( final VmInstance vm, final VmInfo runVm ) {
+      return
+          !VmInstances.Timeout.EXPIRED.apply( vm ) &&
+          !vm.getRuntimeState( ).isBundling( ) &&
+          VmStateSet.RUN.apply( vm ) &&
+          VmStateSet.RUN.contains( VmState.Mapper.get( runVm.getStateName( ) ) );
+    }
+
+    @Override
+    public void update( final VmInstance vm, final VmInfo runVm ) {
+      VmInstances.doUpdate( vm ).apply( runVm );
+    }
+
+    @Override
+    public void transaction( final Runnable work ) throws Exception {
+      try ( final TransactionResource db = Entities.transactionFor( VmInstance.class ) ) {
+        work.run( );
+        Entities.commit( db );
+      }
+    }
+  }
+
+  enum UpdateTaskFunction implements NonNullFunction<VmStateContext, Optional<Runnable>> {
     UNKNOWN {
       @Override
       void task( final VmStateContext context ) {
@@ -830,6 +960,55 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     }
   }
 
+  /**
+   * Timing for reconciliation of the instances reported by a cluster.
+   */
+  private static final class ReconcileCycle {
+    private final String cluster;
+    private final int reported;
+    private final long start = System.currentTimeMillis( );
+    private final AtomicInteger pendingTasks = new AtomicInteger( 1 );
+    private final AtomicInteger updated = new AtomicInteger( );
+
+    ReconcileCycle( final String cluster, final int reported ) {
+      this.cluster = cluster;
+      this.reported = reported;
+    }
+
+    Runnable track( final Runnable task ) {
+      pendingTasks.incrementAndGet( );
+      return new Runnable( ) {
+        @Override
+        public void run( ) {
+          try {
+            task.run( );
+          } finally {
+            complete( );
+          }
+        }
+      };
+    }
+
+    void tracked( ) {
+      complete( );
+    }
+
+    void updated( final int count ) {
+      updated.addAndGet( count );
+    }
+
+    private void complete( ) {
+      if ( pendingTasks.decrementAndGet( ) == 0 ) {
+        final long time = System.currentTimeMillis( ) - start;
+        ActionMetrics.record( MonitoredAction.VM_STATE_RECONCILE_SIZE, reported );
+        ActionMetrics.record( MonitoredAction.VM_STATE_RECONCILE_UPDATES, updated.get( ) );
+        ActionMetrics.record( MonitoredAction.VM_STATE_RECONCILE_TIMING, time );
+        LOG.debug( "Reconciled " + reported + " reported instances (" + updated.get( ) + " updated) for cluster " +
+            cluster + " in " + time + "ms" );
+      }
+    }
+  }
+
   private static final class VmStateContext {
     private final Map<String,VmStateView> localState;
     private final Either<String,VmInfo> input;
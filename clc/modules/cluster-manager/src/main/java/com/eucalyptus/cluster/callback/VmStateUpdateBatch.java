@@ -0,0 +1,95 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import com.eucalyptus.records.Logs;
+import com.google.common.collect.Lists;
+import edu.ucsb.eucalyptus.cloud.VmInfo;
+
+/**
+ * Applies reported instance states to a batch of instances in one transaction.
+ *
+ * Only updates that are confined to the transaction are batched. Updates
+ * with effects outside of the transaction (e.g. terminate requests or
+ * bundle task callbacks) are deferred for individual update so they are not
+ * repeated when a failed batch falls back to individual updates.
+ *
+ * Instances are loaded in a consistent order so concurrent batches lock
+ * rows in the same order. Row locks are taken when the session is flushed
+ * on commit and held only until the commit completes.
+ */
+class VmStateUpdateBatch {
+  private static final Logger LOG = Logger.getLogger( VmStateUpdateBatch.class );
+
+  interface Updater<T> {
+    /**
+     * Load the instances with the given identifiers, ordered by identifier.
+     */
+    List<T> load( Collection<String> instanceIds );
+
+    String getInstanceId( T instance );
+
+    /**
+     * Can the reported state be applied to the instance in a batch.
+     */
+    boolean isBatchable( T instance, VmInfo runVm );
+
+    void update( T instance, VmInfo runVm );
+
+    /**
+     * Perform the given work in a transaction, committing on success.
+     */
+    void transaction( Runnable work ) throws Exception;
+  }
+
+  /**
+   * Update reported states in a single transaction.
+   *
+   * @return The reported states that must be updated individually, all states if the batch failed
+   */
+  static <T> Collection<VmInfo> update( final Map<String,VmInfo> updates,
+                                        final Updater<T> updater ) {
+    if ( updates.size( ) == 1 ) {
+      return updates.values( );
+    }
+    final List<VmInfo> deferred = Lists.newArrayList( );
+    try {
+      updater.transaction( new Runnable( ) {
+        @Override
+        public void run( ) {
+          for ( final T instance : updater.load( updates.keySet( ) ) ) {
+            final VmInfo runVm = updates.get( updater.getInstanceId( instance ) );
+            if ( runVm == null ) continue;
+            if ( updater.isBatchable( instance, runVm ) ) {
+              updater.update( instance, runVm );
+            } else {
+              deferred.add( runVm );
+            }
+          }
+        }
+      } );
+      return deferred;
+    } catch ( final Exception ex ) {
+      LOG.debug( "Batch update of " + updates.size( ) + " instances failed, updating individually: " + ex.getMessage( ) );
+      Logs.extreme( ).error( ex, ex );
+      return updates.values( );
+    }
+  }
+}
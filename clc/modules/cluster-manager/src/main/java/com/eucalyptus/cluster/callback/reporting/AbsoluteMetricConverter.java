@@ -0,0 +1,82 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback.reporting;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import com.eucalyptus.configurable.ConfigurableProperty;
+import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.PropertyChangeListener;
+import com.google.common.base.Strings;
+
+/**
+ * Conversions of absolute sensor metrics to relative (delta) metrics.
+ */
+public enum AbsoluteMetricConverter {
+
+  /**
+   * Track last values in memory, checkpointing to the database periodically.
+   */
+  Memory {
+    @Override
+    List<AbsoluteMetricQueueItem> dealWithAbsoluteMetrics( final Iterable<AbsoluteMetricQueueItem> dataBatch ) {
+      return InMemoryAbsoluteMetricConverter.dealWithAbsoluteMetrics( dataBatch );
+    }
+  },
+
+  /**
+   * Scan and update the full absolute metric history table for each batch.
+   */
+  Scan {
+    @Override
+    List<AbsoluteMetricQueueItem> dealWithAbsoluteMetrics( final Iterable<AbsoluteMetricQueueItem> dataBatch ) {
+      return FullTableScanAbsoluteMetricConverter.dealWithAbsoluteMetrics( dataBatch );
+    }
+  },
+
+  /**
+   * Look up absolute metric history for the instances and volumes in each batch.
+   */
+  Lookup {
+    @Override
+    List<AbsoluteMetricQueueItem> dealWithAbsoluteMetrics( final Iterable<AbsoluteMetricQueueItem> dataBatch ) {
+      return DefaultAbsoluteMetricConverter.dealWithAbsoluteMetrics( dataBatch );
+    }
+  },
+  ;
+
+  abstract List<AbsoluteMetricQueueItem> dealWithAbsoluteMetrics( Iterable<AbsoluteMetricQueueItem> dataBatch );
+
+  public static AbsoluteMetricConverter fromString( @Nullable final String value ) {
+    for ( final AbsoluteMetricConverter converter : values( ) ) {
+      if ( converter.name( ).equalsIgnoreCase( Strings.nullToEmpty( value ).trim( ) ) ) {
+        return converter;
+      }
+    }
+    throw new IllegalArgumentException( "Invalid absolute metric converter: " + value );
+  }
+
+  public static final class AbsoluteMetricConverterChangeListener implements PropertyChangeListener {
+    @Override
+    public void fireChange( final ConfigurableProperty t, final Object newValue ) throws ConfigurablePropertyException {
+      try {
+        fromString( String.valueOf( newValue ) );
+      } catch ( final IllegalArgumentException e ) {
+        throw new ConfigurablePropertyException( "Invalid value " + newValue + ", expected one of memory, scan, lookup" );
+      }
+    }
+  }
+}
@@ -35,8 +35,8 @@ import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.CollectionUtils;
 import com.eucalyptus.util.async.AsyncRequests;
 import com.eucalyptus.util.async.CheckedListenableFuture;
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
@@ -69,13 +69,15 @@ public class AbsoluteMetricQueue {
   public static volatile Integer ABSOLUTE_METRIC_NUM_DB_OPERATIONS_PER_TRANSACTION = 10000;
   public static volatile Integer ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH = 50;
 
-  static boolean useScanningConverter = true;
-
   static {
     ScheduledExecutorService dbCleanupService = Executors
       .newSingleThreadScheduledExecutor( Threads.threadFactory( "compute-metrics-cleanup-%d" ) );
     dbCleanupService.scheduleAtFixedRate(new DBCleanupService(), 1, 30,
       TimeUnit.MINUTES);
+    ScheduledExecutorService checkpointService = Executors
+      .newSingleThreadScheduledExecutor( Threads.threadFactory( "compute-metrics-checkpoint-%d" ) );
+    checkpointService.scheduleWithFixedDelay(new CheckpointService(), 10, 10,
+      TimeUnit.SECONDS);
   }
 
 
@@ -103,40 +105,36 @@ public class AbsoluteMetricQueue {
       try {
         List<AbsoluteMetricQueueItem> dataBatch = Lists.newArrayList();
         dataQueue.drainTo(dataBatch);
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_SIZE, dataBatch.size( ) );
+        ActionMetrics.record(MonitoredAction.CLUSTER_SIZE, dataBatch.size( ) );
         final Predicate<AbsoluteMetricQueueItem> expired =
             AbsoluteMetricQueueItem.createdBefore( System.currentTimeMillis( ) - TimeUnit.MINUTES.toMillis( 5 ) );
         int expiredQueueItems = CollectionUtils.reduce( dataBatch, 0, CollectionUtils.count( expired ) );
         if ( expiredQueueItems > 0 ) {
           LOG.error( "Dropping " + expiredQueueItems + " expired items from system metrics queue" );
         }
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_SIZE, dataBatch.size( ) );
+        ActionMetrics.record(MonitoredAction.CLUSTER_SIZE, dataBatch.size( ) );
         long t1 = System.currentTimeMillis();
-        if ( useScanningConverter ) {
-          dataBatch = FullTableScanAbsoluteMetricConverter.dealWithAbsoluteMetrics(
-              Iterables.filter( dataBatch, Predicates.not( expired ) ) );
-        } else {
-          dataBatch = DefaultAbsoluteMetricConverter.dealWithAbsoluteMetrics(
-              Iterables.filter( dataBatch, Predicates.not( expired ) ) );
-        }
+        final AbsoluteMetricConverter converter =
+            AbsoluteMetricConverter.fromString( DescribeSensorsListener.ABSOLUTE_METRIC_CONVERTER );
+        dataBatch = converter.dealWithAbsoluteMetrics( Iterables.filter( dataBatch, Predicates.not( expired ) ) );
         long t2 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_DEAL_WITH_ABSOLUTE_METRICS, t2 - t1);
+        ActionMetrics.record(MonitoredAction.CLUSTER_DEAL_WITH_ABSOLUTE_METRICS, t2 - t1);
         dataBatch = foldMetrics(dataBatch);
         long t3 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_FOLD_METRICS, t3 - t2);
+        ActionMetrics.record(MonitoredAction.CLUSTER_FOLD_METRICS, t3 - t2);
         List<PutMetricDataType> putMetricDataTypeList =convertToPutMetricDataList(dataBatch);
         long t4 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_CONVERT_TO_PUT_METRIC_DATA_LIST, t4 - t3);
+        ActionMetrics.record(MonitoredAction.CLUSTER_CONVERT_TO_PUT_METRIC_DATA_LIST, t4 - t3);
         putMetricDataTypeList = CloudWatchHelper.consolidatePutMetricDataList(putMetricDataTypeList);
         long t5 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_CONSOLIDATE_PUT_METRIC_DATA_LIST, t5 - t4);
+        ActionMetrics.record(MonitoredAction.CLUSTER_CONSOLIDATE_PUT_METRIC_DATA_LIST, t5 - t4);
         callPutMetricData(putMetricDataTypeList);
         long t6 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_LIST_METRIC_MANAGER_CALL_PUT_METRIC_DATA, t6 - t5);
+        ActionMetrics.record(MonitoredAction.CLUSTER_LIST_METRIC_MANAGER_CALL_PUT_METRIC_DATA, t6 - t5);
       } catch (Throwable ex) {
         LOG.error(ex,ex);
       } finally {
-        ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_TIMING, System.currentTimeMillis() - before);
+        ActionMetrics.record(MonitoredAction.CLUSTER_TIMING, System.currentTimeMillis() - before);
       }
     }
   };
@@ -260,6 +258,18 @@ public class AbsoluteMetricQueue {
     }
   }
 
+  private static class CheckpointService implements Runnable {
+    @Override
+    public void run() {
+      if ( !Bootstrap.isOperational( ) ) return;
+      try {
+        InMemoryAbsoluteMetricConverter.checkpoint( );
+      } catch (Throwable ex) {
+        LOG.error(ex, ex);
+      }
+    }
+  }
+
   private static class DBCleanupService implements Runnable {
     @Override
     public void run() {
@@ -46,6 +46,7 @@ import com.eucalyptus.component.Topology;
 import com.eucalyptus.component.id.ClusterController;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.PropertyChangeListeners;
 import com.eucalyptus.event.Hertz;
 import com.eucalyptus.event.EventListener;
 import com.eucalyptus.event.Listeners;
@@ -64,6 +65,14 @@ public class DescribeSensorsListener implements EventListener<Hertz> {
   @ConfigurableField(initial = "5", description = "The initial history size of metrics to be send from the cc to the clc")
   public static Integer HISTORY_SIZE = 5;
 
+  @ConfigurableField(initial = "memory", description = "Method used to convert absolute metrics from the cluster controller (memory, scan or lookup)",
+      changeListener = AbsoluteMetricConverter.AbsoluteMetricConverterChangeListener.class)
+  public static volatile String ABSOLUTE_METRIC_CONVERTER = "memory";
+
+  @ConfigurableField(initial = "60", description = "Interval in seconds between database checkpoints of in-memory absolute metric history",
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile Integer ABSOLUTE_METRIC_CHECKPOINT_INTERVAL_SECS = 60;
+
   private Integer MAX_WRITE_INTERVAL_MS = 86400000;
   private Integer SENSOR_QUERY_BATCH_SIZE = 10;
 
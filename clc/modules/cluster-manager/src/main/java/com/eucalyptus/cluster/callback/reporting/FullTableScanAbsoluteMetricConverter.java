@@ -63,19 +63,13 @@ public class FullTableScanAbsoluteMetricConverter {
               absoluteMetricHistory.getMetricName(), absoluteMetricHistory.getDimensionName(),
               absoluteMetricHistory.getDimensionValue());
           Map<TimestampAndMetricValue, MetricDatum> metricDatumMap = metricsAndOtherFields.getMetricDatumMap();
-          SequentialMetrics sequentialMetrics = calculateSequentialMetrics(absoluteMetricHistory, metricDatumMap, metricsAndOtherFields.getAccountId(), metricsAndOtherFields.getRelativeMetricName());
+          SequentialMetrics sequentialMetrics = calculateSequentialMetrics(absoluteMetricHistory.getNamespace(),
+            absoluteMetricHistory.getMetricName(), absoluteMetricHistory.getTimestamp(),
+            absoluteMetricHistory.getLastMetricValue(), metricDatumMap, metricsAndOtherFields.getAccountId(),
+            metricsAndOtherFields.getRelativeMetricName());
           absoluteMetricMap.removeEntries(absoluteMetricHistory.getNamespace(), absoluteMetricHistory.getMetricName(),
             absoluteMetricHistory.getDimensionName(), absoluteMetricHistory.getDimensionValue());
-          for (AbsoluteMetricQueueItem regularMetric: sequentialMetrics.getRegularMetrics()) {
-            if (AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(regularMetric.getNamespace())) {
-              if (AbsoluteMetricHelper.VOLUME_READ_OPS_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) { // special case
-                regularMetrics.add(AbsoluteMetricHelper.createVolumeThroughputMetric(regularMetric.getAccountId(), regularMetric.getNamespace(), regularMetric.getMetricDatum()));
-              } else if (AbsoluteMetricHelper.VOLUME_TOTAL_READ_WRITE_TIME_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) {
-                AbsoluteMetricHelper.convertVolumeTotalReadWriteTimeToVolumeIdleTime(regularMetric.getMetricDatum());
-              }
-            }
-            regularMetrics.add(regularMetric);
-          }
+          addRegularMetrics(regularMetrics, sequentialMetrics);
           absoluteMetricHistory.setTimestamp(sequentialMetrics.getUpdateTimestamp());
           absoluteMetricHistory.setLastMetricValue(sequentialMetrics.getUpdateValue());
           if (++count % AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0) {
@@ -101,18 +95,11 @@ public class FullTableScanAbsoluteMetricConverter {
       absoluteMetricHistory.setLastMetricValue(firstValue.getMetricValue());
       absoluteMetricHistory.setTimestamp(firstValue.getTimestamp());
       if (metricDataMap.size() != 0) {
-        SequentialMetrics sequentialMetrics = calculateSequentialMetrics(absoluteMetricHistory, metricDataMap,
-          metricsAndOtherFields.getAccountId(), metricsAndOtherFields.getRelativeMetricName());
-        for (AbsoluteMetricQueueItem regularMetric: sequentialMetrics.getRegularMetrics()) {
-          if (AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(regularMetric.getNamespace())) {
-            if (AbsoluteMetricHelper.VOLUME_READ_OPS_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) { // special case
-              regularMetrics.add(AbsoluteMetricHelper.createVolumeThroughputMetric(regularMetric.getAccountId(), regularMetric.getNamespace(), regularMetric.getMetricDatum()));
-            } else if (AbsoluteMetricHelper.VOLUME_TOTAL_READ_WRITE_TIME_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) {
-              AbsoluteMetricHelper.convertVolumeTotalReadWriteTimeToVolumeIdleTime(regularMetric.getMetricDatum());
-            }
-          }
-          regularMetrics.add(regularMetric);
-        }
+        SequentialMetrics sequentialMetrics = calculateSequentialMetrics(absoluteMetricHistory.getNamespace(),
+          absoluteMetricHistory.getMetricName(), absoluteMetricHistory.getTimestamp(),
+          absoluteMetricHistory.getLastMetricValue(), metricDataMap, metricsAndOtherFields.getAccountId(),
+          metricsAndOtherFields.getRelativeMetricName());
+        addRegularMetrics(regularMetrics, sequentialMetrics);
         absoluteMetricHistory.setTimestamp(sequentialMetrics.getUpdateTimestamp());
         absoluteMetricHistory.setLastMetricValue(sequentialMetrics.getUpdateValue());
       }
@@ -156,25 +143,38 @@ public class FullTableScanAbsoluteMetricConverter {
     return absoluteMetricHistory;
   }
 
-  private static SequentialMetrics calculateSequentialMetrics(AbsoluteMetricHistory absoluteMetricHistory,
-                                                              Map<TimestampAndMetricValue, MetricDatum> metricDatumMap,
-                                                              String accountId,
-                                                              String relativeMetricName) {
-    SequentialMetrics sequentialMetrics = new SequentialMetrics();
+  static void addRegularMetrics(List<AbsoluteMetricQueueItem> regularMetrics, SequentialMetrics sequentialMetrics) {
+    for (AbsoluteMetricQueueItem regularMetric: sequentialMetrics.getRegularMetrics()) {
+      if (AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(regularMetric.getNamespace())) {
+        if (AbsoluteMetricHelper.VOLUME_READ_OPS_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) { // special case
+          regularMetrics.add(AbsoluteMetricHelper.createVolumeThroughputMetric(regularMetric.getAccountId(), regularMetric.getNamespace(), regularMetric.getMetricDatum()));
+        } else if (AbsoluteMetricHelper.VOLUME_TOTAL_READ_WRITE_TIME_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) {
+          AbsoluteMetricHelper.convertVolumeTotalReadWriteTimeToVolumeIdleTime(regularMetric.getMetricDatum());
+        }
+      }
+      regularMetrics.add(regularMetric);
+    }
+  }
 
-    Date lastDate = absoluteMetricHistory.getTimestamp();
-    Double lastValue = absoluteMetricHistory.getLastMetricValue();
+  static SequentialMetrics calculateSequentialMetrics(String namespace,
+                                                      String metricName,
+                                                      Date lastDate,
+                                                      Double lastValue,
+                                                      Map<TimestampAndMetricValue, MetricDatum> metricDatumMap,
+                                                      String accountId,
+                                                      String relativeMetricName) {
+    SequentialMetrics sequentialMetrics = new SequentialMetrics();
 
     for (TimestampAndMetricValue value : metricDatumMap.keySet()) {
       double valueDiff = value.getMetricValue() - lastValue;
 
       // VolumeQueueLength is a special case.  Values in the table are set to 0 but the data set uses the values passed in.
-      boolean isVolumeQueueLengthCase = AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(absoluteMetricHistory.getNamespace()) &&
-        AbsoluteMetricHelper.VOLUME_QUEUE_LENGTH_PLACEHOLDER_ABSOLUTE_METRIC_NAME.equals(absoluteMetricHistory.getMetricName());
+      boolean isVolumeQueueLengthCase = AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(namespace) &&
+        AbsoluteMetricHelper.VOLUME_QUEUE_LENGTH_PLACEHOLDER_ABSOLUTE_METRIC_NAME.equals(metricName);
 
       // CPUUtilization is also a special case.  The value is a percent.
-      boolean isCPUUtilizationCase = AbsoluteMetricHelper.AWS_EC2_NAMESPACE.equals(absoluteMetricHistory.getNamespace()) &&
-        AbsoluteMetricHelper.CPU_UTILIZATION_MS_ABSOLUTE_METRIC_NAME.equals(absoluteMetricHistory.getMetricName());
+      boolean isCPUUtilizationCase = AbsoluteMetricHelper.AWS_EC2_NAMESPACE.equals(namespace) &&
+        AbsoluteMetricHelper.CPU_UTILIZATION_MS_ABSOLUTE_METRIC_NAME.equals(metricName);
 
 
       long timeDiff = value.getTimestamp().getTime() - lastDate.getTime();
@@ -183,7 +183,7 @@ public class FullTableScanAbsoluteMetricConverter {
         continue;
       } else if (timeDiff == 0) {
         if (Math.abs(valueDiff) > AbsoluteMetricHelper.TOLERANCE) {
-          LOG.warn("Getting different values " + value.getMetricValue() + " and " + lastValue + " for absolute metric " + absoluteMetricHistory.getMetricName() + " at the same timestamp " + lastDate + ", keeping the second value.");
+          LOG.warn("Getting different values " + value.getMetricValue() + " and " + lastValue + " for absolute metric " + metricName + " at the same timestamp " + lastDate + ", keeping the second value.");
         }
         continue;
       } else {
@@ -204,7 +204,7 @@ public class FullTableScanAbsoluteMetricConverter {
             valueDiff = 0.0;
           }
           AbsoluteMetricQueueItem regularMetric = new AbsoluteMetricQueueItem();
-          regularMetric.setNamespace(absoluteMetricHistory.getNamespace());
+          regularMetric.setNamespace(namespace);
           regularMetric.setAccountId(accountId);
           MetricDatum datum = metricDatumMap.get(value);
           regularMetric.setMetricDatum(datum);
@@ -240,7 +240,7 @@ public class FullTableScanAbsoluteMetricConverter {
     return sequentialMetrics;
   }
 
-  private static SortedAbsoluteMetrics sortAbsoluteMetrics(Iterable<AbsoluteMetricQueueItem> dataBatch) {
+  static SortedAbsoluteMetrics sortAbsoluteMetrics(Iterable<AbsoluteMetricQueueItem> dataBatch) {
     SortedAbsoluteMetrics sortedAbsoluteMetrics = new SortedAbsoluteMetrics();
     for (AbsoluteMetricQueueItem item : dataBatch) {
       String accountId = item.getAccountId();
@@ -301,7 +301,7 @@ public class FullTableScanAbsoluteMetricConverter {
   */
   public static class AbsoluteMetricMap {
 
-    private static class NamespaceMetricNameAndDimension {
+    static class NamespaceMetricNameAndDimension {
       private String namespace;
       private String metricName;
       private String dimensionName;
@@ -445,7 +445,7 @@ public class FullTableScanAbsoluteMetricConverter {
     }
   }
 
-  private static class MetricsAndOtherFields {
+  static class MetricsAndOtherFields {
     private String accountId;
     private String relativeMetricName;
     private Map<TimestampAndMetricValue, MetricDatum> metricDatumMap = Maps.newTreeMap();
@@ -531,7 +531,7 @@ public class FullTableScanAbsoluteMetricConverter {
     }
   }
 
-  private static class SortedAbsoluteMetrics {
+  static class SortedAbsoluteMetrics {
     private List<AbsoluteMetricQueueItem> regularMetrics = Lists.newArrayList();
     private AbsoluteMetricMap absoluteMetricMap = new AbsoluteMetricMap();
 
@@ -547,7 +547,7 @@ public class FullTableScanAbsoluteMetricConverter {
     }
   }
 
-  private static class SequentialMetrics {
+  static class SequentialMetrics {
     private Collection<AbsoluteMetricQueueItem> regularMetrics = Lists.newArrayList();
 
     private Date updateTimestamp;
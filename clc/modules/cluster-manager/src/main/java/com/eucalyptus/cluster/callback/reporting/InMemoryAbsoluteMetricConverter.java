@@ -0,0 +1,434 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback.reporting;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.LockMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.AbsoluteMetricMap;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.MetricsAndOtherFields;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.SequentialMetrics;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.SortedAbsoluteMetrics;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.TimestampAndMetricValue;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.util.metrics.ActionMetrics;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Absolute metric converter that holds the last value of each absolute metric in memory.
+ *
+ * Values are stored per instance or volume in primitive arrays indexed by metric so
+ * converting a batch only touches the resources in that batch. History is loaded from
+ * the database on first use, or when no data has been converted for a while (e.g. after
+ * a failover) and modified values are periodically checkpointed to the database.
+ */
+public class InMemoryAbsoluteMetricConverter {
+
+  private static final Logger LOG = Logger.getLogger( InMemoryAbsoluteMetricConverter.class );
+
+  // history older than this is also removed from the database by the cleanup service
+  private static final long EVICTION_AGE_MS = TimeUnit.MINUTES.toMillis( 30 );
+  private static final int CHECKPOINT_QUERY_BATCH_SIZE = 500;
+
+  private static final InMemoryAbsoluteMetricConverter converter = new InMemoryAbsoluteMetricConverter( );
+  private static final Object loadLock = new Object( );
+  private static volatile long lastConversion = 0L;
+  private static volatile long lastCheckpoint = 0L;
+
+  private final Map<ResourceType,ConcurrentMap<String,ResourceHistory>> histories = new EnumMap<>( ResourceType.class );
+
+  InMemoryAbsoluteMetricConverter( ) {
+    for ( final ResourceType type : ResourceType.values( ) ) {
+      histories.put( type, Maps.<String,ResourceHistory>newConcurrentMap( ) );
+    }
+  }
+
+  static List<AbsoluteMetricQueueItem> dealWithAbsoluteMetrics( final Iterable<AbsoluteMetricQueueItem> dataBatch ) {
+    if ( Iterables.isEmpty( dataBatch ) ) {
+      return Lists.newArrayList( );
+    }
+    final long now = System.currentTimeMillis( );
+    final long staleInterval = TimeUnit.MINUTES.toMillis( 2 * DescribeSensorsListener.DEFAULT_POLL_INTERVAL_MINS );
+    if ( now - lastConversion > staleInterval ) {
+      synchronized ( loadLock ) {
+        // another host may have converted metrics since we last did
+        writeCheckpoint( );
+        converter.load( );
+      }
+    }
+    lastConversion = now;
+    return converter.convert( dataBatch );
+  }
+
+  /**
+   * Checkpoint modified history to the database if the checkpoint interval has passed.
+   */
+  static void checkpoint( ) {
+    final long now = System.currentTimeMillis( );
+    final long interval = TimeUnit.SECONDS.toMillis( DescribeSensorsListener.ABSOLUTE_METRIC_CHECKPOINT_INTERVAL_SECS );
+    if ( now - lastCheckpoint >= interval ) {
+      lastCheckpoint = now;
+      converter.evict( now - EVICTION_AGE_MS );
+      synchronized ( loadLock ) {
+        writeCheckpoint( );
+      }
+    }
+  }
+
+  List<AbsoluteMetricQueueItem> convert( final Iterable<AbsoluteMetricQueueItem> dataBatch ) {
+    final SortedAbsoluteMetrics sortedAbsoluteMetrics = FullTableScanAbsoluteMetricConverter.sortAbsoluteMetrics( dataBatch );
+    final List<AbsoluteMetricQueueItem> regularMetrics = Lists.newArrayList( sortedAbsoluteMetrics.getRegularMetrics( ) );
+    final AbsoluteMetricMap absoluteMetricMap = sortedAbsoluteMetrics.getAbsoluteMetricMap( );
+    for ( final AbsoluteMetricMap.NamespaceMetricNameAndDimension key : absoluteMetricMap.keySet( ) ) {
+      final ResourceType type = ResourceType.forNamespace( key.getNamespace( ) );
+      final int index = type == null ? -1 : type.index( key.getMetricName( ) );
+      final MetricsAndOtherFields metricsAndOtherFields = absoluteMetricMap.get( key );
+      final Map<TimestampAndMetricValue, MetricDatum> metricDatumMap = metricsAndOtherFields.getMetricDatumMap( );
+      if ( index < 0 || !type.dimensionName.equals( key.getDimensionName( ) ) || metricDatumMap.isEmpty( ) ) continue;
+      final ResourceHistory history = history( type, key.getDimensionValue( ) );
+      synchronized ( history ) {
+        final Date lastDate;
+        final Double lastValue;
+        if ( history.isSet( index ) ) {
+          lastDate = new Date( history.timestamps[ index ] );
+          lastValue = history.values[ index ];
+        } else {
+          final TimestampAndMetricValue firstValue = metricDatumMap.keySet( ).iterator( ).next( );
+          metricDatumMap.remove( firstValue );
+          lastDate = firstValue.getTimestamp( );
+          lastValue = firstValue.getMetricValue( );
+        }
+        final SequentialMetrics sequentialMetrics = FullTableScanAbsoluteMetricConverter.calculateSequentialMetrics(
+            key.getNamespace( ), key.getMetricName( ), lastDate, lastValue, metricDatumMap,
+            metricsAndOtherFields.getAccountId( ), metricsAndOtherFields.getRelativeMetricName( ) );
+        FullTableScanAbsoluteMetricConverter.addRegularMetrics( regularMetrics, sequentialMetrics );
+        history.set( index, sequentialMetrics.getUpdateTimestamp( ).getTime( ), sequentialMetrics.getUpdateValue( ) );
+      }
+    }
+    return regularMetrics;
+  }
+
+  int size( ) {
+    int size = 0;
+    for ( final ConcurrentMap<String,ResourceHistory> typeHistories : histories.values( ) ) {
+      size += typeHistories.size( );
+    }
+    return size;
+  }
+
+  void load( final Iterable<AbsoluteMetricHistory> absoluteMetricHistories ) {
+    for ( final ConcurrentMap<String,ResourceHistory> typeHistories : histories.values( ) ) {
+      typeHistories.clear( );
+    }
+    for ( final AbsoluteMetricHistory absoluteMetricHistory : absoluteMetricHistories ) {
+      load( absoluteMetricHistory );
+    }
+  }
+
+  /**
+   * Remove history last updated before the given time.
+   */
+  void evict( final long before ) {
+    for ( final ConcurrentMap<String,ResourceHistory> typeHistories : histories.values( ) ) {
+      for ( final Iterator<ResourceHistory> iterator = typeHistories.values( ).iterator( ); iterator.hasNext( ); ) {
+        final ResourceHistory history = iterator.next( );
+        synchronized ( history ) {
+          if ( history.lastUpdated( ) < before ) {
+            iterator.remove( );
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Snapshot all modified history, clearing the modified flag.
+   */
+  List<ResourceHistorySnapshot> drain( ) {
+    final List<ResourceHistorySnapshot> snapshots = Lists.newArrayList( );
+    for ( final Map.Entry<ResourceType,ConcurrentMap<String,ResourceHistory>> typeEntry : histories.entrySet( ) ) {
+      for ( final Map.Entry<String,ResourceHistory> entry : typeEntry.getValue( ).entrySet( ) ) {
+        final ResourceHistory history = entry.getValue( );
+        synchronized ( history ) {
+          if ( history.dirty ) {
+            history.dirty = false;
+            snapshots.add( new ResourceHistorySnapshot(
+                typeEntry.getKey( ), entry.getKey( ), history.timestamps.clone( ), history.values.clone( ) ) );
+          }
+        }
+      }
+    }
+    return snapshots;
+  }
+
+  /**
+   * Flag history as modified following a failed checkpoint.
+   */
+  void undrain( final Collection<ResourceHistorySnapshot> snapshots ) {
+    for ( final ResourceHistorySnapshot snapshot : snapshots ) {
+      final ResourceHistory history = histories.get( snapshot.type ).get( snapshot.resourceId );
+      if ( history != null ) {
+        synchronized ( history ) {
+          history.dirty = true;
+        }
+      }
+    }
+  }
+
+  private void load( ) {
+    final long before = System.currentTimeMillis( );
+    for ( final ConcurrentMap<String,ResourceHistory> typeHistories : histories.values( ) ) {
+      typeHistories.clear( );
+    }
+    try ( final TransactionResource db = Entities.transactionFor( AbsoluteMetricHistory.class ) ) {
+      final ScrollableResults results = Entities.createCriteria( AbsoluteMetricHistory.class )
+          .setCacheMode( CacheMode.IGNORE )
+          .setReadOnly( true )
+          .scroll( ScrollMode.FORWARD_ONLY );
+      int count = 0;
+      while ( results.next( ) ) {
+        load( (AbsoluteMetricHistory) results.get( 0 ) );
+        if ( ++count % AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0 ) {
+          Entities.clearSession( AbsoluteMetricHistory.class );
+        }
+      }
+      LOG.info( "Loaded " + count + " absolute metric history entries for " + size( ) +
+          " resources in " + ( System.currentTimeMillis( ) - before ) + "ms" );
+    }
+  }
+
+  private void load( final AbsoluteMetricHistory absoluteMetricHistory ) {
+    final ResourceType type = ResourceType.forNamespace( absoluteMetricHistory.getNamespace( ) );
+    final int index = type == null ? -1 : type.index( absoluteMetricHistory.getMetricName( ) );
+    if ( index >= 0 &&
+        type.dimensionName.equals( absoluteMetricHistory.getDimensionName( ) ) &&
+        absoluteMetricHistory.getTimestamp( ) != null &&
+        absoluteMetricHistory.getLastMetricValue( ) != null ) {
+      final ResourceHistory history = history( type, absoluteMetricHistory.getDimensionValue( ) );
+      synchronized ( history ) {
+        final long timestamp = absoluteMetricHistory.getTimestamp( ).getTime( );
+        if ( !history.isSet( index ) || history.timestamps[ index ] < timestamp ) {
+          history.timestamps[ index ] = timestamp;
+          history.values[ index ] = absoluteMetricHistory.getLastMetricValue( );
+        }
+      }
+    }
+  }
+
+  private ResourceHistory history( final ResourceType type, final String resourceId ) {
+    final ConcurrentMap<String,ResourceHistory> typeHistories = histories.get( type );
+    ResourceHistory history = typeHistories.get( resourceId );
+    if ( history == null ) {
+      final ResourceHistory newHistory = new ResourceHistory( type.metricNames.size( ) );
+      history = typeHistories.putIfAbsent( resourceId, newHistory );
+      if ( history == null ) {
+        history = newHistory;
+      }
+    }
+    return history;
+  }
+
+  private static void writeCheckpoint( ) {
+    final List<ResourceHistorySnapshot> snapshots = converter.drain( );
+    if ( !snapshots.isEmpty( ) ) {
+      final long before = System.currentTimeMillis( );
+      try {
+        write( snapshots );
+        LOG.debug( "Checkpointed absolute metric history for " + snapshots.size( ) + " resources" );
+      } catch ( final RuntimeException e ) {
+        converter.undrain( snapshots );
+        LOG.error( "Error checkpointing absolute metric history", e );
+      } finally {
+        ActionMetrics.record( MonitoredAction.CLUSTER_ABSOLUTE_METRIC_CHECKPOINT, System.currentTimeMillis( ) - before );
+      }
+    }
+  }
+
+  private static void write( final List<ResourceHistorySnapshot> snapshots ) {
+    for ( final ResourceType type : ResourceType.values( ) ) {
+      final Map<String,ResourceHistorySnapshot> typeSnapshots = Maps.newHashMap( );
+      for ( final ResourceHistorySnapshot snapshot : snapshots ) {
+        if ( snapshot.type == type ) {
+          typeSnapshots.put( snapshot.resourceId, snapshot );
+        }
+      }
+      for ( final List<String> resourceIds : Iterables.partition( typeSnapshots.keySet( ), CHECKPOINT_QUERY_BATCH_SIZE ) ) {
+        try ( final TransactionResource db = Entities.transactionFor( AbsoluteMetricHistory.class ) ) {
+          @SuppressWarnings( "unchecked" )
+          final List<AbsoluteMetricHistory> absoluteMetricHistories = Entities.createCriteria( AbsoluteMetricHistory.class )
+              .add( Restrictions.eq( "namespace", type.namespace ) )
+              .add( Restrictions.eq( "dimensionName", type.dimensionName ) )
+              .add( Restrictions.in( "dimensionValue", resourceIds ) )
+              .setLockMode( LockMode.PESSIMISTIC_WRITE )
+              .list( );
+          final Set<String> existing = Sets.newHashSet( );
+          for ( final AbsoluteMetricHistory absoluteMetricHistory : absoluteMetricHistories ) {
+            final ResourceHistorySnapshot snapshot = typeSnapshots.get( absoluteMetricHistory.getDimensionValue( ) );
+            final int index = type.index( absoluteMetricHistory.getMetricName( ) );
+            if ( snapshot != null && index >= 0 && snapshot.timestamps[ index ] != 0L ) {
+              update( absoluteMetricHistory, snapshot.timestamps[ index ], snapshot.values[ index ] );
+              existing.add( snapshot.resourceId + "/" + index );
+            }
+          }
+          int count = 0;
+          for ( final String resourceId : resourceIds ) {
+            final ResourceHistorySnapshot snapshot = typeSnapshots.get( resourceId );
+            for ( int index = 0; index < snapshot.timestamps.length; index++ ) {
+              if ( snapshot.timestamps[ index ] != 0L && !existing.contains( resourceId + "/" + index ) ) {
+                final AbsoluteMetricHistory absoluteMetricHistory = new AbsoluteMetricHistory( );
+                absoluteMetricHistory.setNamespace( type.namespace );
+                absoluteMetricHistory.setMetricName( type.metricNames.get( index ) );
+                absoluteMetricHistory.setDimensionName( type.dimensionName );
+                absoluteMetricHistory.setDimensionValue( resourceId );
+                absoluteMetricHistory.setTimestamp( new Date( snapshot.timestamps[ index ] ) );
+                absoluteMetricHistory.setLastMetricValue( snapshot.values[ index ] );
+                Entities.persist( absoluteMetricHistory );
+                if ( ++count % AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0 ) {
+                  Entities.flushSession( AbsoluteMetricHistory.class );
+                  Entities.clearSession( AbsoluteMetricHistory.class );
+                }
+              }
+            }
+          }
+          db.commit( );
+        }
+      }
+    }
+  }
+
+  /**
+   * Update the history unless it has a value at least as recent, e.g. checkpointed by another host.
+   *
+   * @return True if the history was updated
+   */
+  static boolean update( final AbsoluteMetricHistory absoluteMetricHistory, final long timestamp, final double value ) {
+    final Date currentTimestamp = absoluteMetricHistory.getTimestamp( );
+    if ( currentTimestamp == null || currentTimestamp.getTime( ) < timestamp ) {
+      absoluteMetricHistory.setTimestamp( new Date( timestamp ) );
+      absoluteMetricHistory.setLastMetricValue( value );
+      return true;
+    }
+    return false;
+  }
+
+  enum ResourceType {
+    Instance(
+        AbsoluteMetricHelper.AWS_EC2_NAMESPACE,
+        AbsoluteMetricHelper.INSTANCE_ID_DIM_NAME,
+        ImmutableList.<String>builder( )
+            .addAll( AbsoluteMetricHelper.EC2_ABSOLUTE_METRICS.keySet( ) )
+            .add( AbsoluteMetricHelper.CPU_UTILIZATION_MS_ABSOLUTE_METRIC_NAME )
+            .build( ) ),
+    Volume(
+        AbsoluteMetricHelper.AWS_EBS_NAMESPACE,
+        AbsoluteMetricHelper.VOLUME_ID_DIM_NAME,
+        ImmutableList.<String>builder( )
+            .addAll( AbsoluteMetricHelper.EBS_ABSOLUTE_METRICS.keySet( ) )
+            .add( AbsoluteMetricHelper.VOLUME_QUEUE_LENGTH_PLACEHOLDER_ABSOLUTE_METRIC_NAME )
+            .build( ) ),
+    ;
+
+    private final String namespace;
+    private final String dimensionName;
+    private final ImmutableList<String> metricNames;
+
+    ResourceType( final String namespace, final String dimensionName, final ImmutableList<String> metricNames ) {
+      this.namespace = namespace;
+      this.dimensionName = dimensionName;
+      this.metricNames = metricNames;
+    }
+
+    int index( final String metricName ) {
+      return metricNames.indexOf( metricName );
+    }
+
+    static ResourceType forNamespace( final String namespace ) {
+      for ( final ResourceType type : values( ) ) {
+        if ( type.namespace.equals( namespace ) ) {
+          return type;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Last timestamp and value for each absolute metric of an instance or volume, guarded by its monitor.
+   */
+  private static final class ResourceHistory {
+    private final long[] timestamps;
+    private final double[] values;
+    private boolean dirty;
+
+    ResourceHistory( final int size ) {
+      this.timestamps = new long[ size ];
+      this.values = new double[ size ];
+    }
+
+    boolean isSet( final int index ) {
+      return timestamps[ index ] != 0L;
+    }
+
+    void set( final int index, final long timestamp, final double value ) {
+      if ( timestamps[ index ] != timestamp || Double.compare( values[ index ], value ) != 0 ) {
+        timestamps[ index ] = timestamp;
+        values[ index ] = value;
+        dirty = true;
+      }
+    }
+
+    long lastUpdated( ) {
+      long lastUpdated = 0L;
+      for ( final long timestamp : timestamps ) {
+        lastUpdated = Math.max( lastUpdated, timestamp );
+      }
+      return lastUpdated;
+    }
+  }
+
+  static final class ResourceHistorySnapshot {
+    private final ResourceType type;
+    private final String resourceId;
+    private final long[] timestamps;
+    private final double[] values;
+
+    ResourceHistorySnapshot( final ResourceType type, final String resourceId, final long[] timestamps, final double[] values ) {
+      this.type = type;
+      this.resourceId = resourceId;
+      this.timestamps = timestamps;
+      this.values = values;
+    }
+  }
+}
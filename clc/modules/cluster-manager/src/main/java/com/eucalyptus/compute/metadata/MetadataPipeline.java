@@ -64,6 +64,7 @@ package com.eucalyptus.compute.metadata;
 
 import java.net.InetSocketAddress;
 import java.util.Set;
+import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -113,6 +114,8 @@ public class MetadataPipeline extends FilteredPipeline implements ChannelUpstrea
 
   private static final String INSTANCE_ID_HEADER = "Euca-Instance-Id";
 
+  private static final Pattern METADATA_PATH_PATTERN = Pattern.compile( "/latest(/.*)*|/\\d\\d\\d\\d-\\d\\d-\\d\\d/.*|/1.0/.*" );
+
   private static Logger       LOG          = Logger.getLogger( MetadataPipeline.class );
   
   public MetadataPipeline( ) {
@@ -122,7 +125,7 @@ public class MetadataPipeline extends FilteredPipeline implements ChannelUpstrea
   @Override
   public boolean checkAccepts( HttpRequest message ) {
     return
-        message.getUri( ).matches( "/latest(/.*)*|/\\d\\d\\d\\d-\\d\\d-\\d\\d/.*|/1.0/.*" ) ||
+        METADATA_PATH_PATTERN.matcher( message.getUri( ) ).matches( ) ||
         ("/".equals( message.getUri( ) ) && "169.254.169.254".equals( message.getHeader( HttpHeaders.Names.HOST ) ) );
   }
   
@@ -20,6 +20,7 @@
 package com.eucalyptus.network.applicator;
 
 import java.util.Map;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
@@ -29,38 +30,62 @@ import com.eucalyptus.crypto.util.B64;
 import com.eucalyptus.event.ClockTick;
 import com.eucalyptus.event.EventListener;
 import com.eucalyptus.event.Listeners;
+import com.eucalyptus.network.NetworkGroups;
+import com.eucalyptus.util.Callback;
 import com.eucalyptus.util.async.AsyncRequests;
 import com.eucalyptus.util.async.UnconditionalCallback;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 import edu.ucsb.eucalyptus.msgs.BroadcastNetworkInfoResponseType;
 
 /**
+ * Broadcasts network information to clusters.
  *
+ * A broadcast is skipped for a cluster that was sent an identical network
+ * information document by its last successful broadcast unless the maximum
+ * broadcast interval has passed.
  */
 public class BroadcastingApplicator implements Applicator {
 
   private static final Logger logger = Logger.getLogger( BroadcastingApplicator.class );
 
   private static final ConcurrentMap<String,Long> activeBroadcastMap = Maps.newConcurrentMap( );
+  private static final ConcurrentMap<String,BroadcastVersion> lastBroadcastMap = Maps.newConcurrentMap( );
 
   @Override
   public void apply( final ApplicatorContext context, final ApplicatorChain chain ) throws ApplicatorException {
     final NetworkInfo netInfo = context.getNetworkInfo( );
     final String networkInfo = MarshallingApplicatorHelper.getMarshalledNetworkInfo( context );
-    final String encodedNetworkInfo =
-        new String( B64.standard.enc( networkInfo.getBytes( Charsets.UTF_8 ) ), Charsets.UTF_8 );
-
-    final BroadcastNetworkInfoCallback callback = new BroadcastNetworkInfoCallback(
-        encodedNetworkInfo,
-        netInfo.getVersion( ),
-        netInfo.getAppliedVersion( )
-    );
+    final String digest = BroadcastVersion.digest( networkInfo );
+    final long maxBroadcastIntervalMillis = TimeUnit.SECONDS.toMillis( NetworkGroups.MAX_BROADCAST_INTERVAL );
+    BroadcastNetworkInfoCallback callback = null;
     for ( final com.eucalyptus.cluster.Cluster cluster : context.getClusters( ) ) {
       final Long broadcastTime = System.currentTimeMillis( );
+      final BroadcastVersion broadcastVersion = new BroadcastVersion( digest, broadcastTime );
+      final BroadcastVersion lastBroadcastVersion = lastBroadcastMap.get( cluster.getPartition( ) );
+      if ( lastBroadcastVersion != null && lastBroadcastVersion.isCurrent( broadcastVersion, maxBroadcastIntervalMillis ) ) {
+        logger.trace( "Skipping unchanged network information broadcast for partition " + cluster.getPartition( ) );
+        continue;
+      }
+      if ( callback == null ) {
+        final String encodedNetworkInfo =
+            new String( B64.standard.enc( networkInfo.getBytes( Charsets.UTF_8 ) ), Charsets.UTF_8 );
+        callback = new BroadcastNetworkInfoCallback(
+            encodedNetworkInfo,
+            netInfo.getVersion( ),
+            netInfo.getAppliedVersion( )
+        );
+      }
       if ( null == activeBroadcastMap.putIfAbsent( cluster.getPartition( ), broadcastTime ) ) {
         try {
-          AsyncRequests.newRequest( callback.newInstance( ) ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
+          lastBroadcastMap.remove( cluster.getPartition( ) );
+          AsyncRequests.newRequest( callback.newInstance( ) ).then( new Callback.Success<BroadcastNetworkInfoResponseType>( ) {
+            @Override
+            public void fire( final BroadcastNetworkInfoResponseType response ) {
+              lastBroadcastMap.put( cluster.getPartition( ), broadcastVersion );
+            }
+          } ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
             @Override
             public void fire( ) {
               activeBroadcastMap.remove( cluster.getPartition( ), broadcastTime );
@@ -78,6 +103,35 @@ public class BroadcastingApplicator implements Applicator {
     chain.applyNext( context );
   }
 
+  /**
+   * Digest of a broadcast network information document and the time it was sent.
+   */
+  static final class BroadcastVersion {
+    private final String digest;
+    private final long timestamp;
+
+    BroadcastVersion( final String digest, final long timestamp ) {
+      this.digest = digest;
+      this.timestamp = timestamp;
+    }
+
+    static String digest( final String networkInfo ) {
+      return Hashing.sha256( ).hashString( networkInfo, StandardCharsets.UTF_8 ).toString( );
+    }
+
+    /**
+     * Is this broadcast version current for the given version.
+     *
+     * @param broadcastVersion The version that would be broadcast
+     * @param maxBroadcastIntervalMillis The maximum time an unchanged document is considered current
+     */
+    boolean isCurrent( final BroadcastVersion broadcastVersion, final long maxBroadcastIntervalMillis ) {
+      return
+          digest.equals( broadcastVersion.digest ) &&
+          ( timestamp + maxBroadcastIntervalMillis ) > broadcastVersion.timestamp;
+    }
+  }
+
   public static class BroadcastingApplicatorEventListener implements EventListener<ClockTick> {
     private final int activeBroadcastTimeoutMins = 3;
 
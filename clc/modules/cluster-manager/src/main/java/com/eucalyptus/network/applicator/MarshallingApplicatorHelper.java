@@ -20,6 +20,7 @@
 package com.eucalyptus.network.applicator;
 
 import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import org.apache.log4j.Logger;
@@ -35,6 +36,11 @@ class MarshallingApplicatorHelper {
 
   private static final TypedKey<String> MARSHALLED_INFO_KEY = TypedKey.create( "MarshalledNetworkInfo" );
 
+  /**
+   * JAXBContext is thread safe and expensive to create, marshallers are not
+   */
+  private static final AtomicReference<JAXBContext> jaxbContext = new AtomicReference<>( );
+
   static void clearMarshalledNetworkInfoCache( final ApplicatorContext context ) {
     context.removeAttribute( MARSHALLED_INFO_KEY );
   }
@@ -43,9 +49,8 @@ class MarshallingApplicatorHelper {
     String networkInfo = context.getAttribute( MARSHALLED_INFO_KEY );
     if ( networkInfo == null ) try {
       final NetworkInfo info = context.getNetworkInfo( );
-      final JAXBContext jc = JAXBContext.newInstance( "com.eucalyptus.cluster" );
       final StringWriter writer = new StringWriter( 8192 );
-      jc.createMarshaller().marshal( info, writer );
+      getJaxbContext( ).createMarshaller( ).marshal( info, writer );
 
       networkInfo = writer.toString( );
       if ( logger.isTraceEnabled( ) ) {
@@ -58,4 +63,15 @@ class MarshallingApplicatorHelper {
     return networkInfo;
   }
 
+  private static JAXBContext getJaxbContext( ) throws JAXBException {
+    JAXBContext context = jaxbContext.get( );
+    if ( context == null ) {
+      context = JAXBContext.newInstance( "com.eucalyptus.cluster" );
+      if ( !jaxbContext.compareAndSet( null, context ) ) {
+        context = jaxbContext.get( );
+      }
+    }
+    return context;
+  }
+
 }
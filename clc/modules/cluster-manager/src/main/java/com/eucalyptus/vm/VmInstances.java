@@ -609,6 +609,10 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
                       initial = "300" )
   public static Integer   VM_INITIAL_REPORT_TIMEOUT     = 300;
 
+  @ConfigurableField( description = "Maximum number of reported instance state changes to persist in a single transaction.",
+      initial = "50", changeListener = PropertyChangeListeners.IsPositiveInteger.class )
+  public static volatile Integer VM_STATE_UPDATE_BATCH_SIZE = 50;
+
   @ConfigurableField( description = "Amount of time (in minutes) before a VM which is not reported by a cluster will fail a reachability test.",
       initial = "5" )
   public static Integer INSTANCE_REACHABILITY_TIMEOUT   = 5;
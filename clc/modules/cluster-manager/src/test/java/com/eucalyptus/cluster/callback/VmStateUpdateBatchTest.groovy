@@ -0,0 +1,127 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback
+
+import edu.ucsb.eucalyptus.cloud.VmInfo
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+class VmStateUpdateBatchTest {
+
+  @Test
+  void testBatchUpdate( ) {
+    TestUpdater updater = new TestUpdater( instances: [ 'i-00000001': 'running', 'i-00000002': 'pending', 'i-00000003': 'running' ] )
+    Collection<VmInfo> individual = VmStateUpdateBatch.update( updates( 'i-00000001', 'i-00000002', 'i-00000003' ), updater )
+    assertTrue( 'Individual updates', individual.isEmpty( ) )
+    assertEquals( 'Transactions', 1, updater.transactions )
+    assertEquals( 'Committed updates', [ 'i-00000001', 'i-00000002', 'i-00000003' ], updater.committed )
+  }
+
+  @Test
+  void testSingleUpdate( ) {
+    TestUpdater updater = new TestUpdater( instances: [ 'i-00000001': 'running' ] )
+    Collection<VmInfo> individual = VmStateUpdateBatch.update( updates( 'i-00000001' ), updater )
+    assertEquals( 'Individual updates', [ 'i-00000001' ], individual*.instanceId )
+    assertEquals( 'Transactions', 0, updater.transactions )
+  }
+
+  /**
+   * Updates with effects outside the transaction are not applied in the batch.
+   */
+  @Test
+  void testDeferredUpdate( ) {
+    TestUpdater updater = new TestUpdater( instances: [ 'i-00000001': 'running', 'i-00000002': 'stopped', 'i-00000003': 'running' ] )
+    Collection<VmInfo> individual = VmStateUpdateBatch.update( updates( 'i-00000001', 'i-00000002', 'i-00000003' ), updater )
+    assertEquals( 'Individual updates', [ 'i-00000002' ], individual*.instanceId )
+    assertEquals( 'Committed updates', [ 'i-00000001', 'i-00000003' ], updater.committed )
+    assertEquals( 'Batch update attempts', [ 'i-00000001', 'i-00000003' ], updater.attempted )
+  }
+
+  /**
+   * All updates are individual after a batch failure and nothing from the
+   * failed batch is committed.
+   */
+  @Test
+  void testBatchFailureFallback( ) {
+    TestUpdater updater = new TestUpdater( instances: [ 'i-00000001': 'running', 'i-00000002': 'running', 'i-00000003': 'stopped' ], failOn: 'i-00000002' )
+    Collection<VmInfo> individual = VmStateUpdateBatch.update( updates( 'i-00000001', 'i-00000002', 'i-00000003' ), updater )
+    assertEquals( 'Individual updates', [ 'i-00000001', 'i-00000002', 'i-00000003' ], individual*.instanceId )
+    assertEquals( 'Transactions', 1, updater.transactions )
+    assertTrue( 'Committed updates', updater.committed.isEmpty( ) )
+  }
+
+  @Test
+  void testMissingInstance( ) {
+    TestUpdater updater = new TestUpdater( instances: [ 'i-00000001': 'running', 'i-00000003': 'running' ] )
+    Collection<VmInfo> individual = VmStateUpdateBatch.update( updates( 'i-00000001', 'i-00000002', 'i-00000003' ), updater )
+    assertTrue( 'Individual updates', individual.isEmpty( ) )
+    assertEquals( 'Committed updates', [ 'i-00000001', 'i-00000003' ], updater.committed )
+  }
+
+  private static Map<String,VmInfo> updates( String... instanceIds ) {
+    instanceIds.collectEntries( new LinkedHashMap<String,VmInfo>( ) ) { String instanceId ->
+      [ instanceId, new VmInfo( instanceId: instanceId, stateName: 'Extant' ) ]
+    }
+  }
+
+  /**
+   * Instances are represented by identifier and state, only pending or
+   * running instances are batchable.
+   */
+  private static class TestUpdater implements VmStateUpdateBatch.Updater<Map.Entry<String,String>> {
+    Map<String,String> instances
+    String failOn
+    int transactions = 0
+    List<String> attempted = [ ]
+    List<String> committed = [ ]
+    private List<String> pending = [ ]
+
+    @Override
+    List<Map.Entry<String,String>> load( final Collection<String> instanceIds ) {
+      new TreeMap<String,String>( instances.findAll { key, value -> key in instanceIds } ).entrySet( ).toList( )
+    }
+
+    @Override
+    String getInstanceId( final Map.Entry<String,String> instance ) {
+      instance.key
+    }
+
+    @Override
+    boolean isBatchable( final Map.Entry<String,String> instance, final VmInfo runVm ) {
+      instance.value in [ 'pending', 'running' ]
+    }
+
+    @Override
+    void update( final Map.Entry<String,String> instance, final VmInfo runVm ) {
+      attempted << instance.key
+      if ( instance.key == failOn ) throw new IllegalStateException( 'update failed' )
+      pending << instance.key
+    }
+
+    @Override
+    void transaction( final Runnable work ) throws Exception {
+      transactions++
+      pending.clear( )
+      work.run( )
+      committed.addAll( pending )
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback.reporting
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.TimeUnit
+
+import com.eucalyptus.cloudwatch.common.msgs.Dimension
+import com.eucalyptus.cloudwatch.common.msgs.Dimensions
+import com.eucalyptus.cloudwatch.common.msgs.MetricDatum
+import org.junit.Test
+
+/**
+ * Tests for in-memory conversion of absolute metrics.
+ */
+class InMemoryAbsoluteMetricConverterTest {
+
+  private static final int INSTANCES = 10000
+  private static final List<String> INSTANCE_METRICS = [
+      'DiskReadOpsAbsolute', 'DiskWriteOpsAbsolute', 'DiskReadBytesAbsolute', 'DiskWriteBytesAbsolute',
+      'NetworkInAbsolute', 'NetworkOutAbsolute', 'CPUUtilizationMSAbsolute',
+      'StatusCheckFailed', 'StatusCheckFailed_Instance', 'StatusCheckFailed_System', 'MetadataRequests'
+  ]
+  private static final List<String> VOLUME_METRICS = [
+      'VolumeReadOpsAbsolute', 'VolumeWriteOpsAbsolute', 'VolumeReadBytesAbsolute', 'VolumeWriteBytesAbsolute',
+      'VolumeConsumedReadWriteOpsAbsolute', 'VolumeTotalReadTimeAbsolute', 'VolumeTotalWriteTimeAbsolute',
+      'VolumeTotalReadWriteTimeAbsolute', 'VolumeQueueLength'
+  ]
+
+  @Test
+  void testDelta( ) {
+    InMemoryAbsoluteMetricConverter converter = new InMemoryAbsoluteMetricConverter( )
+    long time = System.currentTimeMillis( )
+    assertEquals( 'First point results', 0,
+        converter.convert( [ item( 'AWS/EC2', 'InstanceId', 'i-00000001', 'NetworkInAbsolute', time, 1000d ) ] ).size( ) )
+    List<AbsoluteMetricQueueItem> results = converter.convert( [
+        item( 'AWS/EC2', 'InstanceId', 'i-00000001', 'NetworkInAbsolute', time + 60000, 4000d ),
+        item( 'AWS/EC2', 'InstanceId', 'i-00000001', 'NetworkInAbsolute', time + 120000, 5000d )
+    ] )
+    assertEquals( 'Results', 2, results.size( ) )
+    assertEquals( 'Metric name', 'NetworkIn', results[0].metricDatum.metricName )
+    assertEquals( 'Sum', 3000d, results[0].metricDatum.statisticValues.sum, 0d )
+    assertEquals( 'Sample count', 1d, results[0].metricDatum.statisticValues.sampleCount, 0d )
+    assertEquals( 'Sum', 1000d, results[1].metricDatum.statisticValues.sum, 0d )
+
+    assertEquals( 'Reset results', 0,
+        converter.convert( [ item( 'AWS/EC2', 'InstanceId', 'i-00000001', 'NetworkInAbsolute', time + 180000, 10d ) ] ).size( ) )
+    assertEquals( 'Results after reset', 1,
+        converter.convert( [ item( 'AWS/EC2', 'InstanceId', 'i-00000001', 'NetworkInAbsolute', time + 240000, 20d ) ] ).size( ) )
+  }
+
+  @Test
+  void testLoadDrainEvict( ) {
+    InMemoryAbsoluteMetricConverter converter = new InMemoryAbsoluteMetricConverter( )
+    long time = System.currentTimeMillis( )
+    converter.load( [ new AbsoluteMetricHistory(
+        namespace: 'AWS/EBS',
+        metricName: 'VolumeWriteOpsAbsolute',
+        dimensionName: 'VolumeId',
+        dimensionValue: 'vol-00000001',
+        timestamp: new Date( time ),
+        lastMetricValue: 100d
+    ) ] )
+    assertEquals( 'Loaded resources', 1, converter.size( ) )
+    assertEquals( 'Modified after load', 0, converter.drain( ).size( ) )
+
+    List<AbsoluteMetricQueueItem> results = converter.convert( [
+        item( 'AWS/EBS', 'VolumeId', 'vol-00000001', 'VolumeWriteOpsAbsolute', time + 60000, 160d ),
+        item( 'AWS/EBS', 'VolumeId', 'vol-00000002', 'VolumeWriteOpsAbsolute', time + 60000, 10d )
+    ] )
+    assertEquals( 'Results', 1, results.size( ) )
+    assertEquals( 'Sum', 60d, results[0].metricDatum.statisticValues.sum, 0d )
+    assertEquals( 'Modified', 2, converter.drain( ).size( ) )
+    assertEquals( 'Modified after drain', 0, converter.drain( ).size( ) )
+
+    converter.evict( time + 60001 )
+    assertEquals( 'Resources after evict', 0, converter.size( ) )
+  }
+
+  @Test
+  void testCheckpointUpdate( ) {
+    long time = System.currentTimeMillis( )
+    AbsoluteMetricHistory history = new AbsoluteMetricHistory( timestamp: new Date( time ), lastMetricValue: 100d )
+
+    assertFalse( 'Updated with older value', InMemoryAbsoluteMetricConverter.update( history, time - 60000, 50d ) )
+    assertEquals( 'Timestamp after older value', new Date( time ), history.timestamp )
+    assertEquals( 'Value after older value', 100d, history.lastMetricValue, 0d )
+
+    assertFalse( 'Updated with same timestamp', InMemoryAbsoluteMetricConverter.update( history, time, 50d ) )
+    assertEquals( 'Value after same timestamp', 100d, history.lastMetricValue, 0d )
+
+    assertTrue( 'Updated with newer value', InMemoryAbsoluteMetricConverter.update( history, time + 60000, 160d ) )
+    assertEquals( 'Timestamp after newer value', new Date( time + 60000 ), history.timestamp )
+    assertEquals( 'Value after newer value', 160d, history.lastMetricValue, 0d )
+
+    AbsoluteMetricHistory emptyHistory = new AbsoluteMetricHistory( )
+    assertTrue( 'Updated without timestamp', InMemoryAbsoluteMetricConverter.update( emptyHistory, time, 10d ) )
+    assertEquals( 'Value without timestamp', 10d, emptyHistory.lastMetricValue, 0d )
+  }
+
+  /**
+   * Converts batches for 10,000 instances each reporting 20 metrics, 16 of
+   * which are absolute (7 for the instance and 9 for an attached volume.)
+   */
+  @Test
+  void testConversionRate( ) {
+    InMemoryAbsoluteMetricConverter converter = new InMemoryAbsoluteMetricConverter( )
+    long time = System.currentTimeMillis( ) - TimeUnit.MINUTES.toMillis( 10 )
+    assertEquals( 'Initial results', 4 * INSTANCES, converter.convert( batch( time, 0 ) ).size( ) )
+    assertEquals( 'Resources', 2 * INSTANCES, converter.size( ) )
+
+    for ( int cycle = 1; cycle <= 5; cycle++ ) {
+      List<AbsoluteMetricQueueItem> results = converter.convert( batch( time + TimeUnit.MINUTES.toMillis( cycle ), cycle ) )
+      // 16 deltas, 4 regular metrics and a throughput metric for each volume
+      assertEquals( 'Results', 21 * INSTANCES, results.size( ) )
+    }
+    assertEquals( 'Resources after conversion', 2 * INSTANCES, converter.size( ) )
+  }
+
+  private static List<AbsoluteMetricQueueItem> batch( long time, int cycle ) {
+    List<AbsoluteMetricQueueItem> batch = new ArrayList<>( 20 * INSTANCES )
+    for ( int i = 0; i < INSTANCES; i++ ) {
+      String instanceId = String.format( 'i-%08x', i )
+      String volumeId = String.format( 'vol-%08x', i )
+      for ( String metric : INSTANCE_METRICS ) {
+        batch << item( 'AWS/EC2', 'InstanceId', instanceId, metric, time, 1000d * cycle )
+      }
+      for ( String metric : VOLUME_METRICS ) {
+        batch << item( 'AWS/EBS', 'VolumeId', volumeId, metric, time, 1000d * cycle )
+      }
+    }
+    batch
+  }
+
+  private static AbsoluteMetricQueueItem item( String namespace,
+                                               String dimensionName,
+                                               String dimensionValue,
+                                               String metricName,
+                                               long time,
+                                               double value ) {
+    new AbsoluteMetricQueueItem(
+        accountId: '000000000000',
+        namespace: namespace,
+        metricDatum: new MetricDatum(
+            metricName: metricName,
+            timestamp: new Date( time ),
+            unit: 'None',
+            value: value,
+            dimensions: new Dimensions( member: [ new Dimension( name: dimensionName, value: dimensionValue ) ] as ArrayList )
+        )
+    )
+  }
+}
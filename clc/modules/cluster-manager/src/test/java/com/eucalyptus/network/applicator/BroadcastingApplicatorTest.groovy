@@ -0,0 +1,114 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.network.applicator
+
+import com.eucalyptus.cluster.NICluster
+import com.eucalyptus.cluster.NIClusters
+import com.eucalyptus.cluster.NIConfiguration
+import com.eucalyptus.cluster.NINode
+import com.eucalyptus.cluster.NINodes
+import com.eucalyptus.cluster.NIProperty
+import com.eucalyptus.cluster.NetworkInfo
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertNotEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+class BroadcastingApplicatorTest {
+
+  private static final long MAX_INTERVAL = TimeUnit.SECONDS.toMillis( 60 )
+
+  @Test
+  void testDigestUnchanged( ) {
+    assertEquals( 'Digest for identical information', digest( info( ) ), digest( info( ) ) )
+  }
+
+  /**
+   * Changes that do not alter the version computed from the network view
+   * must still be broadcast.
+   */
+  @Test
+  void testDigestDetectsChanges( ) {
+    String baseline = digest( info( ) )
+    assertNotEquals( 'Digest with added node', baseline, digest( info( nodes: [ 'node1', 'node2' ] ) ) )
+    assertNotEquals( 'Digest with changed CLC address', baseline, digest( info( clcIp: '1.1.1.2' ) ) )
+    assertNotEquals( 'Digest with changed nameservers', baseline, digest( info( dnsServers: [ '1.2.3.4', '1.2.3.5' ] ) ) )
+    assertNotEquals( 'Digest with additional (disabled) cluster', baseline, digest( info( clusters: [ 'cluster1', 'cluster2' ] ) ) )
+  }
+
+  @Test
+  void testUnchangedBroadcastSkipped( ) {
+    long now = System.currentTimeMillis( )
+    String digest = digest( info( ) )
+    BroadcastingApplicator.BroadcastVersion last = new BroadcastingApplicator.BroadcastVersion( digest, now )
+    assertTrue( 'Current within interval',
+        last.isCurrent( new BroadcastingApplicator.BroadcastVersion( digest, now + MAX_INTERVAL - 1 ), MAX_INTERVAL ) )
+    assertFalse( 'Not current when changed',
+        last.isCurrent( new BroadcastingApplicator.BroadcastVersion( digest( info( nodes: [ ] ) ), now + 1 ), MAX_INTERVAL ) )
+  }
+
+  @Test
+  void testForcedRebroadcast( ) {
+    long now = System.currentTimeMillis( )
+    String digest = digest( info( ) )
+    BroadcastingApplicator.BroadcastVersion last = new BroadcastingApplicator.BroadcastVersion( digest, now )
+    assertFalse( 'Rebroadcast after max interval',
+        last.isCurrent( new BroadcastingApplicator.BroadcastVersion( digest, now + MAX_INTERVAL ), MAX_INTERVAL ) )
+    assertFalse( 'Always broadcast when max interval is zero',
+        last.isCurrent( new BroadcastingApplicator.BroadcastVersion( digest, now ), 0 ) )
+  }
+
+  private static String digest( final NetworkInfo info ) {
+    BroadcastingApplicator.BroadcastVersion.digest(
+        MarshallingApplicatorHelper.getMarshalledNetworkInfo( new ApplicatorContext( [ ], info ) ) )
+  }
+
+  private static NetworkInfo info( final Map<String,Object> overrides = [:] ) {
+    List<String> nodes = ( List<String> ) overrides.get( 'nodes', [ 'node1' ] )
+    List<String> clusters = ( List<String> ) overrides.get( 'clusters', [ 'cluster1' ] )
+    new NetworkInfo(
+        version: '0000000a', // unchanged, as the view fingerprint does not cover these properties
+        configuration: new NIConfiguration(
+            properties: [
+                new NIProperty( name: 'mode', values: [ 'EDGE' ] ),
+                new NIProperty( name: 'enabledCLCIp', values: [ ( String ) overrides.get( 'clcIp', '1.1.1.1' ) ] ),
+                new NIProperty( name: 'instanceDNSServers', values: ( List<String> ) overrides.get( 'dnsServers', [ '1.2.3.4' ] ) ),
+            ],
+            clusters: new NIClusters(
+                name: 'clusters',
+                clusters: clusters.collect { String cluster ->
+                  new NICluster(
+                      name: cluster,
+                      properties: [
+                          new NIProperty( name: 'enabledCCIp', values: [ '6.6.6.6' ] ),
+                      ],
+                      nodes: new NINodes( name: 'nodes', nodes: nodes.collect { String node ->
+                        new NINode( name: node )
+                      } )
+                  )
+                }
+            )
+        )
+    )
+  }
+}
@@ -81,6 +81,8 @@ public class DescribeVolumesType extends BlockVolumeMessage {
   
   @HttpParameterMapping (parameter = "VolumeId")
   ArrayList<String> volumeSet = new ArrayList<String>();
+  Integer maxResults
+  String nextToken
   @HttpParameterMapping (parameter = "Filter")
   @HttpEmbedded( multiple = true )
   ArrayList<Filter> filterSet = new ArrayList<Filter>();
@@ -88,6 +90,7 @@ public class DescribeVolumesType extends BlockVolumeMessage {
 public class DescribeVolumesResponseType extends BlockVolumeMessage {
   
   ArrayList<Volume> volumeSet = new ArrayList<Volume>();
+  String nextToken
 }
 
 public class AttachVolumeType extends BlockVolumeMessage {
@@ -146,6 +149,8 @@ public class DescribeSnapshotsType extends BlockSnapshotMessage {
   ArrayList<String> ownersSet = new ArrayList<String>();
   @HttpParameterMapping (parameter = "RestorableBy")
   ArrayList<String> restorableBySet = new ArrayList<String>();
+  Integer maxResults
+  String nextToken
   @HttpParameterMapping (parameter = "Filter")
   @HttpEmbedded( multiple = true )
   ArrayList<Filter> filterSet = new ArrayList<Filter>();
@@ -153,6 +158,7 @@ public class DescribeSnapshotsType extends BlockSnapshotMessage {
 public class DescribeSnapshotsResponseType extends BlockSnapshotMessage {
   
   ArrayList<Snapshot> snapshotSet = new ArrayList<Snapshot>();
+  String nextToken
 }
 
 public class AttachedVolume extends EucalyptusData implements Comparable<AttachedVolume> {
@@ -66,9 +66,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 import javax.persistence.EntityTransaction;
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 
 import com.eucalyptus.context.Context;
 import com.eucalyptus.context.Contexts;
@@ -86,6 +94,7 @@ import com.eucalyptus.compute.common.internal.tags.FilterSupport;
 import com.eucalyptus.auth.principal.OwnerFullName;
 import com.eucalyptus.util.RestrictedTypes.QuantityMetricFunction;
 import com.google.common.base.Function;
+import com.google.common.collect.Sets;
 
 public class Snapshots {
   private static Logger           LOG                     = Logger.getLogger( Snapshots.class );
@@ -107,6 +116,58 @@ public class Snapshots {
     };
   }
 
+  /**
+   * Criterion for snapshots owned by and restorable by the given accounts.
+   *
+   * This is the persistence equivalent of the owner and restorable by
+   * predicates so they can be applied in a query.
+   *
+   * @param ownerAccountNumbers The owning accounts, empty for any owner
+   * @param restorableSet The restorable by accounts, "self" or "all", empty for any
+   * @param callerAccountNumber The account number for "self"
+   * @return The criterion
+   */
+  public static Criterion restrictedTo( final Collection<String> ownerAccountNumbers,
+                                        final Collection<String> restorableSet,
+                                        final String callerAccountNumber ) {
+    final Conjunction conjunction = Restrictions.conjunction( );
+    if ( !ownerAccountNumbers.isEmpty( ) ) {
+      conjunction.add( Restrictions.in( "ownerAccountNumber", ownerAccountNumbers ) );
+    }
+    final boolean restorableAll = restorableSet.contains( "all" );
+    final Set<String> restorableAccountNumbers = restorableAccountNumbers( restorableSet, callerAccountNumber );
+    if ( restorableAll || !restorableAccountNumbers.isEmpty( ) ) {
+      final Disjunction disjunction = Restrictions.disjunction( );
+      if ( restorableAll ) {
+        disjunction.add( Restrictions.eq( "snapshotPublic", Boolean.TRUE ) );
+      }
+      if ( !restorableAccountNumbers.isEmpty( ) ) {
+        disjunction.add( Subqueries.propertyIn(
+            "id",
+            DetachedCriteria.forClass( Snapshot.class, "permitted" )
+                .createAlias( "permitted.permissions", "permission" )
+                .add( Restrictions.in( "permission.elements", restorableAccountNumbers ) )
+                .setProjection( Projections.property( "permitted.id" ) )
+        ) );
+      }
+      conjunction.add( disjunction );
+    }
+    return conjunction;
+  }
+
+  /**
+   * The account numbers for restorable by values, excluding "all".
+   */
+  static Set<String> restorableAccountNumbers( final Collection<String> restorableSet,
+                                               final String callerAccountNumber ) {
+    final Set<String> restorableAccountNumbers = Sets.newTreeSet( restorableSet );
+    restorableAccountNumbers.remove( "all" );
+    if ( restorableAccountNumbers.remove( SELF ) ) {
+      restorableAccountNumbers.add( callerAccountNumber );
+    }
+    return restorableAccountNumbers;
+  }
+
   @QuantityMetricFunction( SnapshotMetadata.class )
   public enum CountSnapshots implements Function<OwnerFullName, Long> {
     INSTANCE;
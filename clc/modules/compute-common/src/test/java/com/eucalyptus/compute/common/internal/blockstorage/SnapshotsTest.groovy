@@ -0,0 +1,63 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.compute.common.internal.blockstorage
+
+import org.hibernate.criterion.Criterion
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+class SnapshotsTest {
+
+  @Test
+  void testUnrestricted( ) {
+    assertEquals( 'Criterion', '()', String.valueOf( Snapshots.restrictedTo( [ ], [ ], '000000000001' ) ) )
+  }
+
+  @Test
+  void testRestrictedToOwners( ) {
+    Criterion criterion = Snapshots.restrictedTo( [ '000000000001', '000000000002' ], [ ], '000000000001' )
+    assertEquals( 'Criterion', '(ownerAccountNumber in (000000000001, 000000000002))', String.valueOf( criterion ) )
+  }
+
+  @Test
+  void testRestorableByAll( ) {
+    Criterion criterion = Snapshots.restrictedTo( [ ], [ 'all' ], '000000000001' )
+    assertEquals( 'Criterion', '((snapshotPublic=true))', String.valueOf( criterion ) )
+  }
+
+  @Test
+  void testRestorableByAccounts( ) {
+    List<String> restorableBy = [ 'self', '000000000002' ]
+    String criterion = String.valueOf( Snapshots.restrictedTo( [ '000000000003' ], restorableBy, '000000000001' ) )
+    assertTrue( 'Owner and restorable by restrictions', criterion.startsWith( '(ownerAccountNumber in (000000000003) and (' ) )
+    assertFalse( 'Public restriction', criterion.contains( 'snapshotPublic' ) )
+    assertEquals( 'Restorable by unmodified', [ 'self', '000000000002' ], restorableBy )
+  }
+
+  @Test
+  void testRestorableAccountNumbers( ) {
+    assertEquals( 'Self', [ '000000000001' ] as Set, Snapshots.restorableAccountNumbers( [ 'self' ], '000000000001' ) )
+    assertEquals( 'Accounts', [ '000000000001', '000000000002' ] as Set,
+        Snapshots.restorableAccountNumbers( [ '000000000002', 'self', 'all' ], '000000000001' ) )
+    assertTrue( 'All', Snapshots.restorableAccountNumbers( [ 'all' ], '000000000001' ).isEmpty( ) )
+  }
+}
@@ -445,6 +445,8 @@ public class ComputeService {
     final Multimap<String, RunningInstancesItemType> instanceMap = TreeMultimap.create();
     final Map<String, ReservationInfoType> reservations = Maps.newHashMap();
     final Collection<String> identifiers = normalizeInstanceIdentifiers( msg.getInstancesSet() );
+    final boolean paged = DescribePages.isPaged( msg.getMaxResults( ), msg.getNextToken( ) );
+    DescribePages.validate( "instancesSet", identifiers, msg.getMaxResults( ), msg.getNextToken( ) );
     final Filter filter = Filters.generateFor( msg.getFilterSet(), VmInstance.class )
         .withOptionalInternalFilter( "instance-id", identifiers )
         .generate();
@@ -458,11 +460,28 @@ public class ComputeService {
         ? null
         : ctx.getUserFullName( ).asAccountFullName( );
     try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( VmInstance.class ) ) {
-      final List<VmInstance> instances = VmInstances.list(
-          ownerFullName,
-          persistenceFilter.asCriterionWithConjunction( Restrictions.not( VmInstance.criterion( VmInstance.VmState.BURIED ) ) ),
-          persistenceFilter.getAliases( ),
-          Predicates.and( new TrackingPredicate<VmInstance>( identifiers ), requestedAndAccessible ) );
+      final Criterion criterion =
+          persistenceFilter.asCriterionWithConjunction( Restrictions.not( VmInstance.criterion( VmInstance.VmState.BURIED ) ) );
+      final List<VmInstance> instances;
+      if ( paged ) {
+        final DescribePages.Page<VmInstance> page = DescribePages.query(
+            VmInstance.named( ownerFullName, null ),
+            true,
+            criterion,
+            persistenceFilter.getAliases( ),
+            msg.getNextToken( ),
+            msg.getMaxResults( ) );
+        instances = Lists.newArrayList( Iterables.filter(
+            page.getItems( ),
+            Predicates.<VmInstance>and( RestrictedTypes.filterByOwner( ownerFullName ), requestedAndAccessible ) ) );
+        reply.setNextToken( page.getNextToken( ) );
+      } else {
+        instances = VmInstances.list(
+            ownerFullName,
+            criterion,
+            persistenceFilter.getAliases( ),
+            Predicates.and( new TrackingPredicate<VmInstance>( identifiers ), requestedAndAccessible ) );
+      }
       errorIfNotFound( "InvalidInstanceID.NotFound", "instance ID", identifiers );
       final Map<String,List<Tag>> tagsMap = TagSupport.forResourceClass( VmInstance.class )
           .getResourceTagMap( AccountFullName.getInstance( ctx.getAccountNumber() ),
@@ -767,6 +786,8 @@ public class ComputeService {
 
     final boolean showAll = request.getVolumeSet( ).remove( "verbose" );
     final Set<String> volumeIds = Sets.newLinkedHashSet( normalizeVolumeIdentifiers( request.getVolumeSet( ) ) );
+    final boolean paged = DescribePages.isPaged( request.getMaxResults( ), request.getNextToken( ) );
+    DescribePages.validate( "volumeIds", volumeIds, request.getMaxResults( ), request.getNextToken( ) );
     final AccountFullName ownerFullName = ( ctx.isAdministrator( ) && ( showAll || !volumeIds.isEmpty( ) ) ) ?
         null :
         ctx.getUserFullName( ).asAccountFullName( );
@@ -788,11 +809,29 @@ public class ComputeService {
       public Pair<Set<String>,ArrayList<com.eucalyptus.compute.common.Volume>> apply( final Set<String> input ) {
         final Set<String> allowedVolumeIds = Sets.newHashSet();
         final ArrayList<com.eucalyptus.compute.common.Volume> replyVolumes = Lists.newArrayList();
-        final List<Volume> volumes = Entities.query(
-            Volume.named( ownerFullName, null ),
-            true,
-            persistenceFilter.asCriterion( ),
-            persistenceFilter.getAliases( ) );
+        final List<Volume> volumes;
+        if ( paged ) {
+          final DescribePages.Page<Volume> page;
+          try {
+            page = DescribePages.query(
+                Volume.named( ownerFullName, null ),
+                true,
+                persistenceFilter.asCriterion( ),
+                persistenceFilter.getAliases( ),
+                request.getNextToken( ),
+                request.getMaxResults( ) );
+          } catch ( final ComputeServiceClientException e ) {
+            throw Exceptions.toUndeclared( e );
+          }
+          volumes = page.getItems( );
+          reply.setNextToken( page.getNextToken( ) );
+        } else {
+          volumes = Entities.query(
+              Volume.named( ownerFullName, null ),
+              true,
+              persistenceFilter.asCriterion( ),
+              persistenceFilter.getAliases( ) );
+        }
         final Iterable<Volume> filteredVolumes = Iterables.filter(
             volumes,
             Predicates.and( new TrackingPredicate<Volume>( volumeIds ), requestedAndAccessible ) );
@@ -803,7 +842,7 @@ public class ComputeService {
         if ( Iterables.isEmpty( filteredVolumes ) ) {
           attachmentCriterion = Restrictions.disjunction( );
           attachmentAliases = Collections.emptyMap( );
-        } else if ( Iterables.size( Iterables.limit( filteredVolumes, 51 ) ) < 50 ) {  // small # load by id
+        } else if ( paged || Iterables.size( Iterables.limit( filteredVolumes, 51 ) ) < 50 ) {  // page or small # load by id
           attachmentCriterion = Restrictions.in(
               "volumeId",
               Sets.newHashSet( Iterables.transform( filteredVolumes, RestrictedTypes.toDisplayName( ) ) ) );
@@ -927,11 +966,28 @@ public class ComputeService {
     if ( ownersSet.remove( Snapshots.SELF ) ) {
       ownersSet.add( requestAccountId );
     }
+    final boolean paged = DescribePages.isPaged( request.getMaxResults( ), request.getNextToken( ) );
+    DescribePages.validate( "snapshotIds", snapshotIds, request.getMaxResults( ), request.getNextToken( ) );
     final Filter filter = Filters.generate( request.getFilterSet(), Snapshot.class );
     final Filter persistenceFilter = getPersistenceFilter( Snapshot.class, snapshotIds, "snapshot-id", filter );
+    final Criterion criterion = persistenceFilter.asCriterionWithConjunction(
+        Snapshots.restrictedTo( ownersSet, request.getRestorableBySet( ), requestAccountId ) );
     try ( final TransactionResource tx = Entities.readOnlyDistinctTransactionFor( Snapshot.class ) ){
-      final List<Snapshot> unfilteredSnapshots =
-          Entities.query( Snapshot.named( null, null ), true, persistenceFilter.asCriterion(), persistenceFilter.getAliases() );
+      final List<Snapshot> unfilteredSnapshots;
+      if ( paged ) {
+        final DescribePages.Page<Snapshot> page = DescribePages.query(
+            Snapshot.named( null, null ),
+            true,
+            criterion,
+            persistenceFilter.getAliases( ),
+            request.getNextToken( ),
+            request.getMaxResults( ) );
+        unfilteredSnapshots = page.getItems( );
+        reply.setNextToken( page.getNextToken( ) );
+      } else {
+        unfilteredSnapshots =
+            Entities.query( Snapshot.named( null, null ), true, criterion, persistenceFilter.getAliases() );
+      }
       final Predicate<? super Snapshot> requestedAndAccessible = CloudMetadatas.filteringFor( Snapshot.class )
           .byId( snapshotIds )
           .byOwningAccount( request.getOwnersSet( ) )
@@ -0,0 +1,210 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.compute.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Example;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.entities.Entities;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Keyset paging for describe operations that support MaxResults / NextToken.
+ *
+ * <P>Pages are ordered by natural identifier and the next token is the
+ * natural identifier of the last row of the previous page, so each page is
+ * a bounded index range query regardless of how many items precede it.</P>
+ *
+ * <P>Rows are filtered in memory after the page query (e.g. for
+ * permissions) so a page can contain fewer than the requested number of
+ * items while still having a next token.</P>
+ */
+public class DescribePages {
+
+  static final int MIN_PAGE_SIZE = 5;
+  static final int MAX_PAGE_SIZE = 1000;
+
+  /**
+   * Is paging requested for a describe.
+   */
+  static boolean isPaged( @Nullable final Integer maxResults,
+                          @Nullable final String nextToken ) {
+    return maxResults != null || nextToken != null;
+  }
+
+  /**
+   * Validate paging parameters for a describe.
+   *
+   * @param identifierParameter The name of the parameter for identifiers
+   * @param identifiers The requested identifiers which cannot be combined with paging
+   * @param maxResults The requested page size, may be null
+   * @param nextToken The requested next token, may be null
+   * @throws ComputeServiceClientException If the parameters are not valid
+   */
+  static void validate( final String identifierParameter,
+                        final Collection<String> identifiers,
+                        @Nullable final Integer maxResults,
+                        @Nullable final String nextToken ) throws ComputeServiceClientException {
+    if ( isPaged( maxResults, nextToken ) && !identifiers.isEmpty( ) ) {
+      throw new ComputeServiceClientException(
+          "InvalidParameterCombination",
+          "The parameter " + identifierParameter + " cannot be used with the parameter maxResults" );
+    }
+    pageSize( maxResults );
+    afterKey( nextToken );
+  }
+
+  static int pageSize( @Nullable final Integer maxResults ) throws ComputeServiceClientException {
+    if ( maxResults == null ) {
+      return MAX_PAGE_SIZE;
+    } else if ( maxResults < MIN_PAGE_SIZE || maxResults > MAX_PAGE_SIZE ) {
+      throw new ComputeServiceClientException(
+          "InvalidParameterValue",
+          "Value ( " + maxResults + " ) for parameter maxResults is invalid. Expecting a value between " +
+              MIN_PAGE_SIZE + " and " + MAX_PAGE_SIZE + "." );
+    }
+    return maxResults;
+  }
+
+  @Nullable
+  static String afterKey( @Nullable final String nextToken ) throws ComputeServiceClientException {
+    if ( nextToken != null ) {
+      try {
+        if ( !UUID.fromString( nextToken ).toString( ).equals( nextToken ) ) {
+          throw new IllegalArgumentException( nextToken );
+        }
+      } catch ( final IllegalArgumentException e ) {
+        throw new ComputeServiceClientException(
+            "InvalidPaginationToken",
+            "Invalid pagination token (" + nextToken + ")" );
+      }
+    }
+    return nextToken;
+  }
+
+  /**
+   * Query a page of items matching the given example restricted by the given criterion.
+   *
+   * <P>The caller must have an active transaction for the entity.</P>
+   *
+   * @param example The example object
+   * @param readOnly Use True if the results will not be modified
+   * @param criterion Additional restrictions for the query
+   * @param aliases Any aliases necessary for the given criterion
+   * @param nextToken The next token from the previous page, may be null
+   * @param maxResults The maximum number of items, may be null
+   * @param <T> The entity type
+   * @return The page
+   */
+  @SuppressWarnings( "unchecked" )
+  static <T extends AbstractPersistent> Page<T> query( final T example,
+                                                       final boolean readOnly,
+                                                       final Criterion criterion,
+                                                       final Map<String,String> aliases,
+                                                       @Nullable final String nextToken,
+                                                       @Nullable final Integer maxResults ) throws ComputeServiceClientException {
+    final int pageSize = pageSize( maxResults );
+    final Criteria criteria = restrict(
+        Entities.createCriteria( example.getClass( ) ),
+        example,
+        readOnly,
+        criterion,
+        aliases,
+        afterKey( nextToken ),
+        pageSize );
+    return Page.of( (List<T>) criteria.list( ), pageSize, NaturalId.INSTANCE );
+  }
+
+  /**
+   * Restrict the given criteria to a page.
+   */
+  static Criteria restrict( final Criteria criteria,
+                            final Object example,
+                            final boolean readOnly,
+                            final Criterion criterion,
+                            final Map<String,String> aliases,
+                            @Nullable final String afterKey,
+                            final int pageSize ) {
+    criteria
+        .setReadOnly( readOnly )
+        .setMaxResults( pageSize )
+        .setFetchSize( pageSize )
+        .add( Example.create( example ) )
+        .add( criterion )
+        .addOrder( Order.asc( "naturalId" ) );
+    if ( afterKey != null ) {
+      criteria.add( Restrictions.gt( "naturalId", afterKey ) );
+    }
+    for ( final Map.Entry<String,String> aliasEntry : aliases.entrySet( ) ) {
+      criteria.createAlias( aliasEntry.getKey( ), aliasEntry.getValue( ) );
+    }
+    return criteria;
+  }
+
+  static final class Page<T> {
+    private final List<T> items;
+    @Nullable private final String nextToken;
+
+    private Page( final List<T> items, @Nullable final String nextToken ) {
+      this.items = items;
+      this.nextToken = nextToken;
+    }
+
+    /**
+     * Create a page from ordered rows.
+     *
+     * <P>Rows may contain duplicates when the query joins to collections,
+     * there is a further page if the row limit was reached.</P>
+     */
+    static <T> Page<T> of( final List<T> rows,
+                           final int pageSize,
+                           final Function<? super T,String> keyFunction ) {
+      return new Page<>(
+          Lists.newArrayList( Sets.newLinkedHashSet( rows ) ),
+          rows.size( ) >= pageSize ? keyFunction.apply( Iterables.getLast( rows ) ) : null );
+    }
+
+    List<T> getItems( ) {
+      return items;
+    }
+
+    @Nullable
+    String getNextToken( ) {
+      return nextToken;
+    }
+  }
+
+  private enum NaturalId implements Function<AbstractPersistent,String> {
+    INSTANCE;
+
+    @Nullable
+    @Override
+    public String apply( @Nullable final AbstractPersistent persistent ) {
+      return persistent == null ? null : persistent.getNaturalId( );
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.compute.service
+
+import com.google.common.base.Function
+import org.hibernate.Criteria
+import org.hibernate.criterion.Criterion
+import org.hibernate.criterion.Example
+import org.hibernate.criterion.Order
+import org.hibernate.criterion.Restrictions
+import org.junit.Ignore
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNull
+import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ *
+ */
+class DescribePagesTest {
+
+  @Test
+  void testIsPaged( ) {
+    assertTrue( 'Max results', DescribePages.isPaged( 5, null ) )
+    assertTrue( 'Next token', DescribePages.isPaged( null, UUID.randomUUID( ).toString( ) ) )
+    assertTrue( 'Not paged', !DescribePages.isPaged( null, null ) )
+  }
+
+  @Test
+  void testValidate( ) {
+    DescribePages.validate( 'instancesSet', [ ], 5, null )
+    DescribePages.validate( 'instancesSet', [ ], 1000, UUID.randomUUID( ).toString( ) )
+    DescribePages.validate( 'instancesSet', [ 'i-00000001' ], null, null )
+    assertInvalid( 'InvalidParameterCombination', { DescribePages.validate( 'instancesSet', [ 'i-00000001' ], 5, null ) } )
+    assertInvalid( 'InvalidParameterValue', { DescribePages.validate( 'instancesSet', [ ], 4, null ) } )
+    assertInvalid( 'InvalidParameterValue', { DescribePages.validate( 'instancesSet', [ ], 1001, null ) } )
+    assertInvalid( 'InvalidPaginationToken', { DescribePages.validate( 'instancesSet', [ ], null, 'i-00000001' ) } )
+  }
+
+  @Test
+  void testPage( ) {
+    DescribePages.Page<String> page = DescribePages.Page.of( [ 'a', 'b', 'b', 'c', 'd' ], 5, { it } as Function<String,String> )
+    assertEquals( 'Items', [ 'a', 'b', 'c', 'd' ], page.getItems( ) )
+    assertEquals( 'Next token', 'd', page.getNextToken( ) )
+
+    page = DescribePages.Page.of( [ 'a', 'b', 'c' ], 5, { it } as Function<String,String> )
+    assertEquals( 'Items', [ 'a', 'b', 'c' ], page.getItems( ) )
+    assertNull( 'Next token', page.getNextToken( ) )
+  }
+
+  @Test
+  void testRestrict( ) {
+    List<String> settings = [ ]
+    List<Object> restrictions = [ ]
+    Map<String,String> aliases = [ : ]
+    Criteria criteria
+    criteria = [
+        setReadOnly: { boolean readOnly -> settings << "readOnly=${readOnly}".toString( ); criteria },
+        setMaxResults: { int maxResults -> settings << "maxResults=${maxResults}".toString( ); criteria },
+        setFetchSize: { int fetchSize -> settings << "fetchSize=${fetchSize}".toString( ); criteria },
+        add: { Criterion criterion -> restrictions << criterion; criteria },
+        addOrder: { Order order -> restrictions << order; criteria },
+        createAlias: { String path, String alias -> aliases.put( path, alias ); criteria },
+    ] as Criteria
+    Criterion criterion = Restrictions.eq( 'state', 'available' )
+
+    DescribePages.restrict( criteria, 'example', true, criterion, [ 'attachments': 'attachment' ], 'afterKey', 5 )
+
+    assertEquals( 'Settings', [ 'readOnly=true', 'maxResults=5', 'fetchSize=5' ], settings )
+    assertEquals( 'Restriction count', 4, restrictions.size( ) )
+    assertTrue( 'Example restriction', restrictions[ 0 ] instanceof Example )
+    assertSame( 'Criterion', criterion, restrictions[ 1 ] )
+    assertEquals( 'Order', 'naturalId asc', String.valueOf( restrictions[ 2 ] ) )
+    assertEquals( 'After key restriction', 'naturalId>afterKey', String.valueOf( restrictions[ 3 ] ) )
+    assertEquals( 'Aliases', [ 'attachments': 'attachment' ], aliases )
+
+    restrictions.clear( )
+    DescribePages.restrict( criteria, 'example', true, criterion, [ : ], null, 1000 )
+    assertEquals( 'First page restriction count', 3, restrictions.size( ) )
+    assertEquals( 'First page order', 'naturalId asc', String.valueOf( restrictions[ 2 ] ) )
+  }
+
+  /**
+   * Pages through ordered keys in memory using Page.of, as the page query
+   * would for rows ordered by natural id.
+   */
+  @Test
+  void testPageTraversal( ) {
+    int itemCount = 5000
+    int pageSize = DescribePages.MAX_PAGE_SIZE
+    NavigableSet<String> index = new TreeSet<>( )
+    ( 1..itemCount ).each { index.add( UUID.randomUUID( ).toString( ) ) }
+
+    Set<String> seen = [ ] as Set
+    String nextToken = null
+    int pages = 0
+    while ( true ) {
+      NavigableSet<String> range = nextToken == null ? index : index.tailSet( nextToken, false )
+      List<String> rows = range.take( pageSize ) as List<String>
+      DescribePages.Page<String> page = DescribePages.Page.of( rows, pageSize, { it } as Function<String,String> )
+      assertTrue( 'Page size', page.getItems( ).size( ) <= pageSize )
+      page.getItems( ).each{ assertTrue( 'Item listed once', seen.add( it ) ) }
+      pages++
+      if ( ( nextToken = page.getNextToken( ) ) == null ) break
+    }
+    assertEquals( 'Items listed', index, seen )
+    assertEquals( 'Page count', itemCount.intdiv( pageSize ) + 1, pages )
+  }
+
+  /**
+   * Synthetic account with 50k instances, compares the latency and heap for
+   * paging through the keyset with building a single response for all
+   * instances.
+   */
+  @Ignore( "Manual development test" )
+  @Test
+  void testLargeListing( ) {
+    int instanceCount = 50000
+    int pageSize = DescribePages.MAX_PAGE_SIZE
+    NavigableMap<String,String> index = new TreeMap<>( )
+    ( 1..instanceCount ).each { int i -> index.put( UUID.randomUUID( ).toString( ), String.format( 'i-%08x', i ) ) }
+    Map<String,List<String>> tags = index.values( ).collectEntries{ [ it, [ 'Name', it ] ] }
+    Runtime runtime = Runtime.getRuntime( )
+
+    System.gc( )
+    long fullHeapBefore = runtime.totalMemory( ) - runtime.freeMemory( )
+    long fullStart = System.nanoTime( )
+    List<Map<String,Object>> fullResponse = index.values( ).collect{ [ instanceId: it, tagSet: tags.get( it ) ] }
+    long fullElapsed = System.nanoTime( ) - fullStart
+    long fullHeap = runtime.totalMemory( ) - runtime.freeMemory( ) - fullHeapBefore
+    assertEquals( 'Full response size', instanceCount, fullResponse.size( ) )
+    fullResponse = null
+
+    Set<String> seen = [ ] as Set
+    String nextToken = null
+    long maxPageElapsed = 0
+    System.gc( )
+    long pagedHeapBefore = runtime.totalMemory( ) - runtime.freeMemory( )
+    long pagedHeap = 0
+    while ( true ) {
+      long pageStart = System.nanoTime( )
+      NavigableMap<String,String> range = nextToken == null ? index : index.tailMap( nextToken, false )
+      List<String> rows = range.keySet( ).take( pageSize ) as List<String>
+      DescribePages.Page<String> page = DescribePages.Page.of( rows, pageSize, { it } as Function<String,String> )
+      List<Map<String,Object>> response = page.getItems( ).collect{ [ instanceId: index.get( it ), tagSet: tags.get( index.get( it ) ) ] }
+      maxPageElapsed = Math.max( maxPageElapsed, System.nanoTime( ) - pageStart )
+      pagedHeap = Math.max( pagedHeap, runtime.totalMemory( ) - runtime.freeMemory( ) - pagedHeapBefore )
+      response.each{ assertTrue( 'Instance listed once', seen.add( (String) it.instanceId ) ) }
+      if ( ( nextToken = page.getNextToken( ) ) == null ) break
+    }
+    assertEquals( 'Instances listed', instanceCount, seen.size( ) )
+    assertTrue( "Maximum page latency ${maxPageElapsed / 1000000}ms exceeds full listing ${fullElapsed / 1000000}ms".toString( ),
+        maxPageElapsed <= fullElapsed )
+    assertTrue( "Maximum page heap ~${pagedHeap / 1024}KiB exceeds full listing ~${fullHeap / 1024}KiB".toString( ),
+        pagedHeap <= fullHeap )
+  }
+
+  private static void assertInvalid( String code, Closure<?> closure ) {
+    try {
+      closure.call( )
+      fail( "Expected ${code}" )
+    } catch ( ComputeServiceClientException e ) {
+      assertEquals( 'Error code', code, e.code )
+    }
+  }
+}
@@ -22,7 +22,10 @@ package com.eucalyptus.compute.service.ws
 import com.eucalyptus.compute.common.AttributeBooleanValueType
 import com.eucalyptus.compute.common.AuthorizeSecurityGroupIngressType
 import com.eucalyptus.compute.common.CreateVolumePermissionItemType
+import com.eucalyptus.compute.common.DescribeInstancesType
 import com.eucalyptus.compute.common.DescribeSnapshotAttributeType
+import com.eucalyptus.compute.common.DescribeSnapshotsType
+import com.eucalyptus.compute.common.DescribeVolumesType
 import com.eucalyptus.compute.common.DiskImage
 import com.eucalyptus.compute.common.DiskImageDetail
 import com.eucalyptus.compute.common.DiskImageVolume
@@ -1405,4 +1408,49 @@ class ComputeQueryBindingTest extends QueryBindingTestSupport {
         'Platform'                                      : 'Linux',
     ])
   }
+
+  @Test
+  void testDescribePagingMessageQueryBindings() {
+    ComputeQueryBinding instancesBinding = testBinding( ComputeQueryBindingTest.class.getResource('/ec2-instances-14-05-01.xml') )
+    bindAndAssertObject(instancesBinding, DescribeInstancesType.class, "DescribeInstances", new DescribeInstancesType(
+        maxResults: 5,
+        nextToken: '7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c01',
+    ), 2)
+
+    ComputeQueryBinding volumesBinding = testBinding( ComputeQueryBindingTest.class.getResource('/ec2-ebs-volumes-14-09-01.xml') )
+    bindAndAssertObject(volumesBinding, DescribeVolumesType.class, "DescribeVolumes", new DescribeVolumesType(
+        maxResults: 1000,
+        nextToken: '7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c02',
+    ), 2)
+
+    ComputeQueryBinding snapshotsBinding = testBinding( ComputeQueryBindingTest.class.getResource('/ec2-ebs-snapshots-14-05-01.xml') )
+    bindAndAssertObject(snapshotsBinding, DescribeSnapshotsType.class, "DescribeSnapshots", new DescribeSnapshotsType(
+        ownersSet: [ 'self' ] as ArrayList<String>,
+        restorableBySet: [ 'all' ] as ArrayList<String>,
+        maxResults: 10,
+        nextToken: '7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c03',
+    ), 4)
+  }
+
+  private ComputeQueryBinding testBinding( final URL resource ) {
+    new ComputeQueryBinding() {
+      @Override
+      protected com.eucalyptus.binding.Binding getBindingWithElementClass(final String operationName) {
+        createTestBindingFromXml(resource, operationName)
+      }
+
+      @Override
+      String getNamespace() {
+        return getNamespaceForVersion("2016-09-15");
+      }
+
+      @Override
+      protected void validateBinding(final com.eucalyptus.binding.Binding currentBinding,
+                                     final String operationName,
+                                     final Map<String, String> params,
+                                     final BaseMessage eucaMsg) {
+        // Validation requires compiled bindings
+      }
+    }
+  }
 }
@@ -0,0 +1,221 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.compute.service.ws
+
+import java.lang.management.ManagementFactory
+import javax.xml.stream.XMLStreamWriter
+import org.apache.axiom.om.OMElement
+import org.apache.axiom.soap.SOAPEnvelope
+import org.apache.axiom.soap.SOAPFactory
+import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.buffer.ChannelBufferOutputStream
+import org.jboss.netty.buffer.ChannelBuffers
+import org.jibx.runtime.IMarshallable
+import org.junit.Assume
+import org.junit.BeforeClass
+import org.junit.Ignore
+import org.junit.Test
+import com.eucalyptus.binding.Binding
+import com.eucalyptus.binding.BindingManager
+import com.eucalyptus.binding.HoldMe
+import com.eucalyptus.compute.common.Compute
+import com.eucalyptus.compute.common.DescribeInstancesResponseType
+import com.eucalyptus.compute.common.DescribeSnapshotsResponseType
+import com.eucalyptus.compute.common.DescribeVolumesResponseType
+import com.eucalyptus.compute.common.GroupItemType
+import com.eucalyptus.compute.common.ReservationInfoType
+import com.eucalyptus.compute.common.RunningInstancesItemType
+import com.google.common.base.Charsets
+import groovy.transform.CompileStatic
+import static org.junit.Assert.*
+
+/**
+ * Compares marshalling a large response via a parsed OM tree with streaming
+ * directly to the response buffer.
+ */
+@CompileStatic
+class ComputeResponseMarshallingTest {
+
+  private static final String BINDING_NAME = 'ec2_amazonaws_com_doc_2016_09_15'
+  private static final String NAMESPACE = 'http://ec2.amazonaws.com/doc/2016-09-15/'
+  private static final int INSTANCES = 5000
+  private static final int ITERATIONS = 20
+
+  private static Binding binding
+
+  @BeforeClass
+  static void setup( ) {
+    Assume.assumeTrue( 'Response messages not bound', IMarshallable.isAssignableFrom( DescribeInstancesResponseType ) )
+    BindingManager.seedBinding( BINDING_NAME, DescribeInstancesResponseType )
+    BindingManager.waitForSeeding( )
+    binding = BindingManager.getBinding( BINDING_NAME, Compute )
+  }
+
+  @Test
+  void testStreamingOutputMatches( ) {
+    DescribeInstancesResponseType response = response( 10 )
+    String tree = new String( toBytes( serialize( envelope( binding.toOM( response, NAMESPACE ) ) ) ), Charsets.UTF_8 )
+    String streamed = new String( toBytes( serialize( envelope( binding.toStreamingOM( response, NAMESPACE ) ) ) ), Charsets.UTF_8 )
+    assertEquals( 'Instance count', 10, tree.split( '<instanceId>' ).length - 1 )
+    assertEquals( 'Serialized envelope', tree, streamed )
+  }
+
+  @Test
+  void testStreamingOutputFollowingContent( ) {
+    final OMElement trailer = HoldMe.getOMFactory( ).createOMElement( 'trailer', null )
+    trailer.setText( 'after' )
+    final SOAPEnvelope envelope = envelope( binding.toStreamingOM( response( 2 ), NAMESPACE ) )
+    envelope.body.addChild( trailer )
+    final String streamed = new String( toBytes( serialize( envelope ) ), Charsets.UTF_8 )
+    assertTrue( 'Trailing element present', streamed.contains( '<trailer>after</trailer>' ) )
+    assertTrue( 'Envelope complete', streamed.trim( ).endsWith( 'Envelope>' ) )
+    assertTrue( 'Trailer after message', streamed.indexOf( '<trailer>' ) > streamed.indexOf( 'DescribeInstancesResponse>' ) )
+  }
+
+  @Test
+  void testStreamingFragmentLeavesWriterOpen( ) {
+    final StringWriter out = new StringWriter( )
+    final XMLStreamWriter writer = HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( out )
+    writer.writeStartDocument( )
+    writer.writeStartElement( 'wrapper' )
+    binding.toStream( writer, response( 1 ), NAMESPACE )
+    writer.writeStartElement( 'after' )
+    writer.writeEndElement( )
+    writer.writeEndElement( )
+    writer.writeEndDocument( )
+    writer.flush( )
+    final String xml = out.toString( )
+    assertTrue( 'Message content', xml.contains( '<instanceId>i-00000000</instanceId>' ) )
+    assertTrue( 'Content after message', xml.endsWith( '<after></after></wrapper>' ) || xml.endsWith( '<after/></wrapper>' ) )
+  }
+
+  @Test
+  void testStreamingOutputExpands( ) {
+    OMElement element = binding.toStreamingOM( response( 3 ), NAMESPACE )
+    assertTrue( 'Streaming element', Binding.isStreamingOM( element ) )
+    assertFalse( 'Tree element', Binding.isStreamingOM( binding.toOM( response( 3 ), NAMESPACE ) ) )
+    assertEquals( 'Element name', 'DescribeInstancesResponse', element.localName )
+    assertEquals( 'Element namespace', NAMESPACE, element.namespace.namespaceURI )
+    assertNotNull( 'Reservation set', element.getFirstChildWithName( new javax.xml.namespace.QName( NAMESPACE, 'reservationSet' ) ) )
+  }
+
+  @Test
+  void testNextTokenMarshalling( ) {
+    final DescribeInstancesResponseType instances = response( 1 )
+    instances.nextToken = '7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c01'
+    final DescribeVolumesResponseType volumes = new DescribeVolumesResponseType( nextToken: '7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c02' )
+    final DescribeSnapshotsResponseType snapshots = new DescribeSnapshotsResponseType( nextToken: '7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c03' )
+    assertTrue( 'Instances next token', marshall( instances ).contains( '<nextToken>7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c01</nextToken>' ) )
+    assertTrue( 'Volumes next token', marshall( volumes ).contains( '<nextToken>7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c02</nextToken>' ) )
+    assertTrue( 'Snapshots next token', marshall( snapshots ).contains( '<nextToken>7d4ca4e6-5b4b-4a3b-8c4f-bc3b9e6a4c03</nextToken>' ) )
+    assertFalse( 'Next token omitted for last page', marshall( response( 1 ) ).contains( 'nextToken' ) )
+  }
+
+  @Ignore( "Manual development test" )
+  @Test
+  void testMarshallingPerformance( ) {
+    DescribeInstancesResponseType response = response( INSTANCES )
+    Closure<ChannelBuffer> treePath = { serialize( envelope( binding.toOM( response, NAMESPACE ) ) ) }
+    Closure<ChannelBuffer> streamingPath = { serialize( envelope( binding.toStreamingOM( response, NAMESPACE ) ) ) }
+
+    // warm up
+    measure( treePath, 5 )
+    measure( streamingPath, 5 )
+
+    long[] tree = measure( treePath, ITERATIONS )
+    long[] streaming = measure( streamingPath, ITERATIONS )
+    assertTrue( "Streaming marshalling of ${INSTANCES} instances allocated ${streaming[1]/1024}KiB per response, " +
+        "OM tree ${tree[1]/1024}KiB".toString( ), streaming[1] <= tree[1] )
+  }
+
+  /**
+   * Mean time (ns) and allocated bytes (if available) for the given marshalling
+   */
+  static long[] measure( final Closure<ChannelBuffer> marshaller, final int iterations ) {
+    final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean( )
+    final boolean allocation = threadBean instanceof com.sun.management.ThreadMXBean
+    final long thread = Thread.currentThread( ).id
+    final long startBytes = allocation ? ((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes( thread ) : 0
+    final long start = System.nanoTime( )
+    for ( int i = 0; i < iterations; i++ ) {
+      assertTrue( 'Response content', marshaller.call( ).readableBytes( ) > 0 )
+    }
+    final long time = System.nanoTime( ) - start
+    final long bytes = allocation ? ((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes( thread ) - startBytes : 0
+    [ time.intdiv( iterations ), bytes.intdiv( iterations ) ] as long[]
+  }
+
+  static String marshall( final Object response ) {
+    new String( toBytes( serialize( envelope( binding.toOM( response, NAMESPACE ) ) ) ), Charsets.UTF_8 )
+  }
+
+  static SOAPEnvelope envelope( final OMElement element ) {
+    final SOAPFactory factory = HoldMe.getOMSOAP11Factory( )
+    final SOAPEnvelope envelope = factory.getDefaultEnvelope( )
+    envelope.body.addChild( element )
+    envelope
+  }
+
+  static ChannelBuffer serialize( final SOAPEnvelope envelope ) {
+    final ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( 4096 )
+    final ChannelBufferOutputStream out = new ChannelBufferOutputStream( buffer )
+    try {
+      envelope.serialize( out )
+    } finally {
+      out.close( )
+    }
+    buffer
+  }
+
+  static byte[] toBytes( final ChannelBuffer buffer ) {
+    final byte[] bytes = new byte[ buffer.readableBytes( ) ]
+    buffer.getBytes( buffer.readerIndex( ), bytes )
+    bytes
+  }
+
+  static DescribeInstancesResponseType response( final int instances ) {
+    final DescribeInstancesResponseType response = new DescribeInstancesResponseType( )
+    final ReservationInfoType reservation = new ReservationInfoType( 'r-00000001', '000000000001', [ new GroupItemType( 'sg-00000001', 'default' ) ] )
+    for ( int i = 0; i < instances; i++ ) {
+      final String id = String.format( '%08x', i )
+      reservation.instancesSet.add( new RunningInstancesItemType(
+          instanceId: "i-${id}".toString( ),
+          imageId: 'emi-00000001',
+          stateCode: '16',
+          stateName: 'running',
+          privateDnsName: "euca-10-0-0-${i % 250}.eucalyptus.internal".toString( ),
+          dnsName: "euca-192-168-0-${i % 250}.eucalyptus.example.com".toString( ),
+          reason: 'NORMAL:  -- []',
+          keyName: 'key',
+          amiLaunchIndex: '0',
+          instanceType: 'm1.small',
+          launchTime: new Date( ),
+          placement: 'one',
+          kernel: 'eki-00000001',
+          ramdisk: 'eri-00000001',
+          architecture: 'x86_64',
+          monitoring: 'disabled',
+          ipAddress: "192.168.0.${i % 250}".toString( ),
+          privateIpAddress: "10.0.0.${i % 250}".toString( ),
+          virtualizationType: 'paravirtual',
+          clientToken: '',
+          groupSet: [ new GroupItemType( 'sg-00000001', 'default' ) ] as ArrayList<GroupItemType>
+      ) )
+    }
+    response.reservationSet.add( reservation )
+    response
+  }
+}
@@ -135,10 +135,25 @@ public abstract class HmacLoginModuleSupport extends BaseLoginModule<HmacCredent
   }
   
   public static String urlencode( final String text ) {
+    if ( isUrlSafe( text ) ) {
+      return Strings.nullToEmpty( text );
+    }
     final byte[] textBytes = Strings.nullToEmpty( text ).getBytes( Charsets.UTF_8 );
     return new String( URLCodec.encodeUrl( URL_SAFE_CHARACTERS, textBytes ), Charsets.US_ASCII );
   }
 
+  private static boolean isUrlSafe( final String text ) {
+    if ( text != null ) {
+      for ( int i = 0; i < text.length( ); i++ ) {
+        final char c = text.charAt( i );
+        if ( c >= 256 || !URL_SAFE_CHARACTERS.get( c ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   protected String sanitize( final String b64text ) {
     // There should only be trailing =, it is not clear why
     // we replace = at other locations in B64 data
@@ -29,10 +29,12 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Collection;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.crypto.spec.SecretKeySpec;
 import org.apache.log4j.Logger;
@@ -48,6 +50,8 @@ import com.eucalyptus.crypto.util.Timestamps;
 import com.eucalyptus.ws.util.HmacUtils;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.io.BaseEncoding;
@@ -55,6 +59,11 @@ import com.google.common.io.BaseEncoding;
 public class Hmacv4LoginModule extends HmacLoginModuleSupport {
   private static final Logger LOG = Logger.getLogger( Hmacv4LoginModule.class );
   private static final String V4_TERMINATOR = "aws4_request";
+  private static final Cache<String,SigningKey> signingKeyCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 10_000 )
+      .expireAfterWrite( 1, TimeUnit.DAYS )
+      .build( );
 
   public Hmacv4LoginModule() {
     super(4);
@@ -76,7 +85,7 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     signatureCredential.verify( date, null, null, V4_TERMINATOR ); //TODO Do we want to validate region and service name?
     final UserPrincipal user = accessKey.getPrincipal( );
     final String secretKey = accessKey.getSecretKey( );
-    final byte[] signatureKey = getSignatureKey( secretKey, signatureCredential );
+    final byte[] signatureKey = getCachedSignatureKey( secretKey, signatureCredential );
     final CharSequence canonicalString = this.makeSubjectString( credentials, signatureCredential, authorizationParameters, date, false );
     final byte[] computedSig = this.getHmacSHA256( signatureKey, canonicalString );
     final byte[] providedSig = BaseEncoding.base16( ).lowerCase( ).decode( sig );
@@ -117,12 +126,14 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     sb.append( skipPath ? "/" : canonicalizePath( credentials.getServicePath( ) ) ); // AWS Java SDK always uses "/"
     sb.append( '\n' );
     boolean addedParam = false;
-    for ( final String parameter : Ordering.natural( ).sortedCopy( credentials.getParameters().keySet() ) ) {
+    final Map<String,List<String>> parameters = credentials.getParameters( );
+    for ( final String parameter : sorted( parameters.keySet( ) ) ) {
       if ( credentials.getVariant() == HmacUtils.SignatureVariant.SignatureV4Query && SecurityParameter.X_Amz_Signature.parameter().equals( parameter ) ) {
         continue;
       }
-      for ( final String value : Ordering.natural().sortedCopy( credentials.getParameters().get( parameter ) ) ) {
-        sb.append( urlencode(parameter) );
+      final String encodedParameter = urlencode( parameter );
+      for ( final String value : sorted( parameters.get( parameter ) ) ) {
+        sb.append( encodedParameter );
         sb.append( '=' );
         sb.append( urlencode(value) );
         sb.append( '&' );
@@ -132,15 +143,14 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     if ( addedParam ) sb.setLength( sb.length()-1 );
     sb.append( '\n' );
     for ( final String header : authorizationParameters.get("SignedHeaders").split(";") ) {
-      final List<String> values = Lists.transform( credentials.getHeaders().get( header ), new Function<String, String>() {
-        @Override
-        public String apply( final String text ) {
-          return text.trim();
-        }
-      } );
+      final List<String> values = credentials.getHeaders().get( header );
       sb.append( header );
       sb.append( ':' );
-      sb.append( Joiner.on( ',' ).join( Ordering.<String>natural().sortedCopy( values ) ) );
+      if ( values.size( ) == 1 ) {
+        sb.append( values.get( 0 ).trim( ) );
+      } else {
+        sb.append( Joiner.on( ',' ).join( Ordering.<String>natural().sortedCopy( Lists.transform( values, TrimFunction.INSTANCE ) ) ) );
+      }
       sb.append( '\n' );
     }
     sb.append( '\n' );
@@ -151,6 +161,12 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     return sb;
   }
 
+  private static Iterable<String> sorted( final Collection<String> values ) {
+    return values.size( ) <= 1 ?
+        values :
+        Ordering.natural( ).sortedCopy( values );
+  }
+
   /**
    * Returns a hex encoded SHA256 hash of the {@code text}.
    */
@@ -175,6 +191,28 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     }
   }
 
+  /**
+   * Get the signing key for the credential, using a previously derived key
+   * if available.
+   *
+   * <P>Keys are cached by access key identifier and credential scope. A
+   * cached key is only used if it was derived from the given secret key so
+   * changes to the secret key for an access key are detected.</P>
+   *
+   * <P>The returned key must not be modified.</P>
+   */
+  public static byte[] getCachedSignatureKey( final String key,
+                                              final SignatureCredential credential ) throws Exception {
+    final String cacheKey = credential.getAccessKeyId( ) + '/' + credential.getCredentialScope( );
+    final SigningKey cachedKey = signingKeyCache.getIfPresent( cacheKey );
+    if ( cachedKey != null && cachedKey.secretKey.equals( key ) ) {
+      return cachedKey.signingKey;
+    }
+    final byte[] signingKey = getSignatureKey( key, credential );
+    signingKeyCache.put( cacheKey, new SigningKey( key, signingKey ) );
+    return signingKey;
+  }
+
   public static byte[] getSignatureKey( final String key,
                                   final SignatureCredential credential ) throws Exception {
     return getHmacSHA256(
@@ -185,4 +223,23 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
             credential.getServiceName() ),
         credential.getTerminator() );
   }
+
+  private static final class SigningKey {
+    private final String secretKey;
+    private final byte[] signingKey;
+
+    private SigningKey( final String secretKey, final byte[] signingKey ) {
+      this.secretKey = secretKey;
+      this.signingKey = signingKey;
+    }
+  }
+
+  private enum TrimFunction implements Function<String,String> {
+    INSTANCE;
+
+    @Override
+    public String apply( final String text ) {
+      return text.trim( );
+    }
+  }
 }
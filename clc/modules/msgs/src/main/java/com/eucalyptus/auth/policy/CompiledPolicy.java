@@ -0,0 +1,92 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.auth.policy;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import com.eucalyptus.auth.principal.Authorization;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Authorizations for a parsed policy with an index by action.
+ *
+ * <P>The authorizations for an action are those with an action (or
+ * NotAction) element matching the action, in policy order.</P>
+ */
+final class CompiledPolicy {
+
+  static final int MAX_INDEXED_ACTIONS = 1_000;
+
+  private final ImmutableList<Authorization> authorizations;
+  private final ImmutableList<ImmutableList<PolicyGlob>> actionGlobs;
+  private final ConcurrentMap<String,ImmutableList<Authorization>> actionIndex = Maps.newConcurrentMap( );
+
+  CompiledPolicy( final List<? extends Authorization> authorizations ) {
+    this.authorizations = ImmutableList.copyOf( authorizations );
+    final ImmutableList.Builder<ImmutableList<PolicyGlob>> actionGlobsBuilder = ImmutableList.builder( );
+    for ( final Authorization authorization : this.authorizations ) {
+      final ImmutableList.Builder<PolicyGlob> globs = ImmutableList.builder( );
+      for ( final String action : authorization.getActions( ) ) {
+        globs.add( PolicyGlob.compile( action ) );
+      }
+      actionGlobsBuilder.add( globs.build( ) );
+    }
+    this.actionGlobs = actionGlobsBuilder.build( );
+  }
+
+  @Nonnull
+  ImmutableList<Authorization> getAuthorizations( ) {
+    return authorizations;
+  }
+
+  /**
+   * Get the authorizations that apply to the given action.
+   *
+   * @param action The lower case action
+   * @return The authorizations in policy order
+   */
+  @Nonnull
+  ImmutableList<Authorization> forAction( @Nonnull final String action ) {
+    ImmutableList<Authorization> actionAuthorizations = actionIndex.get( action );
+    if ( actionAuthorizations == null ) {
+      actionAuthorizations = matchAction( action );
+      if ( actionIndex.size( ) < MAX_INDEXED_ACTIONS ) {
+        actionIndex.putIfAbsent( action, actionAuthorizations );
+      }
+    }
+    return actionAuthorizations;
+  }
+
+  private ImmutableList<Authorization> matchAction( final String action ) {
+    final ImmutableList.Builder<Authorization> builder = ImmutableList.builder( );
+    for ( int i = 0; i < authorizations.size( ); i++ ) {
+      final Authorization authorization = authorizations.get( i );
+      boolean matched = false;
+      for ( final PolicyGlob glob : actionGlobs.get( i ) ) {
+        if ( glob.matches( action ) ) {
+          matched = true;
+          break;
+        }
+      }
+      if ( matched != authorization.isNotAction( ) ) {
+        builder.add( authorization );
+      }
+    }
+    return builder.build( );
+  }
+}
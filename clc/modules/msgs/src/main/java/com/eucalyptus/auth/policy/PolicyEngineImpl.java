@@ -68,6 +68,7 @@ import static com.eucalyptus.util.Parameters.checkParam;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -113,6 +114,8 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -126,12 +129,28 @@ public class PolicyEngineImpl implements PolicyEngine {
 
   private static final Logger LOG = Logger.getLogger( PolicyEngineImpl.class );
 
-  private static final Cache<String,ImmutableList<Authorization>> authorizationCache = CacheBuilder
-      .<String,ImmutableList<Authorization>>newBuilder()
+  private static final Cache<String,CompiledPolicy> authorizationCache = CacheBuilder
+      .<String,CompiledPolicy>newBuilder()
       .maximumSize( 10_000 )
       .expireAfterWrite( 1, TimeUnit.HOURS )
       .build( );
 
+  private static final LoadingCache<String,Pattern> serverCertificatePatternCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 1_000 )
+      .build( CacheLoader.from( Pattern::compile ) );
+
+  /**
+   * Decisions for authorizations that do not depend on the request context
+   * (conditions, policy variables or principals) keyed by the policy set and
+   * the requested action and resource.
+   */
+  private final Cache<DecisionKey,Decision> decisionCache = CacheBuilder
+      .<DecisionKey,Decision>newBuilder()
+      .maximumSize( 10_000 )
+      .expireAfterWrite( 5, TimeUnit.MINUTES )
+      .build( );
+
   @Nonnull
   private final Function<String,String> accountResolver;
 
@@ -154,11 +173,7 @@ public class PolicyEngineImpl implements PolicyEngine {
   private static final Matcher PATTERN_MATCHER = new Matcher( ) {
     @Override
     public boolean match( String pattern, String instance ) {
-      pattern = PolicyUtils.toJavaPattern( pattern );
-      if ( pattern == null ) {
-        return false;
-      }
-      return Pattern.matches( pattern, instance );
+      return PolicyGlob.of( pattern ).matches( instance );
     }
   };
 
@@ -189,7 +204,7 @@ public class PolicyEngineImpl implements PolicyEngine {
         return false;
 
       final String certPathAndName = instance.substring(idx);
-      return Pattern.matches( pattern, certPathAndName );
+      return serverCertificatePatternCache.getUnchecked( pattern ).matcher( certPathAndName ).matches( );
     }
   };
 
@@ -274,7 +289,7 @@ public class PolicyEngineImpl implements PolicyEngine {
         // Check resource authorizations, ignore authorizations for own account
         final Decision resourceDecision = resourcePolicy == null ?
                 Decision.DEFAULT :
-                processAuthorizations( AuthEvaluationContextImpl.authorizations( resourcePolicy, true ), AuthorizationMatch.All, action, null, null, null, evaluationContext.getPrincipals( excludeAccountPrincipal( resourceAccountNumber ) ), keyEval, contractEval );
+                processAuthorizations( AuthEvaluationContextImpl.compiledPolicy( resourcePolicy, true ).forAction( action ), AuthorizationMatch.All, action, null, null, null, evaluationContext.getPrincipals( excludeAccountPrincipal( resourceAccountNumber ) ), keyEval, contractEval );
         // Denied by explicit or default deny
         if ( ( resourceDecision == Decision.DENY ) ||
             ( !sameAccount && resourceDecision != Decision.ALLOW ) ) {
@@ -381,16 +396,33 @@ public class PolicyEngineImpl implements PolicyEngine {
       return Decision.DEFAULT;
     }
 
-    final Decision decision = processAuthorizations(
-        evaluationContext.lookupAuthorizations( ),
-        authorizationMatch,
-        action,
-        resourceAccountNumber,
-        resourceType,
-        resourceName,
-        evaluationContext.getPrincipals( ),
-        keyEval,
-        contractEval );
+    final List<Authorization> authorizations = evaluationContext.lookupAuthorizations( );
+    final DecisionKey decisionKey = Iterables.all( authorizations, AuthorizationPredicates.CONTEXT_INDEPENDENT ) ?
+        new DecisionKey(
+            evaluationContext.getPolicySetKey( ),
+            authorizationMatch,
+            action,
+            region.get( ),
+            resourceAccountNumber,
+            resourceType,
+            resourceName ) :
+        null;
+    Decision decision = decisionKey == null ? null : decisionCache.getIfPresent( decisionKey );
+    if ( decision == null ) {
+      decision = processAuthorizations(
+          authorizations,
+          authorizationMatch,
+          action,
+          resourceAccountNumber,
+          resourceType,
+          resourceName,
+          evaluationContext.getPrincipals( ),
+          keyEval,
+          contractEval );
+      if ( decisionKey != null ) {
+        decisionCache.put( decisionKey, decision );
+      }
+    }
     if ( decision == Decision.DENY || decision == Decision.DEFAULT ) {
       LOG.debug( "Request is rejected by authorization check, due to decision " + decision );
     }
@@ -400,7 +432,8 @@ public class PolicyEngineImpl implements PolicyEngine {
   /**
     * Process a list of authorizations against the current request. Collecting contracts from matching authorizations.
     *
-    * @param authorizations The list of authorizations to process
+    * @param authorizations The list of authorizations to process, which must apply to the action
+    * @see CompiledPolicy#forAction(String)
     * @param action The request action
     * @param resource The requested resource
     * @param keyEval The key cache for condition evaluation (optimization purpose)
@@ -422,9 +455,6 @@ public class PolicyEngineImpl implements PolicyEngine {
     for ( Authorization auth : authorizations ) {
       if ( auth.getEffect( ) == EffectType.Limit ) continue;
 
-      if ( !matchActions( auth, action ) ) {
-        continue;
-      }
       if ( !matchPrincipal( auth.getPrincipal(), principals ) ) {
         continue;
       }
@@ -663,6 +693,7 @@ public class PolicyEngineImpl implements PolicyEngine {
     private Map<String,String> evaluatedKeys;
     private List<Authorization> authorizations;
     private List<Pair<PolicyVersion,Authorization>> quotaAuthorizations;
+    private String policySetKey;
     private final List<PolicyVersion> policies;
 
     AuthEvaluationContextImpl( @Nullable final String resourceType,
@@ -756,11 +787,17 @@ public class PolicyEngineImpl implements PolicyEngine {
       return systemUser;
     }
 
+    /**
+     * Lookup the authorizations that apply to the action for this context.
+     */
     public List<Authorization> lookupAuthorizations( ) throws AuthException {
       if ( authorizations == null ) {
-        final List<Pair<PolicyVersion,Authorization>> authorizations = authorizations( policies, false );
+        final ImmutableList.Builder<Authorization> authorizationsBuilder = ImmutableList.builder( );
+        for ( final PolicyVersion policy : policies ) {
+          authorizationsBuilder.addAll( compiledPolicy( policy, false ).forAction( action ) );
+        }
         this.authorizations = ImmutableList.copyOf( Iterables.filter(
-            Iterables.transform( authorizations, Pair.<PolicyVersion,Authorization>right( ) ),
+            authorizationsBuilder.build( ),
             resourceType == null ?
                 AuthorizationPredicates.ALLOW_EFFECT :
                 Predicates.not( AuthorizationPredicates.LIMIT_EFFECT )
@@ -769,12 +806,27 @@ public class PolicyEngineImpl implements PolicyEngine {
       return authorizations;
     }
 
-    static List<Authorization> authorizations( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
+    /**
+     * Key for the set of policies for this context, changes to the policies
+     * result in a different key.
+     */
+    String getPolicySetKey( ) {
+      if ( policySetKey == null ) {
+        final StringBuilder keyBuilder = new StringBuilder( 64 * policies.size( ) );
+        for ( final PolicyVersion policy : policies ) {
+          keyBuilder.append( policy.getPolicyHash( ) ).append( '|' );
+        }
+        policySetKey = keyBuilder.toString( );
+      }
+      return policySetKey;
+    }
+
+    static CompiledPolicy compiledPolicy( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
       try {
-        return authorizationCache.get( policy.getPolicyHash( ), new Callable<ImmutableList<Authorization>>() {
+        return authorizationCache.get( policy.getPolicyHash( ), new Callable<CompiledPolicy>() {
           @Override
-          public ImmutableList<Authorization> call() throws Exception {
-            return ImmutableList.copyOf(  ( resourcePolicy ? PolicyParser.getLaxResourceInstance( ) : PolicyParser.getLaxInstance( ) ).parse( policy.getPolicy( ) ).getAuthorizations( ) );
+          public CompiledPolicy call() throws Exception {
+            return new CompiledPolicy( ( resourcePolicy ? PolicyParser.getLaxResourceInstance( ) : PolicyParser.getLaxInstance( ) ).parse( policy.getPolicy( ) ).getAuthorizations( ) );
           }
         } );
       } catch ( final ExecutionException e ) {
@@ -782,6 +834,10 @@ public class PolicyEngineImpl implements PolicyEngine {
       }
     }
 
+    static List<Authorization> authorizations( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
+      return compiledPolicy( policy, resourcePolicy ).getAuthorizations( );
+    }
+
     static List<Pair<PolicyVersion,Authorization>> authorizations( final List<PolicyVersion> policies, final boolean resourcePolicy ) throws AuthException {
       final List<Pair<PolicyVersion,Authorization>> authorizations = Lists.newArrayList( );
       for ( final PolicyVersion policy : policies ) {
@@ -820,6 +876,60 @@ public class PolicyEngineImpl implements PolicyEngine {
         return authorization != null && authorization.getEffect( ) == EffectType.Limit;
       }
     },
+    CONTEXT_INDEPENDENT {
+      @Override
+      public boolean apply( @Nullable final Authorization authorization ) {
+        return authorization != null &&
+            authorization.getConditions( ).isEmpty( ) &&
+            authorization.getPolicyVariables( ).isEmpty( ) &&
+            authorization.getPrincipal( ) == null;
+      }
+    },
+  }
+
+  private static final class DecisionKey {
+    private final String policySetKey;
+    private final AuthorizationMatch authorizationMatch;
+    private final String action;
+    @Nullable private final String region;
+    @Nullable private final String resourceAccountNumber;
+    @Nullable private final String resourceType;
+    private final String resourceName;
+
+    private DecisionKey( final String policySetKey,
+                         final AuthorizationMatch authorizationMatch,
+                         final String action,
+                         @Nullable final String region,
+                         @Nullable final String resourceAccountNumber,
+                         @Nullable final String resourceType,
+                         final String resourceName ) {
+      this.policySetKey = policySetKey;
+      this.authorizationMatch = authorizationMatch;
+      this.action = action;
+      this.region = region;
+      this.resourceAccountNumber = resourceAccountNumber;
+      this.resourceType = resourceType;
+      this.resourceName = resourceName;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final DecisionKey that = (DecisionKey) o;
+      return Objects.equals( policySetKey, that.policySetKey ) &&
+          authorizationMatch == that.authorizationMatch &&
+          Objects.equals( action, that.action ) &&
+          Objects.equals( region, that.region ) &&
+          Objects.equals( resourceAccountNumber, that.resourceAccountNumber ) &&
+          Objects.equals( resourceType, that.resourceType ) &&
+          Objects.equals( resourceName, that.resourceName );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hash( policySetKey, authorizationMatch, action, region, resourceAccountNumber, resourceType, resourceName );
+    }
   }
 
   private enum EucalyptusAccountNumberSupplier implements Supplier<String> {
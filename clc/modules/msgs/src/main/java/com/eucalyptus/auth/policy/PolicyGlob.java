@@ -0,0 +1,107 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.auth.policy;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Compiled matcher for policy wildcard patterns.
+ *
+ * <P>Matching is equivalent to a java regular expression match with the
+ * pattern from {@link PolicyUtils#toJavaPattern(String)}, so '*' and '?'
+ * do not match line terminators.</P>
+ */
+final class PolicyGlob {
+
+  private static final PolicyGlob NONE = new PolicyGlob( null );
+
+  private static final LoadingCache<String,PolicyGlob> globCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 10_000 )
+      .build( CacheLoader.from( PolicyGlob::compile ) );
+
+  @Nullable
+  private final String literal;
+  @Nullable
+  private final char[] pattern;
+
+  private PolicyGlob( @Nullable final String pattern ) {
+    final boolean isLiteral = pattern != null && pattern.indexOf( '*' ) < 0 && pattern.indexOf( '?' ) < 0;
+    this.literal = isLiteral ? pattern : null;
+    this.pattern = pattern == null || isLiteral ? null : pattern.toCharArray( );
+  }
+
+  /**
+   * Get a compiled glob for the given pattern, which may be cached.
+   */
+  @Nonnull
+  static PolicyGlob of( @Nullable final String pattern ) {
+    return pattern == null ? NONE : globCache.getUnchecked( pattern );
+  }
+
+  @Nonnull
+  static PolicyGlob compile( @Nullable final String pattern ) {
+    return pattern == null ? NONE : new PolicyGlob( pattern );
+  }
+
+  /**
+   * Match the given text against this glob.
+   *
+   * <P>A glob for a null pattern matches nothing.</P>
+   */
+  boolean matches( final String text ) {
+    if ( literal != null ) {
+      return literal.equals( text );
+    }
+    final char[] pattern = this.pattern;
+    if ( pattern == null ) {
+      return false;
+    }
+    int patternIndex = 0;
+    int textIndex = 0;
+    int starIndex = -1;
+    int starTextIndex = 0;
+    while ( textIndex < text.length( ) ) {
+      final char c = text.charAt( textIndex );
+      if ( patternIndex < pattern.length && pattern[ patternIndex ] == '*' ) {
+        starIndex = patternIndex++;
+        starTextIndex = textIndex;
+      } else if ( patternIndex < pattern.length &&
+          ( pattern[ patternIndex ] == '?' ? !isLineTerminator( c ) : pattern[ patternIndex ] == c ) ) {
+        patternIndex++;
+        textIndex++;
+      } else if ( starIndex >= 0 && !isLineTerminator( text.charAt( starTextIndex ) ) ) {
+        // let the last star consume one more character and retry
+        patternIndex = starIndex + 1;
+        textIndex = ++starTextIndex;
+      } else {
+        return false;
+      }
+    }
+    while ( patternIndex < pattern.length && pattern[ patternIndex ] == '*' ) {
+      patternIndex++;
+    }
+    return patternIndex == pattern.length;
+  }
+
+  private static boolean isLineTerminator( final char c ) {
+    return c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029;
+  }
+}
@@ -74,6 +74,8 @@ import java.util.Map;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMSourcedElement;
 import org.apache.axiom.om.impl.builder.StAXOMBuilder;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
@@ -166,6 +168,72 @@ public class Binding {
   }
 
   public String toStream( final OutputStream outputStream, final Object param, final String altNs ) throws BindingException {
+    final String useNs = checkMarshallable( param, altNs );
+    HoldMe.canHas.lock( );
+    try {
+      marshal( HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( outputStream, null ), param, useNs, true );
+    } catch ( XMLStreamException e ) {
+      throw new BindingException( this.name + " failed to marshall type " + param.getClass( ).getCanonicalName( ) + " with ns:" + useNs + " caused by: "
+          + e.getMessage( ), e );
+    } finally {
+      HoldMe.canHas.unlock( );
+    }
+    return useNs;
+  }
+
+  /**
+   * Marshal the given message to the given writer as a fragment, the document is not started or
+   * ended and the writer is flushed but not closed.
+   */
+  public String toStream( final XMLStreamWriter writer, final Object param, final String altNs ) throws BindingException {
+    final String useNs = checkMarshallable( param, altNs );
+    HoldMe.canHas.lock( );
+    try {
+      marshal( writer, param, useNs, false );
+    } finally {
+      HoldMe.canHas.unlock( );
+    }
+    return useNs;
+  }
+
+  /**
+   * Check if the given message has a root element mapping in this binding.
+   */
+  public boolean isBound( final Object param ) {
+    return param instanceof IMarshallable &&
+        this.bindingFactory != null &&
+        this.classToElementMap.containsKey( ( ( IMarshallable ) param ).JiBX_getName( ) );
+  }
+
+  /**
+   * Get an element for the message that is marshalled directly to the output when serialized.
+   *
+   * The message must be bound (see isBound), this is checked up front. The message is not
+   * marshalled until the element is serialized (or expanded) so any problem with the message
+   * content will surface at that time.
+   */
+  public OMElement toStreamingOM( final Object param, final String altNs ) throws BindingException {
+    final String useNs = checkMarshallable( param, altNs );
+    final String elementName = this.classToElementMap.get( ( ( IMarshallable ) param ).JiBX_getName( ) );
+    if ( elementName == null || useNs == null ) {
+      throw new BindingException( "No root element defined for message: " + param.getClass( ).getCanonicalName( ) + " in namespace: " + this.name );
+    }
+    final OMFactory factory = HoldMe.getOMFactory( );
+    return factory.createOMElement(
+        new BindingDataSource( this, param, altNs ),
+        elementName,
+        factory.createOMNamespace( useNs, "" ) );
+  }
+
+  /**
+   * Check if the given element is from toStreamingOM and so is marshalled when serialized.
+   */
+  public static boolean isStreamingOM( final OMElement element ) {
+    return element instanceof OMSourcedElement &&
+        ( ( OMSourcedElement ) element ).getDataSource( ) instanceof BindingDataSource;
+  }
+
+  private String checkMarshallable( final Object param, final String altNs ) throws BindingException {
     if ( param == null ) {
       throw new BindingException( "Cannot bind null value" );
     } else if ( !( param instanceof IMarshallable ) ) {
@@ -185,23 +253,30 @@ public class Binding {
       LOG.error( "Binding factory's element namespace is empty" );
       throw new BindingException( "Failed to prepare binding factory for message: " + param.getClass( ).getCanonicalName( ) + " with namespace: " + useNs );
     }
-    HoldMe.canHas.lock( );
+    return useNs;
+  }
+
+  private void marshal( final XMLStreamWriter writer,
+                        final Object param,
+                        final String useNs,
+                        final boolean document ) throws BindingException {
+    final String origNs = this.classToNamespaceMap.get( ( ( IMarshallable ) param ).JiBX_getName( ) );
     try {
       final IMarshallingContext mctx = this.bindingFactory.createMarshallingContext( );
-      final XMLStreamWriter wrtr = new NamespaceMappingXMLStreamWriter(
-          HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( outputStream, null ),
-          Collections.singletonMap( origNs, useNs ) );
+      final XMLStreamWriter wrtr = new NamespaceMappingXMLStreamWriter( writer, Collections.singletonMap( origNs, useNs ) );
       final StAXWriter staxWriter = new StAXWriter( this.bindingFactory.getNamespaces( ), wrtr );
       mctx.setXmlWriter( staxWriter );
-      mctx.marshalDocument( param );
-      mctx.getXmlWriter( ).flush( );
-    } catch ( XMLStreamException | JiBXException | IOException e ) {
+      if ( document ) {
+        mctx.marshalDocument( param );
+      } else {
+        // no document events, ending the document would close the callers writer
+        ( ( IMarshallable ) param ).marshal( mctx );
+      }
+      staxWriter.flush( );
+    } catch ( JiBXException | IOException e ) {
       throw new BindingException( this.name + " failed to marshall type " + param.getClass( ).getCanonicalName( ) + " with ns:" + useNs + " caused by: "
           + e.getMessage( ), e );
-    } finally {
-      HoldMe.canHas.unlock( );
     }
-    return useNs;
   }
 
   public OMElement toOM( final Object param ) throws BindingException {
@@ -0,0 +1,147 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.binding;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Map;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.axiom.om.OMDataSourceExt;
+import org.apache.axiom.om.OMOutputFormat;
+import com.eucalyptus.util.UnsafeByteArrayOutputStream;
+import com.google.common.collect.Maps;
+
+/**
+ * Data source for a bound message that marshals directly to the output writer.
+ *
+ * Serialization is not destructive, the message can be marshalled any number of
+ * times. A reader is only requested if the element must be expanded, in which
+ * case the message is marshalled to a buffer and parsed.
+ */
+class BindingDataSource implements OMDataSourceExt {
+
+  private final Binding binding;
+  private final Object message;
+  private final String altNs;
+  private final Map<String,Object> properties = Maps.newHashMap( );
+
+  BindingDataSource( final Binding binding, final Object message, final String altNs ) {
+    this.binding = binding;
+    this.message = message;
+    this.altNs = altNs;
+  }
+
+  @Override
+  public void serialize( final OutputStream output, final OMOutputFormat format ) throws XMLStreamException {
+    final XMLStreamWriter writer = HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( output, format.getCharSetEncoding( ) );
+    serialize( writer );
+    writer.flush( );
+  }
+
+  @Override
+  public void serialize( final Writer writer, final OMOutputFormat format ) throws XMLStreamException {
+    final XMLStreamWriter xmlWriter = HoldMe.getXMLOutputFactory( ).createXMLStreamWriter( writer );
+    serialize( xmlWriter );
+    xmlWriter.flush( );
+  }
+
+  @Override
+  public void serialize( final XMLStreamWriter xmlWriter ) throws XMLStreamException {
+    try {
+      binding.toStream( xmlWriter, message, altNs );
+    } catch ( BindingException e ) {
+      throw new XMLStreamException( e.getMessage( ), e );
+    }
+  }
+
+  @Override
+  public XMLStreamReader getReader( ) throws XMLStreamException {
+    final UnsafeByteArrayOutputStream bos = marshal( );
+    return HoldMe.getXMLStreamReader( new ByteArrayInputStream( bos.getBuffer( ), 0, bos.getCount( ) ) );
+  }
+
+  @Override
+  public Object getObject( ) {
+    return message;
+  }
+
+  @Override
+  public boolean isDestructiveRead( ) {
+    return false;
+  }
+
+  @Override
+  public boolean isDestructiveWrite( ) {
+    return false;
+  }
+
+  @Override
+  public InputStream getXMLInputStream( final String encoding ) {
+    try {
+      final UnsafeByteArrayOutputStream bos = marshal( );
+      return new ByteArrayInputStream( bos.getBuffer( ), 0, bos.getCount( ) );
+    } catch ( XMLStreamException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  @Override
+  public byte[] getXMLBytes( final String encoding ) {
+    try {
+      return marshal( ).toByteArray( );
+    } catch ( XMLStreamException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  @Override
+  public void close( ) {
+  }
+
+  @Override
+  public OMDataSourceExt copy( ) {
+    return new BindingDataSource( binding, message, altNs );
+  }
+
+  @Override
+  public Object getProperty( final String key ) {
+    return properties.get( key );
+  }
+
+  @Override
+  public Object setProperty( final String key, final Object value ) {
+    return properties.put( key, value );
+  }
+
+  @Override
+  public boolean hasProperty( final String key ) {
+    return properties.containsKey( key );
+  }
+
+  private UnsafeByteArrayOutputStream marshal( ) throws XMLStreamException {
+    final UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream( 4096 );
+    try {
+      binding.toStream( bos, message, altNs );
+    } catch ( BindingException e ) {
+      throw new XMLStreamException( e.getMessage( ), e );
+    }
+    return bos;
+  }
+}
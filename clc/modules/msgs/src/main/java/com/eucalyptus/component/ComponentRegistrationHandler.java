@@ -75,6 +75,7 @@ import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.records.Logs;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.util.async.ChannelPools;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.JdkFutureAdapters;
 
@@ -235,6 +236,7 @@ public class ComponentRegistrationHandler {
         LOG.error( ex );
         Logs.extreme( ).debug( ex, ex );
       }
+      ChannelPools.remove( conf );
       try {
         ServiceConfigurations.remove( conf );
       } catch ( Exception ex ) {
@@ -65,6 +65,7 @@ package com.eucalyptus.crypto;
 import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.Key;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import javax.crypto.Mac;
 import org.apache.log4j.Logger;
@@ -75,24 +76,22 @@ public enum Hmac {
 
   private static Logger LOG = Logger.getLogger( Hmac.class );
 
-  private final ThreadLocal<Mac> threadLocalMac = new ThreadLocal<Mac>() {
+  private final ThreadLocal<KeyedMac> threadLocalMac = new ThreadLocal<KeyedMac>() {
     @Override
-    protected Mac initialValue( ) {
+    protected KeyedMac initialValue( ) {
       final Mac mac = getInstance( );
       mac.reset( );
-      return mac;
+      return new KeyedMac( mac );
     }
   };
 
   public byte[] digestBinary( final Key key, final byte[] data ) throws InvalidKeyException {
-    final Mac mac = threadLocalMac.get( );
-    mac.init( key );
+    final Mac mac = threadLocalMac.get( ).init( key );
     return mac.doFinal( data );
   }
 
   public byte[] digestBinary( final Key key, final ByteBuffer data ) throws InvalidKeyException {
-    final Mac mac = threadLocalMac.get( );
-    mac.init( key );
+    final Mac mac = threadLocalMac.get( ).init( key );
     mac.update( data );
     return mac.doFinal( );
   }
@@ -105,4 +104,34 @@ public enum Hmac {
       throw new RuntimeException( e );
     }
   }
+
+  /**
+   * Mac with the encoded form of the key it was last initialized with.
+   *
+   * A Mac is reset to its initial state after each digest so initialization
+   * can be skipped when the same key is used repeatedly.
+   */
+  private static final class KeyedMac {
+    private final Mac mac;
+    private String algorithm;
+    private byte[] encodedKey;
+
+    private KeyedMac( final Mac mac ) {
+      this.mac = mac;
+    }
+
+    private Mac init( final Key key ) throws InvalidKeyException {
+      final byte[] encoded = key.getEncoded( );
+      if ( encoded == null ||
+          encodedKey == null ||
+          !key.getAlgorithm( ).equals( algorithm ) ||
+          !MessageDigest.isEqual( encoded, encodedKey ) ) {
+        encodedKey = null;
+        mac.init( key );
+        algorithm = key.getAlgorithm( );
+        encodedKey = encoded;
+      }
+      return mac;
+    }
+  }
 }
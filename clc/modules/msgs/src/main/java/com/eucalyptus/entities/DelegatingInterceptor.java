@@ -64,14 +64,18 @@ package com.eucalyptus.entities;
 
 import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Set;
 import org.hibernate.CallbackException;
 import org.hibernate.EntityMode;
 import org.hibernate.Interceptor;
 import org.hibernate.Transaction;
 import org.hibernate.type.Type;
+import com.eucalyptus.util.Pair;
+import com.google.common.collect.Sets;
 
 public class DelegatingInterceptor implements Interceptor {
   private final Interceptor interceptor;
+  private final Set<Pair<Class<?>,String>> changes = Sets.newHashSet( );
   
   public DelegatingInterceptor( ) {
     this.interceptor = Interceptors.get( );
@@ -87,14 +91,17 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public boolean onFlushDirty( Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types ) throws CallbackException {
+    this.changed( entity, id );
     return this.interceptor.onFlushDirty( entity, id, currentState, previousState, propertyNames, types );
   }
   
   public boolean onSave( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    this.changed( entity, id );
     return this.interceptor.onSave( entity, id, state, propertyNames, types );
   }
   
   public void onDelete( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    this.changed( entity, id );
     this.interceptor.onDelete( entity, id, state, propertyNames, types );
   }
   
@@ -147,7 +154,24 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public void afterTransactionCompletion( Transaction tx ) {
-    this.interceptor.afterTransactionCompletion( tx );
+    try {
+      if ( !this.changes.isEmpty( ) ) {
+        EntityCache.changed( this.changes );
+      }
+    } finally {
+      this.changes.clear( );
+      this.interceptor.afterTransactionCompletion( tx );
+    }
+  }
+
+  /**
+   * Track changes to entities for caches, changes are tracked regardless of
+   * transaction outcome as reloading an unchanged entity is harmless.
+   */
+  private void changed( Object entity, Serializable id ) {
+    if ( id != null && EntityCache.isTrackingChanges( ) ) {
+      this.changes.add( Pair.<Class<?>,String>pair( entity.getClass( ), id.toString( ) ) );
+    }
   }
   
   public String onPrepareStatement( String sql ) {
@@ -124,6 +124,7 @@ import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.engine.transaction.spi.TransactionCoordinator;
 import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.jdbc.Work;
 import org.hibernate.jpa.internal.EntityManagerFactoryImpl;
 import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.sql.JoinType;
@@ -519,6 +520,16 @@ public class Entities {
     getTransaction( object ).txState.getSession( ).clear( );
   }
 
+  /**
+   * Perform JDBC work using the connection for the current transaction.
+   *
+   * @param object The object used to determine the transaction context
+   * @param work The work to perform
+   */
+  public static <T> void doWork( final T object, final Work work ) {
+    getTransaction( object ).txState.getSession( ).doWork( work );
+  }
+
   /**
    * @see #query(T,QueryOptions)
    */
@@ -1108,6 +1119,33 @@ public class Entities {
     }
   }
 
+  /**
+   * Update all matching entities for the given class.
+   *
+   * <p>This is a bulk update so any loaded entities are not updated.</p>
+   *
+   * @param <T> The entity type
+   * @param updateClass The entity class
+   * @param update The assignments and condition for the update
+   * @param parameters The parameters for the update
+   * @return The number of updated entities
+   */
+  public static <T> int updateAllMatching( final Class<T> updateClass,
+                                           final String update,
+                                           final Map<String,?> parameters ) {
+    try {
+      final Query query = getTransaction( updateClass ).getTxState().getEntityManager()
+          .createQuery( "UPDATE " + updateClass.getName() + " " + update );
+      for ( final Entry<String,?> entry : parameters.entrySet() ) {
+        query.setParameter( entry.getKey(), entry.getValue() );
+      }
+      return query.executeUpdate();
+    } catch ( Exception e ) {
+      LOG.error( updateClass, e );
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
   /**
    * Count the matching entities for the given example.
    * 
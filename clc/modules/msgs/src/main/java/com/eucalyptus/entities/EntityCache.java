@@ -21,10 +21,13 @@ package com.eucalyptus.entities;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.criterion.Criterion;
@@ -34,6 +37,7 @@ import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -41,17 +45,34 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
 /**
+ * Cache of immutable views of entities.
  *
+ * By default the identifiers and versions of all entities are loaded on each
+ * access and any changed entities reloaded.
+ *
+ * When a verification interval is specified the cache is instead updated
+ * from locally committed changes, entities changed by other hosts are
+ * detected by checking a summary of the table at the verification interval.
+ *
+ * The sorted view returned by the cache is only rebuilt when the cache
+ * content changes.
  */
 public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>> implements Supplier<Iterable<TE>> {
 
   private static final int batchSize = 500;
+  private static final List<EntityCache<?,?>> listeningCaches = new CopyOnWriteArrayList<>( );
   private final E example;
   private final Criterion criterion;
   private final Set<String> eagerAssociationPaths;
   private final Set<String> lazyAssociationPaths;
   private final Function<? super E,TE> transformFunction;
-  private final ConcurrentMap<Pair<String,Integer>,TE> cache = Maps.newConcurrentMap( );
+  private final long verifyIntervalMillis;
+  private final Map<String,CacheEntry<TE>> cache = Maps.newHashMap( );
+  private final NavigableSet<CacheEntry<TE>> sortedCache = Sets.newTreeSet( new CacheEntryComparator<TE>( ) );
+  private final Set<String> changedIds = Sets.newConcurrentHashSet( );
+  private volatile ImmutableList<TE> snapshot = ImmutableList.of( );
+  private volatile long lastVerified = 0L;
+  private Object lastSummary;
 
   /**
    * Create an entity cache for the given example.
@@ -61,12 +82,26 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
    */
   public EntityCache( final E example,
                       final Function<? super E,TE> transformFunction ) {
+    this( example, transformFunction, 0L );
+  }
+
+  /**
+   * Create an entity cache for the given example.
+   *
+   * @param example The example object
+   * @param transformFunction Function to transform to immutable cache format
+   * @param verifyIntervalMillis Interval for detecting changes made by other hosts, zero to disable change tracking
+   */
+  public EntityCache( final E example,
+                      final Function<? super E,TE> transformFunction,
+                      final long verifyIntervalMillis ) {
     this(
         example,
         Restrictions.conjunction( ),
         Collections.<String>emptySet( ),
         Collections.<String>emptySet( ),
-        transformFunction );
+        transformFunction,
+        verifyIntervalMillis );
   }
 
   /**
@@ -83,11 +118,57 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
                       final Set<String> eagerAssociationPaths,
                       final Set<String> lazyAssociationPaths,
                       final Function<? super E,TE> transformFunction ) {
+    this( example, criterion, eagerAssociationPaths, lazyAssociationPaths, transformFunction, 0L );
+  }
+
+  /**
+   * Create an entity cache for the given example.
+   *
+   * @param example The example object
+   * @param criterion Additional criterion
+   * @param eagerAssociationPaths Paths to be eagerly loaded
+   * @param lazyAssociationPaths Paths to be lazily (or not) loaded
+   * @param transformFunction Function to transform to immutable cache format
+   * @param verifyIntervalMillis Interval for detecting changes made by other hosts, zero to disable change tracking
+   */
+  public EntityCache( final E example,
+                      final Criterion criterion,
+                      final Set<String> eagerAssociationPaths,
+                      final Set<String> lazyAssociationPaths,
+                      final Function<? super E,TE> transformFunction,
+                      final long verifyIntervalMillis ) {
     this.example = example;
     this.criterion = criterion;
     this.eagerAssociationPaths = eagerAssociationPaths;
     this.lazyAssociationPaths = lazyAssociationPaths;
     this.transformFunction = transformFunction;
+    this.verifyIntervalMillis = verifyIntervalMillis;
+    if ( verifyIntervalMillis > 0 ) {
+      listeningCaches.add( this );
+    }
+  }
+
+  /**
+   * Notification of committed changes to entities.
+   *
+   * @param changes The entity types and identifiers
+   */
+  static void changed( final Collection<Pair<Class<?>,String>> changes ) {
+    for ( final EntityCache<?,?> cache : listeningCaches ) {
+      final Class<?> entityClass = cache.example.getClass( );
+      for ( final Pair<Class<?>,String> change : changes ) {
+        if ( entityClass.isAssignableFrom( change.getLeft( ) ) ) {
+          cache.changedIds.add( change.getRight( ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * Are there any caches tracking changes.
+   */
+  static boolean isTrackingChanges( ) {
+    return !listeningCaches.isEmpty( );
   }
 
   @SuppressWarnings( "unchecked" )
@@ -106,38 +187,173 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
     }
   }
 
-  @SuppressWarnings( { "unchecked", "ConstantConditions" } )
-  private void refresh( ) {
+  /**
+   * Load a summary that changes when any matching entity is added, updated or removed.
+   */
+  private Object loadSummary( ) {
+    try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ){
+      final Criteria criteria = Entities.createCriteria( example.getClass( ) )
+          .add( Example.create( example ) )
+          .add( criterion )
+          .setProjection( Projections.projectionList( )
+              .add( Projections.rowCount( ) )
+              .add( Projections.sum( "version" ) )
+              .add( Projections.max( "lastUpdateTimestamp" ) ) );
+      return Lists.newArrayList( (Object[]) criteria.uniqueResult( ) );
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private List<E> loadEntities( final List<String> ids ) {
+    final Criteria criteria =  Entities.createCriteria( example.getClass( ) )
+        .add( Example.create( example ) )
+        .add( criterion )
+        .setFetchSize( batchSize )
+        .add( Restrictions.in( "id", ids ) );
+    for ( final String path : eagerAssociationPaths ) criteria.setFetchMode( path, FetchMode.JOIN );
+    for ( final String path : lazyAssociationPaths ) criteria.setFetchMode( path, FetchMode.SELECT );
+    return (List<E> ) criteria.list( );
+  }
+
+  /**
+   * Reload all changed entities using the identifiers and versions of all entities.
+   */
+  private boolean refresh( ) {
+    boolean changed = false;
     final Collection<Pair<String,Integer>> currentKeys = loadVersionMap( );
-    cache.keySet( ).retainAll( currentKeys );
-    currentKeys.removeAll( cache.keySet( ) );
-    for ( final List<Pair<String,Integer>> keyBatch : Iterables.partition( currentKeys, batchSize ) ) {
+    final Map<String,Integer> currentVersions = Maps.newHashMapWithExpectedSize( currentKeys.size( ) );
+    for ( final Pair<String,Integer> key : currentKeys ) {
+      currentVersions.put( key.getLeft( ), key.getRight( ) );
+    }
+    for ( final CacheEntry<TE> entry : Lists.newArrayList( cache.values( ) ) ) {
+      if ( !entry.version.equals( currentVersions.get( entry.id ) ) ) {
+        changed |= remove( entry.id );
+      } else {
+        currentVersions.remove( entry.id );
+      }
+    }
+    for ( final List<String> idBatch : Iterables.partition( currentVersions.keySet( ), batchSize ) ) {
       try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ) {
-        final Criteria criteria =  Entities.createCriteria( example.getClass( ) )
-            .add( Example.create( example ) )
-            .add( criterion )
-            .setFetchSize( batchSize )
-            .add( Restrictions.in( "id", Lists.newArrayList( Iterables.transform( keyBatch, Pair.<String, Integer>left( ) ) ) ) );
-        for ( final String path : eagerAssociationPaths ) criteria.setFetchMode( path, FetchMode.JOIN );
-        for ( final String path : lazyAssociationPaths ) criteria.setFetchMode( path, FetchMode.SELECT );
-        final List<E> entities = (List<E> ) criteria.list( );
-        for ( final E entity : entities ) {
-          cache.put( Pair.pair( getId( entity ), entity.getVersion( ) ), transformFunction.apply( entity ) );
+        for ( final E entity : loadEntities( idBatch ) ) {
+          changed |= put( entity );
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Reload entities with the given identifiers, removing any that no longer match.
+   */
+  private boolean reload( final Collection<String> ids ) {
+    boolean changed = false;
+    for ( final List<String> idBatch : Iterables.partition( ids, batchSize ) ) {
+      final Set<String> removedIds = Sets.newHashSet( idBatch );
+      try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ) {
+        for ( final E entity : loadEntities( idBatch ) ) {
+          removedIds.remove( getId( entity ) );
+          changed |= put( entity );
+        }
+      }
+      for ( final String id : removedIds ) {
+        changed |= remove( id );
+      }
+    }
+    return changed;
+  }
+
+  private boolean put( final E entity ) {
+    final String id = getId( entity );
+    final CacheEntry<TE> existing = cache.get( id );
+    if ( existing != null && existing.version.equals( entity.getVersion( ) ) ) {
+      return false;
+    }
+    final CacheEntry<TE> entry = new CacheEntry<>( id, entity.getVersion( ), transformFunction.apply( entity ) );
+    if ( existing != null ) {
+      sortedCache.remove( existing );
+    }
+    cache.put( id, entry );
+    sortedCache.add( entry );
+    return true;
+  }
+
+  private boolean remove( final String id ) {
+    final CacheEntry<TE> existing = cache.remove( id );
+    return existing != null && sortedCache.remove( existing );
+  }
+
+  private synchronized void update( ) {
+    boolean changed;
+    if ( verifyIntervalMillis <= 0 ) {
+      changed = refresh( );
+    } else {
+      final List<String> ids = Lists.newArrayList( changedIds );
+      changedIds.removeAll( ids );
+      final long now = System.currentTimeMillis( );
+      if ( lastVerified + verifyIntervalMillis <= now ) {
+        final Object summary = loadSummary( );
+        lastVerified = now;
+        if ( !summary.equals( lastSummary ) ) {
+          changed = refresh( );
+          lastSummary = summary;
+        } else {
+          changed = reload( ids );
         }
+      } else {
+        changed = reload( ids );
       }
     }
+    if ( changed ) {
+      snapshot = ImmutableList.copyOf( Iterables.transform( sortedCache, CacheEntry.<TE>value( ) ) );
+    }
   }
 
   @Override
   public Iterable<TE> get( ) {
-    refresh( );
-    return Ordering.natural( ).sortedCopy( cache.values( ) );
+    if ( verifyIntervalMillis <= 0 ||
+        !changedIds.isEmpty( ) ||
+        lastVerified + verifyIntervalMillis <= System.currentTimeMillis( ) ) {
+      update( );
+    }
+    return snapshot;
   }
 
   private String getId( final E entity ) {
     return Objects.toString( Entities.resolvePrimaryKey( entity ) );
   }
 
+  private static final class CacheEntry<TE> {
+    private final String id;
+    private final Integer version;
+    private final TE value;
+
+    CacheEntry( final String id, final Integer version, final TE value ) {
+      this.id = id;
+      this.version = version;
+      this.value = value;
+    }
+
+    static <TE> Function<CacheEntry<TE>,TE> value( ) {
+      return new Function<CacheEntry<TE>,TE>( ) {
+        @Override
+        public TE apply( final CacheEntry<TE> entry ) {
+          return entry.value;
+        }
+      };
+    }
+  }
+
+  /**
+   * Natural ordering of values with identifier as tie breaker.
+   */
+  private static final class CacheEntryComparator<TE extends Comparable<TE>> implements Comparator<CacheEntry<TE>> {
+    @Override
+    public int compare( final CacheEntry<TE> entry1, final CacheEntry<TE> entry2 ) {
+      final int result = Ordering.natural( ).compare( entry1.value, entry2.value );
+      return result != 0 ? result : entry1.id.compareTo( entry2.id );
+    }
+  }
+
   private enum ObjectArrayToStringIntPair implements Function<Object[],Pair<String,Integer>> {
     INSTANCE;
 
@@ -66,6 +66,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.log4j.Logger;
@@ -73,6 +74,7 @@ import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpVersion;
 import com.eucalyptus.component.ServiceConfiguration;
 import com.eucalyptus.component.Topology;
@@ -85,6 +87,9 @@ import com.eucalyptus.records.Logs;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.ws.EucalyptusRemoteFault;
 import com.eucalyptus.ws.WebServices;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 
 /**
@@ -98,6 +103,8 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
 
   private ClientBootstrap              clientBootstrap;
   private ChannelFuture                connectFuture;
+  private ChannelPool                  pool;
+  private ListenableFuture<Channel>    pooledChannel;
   
   private final AtomicBoolean          writeComplete = new AtomicBoolean( false );
   private final CheckedListenableFuture<R>   response;
@@ -122,6 +129,9 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     } else {
       final SocketAddress serviceSocketAddress = config.getSocketAddress( );
       final ChannelPipelineFactory factory = config.getComponentId( ).getClientPipeline( );
+      if ( ChannelPools.isEnabled( ) && !isGatherLog( factory ) ) {
+        return this.firePooled( config, factory, request );
+      }
       try {
         this.clientBootstrap = config.getComponentId( ).getClientBootstrap( new ChannelPipelineFactory( ) {
           @Override
@@ -145,7 +155,7 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
                 Logs.extreme( ).debug( "Connected as: " + future.getChannel( ).getLocalAddress( ) );
                 
                 final InetAddress localAddr = ( ( InetSocketAddress ) future.getChannel( ).getLocalAddress( ) ).getAddress( );
-                if ( !factory.getClass( ).getSimpleName( ).startsWith( "GatherLog" ) ) {
+                if ( !isGatherLog( factory ) ) {
                   Topology.populateServices( config, AsyncRequestHandler.this.request.get( ) );
                 }
 
@@ -196,14 +206,108 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     }
   }
   
+  /**
+   * Send the request on a pooled keep-alive channel, the channel is returned
+   * to the pool when the response is received.
+   */
+  private boolean firePooled( final ServiceConfiguration config, final ChannelPipelineFactory factory, final Q request ) {
+    final SocketAddress serviceSocketAddress = config.getSocketAddress( );
+    try {
+      this.pool = ChannelPools.lookup( config, factory );
+      Logs.extreme( ).debug( EventRecord.here( request.getClass( ), EventClass.SYSTEM_REQUEST, EventType.CHANNEL_OPENING, request.getClass( ).getSimpleName( ),
+                        request.getCorrelationId( ), serviceSocketAddress.toString( ) ) );
+      final HttpRequest httpRequest = new MappingHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.POST, config, request );
+      this.pooledChannel = this.pool.acquire( );
+      Futures.addCallback( this.pooledChannel, new FutureCallback<Channel>( ) {
+        @Override
+        public void onSuccess( final Channel channel ) {
+          try {
+            Topology.populateServices( config, request );
+            Logs.extreme( ).debug( httpRequest );
+            AsyncRequestHandler.this.pool.write( channel, AsyncRequestHandler.this, httpRequest ).addListener( new ChannelFutureListener( ) {
+              @Override
+              public void operationComplete( final ChannelFuture future ) throws Exception {
+                if ( future.isSuccess( ) ) {
+                  AsyncRequestHandler.this.writeComplete.set( true );
+                  Logs.extreme( ).debug(
+                    EventRecord.here(
+                      request.getClass( ),
+                      EventClass.SYSTEM_REQUEST,
+                      EventType.CHANNEL_WRITE,
+                      request.getClass( ).getSimpleName( ),
+                      request.getCorrelationId( ),
+                      serviceSocketAddress.toString( ),
+                      "" + future.getChannel( ).getLocalAddress( ),
+                      "" + future.getChannel( ).getRemoteAddress( ) ) );
+                } else {
+                  AsyncRequestHandler.this.teardown( new RetryableConnectionException(
+                      "Write failed on pooled channel: " + future.getCause( ).getMessage( ), future.getCause( ), request ) );
+                }
+              }
+            } );
+          } catch ( final Exception ex ) {
+            LOG.error( ex, ex );
+            AsyncRequestHandler.this.teardown( ex );
+          }
+        }
+
+        @Override
+        public void onFailure( final Throwable t ) {
+          if ( !( t instanceof CancellationException ) ) {
+            AsyncRequestHandler.this.teardown( t );
+          }
+        }
+      } );
+      return true;
+    } catch ( final Exception t ) {
+      LOG.error( t, t );
+      this.teardown( t );
+      return false;
+    }
+  }
+
+  private static boolean isGatherLog( final ChannelPipelineFactory factory ) {
+    return factory.getClass( ).getSimpleName( ).startsWith( "GatherLog" );
+  }
+
   private void teardown( Throwable t ) {
     if ( t == null ) {
       t = new NullPointerException( "teardown() called with null argument." );
     }
-    this.logRequestFailure( t );
-    this.response.setException( t );
+    this.fail( t );
     if ( this.connectFuture != null ) {
       this.maybeCloseChannel( );
+    } else if ( this.pooledChannel != null ) {
+      this.maybeInvalidateChannel( );
+    }
+  }
+
+  private void fail( final Throwable t ) {
+    this.logRequestFailure( t );
+    this.response.setException( t );
+  }
+
+  /**
+   * Complete the exchange with the endpoint, the channel is closed or returned
+   * to the pool.
+   */
+  private void finished( final MessageEvent e ) {
+    if ( this.pooledChannel != null ) {
+      this.pool.release( e.getChannel( ), e.getMessage( ) instanceof HttpResponse ? ( HttpResponse ) e.getMessage( ) : null );
+    } else {
+      e.getFuture( ).addListener( ChannelFutureListener.CLOSE );
+    }
+  }
+
+  private void maybeInvalidateChannel( ) {
+    if ( !this.pooledChannel.isDone( ) ) {
+      this.pooledChannel.cancel( false );
+    } else if ( !this.pooledChannel.isCancelled( ) ) {
+      try {
+        this.pool.invalidate( this.pooledChannel.get( ) );
+      } catch ( final Exception e ) {
+        // acquisition failed, no channel to close
+      }
     }
   }
 
@@ -281,12 +385,13 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
         final MappingHttpResponse response = ( MappingHttpResponse ) e.getMessage( );
         try {
           final R msg = ( R ) response.getMessage( );
-          if ( !msg.get_return( true ) ) {
-            this.teardown( new FailedRequestException( "Cluster response includes _return=false", msg ) );
+          final boolean success = msg.get_return( true );
+          this.finished( e );
+          if ( !success ) {
+            this.fail( new FailedRequestException( "Cluster response includes _return=false", msg ) );
           } else {
             this.response.set( msg );
           }
-          e.getFuture( ).addListener( ChannelFutureListener.CLOSE );
         } catch ( final Exception e1 ) {
           LOG.error( e1, e1 );
           this.teardown( e1 );
@@ -335,7 +440,11 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     Logs.extreme( ).error( e, cause );
     if ( cause instanceof EucalyptusRemoteFault ) {//GRZE: treat this like a normal response, set the response and close the channel.
       this.response.setException( cause );
-      e.getFuture( ).addListener( ChannelFutureListener.CLOSE );
+      if ( this.pooledChannel != null ) {
+        this.pool.invalidate( e.getChannel( ) );
+      } else {
+        e.getFuture( ).addListener( ChannelFutureListener.CLOSE );
+      }
     } else {
       this.teardown( cause );
     }
@@ -357,6 +466,10 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     return connectFuture;
   }
 
+  public ListenableFuture<Channel> getPooledChannel() {
+    return pooledChannel;
+  }
+
   public ClientBootstrap getClientBootstrap() {
     return clientBootstrap;
   }
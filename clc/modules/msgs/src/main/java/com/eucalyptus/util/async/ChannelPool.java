@@ -0,0 +1,513 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.util.async;
+
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
+import org.jboss.netty.util.Timer;
+import com.eucalyptus.records.Logs;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Pool of HTTP/1.1 keep-alive channels for a single endpoint.
+ *
+ * A channel is acquired for each request, the request is written using the
+ * pool and the channel released once the response is received. Responses on
+ * a channel are dispatched to request handlers in the order that requests
+ * were written, so a channel can have more than one request in flight when
+ * the pipeline depth allows (the endpoint must respond in order.)
+ *
+ * Channels are checked before reuse, idle channels are closed after the idle
+ * timeout and channels closed by the endpoint are removed from the pool.
+ * When the connection limit is reached acquisitions wait for a release.
+ *
+ * Connecting can block (e.g. for a per-endpoint connection permit) so
+ * connections replacing closed channels are opened using the connect
+ * executor rather than the I/O thread that closed the channel.
+ */
+public class ChannelPool {
+  private static final Logger LOG = Logger.getLogger( ChannelPool.class );
+  private static final String IDLE_HANDLER = "pool-idlehandler";
+  private static final String DISPATCHER = "pool-dispatcher";
+
+  private final String name;
+  private final ClientBootstrap bootstrap;
+  private final SocketAddress address;
+  private final int maxConnections;
+  private final int pipelineDepth;
+  private final long idleTimeoutMillis;
+  private final Executor connectExecutor;
+
+  private final Map<Channel,PooledChannel> channels = Maps.newLinkedHashMap( );
+  private final Queue<SettableFuture<Channel>> waiting = new ArrayDeque<>( );
+  private int connecting = 0;
+  private boolean shutdown = false;
+
+  private final AtomicLong opened = new AtomicLong( );
+  private final AtomicLong closed = new AtomicLong( );
+  private final AtomicLong acquired = new AtomicLong( );
+  private final AtomicLong reused = new AtomicLong( );
+  private final AtomicLong evicted = new AtomicLong( );
+  private final AtomicLong failed = new AtomicLong( );
+
+  /**
+   * @param name The name for the pool
+   * @param bootstrap Bootstrap for new channels, the pipeline factory is wrapped by the pool
+   * @param address The endpoint address
+   * @param maxConnections The maximum number of open channels
+   * @param pipelineDepth The maximum number of requests in flight on a channel
+   * @param idleTimeoutMillis The time after which an unused channel is closed
+   * @param timer Timer for idle channel detection
+   * @param connectExecutor Executor for connections that replace closed channels
+   */
+  public ChannelPool( final String name,
+                      final ClientBootstrap bootstrap,
+                      final SocketAddress address,
+                      final int maxConnections,
+                      final int pipelineDepth,
+                      final long idleTimeoutMillis,
+                      final Timer timer,
+                      final Executor connectExecutor ) {
+    this.name = name;
+    this.bootstrap = bootstrap;
+    this.address = address;
+    this.maxConnections = Math.max( 1, maxConnections );
+    this.pipelineDepth = Math.max( 1, pipelineDepth );
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.connectExecutor = connectExecutor;
+    final ChannelPipelineFactory factory = bootstrap.getPipelineFactory( );
+    this.bootstrap.setPipelineFactory( new ChannelPipelineFactory( ) {
+      @Override
+      public ChannelPipeline getPipeline( ) throws Exception {
+        final ChannelPipeline pipeline = factory.getPipeline( );
+        pipeline.addLast( IDLE_HANDLER, new IdleStateHandler( timer, 0, 0, idleTimeoutMillis, TimeUnit.MILLISECONDS ) );
+        pipeline.addLast( DISPATCHER, new Dispatcher( ) );
+        return pipeline;
+      }
+    } );
+  }
+
+  public String getName( ) {
+    return name;
+  }
+
+  public SocketAddress getAddress( ) {
+    return address;
+  }
+
+  /**
+   * Acquire a connected channel with capacity for a request.
+   *
+   * Cancel the returned future if the channel is no longer required.
+   */
+  public ListenableFuture<Channel> acquire( ) {
+    acquired.incrementAndGet( );
+    final SettableFuture<Channel> future = SettableFuture.create( );
+    final Channel channel;
+    final boolean connect;
+    synchronized ( this ) {
+      if ( shutdown ) {
+        future.setException( new IllegalStateException( "Channel pool closed: " + name ) );
+        return future;
+      }
+      evictIdle( );
+      channel = available( );
+      connect = channel == null && channels.size( ) + connecting < maxConnections;
+      if ( connect ) {
+        connecting++;
+      } else if ( channel == null ) {
+        waiting.add( future );
+      }
+    }
+    if ( channel != null ) {
+      reused.incrementAndGet( );
+      future.set( channel );
+    } else if ( connect ) {
+      connect( future );
+    }
+    return future;
+  }
+
+  /**
+   * Write a request on an acquired channel.
+   *
+   * The handler receives upstream events for the channel until the response
+   * for the request is received.
+   */
+  public ChannelFuture write( final Channel channel,
+                              final ChannelUpstreamHandler handler,
+                              final Object request ) {
+    final Dispatcher dispatcher = (Dispatcher) channel.getPipeline( ).get( DISPATCHER );
+    synchronized ( dispatcher ) {
+      if ( !channel.isConnected( ) ) {
+        return Channels.failedFuture( channel, new ClosedChannelException( ) );
+      }
+      dispatcher.handlers.add( handler );
+      return channel.write( request );
+    }
+  }
+
+  /**
+   * Release a channel after a response is received.
+   *
+   * @param response The response, used to check if the channel can be reused (may be null)
+   */
+  public void release( final Channel channel, final HttpMessage response ) {
+    boolean reusable = channel.isConnected( ) && ( response == null || HttpHeaders.isKeepAlive( response ) );
+    SettableFuture<Channel> waiter = null;
+    synchronized ( this ) {
+      final PooledChannel pooled = channels.get( channel );
+      if ( pooled != null && reusable && shutdown ) {
+        reusable = --pooled.inFlight > 0;
+      } else if ( pooled != null && reusable ) {
+        pooled.inFlight--;
+        pooled.lastUsed = System.currentTimeMillis( );
+        while ( ( waiter = waiting.poll( ) ) != null && waiter.isCancelled( ) );
+        if ( waiter != null ) {
+          pooled.inFlight++;
+        }
+      }
+    }
+    if ( !reusable ) {
+      channel.close( );
+    } else if ( waiter != null ) {
+      reused.incrementAndGet( );
+      if ( !waiter.set( channel ) ) {
+        release( channel, null );
+      }
+    }
+  }
+
+  /**
+   * Close a channel that is in an unknown state.
+   */
+  public void invalidate( final Channel channel ) {
+    if ( channel.isOpen( ) ) {
+      failed.incrementAndGet( );
+      channel.close( );
+    }
+  }
+
+  /**
+   * Close all channels, pending and later acquisitions fail.
+   */
+  public void close( ) {
+    shutdown( true );
+  }
+
+  /**
+   * Close idle channels and close other channels when released, pending and
+   * later acquisitions fail.
+   */
+  public void closeWhenIdle( ) {
+    shutdown( false );
+  }
+
+  private void shutdown( final boolean closeInFlight ) {
+    final List<Channel> toClose = Lists.newArrayList( );
+    final List<SettableFuture<Channel>> toFail;
+    synchronized ( this ) {
+      shutdown = true;
+      for ( final PooledChannel pooled : channels.values( ) ) {
+        if ( closeInFlight || pooled.inFlight == 0 ) {
+          toClose.add( pooled.channel );
+        }
+      }
+      toFail = Lists.newArrayList( waiting );
+      waiting.clear( );
+    }
+    for ( final Channel channel : toClose ) {
+      channel.close( );
+    }
+    for ( final SettableFuture<Channel> future : toFail ) {
+      future.setException( new IllegalStateException( "Channel pool closed: " + name ) );
+    }
+  }
+
+  public Statistics getStatistics( ) {
+    int open = 0;
+    int idle = 0;
+    int inFlight = 0;
+    int waiters;
+    synchronized ( this ) {
+      for ( final PooledChannel pooled : channels.values( ) ) {
+        open++;
+        inFlight += pooled.inFlight;
+        if ( pooled.inFlight == 0 ) idle++;
+      }
+      waiters = waiting.size( );
+    }
+    return new Statistics( name, open, idle, inFlight, waiters,
+        opened.get( ), closed.get( ), acquired.get( ), reused.get( ), evicted.get( ), failed.get( ) );
+  }
+
+  private Channel available( ) {
+    PooledChannel best = null;
+    for ( final PooledChannel pooled : channels.values( ) ) {
+      if ( pooled.inFlight < pipelineDepth && pooled.channel.isConnected( ) &&
+          ( best == null || pooled.inFlight < best.inFlight ) ) {
+        best = pooled;
+        if ( best.inFlight == 0 ) break;
+      }
+    }
+    if ( best != null ) {
+      best.inFlight++;
+      return best.channel;
+    }
+    return null;
+  }
+
+  private void evictIdle( ) {
+    final long expiry = System.currentTimeMillis( ) - idleTimeoutMillis;
+    for ( final Iterator<PooledChannel> iterator = channels.values( ).iterator( ); iterator.hasNext( ); ) {
+      final PooledChannel pooled = iterator.next( );
+      if ( pooled.inFlight == 0 && ( pooled.lastUsed < expiry || !pooled.channel.isConnected( ) ) ) {
+        iterator.remove( );
+        evicted.incrementAndGet( );
+        pooled.channel.close( );
+      }
+    }
+  }
+
+  private void connect( final SettableFuture<Channel> future ) {
+    final ChannelFuture connectFuture;
+    try {
+      connectFuture = bootstrap.connect( address );
+    } catch ( final RuntimeException e ) {
+      connectFailed( future, e );
+      return;
+    }
+    connectFuture.addListener( new ChannelFutureListener( ) {
+      @Override
+      public void operationComplete( final ChannelFuture channelFuture ) throws Exception {
+        if ( channelFuture.isSuccess( ) ) {
+          final Channel channel = channelFuture.getChannel( );
+          final boolean closed;
+          synchronized ( ChannelPool.this ) {
+            connecting--;
+            closed = shutdown;
+            if ( !closed ) {
+              channels.put( channel, new PooledChannel( channel ) );
+            }
+          }
+          opened.incrementAndGet( );
+          if ( closed ) {
+            channel.close( );
+            future.setException( new IllegalStateException( "Channel pool closed: " + name ) );
+            return;
+          }
+          channel.getCloseFuture( ).addListener( new ChannelFutureListener( ) {
+            @Override
+            public void operationComplete( final ChannelFuture closeFuture ) throws Exception {
+              channelClosed( closeFuture.getChannel( ) );
+            }
+          } );
+          if ( !future.set( channel ) ) { // cancelled
+            release( channel, null );
+          }
+        } else {
+          connectFailed( future, channelFuture.getCause( ) );
+        }
+      }
+    } );
+  }
+
+  private void connectFailed( final SettableFuture<Channel> future, final Throwable cause ) {
+    synchronized ( this ) {
+      connecting--;
+    }
+    failed.incrementAndGet( );
+    future.setException( cause );
+  }
+
+  private void channelClosed( final Channel channel ) {
+    closed.incrementAndGet( );
+    SettableFuture<Channel> waiter = null;
+    synchronized ( this ) {
+      channels.remove( channel );
+      if ( !shutdown && channels.size( ) + connecting < maxConnections ) {
+        while ( ( waiter = waiting.poll( ) ) != null && waiter.isCancelled( ) );
+        if ( waiter != null ) {
+          connecting++;
+        }
+      }
+    }
+    if ( waiter != null ) {
+      final SettableFuture<Channel> connectWaiter = waiter;
+      try {
+        connectExecutor.execute( new Runnable( ) {
+          @Override
+          public void run( ) {
+            connect( connectWaiter );
+          }
+        } );
+      } catch ( final RejectedExecutionException e ) {
+        connectFailed( connectWaiter, e );
+      }
+    }
+  }
+
+  private static final class PooledChannel {
+    private final Channel channel;
+    private int inFlight = 1;
+    private long lastUsed = System.currentTimeMillis( );
+
+    PooledChannel( final Channel channel ) {
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Dispatches upstream events to the handler for the oldest request in flight.
+   */
+  private final class Dispatcher implements ChannelUpstreamHandler {
+    private final Deque<ChannelUpstreamHandler> handlers = new ArrayDeque<>( );
+
+    @Override
+    public void handleUpstream( final ChannelHandlerContext ctx, final ChannelEvent e ) throws Exception {
+      if ( e instanceof MessageEvent ) {
+        final ChannelUpstreamHandler handler;
+        synchronized ( this ) {
+          handler = handlers.poll( );
+        }
+        if ( handler != null ) {
+          handler.handleUpstream( ctx, e );
+        } else {
+          LOG.warn( "Closing channel after unexpected message " + e.getChannel( ) );
+          e.getChannel( ).close( );
+        }
+      } else if ( e instanceof ExceptionEvent ) {
+        final ChannelUpstreamHandler handler;
+        synchronized ( this ) {
+          handler = handlers.peek( );
+        }
+        if ( handler != null ) {
+          handler.handleUpstream( ctx, e );
+        } else {
+          Logs.extreme( ).debug( "Closing idle channel after error " + e.getChannel( ), ( (ExceptionEvent) e ).getCause( ) );
+          e.getChannel( ).close( );
+        }
+      } else if ( e instanceof IdleStateEvent ) {
+        final boolean idle;
+        synchronized ( this ) {
+          idle = handlers.isEmpty( );
+        }
+        if ( idle ) {
+          evicted.incrementAndGet( );
+          e.getChannel( ).close( );
+        }
+      } else if ( e instanceof ChannelStateEvent && isClosedEvent( (ChannelStateEvent) e ) ) {
+        final List<ChannelUpstreamHandler> pending;
+        synchronized ( this ) {
+          pending = Lists.newArrayList( handlers );
+          handlers.clear( );
+        }
+        for ( final ChannelUpstreamHandler handler : pending ) {
+          handler.handleUpstream( ctx, e );
+        }
+      } else {
+        ctx.sendUpstream( e );
+      }
+    }
+
+    private boolean isClosedEvent( final ChannelStateEvent event ) {
+      return
+          ( event.getState( ) == ChannelState.OPEN && Boolean.FALSE.equals( event.getValue( ) ) ) ||
+          ( event.getState( ) == ChannelState.CONNECTED && event.getValue( ) == null );
+    }
+  }
+
+  public static final class Statistics {
+    private final String name;
+    private final int open;
+    private final int idle;
+    private final int inFlight;
+    private final int waiting;
+    private final long opened;
+    private final long closed;
+    private final long acquired;
+    private final long reused;
+    private final long evicted;
+    private final long failed;
+
+    Statistics( final String name, final int open, final int idle, final int inFlight, final int waiting,
+                final long opened, final long closed, final long acquired, final long reused,
+                final long evicted, final long failed ) {
+      this.name = name;
+      this.open = open;
+      this.idle = idle;
+      this.inFlight = inFlight;
+      this.waiting = waiting;
+      this.opened = opened;
+      this.closed = closed;
+      this.acquired = acquired;
+      this.reused = reused;
+      this.evicted = evicted;
+      this.failed = failed;
+    }
+
+    public String getName( ) { return name; }
+    public int getOpen( ) { return open; }
+    public int getIdle( ) { return idle; }
+    public int getInFlight( ) { return inFlight; }
+    public int getWaiting( ) { return waiting; }
+    public long getOpened( ) { return opened; }
+    public long getClosed( ) { return closed; }
+    public long getAcquired( ) { return acquired; }
+    public long getReused( ) { return reused; }
+    public long getEvicted( ) { return evicted; }
+    public long getFailed( ) { return failed; }
+
+    @Override
+    public String toString( ) {
+      return name + " open=" + open + " idle=" + idle + " inFlight=" + inFlight + " waiting=" + waiting +
+          " opened=" + opened + " closed=" + closed + " acquired=" + acquired + " reused=" + reused +
+          " evicted=" + evicted + " failed=" + failed;
+    }
+  }
+}
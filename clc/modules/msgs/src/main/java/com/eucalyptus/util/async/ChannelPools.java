@@ -0,0 +1,189 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.util.async;
+
+import java.lang.management.ManagementFactory;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+import com.eucalyptus.component.ServiceConfiguration;
+import com.eucalyptus.system.Threads;
+import com.eucalyptus.ws.StackConfiguration;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Keep-alive channel pools for internal requests, one per service endpoint.
+ */
+public class ChannelPools {
+  private static final Logger LOG = Logger.getLogger( ChannelPools.class );
+  private static final ConcurrentMap<String,PoolEntry> pools = Maps.newConcurrentMap( );
+  private static final Timer timer = new HashedWheelTimer( );
+  private static final ExecutorService connectExecutor =
+      Executors.newCachedThreadPool( Threads.threadFactory( "channel-pool-connect-%d" ) );
+
+  /**
+   * Pipeline factories implement this interface when the number of
+   * connections to an endpoint is limited, the pool size is capped at the
+   * limit so idle pooled channels cannot hold every connection permit.
+   */
+  public interface ConnectionLimit {
+    int getMaxConnections( );
+  }
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer( ).registerMBean(
+          new ChannelPoolsView( ),
+          new ObjectName( ChannelPools.class.getPackage( ).getName( ) + ":type=ChannelPools" ) );
+    } catch ( final Exception e ) {
+      LOG.error( "Error registering channel pools with JMX: " + e.getMessage( ), e );
+    }
+  }
+
+  public static boolean isEnabled( ) {
+    return Boolean.TRUE.equals( StackConfiguration.CLIENT_CONNECTION_POOL_ENABLED );
+  }
+
+  /**
+   * Get the pool for a service using channels from the given pipeline factory.
+   *
+   * Pools are replaced when the pool configuration changes, channels for a
+   * replaced pool are closed when idle.
+   */
+  static ChannelPool lookup( final ServiceConfiguration config, final ChannelPipelineFactory factory ) {
+    final SocketAddress address = config.getSocketAddress( );
+    final String key = config.getFullName( ) + " " + address + " " + factory.getClass( ).getName( );
+    final int maxConnections = factory instanceof ConnectionLimit ?
+        Math.min( StackConfiguration.CLIENT_CONNECTION_POOL_MAX, ( (ConnectionLimit) factory ).getMaxConnections( ) ) :
+        StackConfiguration.CLIENT_CONNECTION_POOL_MAX;
+    final String settings = settings( maxConnections );
+    while ( true ) {
+      final PoolEntry entry = pools.get( key );
+      if ( entry != null && entry.settings.equals( settings ) ) {
+        return entry.pool;
+      }
+      final PoolEntry newEntry = new PoolEntry( config.getFullName( ).toString( ), settings, new ChannelPool(
+          key,
+          config.getComponentId( ).getClientBootstrap( factory ),
+          address,
+          maxConnections,
+          StackConfiguration.CLIENT_CONNECTION_POOL_PIPELINE_DEPTH,
+          TimeUnit.SECONDS.toMillis( StackConfiguration.CLIENT_CONNECTION_POOL_IDLE_TIMEOUT_SECS ),
+          timer,
+          connectExecutor ) );
+      if ( entry == null ? pools.putIfAbsent( key, newEntry ) == null : pools.replace( key, entry, newEntry ) ) {
+        if ( entry != null ) {
+          entry.pool.closeWhenIdle( );
+        }
+        return newEntry.pool;
+      }
+      // lost a race with another lookup or a remove, try again with the current entry
+      newEntry.pool.close( );
+    }
+  }
+
+  /**
+   * Remove and close the pools for a service, for use when the service is deregistered.
+   */
+  public static void remove( final ServiceConfiguration config ) {
+    final String fullName = config.getFullName( ).toString( );
+    for ( final Map.Entry<String,PoolEntry> entry : pools.entrySet( ) ) {
+      if ( entry.getValue( ).fullName.equals( fullName ) && pools.remove( entry.getKey( ), entry.getValue( ) ) ) {
+        LOG.debug( "Closing channel pool " + entry.getKey( ) );
+        entry.getValue( ).pool.close( );
+      }
+    }
+  }
+
+  public static List<ChannelPool.Statistics> getStatistics( ) {
+    final List<ChannelPool.Statistics> statistics = Lists.newArrayList( );
+    for ( final PoolEntry entry : pools.values( ) ) {
+      statistics.add( entry.pool.getStatistics( ) );
+    }
+    return statistics;
+  }
+
+  private static String settings( final int maxConnections ) {
+    return maxConnections + "/" +
+        StackConfiguration.CLIENT_CONNECTION_POOL_PIPELINE_DEPTH + "/" +
+        StackConfiguration.CLIENT_CONNECTION_POOL_IDLE_TIMEOUT_SECS;
+  }
+
+  private static final class PoolEntry {
+    private final String fullName;
+    private final String settings;
+    private final ChannelPool pool;
+
+    PoolEntry( final String fullName, final String settings, final ChannelPool pool ) {
+      this.fullName = fullName;
+      this.settings = settings;
+      this.pool = pool;
+    }
+  }
+
+  private static final class ChannelPoolsView implements ChannelPoolsMXBean {
+    @Override
+    public int getPoolCount( ) {
+      return pools.size( );
+    }
+
+    @Override
+    public int getOpenConnections( ) {
+      int open = 0;
+      for ( final ChannelPool.Statistics statistics : getStatistics( ) ) {
+        open += statistics.getOpen( );
+      }
+      return open;
+    }
+
+    @Override
+    public long getOpenedConnections( ) {
+      long opened = 0;
+      for ( final ChannelPool.Statistics statistics : getStatistics( ) ) {
+        opened += statistics.getOpened( );
+      }
+      return opened;
+    }
+
+    @Override
+    public long getReusedConnections( ) {
+      long reused = 0;
+      for ( final ChannelPool.Statistics statistics : getStatistics( ) ) {
+        reused += statistics.getReused( );
+      }
+      return reused;
+    }
+
+    @Override
+    public String[] getPoolStatistics( ) {
+      final List<String> values = Lists.newArrayList( );
+      for ( final ChannelPool.Statistics statistics : getStatistics( ) ) {
+        values.add( statistics.toString( ) );
+      }
+      return values.toArray( new String[ values.size( ) ] );
+    }
+  }
+}
@@ -0,0 +1,324 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.apache.log4j.Logger;
+import com.google.common.collect.Maps;
+
+/**
+ * Metrics for monitored actions.
+ *
+ * Each action has a windowed histogram, values can be recorded from any
+ * thread without locking. Actions that start and end in
+ * different places can be recorded using operation identifiers to match
+ * the start and end times.
+ *
+ * Metrics are available via JMX using the name:
+ *
+ *   com.eucalyptus.util.metrics:type=ActionMetrics,name=ACTION_NAME
+ *
+ * Attributes read together are served from a single snapshot.
+ */
+public class ActionMetrics {
+
+  private static final Logger LOG = Logger.getLogger( ActionMetrics.class );
+  private static final int WINDOW_INTERVALS = 6;
+  private static final int MAX_PARTIAL_OPERATIONS = 10000;
+  private static final long PARTIAL_OPERATION_EXPIRY = TimeUnit.DAYS.toMillis( 1 );
+
+  private static final MonitoredAction[] actions = MonitoredAction.values( );
+  private static final AtomicReferenceArray<Histogram> histograms = new AtomicReferenceArray<>( actions.length );
+  private static final AtomicReferenceArray<ConcurrentMap<String,PartialOperation>> partialOperations =
+      new AtomicReferenceArray<>( actions.length );
+
+  static {
+    register( );
+  }
+
+  /**
+   * Record a value for an action, negative values are ignored.
+   */
+  public static void record( final MonitoredAction action, final long value ) {
+    if ( value >= 0 ) {
+      histogram( action ).record( value );
+    }
+  }
+
+  /**
+   * Record the start time for an action that will be ended later.
+   *
+   * If the operation was already ended the elapsed time is recorded.
+   */
+  public static void startOperation( final MonitoredAction action, final String id, final long startTime ) {
+    partialOperation( action, id, true, startTime );
+  }
+
+  /**
+   * Record the end time for an action that was started earlier.
+   *
+   * If the operation was already started the elapsed time is recorded.
+   */
+  public static void endOperation( final MonitoredAction action, final String id, final long endTime ) {
+    partialOperation( action, id, false, endTime );
+  }
+
+  public static Histogram.Snapshot getSnapshot( final MonitoredAction action ) {
+    return histogram( action ).snapshot( );
+  }
+
+  public static long getTotalCount( final MonitoredAction action ) {
+    final Histogram histogram = histograms.get( action.ordinal( ) );
+    return histogram == null ? 0 : histogram.getTotalCount( );
+  }
+
+  /**
+   * Clear values for an action
+   */
+  public static void clear( final MonitoredAction action ) {
+    final Histogram histogram = histograms.get( action.ordinal( ) );
+    if ( histogram != null ) {
+      histogram.reset( );
+    }
+    final ConcurrentMap<String,PartialOperation> operations = partialOperations.get( action.ordinal( ) );
+    if ( operations != null ) {
+      operations.clear( );
+    }
+  }
+
+  /**
+   * Clear values for all actions
+   */
+  public static void clearAll( ) {
+    for ( final MonitoredAction action : actions ) {
+      clear( action );
+    }
+  }
+
+  /**
+   * Discard all histograms so they are recreated with the current window configuration.
+   */
+  static void windowChanged( ) {
+    for ( int i = 0; i < actions.length; i++ ) {
+      histograms.set( i, null );
+    }
+  }
+
+  private static Histogram histogram( final MonitoredAction action ) {
+    final int index = action.ordinal( );
+    Histogram histogram = histograms.get( index );
+    if ( histogram == null ) {
+      final Histogram newHistogram = new Histogram(
+          TimeUnit.SECONDS.toMillis( MetricsConfiguration.METRICS_WINDOW_SECONDS ), WINDOW_INTERVALS );
+      histogram = histograms.compareAndSet( index, null, newHistogram ) ?
+          newHistogram :
+          histograms.get( index );
+      if ( histogram == null ) { // concurrent window change
+        histogram = newHistogram;
+      }
+    }
+    return histogram;
+  }
+
+  private static void partialOperation(
+      final MonitoredAction action,
+      final String id,
+      final boolean start,
+      final long time
+  ) {
+    final ConcurrentMap<String,PartialOperation> operations = partialOperations( action );
+    final PartialOperation operation = new PartialOperation( start, time );
+    while ( true ) {
+      final PartialOperation other = operations.get( id );
+      if ( other == null ) {
+        if ( operations.size( ) >= MAX_PARTIAL_OPERATIONS && !expirePartialOperations( operations ) ) {
+          LOG.debug( "Too many partial operations for " + action + ", discarding " + id );
+          return;
+        }
+        if ( operations.putIfAbsent( id, operation ) == null ) {
+          return;
+        }
+      } else if ( other.start == start ) {
+        if ( operations.replace( id, other, operation ) ) {
+          return;
+        }
+      } else if ( operations.remove( id, other ) ) {
+        final long elapsed = start ? other.time - time : time - other.time;
+        if ( elapsed > 0 ) {
+          record( action, elapsed );
+        }
+        return;
+      }
+    }
+  }
+
+  private static boolean expirePartialOperations( final ConcurrentMap<String,PartialOperation> operations ) {
+    final long expiry = System.currentTimeMillis( ) - PARTIAL_OPERATION_EXPIRY;
+    boolean expired = false;
+    for ( final Iterator<PartialOperation> iterator = operations.values( ).iterator( ); iterator.hasNext( ); ) {
+      if ( iterator.next( ).created < expiry ) {
+        iterator.remove( );
+        expired = true;
+      }
+    }
+    return expired;
+  }
+
+  private static ConcurrentMap<String,PartialOperation> partialOperations( final MonitoredAction action ) {
+    final int index = action.ordinal( );
+    ConcurrentMap<String,PartialOperation> operations = partialOperations.get( index );
+    if ( operations == null ) {
+      partialOperations.compareAndSet( index, null, Maps.<String,PartialOperation>newConcurrentMap( ) );
+      operations = partialOperations.get( index );
+    }
+    return operations;
+  }
+
+  private static void register( ) {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer( );
+      for ( final MonitoredAction action : actions ) {
+        final ObjectName name = new ObjectName( ActionMetrics.class.getPackage( ).getName( ) + ":type=ActionMetrics,name=" + action.name( ) );
+        if ( !server.isRegistered( name ) ) {
+          server.registerMBean( new ActionMetricsView( action ), name );
+        }
+      }
+    } catch ( final Exception e ) {
+      LOG.error( "Error registering action metrics with JMX: " + e.getMessage( ), e );
+    }
+  }
+
+  /**
+   * Values for all actions with data in the current window, keyed by action name.
+   */
+  public static Map<String,Object> describe( ) {
+    final Map<String,Object> values = Maps.newTreeMap( );
+    for ( final MonitoredAction action : actions ) {
+      if ( histograms.get( action.ordinal( ) ) == null ) continue;
+      final Histogram.Snapshot snapshot = getSnapshot( action );
+      if ( snapshot.getCount( ) == 0 ) continue;
+      final String prefix = action.name( ) + ".";
+      values.put( prefix + "Count", snapshot.getCount( ) );
+      values.put( prefix + "Mean", snapshot.getMean( ) );
+      values.put( prefix + "Min", snapshot.getMin( ) );
+      values.put( prefix + "Median", snapshot.getMedian( ) );
+      values.put( prefix + "Percentile90", snapshot.getValueAtPercentile( 90 ) );
+      values.put( prefix + "Percentile99", snapshot.getValueAtPercentile( 99 ) );
+      values.put( prefix + "Max", snapshot.getMax( ) );
+    }
+    return values;
+  }
+
+  private static final class PartialOperation {
+    private final boolean start;
+    private final long time;
+    private final long created = System.currentTimeMillis( );
+
+    PartialOperation( final boolean start, final long time ) {
+      this.start = start;
+      this.time = time;
+    }
+  }
+
+  private static final class ActionMetricsView extends StandardMBean implements ActionMetricsMXBean {
+    private final MonitoredAction action;
+    private final ThreadLocal<Histogram.Snapshot> readSnapshot = new ThreadLocal<>( );
+
+    ActionMetricsView( final MonitoredAction action ) {
+      super( ActionMetricsMXBean.class, true );
+      this.action = action;
+    }
+
+    @Override
+    public AttributeList getAttributes( final String[] attributes ) {
+      readSnapshot.set( getSnapshot( action ) );
+      try {
+        return super.getAttributes( attributes );
+      } finally {
+        readSnapshot.remove( );
+      }
+    }
+
+    private Histogram.Snapshot snapshot( ) {
+      final Histogram.Snapshot snapshot = readSnapshot.get( );
+      return snapshot != null ? snapshot : getSnapshot( action );
+    }
+
+    @Override
+    public String getName( ) {
+      return action.toString( );
+    }
+
+    @Override
+    public long getTotalCount( ) {
+      return ActionMetrics.getTotalCount( action );
+    }
+
+    @Override
+    public long getCount( ) {
+      return snapshot( ).getCount( );
+    }
+
+    @Override
+    public double getMean( ) {
+      return snapshot( ).getMean( );
+    }
+
+    @Override
+    public long getMin( ) {
+      return snapshot( ).getMin( );
+    }
+
+    @Override
+    public long getMax( ) {
+      return snapshot( ).getMax( );
+    }
+
+    @Override
+    public long getFirstQuartile( ) {
+      return snapshot( ).getValueAtPercentile( 25 );
+    }
+
+    @Override
+    public long getMedian( ) {
+      return snapshot( ).getMedian( );
+    }
+
+    @Override
+    public long getThirdQuartile( ) {
+      return snapshot( ).getValueAtPercentile( 75 );
+    }
+
+    @Override
+    public long getPercentile90( ) {
+      return snapshot( ).getValueAtPercentile( 90 );
+    }
+
+    @Override
+    public long getPercentile99( ) {
+      return snapshot( ).getValueAtPercentile( 99 );
+    }
+  }
+}
@@ -0,0 +1,292 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of non-negative long values over a sliding time window.
+ *
+ * Values are counted in log-linear buckets (8 per power of two) so any
+ * recorded value is reported with a relative error of at most 1/8. Buckets
+ * are striped by thread and held in a ring of intervals covering the window,
+ * recording a value is a few atomic increments. Stripes are allocated on
+ * first use so rarely recorded histograms stay small.
+ *
+ * Intervals are merged when a snapshot is taken.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+  static final int BUCKETS = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+  private static final int COUNT_INDEX = BUCKETS;
+  private static final int SUM_INDEX = BUCKETS + 1;
+  private static final int STRIPE_LENGTH = BUCKETS + 2;
+
+  private static final int STRIPES = stripes( );
+
+  private final long intervalMillis;
+  private final Interval[] intervals;
+  private final LongAdder total = new LongAdder( );
+
+  /**
+   * @param windowMillis The period covered by snapshots
+   * @param intervals The number of intervals the window is divided into
+   */
+  public Histogram( final long windowMillis, final int intervals ) {
+    if ( windowMillis < intervals || intervals < 1 ) {
+      throw new IllegalArgumentException( "Invalid window " + windowMillis + "ms/" + intervals );
+    }
+    this.intervalMillis = windowMillis / intervals;
+    this.intervals = new Interval[ intervals ];
+    for ( int i = 0; i < intervals; i++ ) {
+      this.intervals[ i ] = new Interval( );
+    }
+  }
+
+  public void record( final long value ) {
+    record( value, System.currentTimeMillis( ) );
+  }
+
+  /**
+   * Record a value, negative values are ignored.
+   */
+  public void record( final long value, final long timestamp ) {
+    if ( value < 0 ) return;
+    final long epoch = timestamp / intervalMillis;
+    final Interval interval = intervals[ (int) ( epoch % intervals.length ) ];
+    if ( interval.epoch != epoch ) {
+      if ( !interval.rotate( epoch ) ) return; // timestamp older than the window
+    }
+    final AtomicLongArray stripe = interval.stripe( (int) Thread.currentThread( ).getId( ) & ( STRIPES - 1 ) );
+    stripe.incrementAndGet( bucket( value ) );
+    stripe.incrementAndGet( COUNT_INDEX );
+    stripe.addAndGet( SUM_INDEX, value );
+    updateMin( interval.min, value );
+    updateMax( interval.max, value );
+    total.increment( );
+  }
+
+  /**
+   * Total number of values recorded, including values no longer in the window.
+   */
+  public long getTotalCount( ) {
+    return total.sum( );
+  }
+
+  public Snapshot snapshot( ) {
+    return snapshot( System.currentTimeMillis( ) );
+  }
+
+  public Snapshot snapshot( final long timestamp ) {
+    final long epoch = timestamp / intervalMillis;
+    final long[] counts = new long[ BUCKETS ];
+    long count = 0;
+    long sum = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for ( final Interval interval : intervals ) {
+      final long intervalEpoch = interval.epoch;
+      if ( intervalEpoch > epoch - intervals.length && intervalEpoch <= epoch ) {
+        for ( int s = 0; s < STRIPES; s++ ) {
+          final AtomicLongArray stripe = interval.stripes.get( s );
+          if ( stripe == null ) continue;
+          for ( int i = 0; i < BUCKETS; i++ ) {
+            counts[ i ] += stripe.get( i );
+          }
+          count += stripe.get( COUNT_INDEX );
+          sum += stripe.get( SUM_INDEX );
+        }
+        min = Math.min( min, interval.min.get( ) );
+        max = Math.max( max, interval.max.get( ) );
+      }
+    }
+    return count == 0 ?
+        new Snapshot( counts, 0, 0, 0, 0 ) :
+        new Snapshot( counts, count, sum, min, max );
+  }
+
+  public void reset( ) {
+    for ( final Interval interval : intervals ) {
+      interval.clear( );
+    }
+    total.reset( );
+  }
+
+  /**
+   * Number of bucket stripes allocated for all intervals.
+   */
+  int allocatedStripes( ) {
+    int allocated = 0;
+    for ( final Interval interval : intervals ) {
+      for ( int s = 0; s < STRIPES; s++ ) {
+        if ( interval.stripes.get( s ) != null ) allocated++;
+      }
+    }
+    return allocated;
+  }
+
+  static int bucket( final long value ) {
+    if ( value < SUB_BUCKETS ) {
+      return (int) value;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+    return ( ( shift + 1 ) << SUB_BUCKET_BITS ) + (int) ( ( value >>> shift ) & SUB_BUCKET_MASK );
+  }
+
+  static long lowestValue( final int bucket ) {
+    if ( bucket < SUB_BUCKETS ) {
+      return bucket;
+    }
+    final int shift = ( bucket >> SUB_BUCKET_BITS ) - 1;
+    return (long) ( SUB_BUCKETS + ( bucket & SUB_BUCKET_MASK ) ) << shift;
+  }
+
+  static long highestValue( final int bucket ) {
+    if ( bucket < SUB_BUCKETS ) {
+      return bucket;
+    }
+    final int shift = ( bucket >> SUB_BUCKET_BITS ) - 1;
+    return lowestValue( bucket ) + ( ( 1L << shift ) - 1 );
+  }
+
+  private static void updateMin( final AtomicLong min, final long value ) {
+    long current;
+    while ( value < ( current = min.get( ) ) && !min.compareAndSet( current, value ) );
+  }
+
+  private static void updateMax( final AtomicLong max, final long value ) {
+    long current;
+    while ( value > ( current = max.get( ) ) && !max.compareAndSet( current, value ) );
+  }
+
+  private static int stripes( ) {
+    final int processors = Math.min( 4, Runtime.getRuntime( ).availableProcessors( ) );
+    return Integer.highestOneBit( Math.max( 1, processors ) );
+  }
+
+  private static final class Interval {
+    private volatile long epoch = -1;
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>( STRIPES );
+    private final AtomicLong min = new AtomicLong( Long.MAX_VALUE );
+    private final AtomicLong max = new AtomicLong( Long.MIN_VALUE );
+
+    AtomicLongArray stripe( final int index ) {
+      final AtomicLongArray stripe = stripes.get( index );
+      if ( stripe != null ) {
+        return stripe;
+      }
+      stripes.compareAndSet( index, null, new AtomicLongArray( STRIPE_LENGTH ) );
+      return stripes.get( index );
+    }
+
+    /**
+     * Move the interval to the given epoch, false if the interval is already more recent
+     */
+    synchronized boolean rotate( final long newEpoch ) {
+      if ( epoch < newEpoch ) {
+        clearValues( );
+        epoch = newEpoch;
+      }
+      return epoch == newEpoch;
+    }
+
+    synchronized void clear( ) {
+      clearValues( );
+      epoch = -1;
+    }
+
+    private void clearValues( ) {
+      for ( int s = 0; s < STRIPES; s++ ) {
+        final AtomicLongArray stripe = stripes.get( s );
+        if ( stripe == null ) continue;
+        for ( int i = 0; i < STRIPE_LENGTH; i++ ) {
+          stripe.set( i, 0 );
+        }
+      }
+      min.set( Long.MAX_VALUE );
+      max.set( Long.MIN_VALUE );
+    }
+  }
+
+  /**
+   * Merged values for a histogram window.
+   */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    Snapshot( final long[] counts, final long count, final long sum, final long min, final long max ) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.min = min;
+      this.max = max;
+    }
+
+    public long getCount( ) {
+      return count;
+    }
+
+    public long getMin( ) {
+      return min;
+    }
+
+    public long getMax( ) {
+      return max;
+    }
+
+    /**
+     * The mean value, NaN if the sum of values exceeds Long.MAX_VALUE
+     */
+    public double getMean( ) {
+      if ( count == 0 ) return 0d;
+      return sum < 0 ? Double.NaN : sum / (double) count;
+    }
+
+    public long getMedian( ) {
+      return getValueAtPercentile( 50 );
+    }
+
+    /**
+     * Value at the given percentile using the nearest rank method.
+     *
+     * The value is the highest value equivalent to the bucket for the rank,
+     * limited to the minimum and maximum values recorded.
+     */
+    public long getValueAtPercentile( final double percentile ) {
+      if ( count == 0 ) return 0;
+      final long rank = Math.max( 1, (long) Math.ceil( Math.min( 100d, Math.max( 0d, percentile ) ) / 100d * count ) );
+      long seen = 0;
+      for ( int i = 0; i < counts.length; i++ ) {
+        seen += counts[ i ];
+        if ( seen >= rank ) {
+          return Math.max( min, Math.min( max, highestValue( i ) ) );
+        }
+      }
+      return max;
+    }
+  }
+}
@@ -28,21 +28,22 @@ import com.eucalyptus.configurable.PropertyChangeListener;
 
 @ConfigurableClass( root = "cloud", description = "Parameters controlling internal metrics collection")
 public class MetricsConfiguration {
-    @ConfigurableField(initial = "1000", description = "Size of the reporting data set that stores performance mertics dataset",
-        changeListener=CollectionSizeChangeListener.class)
-    public static volatile int METRICS_COLLECTION_SIZE = 1000;
+    @ConfigurableField(initial = "300", description = "Period in seconds covered by internal performance metrics",
+        changeListener=WindowChangeListener.class)
+    public static volatile int METRICS_WINDOW_SECONDS = 300;
 
-    public static class CollectionSizeChangeListener implements PropertyChangeListener<String> {
+    public static class WindowChangeListener implements PropertyChangeListener<String> {
       @Override
       public void fireChange(ConfigurableProperty t, String newValue)
           throws ConfigurablePropertyException {
         if(t.getValue()!=null && t.getValue().equals(newValue))
           return;
         try {
-          int newSize = Integer.parseInt(newValue);
-          if (newSize <= 0)
+          int newWindow = Integer.parseInt(newValue);
+          if (newWindow <= 0)
             throw new NumberFormatException();
-          ThruputMetrics.changeSize(newSize);
+          METRICS_WINDOW_SECONDS = newWindow;
+          ActionMetrics.windowChanged();
         } catch (NumberFormatException ex) {
           throw new ConfigurablePropertyException(
               "The value must be number type and bigger than 0");
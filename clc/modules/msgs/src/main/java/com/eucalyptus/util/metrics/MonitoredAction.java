@@ -28,17 +28,28 @@ public enum MonitoredAction {
   CLUSTER_CONSOLIDATE_PUT_METRIC_DATA_LIST("Cluster:Timing:dataBatch.consolidatePutMetricDataList():time"),
   CLUSTER_LIST_METRIC_MANAGER_CALL_PUT_METRIC_DATA("Cluster:Timing:ListMetricManager.callPutMetricData():time"),
   CLUSTER_TIMING("Cluster:Timing:time"),
+  CLUSTER_ABSOLUTE_METRIC_CHECKPOINT("Cluster:Timing:InMemoryAbsoluteMetricConverter.checkpoint():time"),
   PUT_DATA_QUEUE_SIZE("PutMetricDataQueue:Timing:dataBatch.size"),
   PUT_DATA_QUEUE_CONVERT("PutMetricDataQueue:Timing:dataBatch.convertToSimpleDataBatch():time"),
   PUT_DATA_QUEUE_AGGREGATE("PutMetricDataQueue:Timing:dataBatch.aggregate():time"),
   PUT_DATA_QUEUE_MERTIC_ADD_BATCH("PutMetricDataQueue:Timing:dataBatch.MetricManager.addMetricBatch():time"),
   PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL("PutMetricDataQueue:Timing:ListMetricQueue.addAll():time"),
   PUT_DATA_TIMING("PutMetricDataQueue:Timing:time"),
+  PUT_DATA_ROLLUP_ENTRIES("PutMetricDataQueue:Rollup:flushedEntries.size"),
+  PUT_DATA_ROLLUP_STORE_SIZE("PutMetricDataQueue:Rollup:store.size"),
+  PUT_DATA_ROLLUP_REJECTED("PutMetricDataQueue:Rollup:rejected.size"),
+  PUT_DATA_ROLLUP_COLLAPSE_RATIO("PutMetricDataQueue:Rollup:collapseRatio"),
+  PUT_DATA_WRITE_ROWS_PER_SECOND("PutMetricDataQueue:Timing:MetricManager.addManyMetrics():rowsPerSecond"),
   LIST_METRIC_SIZE("ListMetricQueue:Timing:dataBatch.size"),
   LIST_METRIC_PRUNE("ListMetricQueue:Timing:dataBatch.pruneDuplicates:time"),
   LIST_METRIC_CONVERT("ListMetricQueue:Timing:convertToListMetrics:time"),
   LIST_METRIC_MERTIC_ADD_BATCH("ListMetricQueue:Timing:ListMetricManager.addMetricBatch:time"),
   LIST_METRIC_TIMING("ListMetricQueue:Timing:time"),
+  // Compute
+  VM_STATE_RECONCILE_SIZE("VmStateCallback:Timing:reportedInstances.size"),
+  VM_STATE_RECONCILE_UPDATES("VmStateCallback:Timing:updatedInstances.size"),
+  VM_STATE_RECONCILE_TIMING("VmStateCallback:Timing:time"),
+  VM_STATE_UPDATE_BATCH("VmStateCallback:Timing:handleReportedStates():time"),
   // Storage
   CREATE_VOLUME("Create Volume"),
   CREATE_VOLUME_FROM_SNAPSHOT("Create Volume from Snapshot"),
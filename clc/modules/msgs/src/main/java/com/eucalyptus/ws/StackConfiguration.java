@@ -192,6 +192,22 @@ public class StackConfiguration extends AbstractPersistent {
   
   @ConfigurableField( description = "Client socket select timeout (ms)." )
   public static Long          CLIENT_POOL_TIMEOUT_MILLIS        = 500L;
+
+  @ConfigurableField( description = "Reuse keep-alive connections for internal requests.",
+                      initial = "true" )
+  public static Boolean       CLIENT_CONNECTION_POOL_ENABLED    = Boolean.TRUE;
+
+  @ConfigurableField( description = "Maximum keep-alive connections for internal requests per service endpoint.",
+                      initial = "8" )
+  public static Integer       CLIENT_CONNECTION_POOL_MAX        = 8;
+
+  @ConfigurableField( description = "Maximum internal requests in flight on a keep-alive connection (endpoints must support HTTP pipelining for values greater than one).",
+                      initial = "1" )
+  public static Integer       CLIENT_CONNECTION_POOL_PIPELINE_DEPTH = 1;
+
+  @ConfigurableField( description = "Idle time after which a keep-alive connection for internal requests is closed (secs).",
+                      initial = "15" )
+  public static Integer       CLIENT_CONNECTION_POOL_IDLE_TIMEOUT_SECS = 15;
   
   @ConfigurableField( description = "Maximum HTTP chunk size (bytes).",
                       initial = "102400")
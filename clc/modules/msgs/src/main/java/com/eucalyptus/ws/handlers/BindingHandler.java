@@ -292,9 +292,13 @@ public class BindingHandler extends MessageStackHandler {
         }
       } else {
         try {
-          omElem = this.context.getBinding( ).toOM( httpMessage.getMessage( ), this.context.getNamespace( ) );
-        } catch ( BindingException ex ) {
-          omElem = BindingManager.getDefaultBinding( ).toOM( httpMessage.getMessage( ) );
+          // binding is selected up front since marshalling is deferred until the response is written,
+          // SoapMarshallingHandler falls back to the default binding if marshalling then fails
+          if ( this.context.getBinding( ).isBound( httpMessage.getMessage( ) ) ) {
+            omElem = this.context.getBinding( ).toStreamingOM( httpMessage.getMessage( ), this.context.getNamespace( ) );
+          } else {
+            omElem = BindingManager.getDefaultBinding( ).toStreamingOM( httpMessage.getMessage( ), null );
+          }
         } catch ( Exception ex ) {
           Logs.exhaust( ).debug( ex, ex );
           throw ex;
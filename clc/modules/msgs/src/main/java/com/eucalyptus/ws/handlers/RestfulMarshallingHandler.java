@@ -73,6 +73,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
@@ -97,7 +98,6 @@ import com.eucalyptus.context.Contexts;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.http.MappingHttpResponse;
 import com.eucalyptus.records.Logs;
-import com.eucalyptus.util.UnsafeByteArrayOutputStream;
 import com.eucalyptus.ws.EucalyptusWebServiceException;
 import com.eucalyptus.ws.protocol.RequiredQueryParams;
 import com.google.common.base.Objects;
@@ -183,7 +183,8 @@ public abstract class RestfulMarshallingHandler extends MessageStackHandler {
   public void outgoingMessage( ChannelHandlerContext ctx, MessageEvent event ) throws Exception {
     if ( event.getMessage( ) instanceof MappingHttpResponse ) {
       MappingHttpResponse httpResponse = ( MappingHttpResponse ) event.getMessage( );
-      UnsafeByteArrayOutputStream byteOut = new UnsafeByteArrayOutputStream( 8192 );
+      ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( 8192 );
+      ChannelBufferOutputStream byteOut = new ChannelBufferOutputStream( buffer );
       HoldMe.canHas.lock( );
       try {
         if ( httpResponse.getMessage( ) == null ) {
@@ -213,11 +214,11 @@ public abstract class RestfulMarshallingHandler extends MessageStackHandler {
             this.binding.toStream( byteOut, message, getNamespaceOverride( message, null ) );
           } catch ( BindingException ex ) {
             Logs.extreme( ).error( ex, ex );
-            byteOut.reset();
+            buffer.clear( );
             try {//use default binding with request namespace
               getDefaultBinding( ).toStream( byteOut, message, getNamespaceOverride( message, this.namespace ) );
             } catch ( BindingException ex1 ) {//use default binding
-              byteOut.reset();
+              buffer.clear( );
               BindingManager.getDefaultBinding( ).toStream( byteOut, message );
             }
           } catch ( Exception e ) {
@@ -226,7 +227,6 @@ public abstract class RestfulMarshallingHandler extends MessageStackHandler {
             throw e;
           }
         }
-        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer( byteOut.getBuffer( ), 0, byteOut.getCount( ) );
         httpResponse.addHeader( HttpHeaders.Names.CONTENT_LENGTH, String.valueOf( buffer.readableBytes( ) ) );
         httpResponse.addHeader( HttpHeaders.Names.CONTENT_TYPE, "application/xml; charset=UTF-8" );
         httpResponse.setContent( buffer );
@@ -65,6 +65,7 @@ package com.eucalyptus.ws.handlers;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import javax.annotation.Nonnull;
+import org.apache.axiom.om.OMElement;
 import org.apache.axiom.soap.SOAP11Constants;
 import org.apache.axiom.soap.SOAP12Constants;
 import org.apache.axiom.soap.SOAPEnvelope;
@@ -82,6 +83,7 @@ import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import com.eucalyptus.binding.Binding;
 import com.eucalyptus.binding.BindingException;
+import com.eucalyptus.binding.BindingManager;
 import com.eucalyptus.binding.HoldMe;
 import com.eucalyptus.http.MappingHttpMessage;
 import com.eucalyptus.http.MappingHttpRequest;
@@ -152,8 +154,23 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
       final MappingHttpMessage httpMessage = ( MappingHttpMessage ) event.getMessage( );
       final ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( 4096 );
       HoldMe.canHas.lock( );
-      try ( final ChannelBufferOutputStream out = new ChannelBufferOutputStream( buffer ) ) {
-        httpMessage.getSoapEnvelope( ).serialize( out );//HACK: does this need fixing for xml brokeness?
+      try {
+        try {
+          serialize( httpMessage.getSoapEnvelope( ), buffer );
+        } catch ( final Exception e ) {
+          // a streamed message is marshalled here, so fall back to the default binding as for an up front marshal
+          final OMElement omMessage = httpMessage.getOmMessage( );
+          if ( omMessage == null || !Binding.isStreamingOM( omMessage ) || omMessage.getParent( ) == null ) {
+            throw e;
+          }
+          Logs.exhaust( ).debug( e, e );
+          final OMElement defaultOmMessage = BindingManager.getDefaultBinding( ).toOM( httpMessage.getMessage( ) );
+          omMessage.insertSiblingAfter( defaultOmMessage );
+          omMessage.detach( );
+          httpMessage.setOmMessage( defaultOmMessage );
+          buffer.clear( );
+          serialize( httpMessage.getSoapEnvelope( ), buffer );
+        }
       } finally {
         HoldMe.canHas.unlock( );
       }
@@ -164,6 +181,12 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
     }
   }
 
+  private static void serialize( final SOAPEnvelope envelope, final ChannelBuffer buffer ) throws Exception {
+    try ( final ChannelBufferOutputStream out = new ChannelBufferOutputStream( buffer ) ) {
+      envelope.serialize( out );//HACK: does this need fixing for xml brokeness?
+    }
+  }
+
   @Nonnull
   @Override
   public ExceptionResponse marshallException( @Nonnull ChannelEvent event,
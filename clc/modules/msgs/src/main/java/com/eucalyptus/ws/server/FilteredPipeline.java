@@ -139,6 +139,16 @@ public abstract class FilteredPipeline implements HasName<FilteredPipeline>, Fil
   
   @Override
   public abstract boolean checkAccepts( HttpRequest message );
+
+  /**
+   * Get the dispatch rules used to select requests to check with this pipeline.
+   *
+   * The default rules check every request, pipelines overriding this must
+   * not accept any request outside of the returned rules.
+   */
+  public PipelineDispatch getDispatch( ) {
+    return PipelineDispatch.any( );
+  }
   
   @Override
   public final int compareTo( final FilteredPipeline o ) {
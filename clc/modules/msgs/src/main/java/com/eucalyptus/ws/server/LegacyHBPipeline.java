@@ -86,6 +86,7 @@ import com.eucalyptus.context.Contexts;
 import com.eucalyptus.empyrean.Empyrean;
 import com.eucalyptus.http.MappingHttpRequest;
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
 
 @ComponentPart( Empyrean.class )
 public class LegacyHBPipeline extends FilteredPipeline {
@@ -95,6 +96,11 @@ public class LegacyHBPipeline extends FilteredPipeline {
   public boolean checkAccepts( HttpRequest message ) {
     return message.getUri( ).endsWith( "/services/Heartbeat" );
   }
+
+  @Override
+  public PipelineDispatch getDispatch( ) {
+    return PipelineDispatch.pathSuffixes( PipelineDispatch.RequestType.Any, ImmutableSet.of( "/services/Heartbeat" ), false );
+  }
   
   @Override
   public String getName( ) {
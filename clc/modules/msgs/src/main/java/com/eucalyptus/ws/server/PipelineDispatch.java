@@ -0,0 +1,125 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.ws.server;
+
+import java.util.Set;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Dispatch rules for a FilteredPipeline.
+ *
+ * Rules narrow the requests for which a pipeline is checked, they must never
+ * exclude a request that the pipeline would accept. A pipeline is always
+ * asked to check a request that matches its rules.
+ */
+public final class PipelineDispatch {
+
+  public enum RequestType {
+    Any,
+    Soap,
+    NonSoap,
+    ;
+
+    boolean matches( final boolean soapRequest ) {
+      return this == Any || ( this == Soap ) == soapRequest;
+    }
+  }
+
+  private static final PipelineDispatch ANY =
+      new PipelineDispatch( RequestType.Any, ImmutableSet.<String>of( ), ImmutableSet.<String>of( ), true, true );
+
+  private final RequestType requestType;
+  private final Set<String> pathPrefixes;
+  private final Set<String> pathSuffixes;
+  private final boolean noPath;
+  private final boolean anyPath;
+
+  private PipelineDispatch( final RequestType requestType,
+                            final Set<String> pathPrefixes,
+                            final Set<String> pathSuffixes,
+                            final boolean noPath,
+                            final boolean anyPath ) {
+    this.requestType = requestType;
+    this.pathPrefixes = ImmutableSet.copyOf( pathPrefixes );
+    this.pathSuffixes = ImmutableSet.copyOf( pathSuffixes );
+    this.noPath = noPath;
+    this.anyPath = anyPath;
+  }
+
+  /**
+   * Dispatch rules that match every request.
+   */
+  public static PipelineDispatch any( ) {
+    return ANY;
+  }
+
+  /**
+   * Dispatch rules for requests with a uri starting with one of the given prefixes.
+   *
+   * @param noPath True to also match requests without a path (e.g. resolved by host)
+   */
+  public static PipelineDispatch pathPrefixes( final RequestType requestType,
+                                               final Set<String> pathPrefixes,
+                                               final boolean noPath ) {
+    return new PipelineDispatch( requestType, pathPrefixes, ImmutableSet.<String>of( ), noPath, false );
+  }
+
+  /**
+   * Dispatch rules for requests with a uri ending with one of the given suffixes.
+   *
+   * @param noPath True to also match requests without a path (e.g. resolved by host)
+   */
+  public static PipelineDispatch pathSuffixes( final RequestType requestType,
+                                               final Set<String> pathSuffixes,
+                                               final boolean noPath ) {
+    return new PipelineDispatch( requestType, ImmutableSet.<String>of( ), pathSuffixes, noPath, false );
+  }
+
+  public RequestType getRequestType( ) {
+    return requestType;
+  }
+
+  public Set<String> getPathPrefixes( ) {
+    return pathPrefixes;
+  }
+
+  public Set<String> getPathSuffixes( ) {
+    return pathSuffixes;
+  }
+
+  public boolean isNoPath( ) {
+    return noPath;
+  }
+
+  public boolean isAnyPath( ) {
+    return anyPath;
+  }
+
+  static boolean isSoapRequest( final HttpRequest request ) {
+    return request.getHeaderNames( ).contains( "SOAPAction" );
+  }
+
+  static boolean isNoPathRequest( final String uri ) {
+    return uri.isEmpty( ) || uri.equals( "/" ) || uri.startsWith( "/?" );
+  }
+
+  @Override
+  public String toString( ) {
+    return String.format( "PipelineDispatch:requestType=%s:pathPrefixes=%s:pathSuffixes=%s:noPath=%s:anyPath=%s",
+        requestType, pathPrefixes, pathSuffixes, noPath, anyPath );
+  }
+}
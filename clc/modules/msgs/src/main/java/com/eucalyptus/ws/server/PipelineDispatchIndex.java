@@ -0,0 +1,297 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.ws.server;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import com.eucalyptus.component.ComponentId;
+import com.eucalyptus.component.ComponentIds;
+import com.eucalyptus.component.annotation.AwsServiceName;
+import com.eucalyptus.component.annotation.ComponentPart;
+import com.eucalyptus.component.annotation.PublicService;
+import com.eucalyptus.system.Ats;
+import com.eucalyptus.ws.protocol.SoapHandler;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+/**
+ * Precomputed index for finding the pipeline that accepts a request.
+ *
+ * Pipelines are indexed by the path prefixes and suffixes from their dispatch
+ * rules so that only candidate pipelines are checked for a request. Public
+ * service pipelines are also indexed by host name for requests that do not
+ * match any pipeline.
+ */
+class PipelineDispatchIndex {
+  private static final Logger LOG = Logger.getLogger( PipelineDispatchIndex.class );
+
+  private final PathIndex pipelines;
+  private final List<HostEntry> hostEntries;
+  private final PathIndex internalPipelines;
+  private final List<Entry> entries;
+  private volatile DomainPatterns domainPatterns;
+
+  PipelineDispatchIndex( final Collection<FilteredPipeline> pipelines,
+                         final Collection<FilteredPipeline> internalPipelines ) {
+    final Map<FilteredPipeline, Entry> entryMap = Maps.newIdentityHashMap( );
+    this.pipelines = new PathIndex( pipelines, entryMap );
+    this.internalPipelines = new PathIndex( internalPipelines, entryMap );
+    this.entries = ImmutableList.copyOf( entryMap.values( ) );
+    final List<HostEntry> hostEntries = Lists.newArrayList( );
+    for ( final FilteredPipeline pipeline : pipelines ) {
+      if ( Ats.from( pipeline ).has( ComponentPart.class ) ) {
+        final Class<? extends ComponentId> compIdClass = Ats.from( pipeline ).get( ComponentPart.class ).value( );
+        if ( Ats.from( compIdClass ).has( PublicService.class ) ) {
+          final ComponentId compId = ComponentIds.lookup( compIdClass );
+          hostEntries.add( new HostEntry(
+              entryMap.get( pipeline ),
+              Ats.from( compIdClass ).has( AwsServiceName.class ) ?
+                  Pattern.compile( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) :
+                  null,
+              compId.name( ) ) );
+        }
+      }
+    }
+    this.hostEntries = ImmutableList.copyOf( hostEntries );
+  }
+
+  /**
+   * Find the pipeline that accepts the request.
+   *
+   * @param subDomain Supplier for the system DNS domain
+   * @return The accepting pipeline or null
+   */
+  @Nullable
+  FilteredPipeline find( final HttpRequest request, final Supplier<String> subDomain ) {
+    Entry accepting = pipelines.find( request );
+    if ( accepting == null ) {
+      accepting = findByHost( request, subDomain );
+    }
+    if ( accepting == null ) {
+      accepting = internalPipelines.find( request );
+    }
+    if ( accepting != null ) {
+      accepting.hits.incrementAndGet( );
+      return accepting.pipeline;
+    }
+    return null;
+  }
+
+  /**
+   * Get the number of requests dispatched to each pipeline.
+   */
+  Map<String, Long> getDispatchCounts( ) {
+    final Map<String, Long> counts = Maps.newTreeMap( );
+    for ( final Entry entry : entries ) {
+      counts.put( entry.pipeline.getName( ), entry.hits.get( ) );
+    }
+    return counts;
+  }
+
+  private Entry findByHost( final HttpRequest request, final Supplier<String> subDomain ) {
+    final String hostHeader = request.getHeader( HttpHeaders.Names.HOST );
+    if ( hostHeader == null ) {
+      return null;
+    }
+    final String domain = subDomain.get( );
+    if ( hostHeader.contains( "amazonaws.com" ) || ( domain != null && hostHeader.contains( domain ) ) ) {
+      final String host = hostHeader.indexOf( ':' ) > 0 ? hostHeader.substring( 0, hostHeader.indexOf( ':' ) ) : hostHeader;
+      LOG.debug( "Trying to intercept request for " + hostHeader );
+      final boolean soapRequest = PipelineDispatch.isSoapRequest( request );
+      final Pattern[] servicePatterns = getDomainPatterns( domain );
+      for ( int i = 0; i < hostEntries.size( ); i++ ) {
+        final HostEntry hostEntry = hostEntries.get( i );
+        final Boolean soap = hostEntry.handlesSoap( );
+        if ( soap == null || soap != soapRequest ) {
+          continue; // Skip pipeline which does not handle this type of request
+        }
+        if ( hostEntry.awsServiceHostPattern != null && hostEntry.awsServiceHostPattern.matcher( host ).matches( ) ) {
+          return hostEntry.entry; // Pipeline for ${service}.${region}.amazonaws.com
+        } else if ( servicePatterns[ i ].matcher( host ).matches( ) ) {
+          return hostEntry.entry; // Pipeline for ${service}.${system.dns.dnsdomain}
+        }
+      }
+    }
+    return null;
+  }
+
+  private Pattern[] getDomainPatterns( final String domain ) {
+    DomainPatterns patterns = domainPatterns;
+    if ( patterns == null || !patterns.domain.equals( String.valueOf( domain ) ) ) {
+      final Pattern[] servicePatterns = new Pattern[ hostEntries.size( ) ];
+      for ( int i = 0; i < servicePatterns.length; i++ ) {
+        servicePatterns[ i ] = Pattern.compile( "[\\w\\.-_]*" + hostEntries.get( i ).componentName + "\\." + domain );
+      }
+      domainPatterns = patterns = new DomainPatterns( String.valueOf( domain ), servicePatterns );
+    }
+    return patterns.servicePatterns;
+  }
+
+  /**
+   * Determine if a pipeline handles SOAP requests, null if unknown.
+   */
+  @Nullable
+  private static Boolean handlesSoap( final FilteredPipeline pipeline ) {
+    try {
+      final ChannelPipeline channelPipeline = Channels.pipeline( );
+      pipeline.addHandlers( channelPipeline );
+      return channelPipeline.get( SoapHandler.class ) != null;
+    } catch ( final Exception e ) {
+      LOG.warn( "Unable to determine SOAP handling for pipeline " + pipeline.getName( ) + ": " + e );
+      return null;
+    }
+  }
+
+  private static final class Entry {
+    private final FilteredPipeline pipeline;
+    private final PipelineDispatch.RequestType requestType;
+    private final AtomicLong hits = new AtomicLong( );
+
+    private Entry( final FilteredPipeline pipeline ) {
+      this.pipeline = pipeline;
+      this.requestType = pipeline.getDispatch( ).getRequestType( );
+    }
+  }
+
+  private static final class HostEntry {
+    private final Entry entry;
+    private final Pattern awsServiceHostPattern;
+    private final String componentName;
+    private volatile Boolean soap;
+
+    private HostEntry( final Entry entry,
+                       final Pattern awsServiceHostPattern,
+                       final String componentName ) {
+      this.entry = entry;
+      this.awsServiceHostPattern = awsServiceHostPattern;
+      this.componentName = componentName;
+    }
+
+    /**
+     * Pipeline handlers are only built on first use, handlers may not be
+     * available when the index is built.
+     */
+    @Nullable
+    private Boolean handlesSoap( ) {
+      Boolean handlesSoap = soap;
+      if ( handlesSoap == null ) {
+        soap = handlesSoap = PipelineDispatchIndex.handlesSoap( entry.pipeline );
+      }
+      return handlesSoap;
+    }
+  }
+
+  private static final class DomainPatterns {
+    private final String domain;
+    private final Pattern[] servicePatterns;
+
+    private DomainPatterns( final String domain, final Pattern[] servicePatterns ) {
+      this.domain = domain;
+      this.servicePatterns = servicePatterns;
+    }
+  }
+
+  private static final class PathIndex {
+    private final Map<String, List<Entry>> prefixes = Maps.newHashMap( );
+    private final Map<String, List<Entry>> suffixes = Maps.newHashMap( );
+    private final List<Entry> noPath = Lists.newArrayList( );
+    private final List<Entry> anyPath = Lists.newArrayList( );
+    private final int[] prefixLengths;
+    private final int[] suffixLengths;
+
+    private PathIndex( final Collection<FilteredPipeline> pipelines, final Map<FilteredPipeline, Entry> entryMap ) {
+      final Set<Integer> prefixLengths = Sets.newTreeSet( );
+      final Set<Integer> suffixLengths = Sets.newTreeSet( );
+      for ( final FilteredPipeline pipeline : pipelines ) {
+        final Entry entry = new Entry( pipeline );
+        entryMap.put( pipeline, entry );
+        final PipelineDispatch dispatch = pipeline.getDispatch( );
+        if ( dispatch.isAnyPath( ) ) {
+          anyPath.add( entry );
+          continue;
+        }
+        for ( final String prefix : dispatch.getPathPrefixes( ) ) {
+          add( prefixes, prefix, entry );
+          prefixLengths.add( prefix.length( ) );
+        }
+        for ( final String suffix : dispatch.getPathSuffixes( ) ) {
+          add( suffixes, suffix, entry );
+          suffixLengths.add( suffix.length( ) );
+        }
+        if ( dispatch.isNoPath( ) ) {
+          noPath.add( entry );
+        }
+      }
+      this.prefixLengths = Ints.toArray( prefixLengths );
+      this.suffixLengths = Ints.toArray( suffixLengths );
+    }
+
+    private static void add( final Map<String, List<Entry>> index, final String key, final Entry entry ) {
+      List<Entry> entries = index.get( key );
+      if ( entries == null ) {
+        entries = Lists.newArrayList( );
+        index.put( key, entries );
+      }
+      if ( !entries.contains( entry ) ) {
+        entries.add( entry );
+      }
+    }
+
+    private Entry find( final HttpRequest request ) {
+      final String uri = request.getUri( );
+      final boolean soapRequest = PipelineDispatch.isSoapRequest( request );
+      Entry accepting = null;
+      for ( int i = 0; accepting == null && i < prefixLengths.length && prefixLengths[ i ] <= uri.length( ); i++ ) {
+        accepting = check( prefixes.get( uri.substring( 0, prefixLengths[ i ] ) ), request, soapRequest );
+      }
+      for ( int i = 0; accepting == null && i < suffixLengths.length && suffixLengths[ i ] <= uri.length( ); i++ ) {
+        accepting = check( suffixes.get( uri.substring( uri.length( ) - suffixLengths[ i ] ) ), request, soapRequest );
+      }
+      if ( accepting == null && PipelineDispatch.isNoPathRequest( uri ) ) {
+        accepting = check( noPath, request, soapRequest );
+      }
+      if ( accepting == null ) {
+        accepting = check( anyPath, request, soapRequest );
+      }
+      return accepting;
+    }
+
+    private static Entry check( final List<Entry> candidates, final HttpRequest request, final boolean soapRequest ) {
+      if ( candidates != null ) {
+        for ( final Entry entry : candidates ) {
+          if ( entry.requestType.matches( soapRequest ) && entry.pipeline.checkAccepts( request ) ) {
+            return entry;
+          }
+        }
+      }
+      return null;
+    }
+  }
+}
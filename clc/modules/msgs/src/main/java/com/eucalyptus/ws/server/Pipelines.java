@@ -74,7 +74,6 @@ import org.apache.log4j.Logger;
 import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.Channels;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpRequest;
@@ -85,9 +84,7 @@ import com.eucalyptus.bootstrap.RunDuring;
 import com.eucalyptus.bootstrap.ServiceJarDiscovery;
 import com.eucalyptus.component.ComponentId;
 import com.eucalyptus.component.ComponentIds;
-import com.eucalyptus.component.annotation.AwsServiceName;
 import com.eucalyptus.component.annotation.ComponentPart;
-import com.eucalyptus.component.annotation.PublicService;
 import com.eucalyptus.empyrean.Empyrean;
 import com.eucalyptus.http.MappingHttpMessage;
 import com.eucalyptus.http.MappingHttpRequest;
@@ -100,8 +97,8 @@ import com.eucalyptus.ws.Handlers;
 import com.eucalyptus.ws.handlers.HmacHandler;
 import com.eucalyptus.ws.protocol.BaseQueryBinding;
 import com.eucalyptus.ws.protocol.OperationParameter;
-import com.eucalyptus.ws.protocol.SoapHandler;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import edu.ucsb.eucalyptus.cloud.entities.SystemConfiguration;
@@ -114,6 +111,7 @@ public class Pipelines {
   private static final Set<FilteredPipeline>                                     internalPipelines = Sets.newHashSet( );
   private static final Set<FilteredPipeline>                                     pipelines         = Sets.newHashSet( );
   private static final Map<Class<? extends ComponentId>, ChannelPipelineFactory> clientPipelines   = Maps.newHashMap( );
+  private static volatile PipelineDispatchIndex                                  dispatchIndex;
   //GRZE:TODO: this is not happy ==> {@link DomainNames}
   private static final Supplier<String> subDomain = () -> SystemConfiguration.getSystemConfiguration( ).getDnsDomain( );
 
@@ -157,45 +155,22 @@ public class Pipelines {
    * @return an accepting pipeline else {@code null}
    */
   private static FilteredPipeline findAccepting( final HttpRequest request ) {
-    for ( final FilteredPipeline f : pipelines ) {
-      if ( f.checkAccepts( request ) ) {
-        return f;
-      }
-    }
+    return dispatchIndex( ).find( request, subDomain );
+  }
 
-    final String hostHeader = request.getHeader( HttpHeaders.Names.HOST );
-    if ( hostHeader != null && ( hostHeader.contains( "amazonaws.com" ) || hostHeader.contains( subDomain.get( ) ) ) ) {
-      final String host = hostHeader.indexOf( ':' ) > 0 ? hostHeader.substring( 0, hostHeader.indexOf( ':' ) ) : hostHeader;
-      LOG.debug( "Trying to intercept request for " + hostHeader );
-      for ( final FilteredPipeline f : pipelines ) {
-        if ( Ats.from( f ).has( ComponentPart.class ) ) {
-          Class<? extends ComponentId> compIdClass = Ats.from( f ).get( ComponentPart.class ).value( );
-          ComponentId compId = ComponentIds.lookup( compIdClass );
-          if ( Ats.from( compIdClass ).has( PublicService.class ) ) {
-            if ( request.getHeaderNames().contains( "SOAPAction" ) && f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) == null ) {
-              continue;//Skip pipeline which doesn't handle SOAP for this SOAP request
-            } else if ( !request.getHeaderNames().contains( "SOAPAction" ) && f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) != null ) {
-              continue;//Skip pipeline which handles SOAP for this non-SOAP request
-            }
-            LOG.debug( "Maybe intercepting: " + hostHeader + " using " + f.getClass( ) );
-            if ( Ats.from( compIdClass ).has( AwsServiceName.class )
-                && host.matches( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) ) {
-              return f;//Return pipeline which can handle the request for ${service}.${region}.amazonaws.com
-            } else if ( host.matches( "[\\w\\.-_]*" + compId.name( ) + "\\." + subDomain.get( ) ) ) {
-              return f;//Return pipeline which can handle the request for ${service}.${system.dns.dnsdomain}
-            }
-          }
-        }
-      }
-    }
+  /**
+   * Returns the number of requests dispatched to each pipeline, by pipeline name.
+   */
+  public static Map<String, Long> getDispatchCounts( ) {
+    return dispatchIndex( ).getDispatchCounts( );
+  }
 
-    for ( final FilteredPipeline f : internalPipelines ) {
-      if ( f.checkAccepts( request ) ) {
-        return f;
-      }
+  private static PipelineDispatchIndex dispatchIndex( ) {
+    PipelineDispatchIndex index = dispatchIndex;
+    if ( index == null ) {
+      dispatchIndex = index = new PipelineDispatchIndex( pipelines, internalPipelines );
     }
-
-    return null;
+    return index;
   }
 
   /**
@@ -211,6 +186,7 @@ public class Pipelines {
         Pipelines.internalPipelines.add( new InternalQueryPipeline( comp ) );
         Pipelines.internalPipelines.add( new InternalSoapPipeline( comp ) );
       }
+      Pipelines.dispatchIndex = new PipelineDispatchIndex( pipelines, internalPipelines );
       return true;
     }
 
@@ -279,6 +255,14 @@ public class Pipelines {
              && message.getHeaderNames( ).contains( "SOAPAction" );
     }
 
+    @Override
+    public PipelineDispatch getDispatch( ) {
+      return PipelineDispatch.pathSuffixes(
+          PipelineDispatch.RequestType.Soap,
+          ImmutableSet.of( this.servicePath, this.internalServicePath ),
+          false );
+    }
+
     @Override
     public String getName( ) {
       return "internal-soap-pipeline-" + this.serviceName.toLowerCase( ) + "-" + this.servicePath;
@@ -364,6 +348,14 @@ public class Pipelines {
       return false;
     }
 
+    @Override
+    public PipelineDispatch getDispatch( ) {
+      return PipelineDispatch.pathPrefixes(
+          PipelineDispatch.RequestType.Any,
+          ImmutableSet.of( this.servicePath, this.internalServicePath ),
+          true );
+    }
+
     @Override
     public String getName( ) {
       return "internal-query-pipeline-" + this.serviceName.toLowerCase( ) + "-" + this.servicePath;
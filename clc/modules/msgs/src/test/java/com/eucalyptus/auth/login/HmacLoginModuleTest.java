@@ -67,6 +67,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -77,7 +78,9 @@ import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.Subject;
+import org.junit.Ignore;
 import org.junit.Test;
 import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.InvalidSignatureAuthException;
@@ -666,6 +669,78 @@ public class HmacLoginModuleTest {
     assertTrue("Authentication successful", hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i").authenticate(creds));
   }
 
+  @Test
+  public void testSigV4CachedSignatureKey() throws Exception {
+    final HmacUtils.SignatureCredential credential =
+        new HmacUtils.SignatureCredential( "AKIDCACHEDKEYTEST/20140507/us-east-1/ec2/aws4_request" );
+    final byte[] key1 = Hmacv4LoginModule.getCachedSignatureKey( "secret1", credential );
+    assertArrayEquals( "Cached key", Hmacv4LoginModule.getSignatureKey( "secret1", credential ), key1 );
+    assertSame( "Cached key reused", key1, Hmacv4LoginModule.getCachedSignatureKey( "secret1", credential ) );
+
+    final byte[] key2 = Hmacv4LoginModule.getCachedSignatureKey( "secret2", credential );
+    assertArrayEquals( "Rotated key", Hmacv4LoginModule.getSignatureKey( "secret2", credential ), key2 );
+    assertFalse( "Rotated key differs", Arrays.equals( key1, key2 ) );
+  }
+
+  @Test
+  public void testSigV4SecretKeyRotation() throws Exception {
+    final HmacCredentials creds = boto_2_27_0_SigV4Credentials( );
+    assertTrue("Authentication successful", hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i").authenticate(creds));
+    try {
+      hmacV4LoginModule("ea9nMgw6353ANsJeylVkNIIzuCU0hz0xtErRbcj0").authenticate(boto_2_27_0_SigV4Credentials( ));
+      fail( "Expected authentication failure for rotated secret key" );
+    } catch ( InvalidSignatureAuthException e ) {
+      // expected
+    }
+    assertTrue("Authentication successful", hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i").authenticate(boto_2_27_0_SigV4Credentials( )));
+  }
+
+  @Test
+  public void testHmacKeyReuse() throws Exception {
+    final byte[] data = "data".getBytes( Charsets.UTF_8 );
+    final SecretKeySpec key1 = new SecretKeySpec( "key1".getBytes( Charsets.UTF_8 ), Hmac.HmacSHA256.toString( ) );
+    final SecretKeySpec key2 = new SecretKeySpec( "key2".getBytes( Charsets.UTF_8 ), Hmac.HmacSHA256.toString( ) );
+    final byte[] digest1 = Hmac.HmacSHA256.digestBinary( key1, data );
+    final byte[] digest2 = Hmac.HmacSHA256.digestBinary( key2, data );
+    assertFalse( "Digests differ", Arrays.equals( digest1, digest2 ) );
+    assertArrayEquals( "Digest for reused key", digest2, Hmac.HmacSHA256.digestBinary( key2, data ) );
+    assertArrayEquals( "Digest for changed key", digest1, Hmac.HmacSHA256.digestBinary( key1, data ) );
+  }
+
+  /**
+   * Verification throughput for a typical query API request, run with
+   * -Dsigv4.benchmark.iterations=N and time the test to measure.
+   */
+  @Ignore("Manual development test")
+  @Test
+  public void testSigV4VerificationThroughput() throws Exception {
+    final int iterations = Integer.getInteger( "sigv4.benchmark.iterations", 1000 );
+    final Hmacv4LoginModule module = hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i");
+    final HmacCredentials creds = boto_2_27_0_SigV4Credentials( );
+    for ( int i = 0; i < iterations; i++ ) {
+      assertTrue("Authentication successful", module.authenticate(creds));
+    }
+  }
+
+  private HmacCredentials boto_2_27_0_SigV4Credentials( ) throws AuthenticationException {
+    return new HmacCredentials(
+        "1234567890",
+        HmacUtils.SignatureVariant.SignatureV4Standard,
+        ImmutableMap.<String,List<String>>builder()
+            .put( "Action", Lists.newArrayList( "ListMetrics" ) )
+            .put( "Version", Lists.newArrayList( "2010-08-01" ) )
+            .build(),
+        ImmutableMap.<String,List<String>>builder()
+            .put( "host", Lists.newArrayList( "cloudwatch.g-12-03.autoqa.qa1.eucalyptus-systems.com:8773" ) )
+            .put( "x-amz-date", Lists.newArrayList( "20140507T202657Z" ) )
+            .put( "authorization", Lists.newArrayList( "AWS4-HMAC-SHA256 Credential=AKI67CCVBS1XAL7UG9KE/20140507/g-12-03/cloudwatch/aws4_request, SignedHeaders=host;x-amz-date, Signature=1a74acf1bf2b22bddad7314cc44eef6fe562a50373ca239113d2c1942a677739" ) )
+            .build(),
+        "GET",
+        "/",
+        ""
+    );
+  }
+
   /**
    * EUCA-4748 sig v2
    */
@@ -36,6 +36,8 @@ import net.sf.json.JSONException
 import org.junit.Before
 import org.junit.BeforeClass
 
+import static org.junit.Assert.assertEquals
+
 import java.nio.charset.StandardCharsets
 
 import static com.eucalyptus.auth.api.PolicyEngine.AuthorizationMatch.All
@@ -292,12 +294,70 @@ class PolicyEngineTest {
     """.stripIndent(), "iam:user", "iam:ListUsers", "123456789012", "/admin" )
   }
 
+  /**
+   * Evaluate requests against a policy with many statements, using a new
+   * request context for each evaluation as for service requests.
+   */
+  @Test
+  void testLargePolicyEvaluation( ) {
+    int statementCount = 250
+    String policy = """\
+      {
+        "Statement":[ ${ ( 0..<statementCount ).collect{ int i -> """{
+          "Effect": "Allow",
+          "Action": [ "testservice:action${i}", "testservice:describe${i}*" ],
+          "Resource": "arn:aws:testservice:::resourcetype/allowed-*"
+        }""" }.join( ',' ) }, {
+          "Effect": "Deny",
+          "Action": "testservice:*",
+          "Resource": "arn:aws:testservice:::resourcetype/allowed-denied*"
+        } ]
+      }
+    """.stripIndent( )
+    PolicyEngine engine = new PolicyEngineImpl( accountResolver( ), Suppliers.ofInstance( Boolean.FALSE ), { 'region-1' } as Supplier<String> )
+
+    int evaluations = 20000
+    int denied = 0
+    for ( int i = 0; i < evaluations; i++ ) {
+      String action = i % 2 == 0 ? "testservice:Action${i % statementCount}" : "testservice:Describe${i % statementCount}Items"
+      String resource = i % 10 == 0 ? "allowed-denied-${i % 100}" : "allowed-${i % 100}"
+      try {
+        evaluateAuthorization( engine, policy, "testservice:resourcetype", action, "010101010101", resource )
+      } catch ( AuthException e ) {
+        denied++
+      }
+    }
+    assertEquals( 'Denied evaluations', evaluations.intdiv( 10 ), denied )
+  }
+
+  @Test( expected = AuthException.class )
+  void testLargePolicyUnknownAction( ) {
+    evaluateAuthorization( """\
+      {
+        "Statement":[ ${ ( 0..<100 ).collect{ int i -> """{
+          "Effect": "Allow",
+          "Action": "testservice:action${i}",
+          "Resource": "arn:aws:testservice:::resourcetype/*"
+        }""" }.join( ',' ) } ]
+      }
+    """.stripIndent(), "testservice:resourcetype", "testservice:Action100", "010101010101", "" )
+  }
+
   private void evaluateAuthorization( String policy,
                                       String resourceType,
                                       String requestAction,
                                       String resourceAccountNumber,
                                       String resourceName ) {
     PolicyEngine engine = new PolicyEngineImpl( accountResolver( ), Suppliers.ofInstance( Boolean.FALSE ), { 'region-1' } as Supplier<String> )
+    evaluateAuthorization( engine, policy, resourceType, requestAction, resourceAccountNumber, resourceName )
+  }
+
+  private void evaluateAuthorization( PolicyEngine engine,
+                                      String policy,
+                                      String resourceType,
+                                      String requestAction,
+                                      String resourceAccountNumber,
+                                      String resourceName ) {
     PolicyEngineImpl.AuthEvaluationContextImpl context = new PolicyEngineImpl.AuthEvaluationContextImpl( resourceType, requestAction, user(), [:] as Map<String,String>, [ new PolicyVersion(){
       @Override String getPolicyVersionId( ) { '1234567890' }
       @Override String getPolicyName( ) { 'test' }
@@ -0,0 +1,72 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.auth.policy
+
+import org.junit.Test
+
+import java.util.regex.Pattern
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+class PolicyGlobTest {
+
+  @Test
+  void testMatch( ) {
+    assertMatches 'a', 'a'
+    assertMatches 'a*', 'abc'
+    assertMatches '*c', 'abc'
+    assertMatches 'a?c', 'abc'
+    assertMatches 'a*b*c', 'aXbYbZc'
+    assertMatches '*', ''
+    assertMatches 'ec2:describe*', 'ec2:describeinstances'
+    assertMatches 'arn:aws:s3:::bucket/*', 'arn:aws:s3:::bucket/a/b/c'
+    assertNotMatches 'a', 'b'
+    assertNotMatches 'a', 'aa'
+    assertNotMatches 'a*b', 'ab c'
+    assertNotMatches '??', 'a'
+    assertNotMatches '*', 'a\nb'
+    assertNotMatches 'a?b', 'a\nb'
+    assertFalse( 'Null pattern', PolicyGlob.of( null ).matches( 'a' ) )
+  }
+
+  @Test
+  void testRegexEquivalence( ) {
+    Random random = new Random( 1 )
+    List<String> patternChars = [ 'a', 'b', '*', '?', '.', '/', ':' ]
+    List<String> textChars = [ 'a', 'b', '.', '/', ':', '\n' ]
+    5000.times {
+      String pattern = ( 0..<random.nextInt( 8 ) ).collect{ patternChars[ random.nextInt( patternChars.size( ) ) ] }.join( '' )
+      String text = ( 0..<random.nextInt( 10 ) ).collect{ textChars[ random.nextInt( textChars.size( ) ) ] }.join( '' )
+      assertEquals(
+          "${pattern} ~= ${text}",
+          Pattern.matches( PolicyUtils.toJavaPattern( pattern ), text ),
+          PolicyGlob.compile( pattern ).matches( text ) )
+    }
+  }
+
+  void assertMatches( String pattern, String value ) {
+    assertTrue( pattern+"~="+value, PolicyGlob.of( pattern ).matches( value ) )
+  }
+
+  void assertNotMatches( String pattern, String value ) {
+    assertFalse( pattern+"!="+value, PolicyGlob.of( pattern ).matches( value ) )
+  }
+}
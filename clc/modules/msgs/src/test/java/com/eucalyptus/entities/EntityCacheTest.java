@@ -0,0 +1,152 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import static org.junit.Assert.*;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for entity cache change tracking using an in-memory database.
+ */
+public class EntityCacheTest {
+
+  @BeforeClass
+  public static void setup( ) {
+    final Map<String,String> props = Maps.newHashMap( );
+    props.put( "hibernate.ejb.interceptor.session_scoped", "com.eucalyptus.entities.DelegatingInterceptor" );
+    props.put( "hibernate.show_sql", "false" );
+    props.put( "hibernate.format_sql", "false" );
+    props.put( "hibernate.generate_statistics", "false" );
+    props.put( "hibernate.bytecode.use_reflection_optimizer", "true" );
+    props.put( "javax.persistence.jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver" );
+    props.put( "javax.persistence.jdbc.user", "root" );
+    props.put( "javax.persistence.jdbc.password", "root" );
+    props.put( "hibernate.hbm2ddl.auto", "create" );
+    props.put( "hibernate.cache.use_second_level_cache", "false" );
+    props.put( "hibernate.dialect", "org.hibernate.dialect.DerbyDialect" );
+    props.put( "hibernate.connection.url", "jdbc:derby:memory:entitycachetest;create=true" );
+    PersistenceContexts.registerPersistenceContext( new PersistenceContextConfiguration(
+        "eucalyptus_test",
+        ImmutableList.<Class<?>>of( TestCachedEntity.class ),
+        props
+    ) );
+  }
+
+  @AfterClass
+  public static void teardown( ) {
+    PersistenceContexts.shutdown( );
+  }
+
+  @After
+  public void cleanup( ) {
+    try ( final TransactionResource db = Entities.transactionFor( TestCachedEntity.class ) ) {
+      Entities.deleteAll( TestCachedEntity.class );
+      db.commit( );
+    }
+  }
+
+  @Test
+  public void testHit( ) {
+    persist( "a", "b" );
+    final EntityCache<TestCachedEntity,String> cache = cache( );
+    final Iterable<String> values = cache.get( );
+    assertEquals( "Values", ImmutableList.of( "a", "b" ), values );
+    assertSame( "Values on hit", values, cache.get( ) );
+
+    // a bulk update is not seen by the interceptor so is not visible until the table is verified
+    try ( final TransactionResource db = Entities.transactionFor( TestCachedEntity.class ) ) {
+      Entities.updateAllMatching( TestCachedEntity.class, "SET value = :newValue WHERE value = :value",
+          ImmutableMap.of( "newValue", "c", "value", "a" ) );
+      db.commit( );
+    }
+    assertSame( "Values on hit after bulk update", values, cache.get( ) );
+  }
+
+  @Test
+  public void testInvalidation( ) throws Exception {
+    persist( "a", "b" );
+    final EntityCache<TestCachedEntity,String> cache = cache( );
+    final Iterable<String> values = cache.get( );
+    assertEquals( "Values", ImmutableList.of( "a", "b" ), values );
+
+    update( "a", "c" );
+    assertEquals( "Values after update", ImmutableList.of( "b", "c" ), cache.get( ) );
+
+    persist( "d" );
+    assertEquals( "Values after create", ImmutableList.of( "b", "c", "d" ), cache.get( ) );
+
+    try ( final TransactionResource db = Entities.transactionFor( TestCachedEntity.class ) ) {
+      Entities.delete( Entities.uniqueResult( new TestCachedEntity( "b" ) ) );
+      db.commit( );
+    }
+    final Iterable<String> valuesAfterDelete = cache.get( );
+    assertEquals( "Values after delete", ImmutableList.of( "c", "d" ), valuesAfterDelete );
+    assertSame( "Values on hit after delete", valuesAfterDelete, cache.get( ) );
+  }
+
+  @Test
+  public void testRollback( ) throws Exception {
+    persist( "a", "b" );
+    final EntityCache<TestCachedEntity,String> cache = cache( );
+    final Iterable<String> values = cache.get( );
+
+    try ( final TransactionResource db = Entities.transactionFor( TestCachedEntity.class ) ) {
+      final TestCachedEntity entity = Entities.uniqueResult( new TestCachedEntity( "a" ) );
+      entity.setValue( "c" );
+      Entities.flush( entity );
+      // not committed
+    }
+    assertEquals( "Values after rollback", ImmutableList.of( "a", "b" ), cache.get( ) );
+    assertSame( "Values after rollback", values, cache.get( ) );
+
+    update( "a", "c" );
+    assertEquals( "Values after update", ImmutableList.of( "b", "c" ), cache.get( ) );
+  }
+
+  private static EntityCache<TestCachedEntity,String> cache( ) {
+    return new EntityCache<>( new TestCachedEntity( ), new Function<TestCachedEntity,String>( ) {
+      @Override
+      public String apply( final TestCachedEntity entity ) {
+        return entity.getValue( );
+      }
+    }, TimeUnit.HOURS.toMillis( 1 ) );
+  }
+
+  private static void persist( final String... values ) {
+    try ( final TransactionResource db = Entities.transactionFor( TestCachedEntity.class ) ) {
+      for ( final String value : values ) {
+        Entities.persist( new TestCachedEntity( value ) );
+      }
+      db.commit( );
+    }
+  }
+
+  private static void update( final String value, final String newValue ) throws Exception {
+    try ( final TransactionResource db = Entities.transactionFor( TestCachedEntity.class ) ) {
+      Entities.uniqueResult( new TestCachedEntity( value ) ).setValue( newValue );
+      db.commit( );
+    }
+  }
+}
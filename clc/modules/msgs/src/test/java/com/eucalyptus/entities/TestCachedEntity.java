@@ -0,0 +1,49 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+/**
+ * Entity for entity cache tests.
+ */
+@Entity
+@PersistenceContext( name = "eucalyptus_test" )
+@Table( name = "test_cached_entity" )
+public class TestCachedEntity extends AbstractPersistent {
+  private static final long serialVersionUID = 1L;
+
+  @Column( name = "test_value" )
+  private String value;
+
+  public TestCachedEntity( ) {
+  }
+
+  public TestCachedEntity( final String value ) {
+    this.value = value;
+  }
+
+  public String getValue( ) {
+    return value;
+  }
+
+  public void setValue( final String value ) {
+    this.value = value;
+  }
+}
@@ -0,0 +1,342 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.util.async
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.jboss.netty.bootstrap.ClientBootstrap
+import org.jboss.netty.bootstrap.ServerBootstrap
+import org.jboss.netty.channel.Channel
+import org.jboss.netty.channel.ChannelEvent
+import org.jboss.netty.channel.ChannelFutureListener
+import org.jboss.netty.channel.ChannelHandlerContext
+import org.jboss.netty.channel.ChannelPipeline
+import org.jboss.netty.channel.ChannelPipelineFactory
+import org.jboss.netty.channel.ChannelStateEvent
+import org.jboss.netty.channel.ChannelUpstreamHandler
+import org.jboss.netty.channel.Channels
+import org.jboss.netty.channel.MessageEvent
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse
+import org.jboss.netty.handler.codec.http.HttpClientCodec
+import org.jboss.netty.handler.codec.http.HttpHeaders
+import org.jboss.netty.handler.codec.http.HttpMethod
+import org.jboss.netty.handler.codec.http.HttpRequest
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder
+import org.jboss.netty.handler.codec.http.HttpResponse
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder
+import org.jboss.netty.handler.codec.http.HttpResponseStatus
+import org.jboss.netty.handler.codec.http.HttpVersion
+import org.jboss.netty.util.HashedWheelTimer
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Ignore
+import org.junit.Test
+
+/**
+ * Tests for pooled channels against a local keep-alive HTTP endpoint.
+ */
+class ChannelPoolTest {
+
+  private static final int REQUESTS = 2000
+
+  private static ServerBootstrap serverBootstrap
+  private static Channel serverChannel
+  private static InetSocketAddress serverAddress
+  private static final AtomicInteger serverConnections = new AtomicInteger( )
+  private static HashedWheelTimer timer
+  private static ExecutorService connectExecutor
+
+  @BeforeClass
+  static void startServer( ) {
+    serverBootstrap = new ServerBootstrap( new NioServerSocketChannelFactory(
+        Executors.newCachedThreadPool( ), Executors.newCachedThreadPool( ) ) )
+    serverBootstrap.setPipelineFactory( {
+      Channels.pipeline(
+          new HttpRequestDecoder( ),
+          new HttpResponseEncoder( ),
+          new SimpleChannelUpstreamHandler( ) {
+            @Override
+            void channelConnected( final ChannelHandlerContext ctx, final ChannelStateEvent e ) {
+              serverConnections.incrementAndGet( )
+            }
+
+            @Override
+            void messageReceived( final ChannelHandlerContext ctx, final MessageEvent e ) {
+              HttpRequest request = (HttpRequest) e.message
+              HttpResponse response = new DefaultHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.OK )
+              HttpHeaders.setContentLength( response, 0 )
+              if ( HttpHeaders.isKeepAlive( request ) ) {
+                HttpHeaders.setKeepAlive( response, true )
+                e.channel.write( response )
+              } else {
+                HttpHeaders.setKeepAlive( response, false )
+                e.channel.write( response ).addListener( ChannelFutureListener.CLOSE )
+              }
+            }
+          } )
+    } as ChannelPipelineFactory )
+    serverChannel = serverBootstrap.bind( new InetSocketAddress( InetAddress.getLoopbackAddress( ), 0 ) )
+    serverAddress = (InetSocketAddress) serverChannel.localAddress
+    timer = new HashedWheelTimer( )
+    connectExecutor = Executors.newCachedThreadPool( )
+  }
+
+  @AfterClass
+  static void stopServer( ) {
+    serverChannel?.close( )?.awaitUninterruptibly( )
+    serverBootstrap?.releaseExternalResources( )
+    timer?.stop( )
+    connectExecutor?.shutdownNow( )
+  }
+
+  @Test
+  void testChannelReuse( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 2, 1, 15000, timer, connectExecutor )
+    try {
+      int connections = serverConnections.get( )
+      50.times { pooledRequest( pool ) }
+      ChannelPool.Statistics statistics = pool.statistics
+      assertEquals( 'Connections opened', 1, statistics.opened )
+      assertEquals( 'Connections to endpoint', 1, serverConnections.get( ) - connections )
+      assertEquals( 'Channels reused', 49, statistics.reused )
+      assertEquals( 'Channels in flight', 0, statistics.inFlight )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  @Test
+  void testChannelCloseWithoutKeepAlive( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 2, 1, 15000, timer, connectExecutor )
+    try {
+      5.times { pooledRequest( pool, false ) }
+      assertEquals( 'Connections opened', 5, pool.statistics.opened )
+      assertEquals( 'Channels reused', 0, pool.statistics.reused )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  @Test
+  void testConnectionLimit( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 1, 1, 15000, timer, connectExecutor )
+    try {
+      Channel channel = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      def waiter = pool.acquire( )
+      assertFalse( 'Acquired over limit', waiter.isDone( ) )
+      assertEquals( 'Waiting', 1, pool.statistics.waiting )
+      pool.release( channel, null )
+      assertSame( 'Released channel', channel, waiter.get( 5, TimeUnit.SECONDS ) )
+      pool.release( channel, null )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  @Test
+  void testIdleEviction( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 2, 1, 200, timer, connectExecutor )
+    try {
+      Channel channel = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      pool.release( channel, null )
+      assertEquals( 'Idle channels', 1, pool.statistics.idle )
+      assertTrue( 'Idle channel closed', channel.closeFuture.awaitUninterruptibly( 5000 ) )
+      assertEquals( 'Channels evicted', 1, pool.statistics.evicted )
+      assertEquals( 'Open channels', 0, pool.statistics.open )
+
+      Channel next = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      assertNotSame( 'New channel after eviction', channel, next )
+      pool.release( next, null )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  @Test
+  void testWaiterOnClose( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 1, 1, 15000, timer, connectExecutor )
+    try {
+      Channel channel = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      def waiter = pool.acquire( )
+      assertFalse( 'Acquired over limit', waiter.isDone( ) )
+      pool.close( )
+      try {
+        waiter.get( 5, TimeUnit.SECONDS )
+        fail( 'Expected waiter to fail on close' )
+      } catch ( ExecutionException e ) {
+        assertTrue( 'Pool closed failure', e.cause instanceof IllegalStateException )
+      }
+      assertTrue( 'Channel closed', channel.closeFuture.awaitUninterruptibly( 5000 ) )
+      try {
+        pool.acquire( ).get( 5, TimeUnit.SECONDS )
+        fail( 'Expected acquire to fail after close' )
+      } catch ( ExecutionException e ) {
+        assertTrue( 'Pool closed failure', e.cause instanceof IllegalStateException )
+      }
+      assertEquals( 'Connections opened', 1, pool.statistics.opened )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  /**
+   * A waiter is connected using the connect executor when a channel closes,
+   * connecting can block so must not be done on the I/O thread.
+   */
+  @Test
+  void testReconnectOnClose( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    AtomicInteger executions = new AtomicInteger( )
+    Executor executor = { Runnable runnable ->
+      executions.incrementAndGet( )
+      connectExecutor.execute( runnable )
+    } as Executor
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 1, 1, 15000, timer, executor )
+    try {
+      Channel channel = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      def waiter = pool.acquire( )
+      channel.close( ).awaitUninterruptibly( )
+      Channel next = waiter.get( 5, TimeUnit.SECONDS )
+      assertNotSame( 'New channel', channel, next )
+      assertEquals( 'Connect executions', 1, executions.get( ) )
+      pool.release( next, null )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  @Test
+  void testCloseWhenIdle( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', bootstrap, serverAddress, 2, 1, 15000, timer, connectExecutor )
+    try {
+      Channel idle = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      Channel busy = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+      pool.release( idle, null )
+      pool.closeWhenIdle( )
+      assertTrue( 'Idle channel closed', idle.closeFuture.awaitUninterruptibly( 5000 ) )
+      assertTrue( 'In flight channel open', busy.isOpen( ) )
+      pool.release( busy, null )
+      assertTrue( 'Released channel closed', busy.closeFuture.awaitUninterruptibly( 5000 ) )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+    }
+  }
+
+  /**
+   * Compares request rates for a new connection per request with pooled
+   * keep-alive connections.
+   */
+  @Ignore( "Manual development test" )
+  @Test
+  void testRequestRate( ) {
+    ClientBootstrap bootstrap = clientBootstrap( )
+    ClientBootstrap poolBootstrap = clientBootstrap( )
+    ChannelPool pool = new ChannelPool( 'test', poolBootstrap, serverAddress, 1, 1, 15000, timer, connectExecutor )
+    try {
+      100.times { connectedRequest( bootstrap ); pooledRequest( pool ) } // warm up
+
+      long start = System.nanoTime( )
+      REQUESTS.times { connectedRequest( bootstrap ) }
+      long connectNanos = System.nanoTime( ) - start
+
+      start = System.nanoTime( )
+      REQUESTS.times { pooledRequest( pool ) }
+      long pooledNanos = System.nanoTime( ) - start
+
+      assertTrue( "Connection per request: ${rate( connectNanos )}/s, pooled: ${rate( pooledNanos )}/s".toString( ),
+          pooledNanos <= connectNanos )
+      assertEquals( 'Connections opened', 1, pool.statistics.opened )
+    } finally {
+      pool.close( )
+      bootstrap.releaseExternalResources( )
+      poolBootstrap.releaseExternalResources( )
+    }
+  }
+
+  private static long rate( long nanos ) {
+    REQUESTS * TimeUnit.SECONDS.toNanos( 1 ) / Math.max( 1L, nanos )
+  }
+
+  private ClientBootstrap clientBootstrap( ) {
+    ClientBootstrap bootstrap = new ClientBootstrap( new NioClientSocketChannelFactory(
+        Executors.newCachedThreadPool( ), Executors.newCachedThreadPool( ) ) )
+    bootstrap.setPipelineFactory( { Channels.pipeline( new HttpClientCodec( ) ) } as ChannelPipelineFactory )
+    bootstrap.setOption( 'tcpNoDelay', true )
+    bootstrap
+  }
+
+  private HttpRequest request( boolean keepAlive = true ) {
+    HttpRequest request = new DefaultHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.POST, '/services/Test' )
+    request.setHeader( HttpHeaders.Names.HOST, serverAddress.hostName )
+    HttpHeaders.setContentLength( request, 0 )
+    HttpHeaders.setKeepAlive( request, keepAlive )
+    request
+  }
+
+  private void pooledRequest( ChannelPool pool, boolean keepAlive = true ) {
+    Channel channel = pool.acquire( ).get( 5, TimeUnit.SECONDS )
+    CountDownLatch latch = new CountDownLatch( 1 )
+    HttpResponse response = null
+    pool.write( channel, { ChannelHandlerContext ctx, ChannelEvent e ->
+      if ( e instanceof MessageEvent ) {
+        response = (HttpResponse) ( (MessageEvent) e ).message
+        latch.countDown( )
+      }
+    } as ChannelUpstreamHandler, request( keepAlive ) )
+    assertTrue( 'Response received', latch.await( 5, TimeUnit.SECONDS ) )
+    pool.release( channel, response )
+    if ( !keepAlive ) channel.closeFuture.awaitUninterruptibly( 5000 )
+  }
+
+  private void connectedRequest( ClientBootstrap bootstrap ) {
+    CountDownLatch latch = new CountDownLatch( 1 )
+    Channel channel = bootstrap.connect( serverAddress ).awaitUninterruptibly( ).channel
+    channel.pipeline.addLast( 'handler', new SimpleChannelUpstreamHandler( ) {
+      @Override
+      void messageReceived( final ChannelHandlerContext ctx, final MessageEvent e ) {
+        latch.countDown( )
+      }
+    } )
+    channel.write( request( ) )
+    assertTrue( 'Response received', latch.await( 5, TimeUnit.SECONDS ) )
+    channel.close( ).awaitUninterruptibly( )
+  }
+}
@@ -0,0 +1,117 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.util.metrics
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.TimeUnit
+
+import org.junit.Test
+
+class HistogramTest {
+
+  @Test
+  void testAggregates() {
+    Histogram histogram = new Histogram( TimeUnit.MINUTES.toMillis( 5 ), 6 )
+    [ 18, 25, 1, 4, 5 ].each{ Integer value -> histogram.record( value ) }
+    Histogram.Snapshot res = histogram.snapshot( )
+    assertEquals( 1, res.min )
+    assertEquals( 25, res.max )
+    assertEquals( 5, res.count )
+    assertEquals( 10.6, res.mean, 0.01 )
+    assertEquals( 5, res.median )
+    histogram.record( 28 )
+    res = histogram.snapshot( )
+    // set is { 1, 4, 5, 18, 25, 28 }
+    assertEquals( 1, res.min )
+    assertEquals( 28, res.max )
+    assertEquals( 6, res.count )
+    assertEquals( 13.5, res.mean, 0.01 )
+    assertEquals( 5, res.median )
+    assertEquals( 4, res.getValueAtPercentile( 25 ) )
+    assertEquals( 25, res.getValueAtPercentile( 75 ) )
+  }
+
+  @Test
+  void testEmpty() {
+    Histogram.Snapshot res = new Histogram( 1000, 2 ).snapshot( )
+    assertEquals( 0, res.min )
+    assertEquals( 0, res.max )
+    assertEquals( 0, res.count )
+    assertEquals( 0, res.mean, 0.01 )
+    assertEquals( 0, res.median )
+  }
+
+  @Test
+  void testOverflow() {
+    Histogram histogram = new Histogram( TimeUnit.MINUTES.toMillis( 5 ), 6 )
+    [ 5L, Long.MAX_VALUE, 6L, 1L ].each{ Long value -> histogram.record( value ) }
+    Histogram.Snapshot res = histogram.snapshot( )
+    assertEquals( 1, res.min )
+    assertEquals( Long.MAX_VALUE, res.max )
+    assertEquals( Double.NaN, res.mean, 0.01 )
+    assertEquals( 1, res.getValueAtPercentile( 25 ) )
+    assertEquals( 6, res.getValueAtPercentile( 75 ) )
+  }
+
+  @Test
+  void testNegative() {
+    Histogram histogram = new Histogram( 1000, 2 )
+    for ( int i=-1; i>-50; i-- ) histogram.record( i )
+    assertEquals( 0, histogram.snapshot( ).count )
+    assertEquals( 0, histogram.totalCount )
+  }
+
+  @Test
+  void testPrecision() {
+    for ( long value : [ 0L, 7L, 8L, 15L, 16L, 1000L, 123456789L, Long.MAX_VALUE ] ) {
+      int bucket = Histogram.bucket( value )
+      assertTrue( "Bucket for ${value}", bucket >= 0 && bucket < Histogram.BUCKETS )
+      assertTrue( "Lowest for ${value}", Histogram.lowestValue( bucket ) <= value )
+      assertTrue( "Highest for ${value}", Histogram.highestValue( bucket ) >= value )
+      assertTrue( "Precision for ${value}",
+          ( Histogram.highestValue( bucket ) - Histogram.lowestValue( bucket ) ) <= value / 8 )
+    }
+  }
+
+  @Test
+  void testLazyAllocation() {
+    Histogram histogram = new Histogram( 6000, 6 )
+    assertEquals( 'Stripes before recording', 0, histogram.allocatedStripes( ) )
+    histogram.snapshot( )
+    histogram.reset( )
+    assertEquals( 'Stripes after snapshot and reset', 0, histogram.allocatedStripes( ) )
+    histogram.record( 10, 0 )
+    histogram.record( 20, 500 )
+    assertEquals( 'Stripes after recording in one interval', 1, histogram.allocatedStripes( ) )
+    histogram.record( 30, 1000 )
+    assertEquals( 'Stripes after recording in two intervals', 2, histogram.allocatedStripes( ) )
+    assertEquals( 'Count', 3, histogram.snapshot( 1000 ).count )
+  }
+
+  @Test
+  void testWindow() {
+    Histogram histogram = new Histogram( 6000, 6 )
+    histogram.record( 10, 0 )
+    histogram.record( 20, 5500 )
+    assertEquals( 2, histogram.snapshot( 5999 ).count )
+    assertEquals( 1, histogram.snapshot( 6000 ).count )
+    assertEquals( 20, histogram.snapshot( 6000 ).max )
+    histogram.record( 30, 12000 )
+    assertEquals( 1, histogram.snapshot( 12000 ).count )
+    assertEquals( 3, histogram.totalCount )
+  }
+}
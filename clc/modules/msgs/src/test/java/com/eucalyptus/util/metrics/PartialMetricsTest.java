@@ -21,14 +21,16 @@ package com.eucalyptus.util.metrics;
 
 import static org.junit.Assert.*;
 
-import java.util.List;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ObjectName;
 
 import org.junit.Test;
 
+import com.eucalyptus.util.metrics.ActionMetrics;
 import com.eucalyptus.util.metrics.MonitoredAction;
-import com.eucalyptus.util.metrics.ThruputMetrics;
 
 public class PartialMetricsTest {
 
@@ -36,18 +38,44 @@ public class PartialMetricsTest {
   public void testStartStop() throws Exception {
     long end = System.currentTimeMillis();
     long start = end - 1000;
-    ThruputMetrics.startOperation(MonitoredAction.CREATE_VOLUME, "vol-123456", start).get(3, TimeUnit.SECONDS);
-    ThruputMetrics.endOperation(MonitoredAction.CREATE_VOLUME, "vol-123456", end).get(3, TimeUnit.SECONDS);
-    ThruputMetrics.DataPoint[] res = ThruputMetrics.getDataPoints(MonitoredAction.CREATE_VOLUME);
-    assertEquals(1, res.length);
-    assertEquals(1000, res[0].value);
+    ActionMetrics.startOperation(MonitoredAction.CREATE_VOLUME, "vol-123456", start);
+    ActionMetrics.endOperation(MonitoredAction.CREATE_VOLUME, "vol-123456", end);
+    Histogram.Snapshot res = ActionMetrics.getSnapshot(MonitoredAction.CREATE_VOLUME);
+    assertEquals(1, res.getCount());
+    assertEquals(1000, res.getMin());
+    assertEquals(1000, res.getMax());
   }
 
   @Test
   public void testNoStart() throws Exception {
-    ThruputMetrics.endOperation(MonitoredAction.CREATE_SNAPSHOT, "vol-123450", System.currentTimeMillis()).get(3, TimeUnit.SECONDS);
-    ThruputMetrics.DataPoint[] res = ThruputMetrics.getDataPoints(MonitoredAction.CREATE_SNAPSHOT);
-    assertEquals(0, res.length);
+    ActionMetrics.endOperation(MonitoredAction.CREATE_SNAPSHOT, "vol-123450", System.currentTimeMillis());
+    Histogram.Snapshot res = ActionMetrics.getSnapshot(MonitoredAction.CREATE_SNAPSHOT);
+    assertEquals(0, res.getCount());
   }
 
+  @Test
+  public void testEndBeforeStart() throws Exception {
+    long end = System.currentTimeMillis();
+    long start = end - 500;
+    ActionMetrics.endOperation(MonitoredAction.DELETE_VOLUME, "vol-123457", end);
+    ActionMetrics.startOperation(MonitoredAction.DELETE_VOLUME, "vol-123457", start);
+    Histogram.Snapshot res = ActionMetrics.getSnapshot(MonitoredAction.DELETE_VOLUME);
+    assertEquals(1, res.getCount());
+    assertEquals(500, res.getMax());
+  }
+
+  @Test
+  public void testJmxAttributes() throws Exception {
+    ActionMetrics.clear(MonitoredAction.CLUSTER_SIZE);
+    ActionMetrics.record(MonitoredAction.CLUSTER_SIZE, 10);
+    ActionMetrics.record(MonitoredAction.CLUSTER_SIZE, 30);
+    AttributeList attributes = ManagementFactory.getPlatformMBeanServer().getAttributes(
+        new ObjectName("com.eucalyptus.util.metrics:type=ActionMetrics,name=CLUSTER_SIZE"),
+        new String[] { "Count", "Min", "Max", "Mean" });
+    assertEquals(4, attributes.size());
+    assertEquals(2L, ((Attribute) attributes.get(0)).getValue());
+    assertEquals(10L, ((Attribute) attributes.get(1)).getValue());
+    assertEquals(30L, ((Attribute) attributes.get(2)).getValue());
+    assertEquals(20d, (Double) ((Attribute) attributes.get(3)).getValue(), 0.01);
+  }
 }
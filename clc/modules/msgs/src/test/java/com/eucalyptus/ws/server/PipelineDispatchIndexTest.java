@@ -0,0 +1,173 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.ws.server;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for pipeline dispatch
+ */
+public class PipelineDispatchIndexTest {
+
+  private static final Supplier<String> DOMAIN = Suppliers.ofInstance( "localhost" );
+
+  @Test
+  public void testPathPrefixDispatch( ) {
+    final PipelineDispatchIndex index = new PipelineDispatchIndex( pipelines( 10 ), Lists.<FilteredPipeline>newArrayList( ) );
+    assertEquals( "query pipeline", "service-3-query", name( index.find( request( "/services/Service3/?Action=Describe", false ), DOMAIN ) ) );
+    assertEquals( "soap pipeline", "service-3-soap", name( index.find( request( "/services/Service3", true ), DOMAIN ) ) );
+    assertNull( "no pipeline", index.find( request( "/services/Unknown/?Action=Describe", false ), DOMAIN ) );
+    assertEquals( "query hits", (Long) 1L, index.getDispatchCounts( ).get( "service-3-query" ) );
+    assertEquals( "soap hits", (Long) 1L, index.getDispatchCounts( ).get( "service-3-soap" ) );
+    assertEquals( "other hits", (Long) 0L, index.getDispatchCounts( ).get( "service-4-query" ) );
+  }
+
+  @Test
+  public void testNoPathDispatch( ) {
+    final PipelineDispatchIndex index = new PipelineDispatchIndex( pipelines( 10 ), Lists.<FilteredPipeline>newArrayList( ) );
+    final HttpRequest request = request( "/?Action=Describe", false );
+    request.setHeader( "Host", "service5.localhost" );
+    assertEquals( "query pipeline by host", "service-5-query", name( index.find( request, DOMAIN ) ) );
+  }
+
+  @Test
+  public void testAnyPathAndInternalDispatch( ) {
+    final List<FilteredPipeline> internal = Lists.newArrayList( );
+    internal.add( new TestPipeline( "internal", PipelineDispatch.any( ), null, null ) );
+    final List<FilteredPipeline> pipelines = pipelines( 10 );
+    pipelines.add( new TestPipeline( "heartbeat", PipelineDispatch.any( ), null, "/services/Heartbeat" ) );
+    final PipelineDispatchIndex index = new PipelineDispatchIndex( pipelines, internal );
+    assertEquals( "any path pipeline", "heartbeat", name( index.find( request( "/services/Heartbeat", false ), DOMAIN ) ) );
+    assertEquals( "internal pipeline", "internal", name( index.find( request( "/other", false ), DOMAIN ) ) );
+  }
+
+  /**
+   * Dispatch for a realistic number of pipelines matches checking each
+   * pipeline in turn.
+   */
+  @Test
+  public void testDispatchMatchesScan( ) {
+    final List<FilteredPipeline> pipelines = pipelines( 40 );
+    final List<FilteredPipeline> internal = pipelines( 60 );
+    final PipelineDispatchIndex index = new PipelineDispatchIndex( pipelines, internal );
+    for ( int i = 0; i < 40; i++ ) {
+      for ( final HttpRequest request : Arrays.asList(
+          request( "/services/Service" + i + "/?Action=Describe", false ),
+          request( "/services/Service" + i, true ) ) ) {
+        final FilteredPipeline pipeline = index.find( request, DOMAIN );
+        assertNotNull( "pipeline for " + request.getUri( ), pipeline );
+        assertSame( "pipeline for " + request.getUri( ), scan( pipelines, request ), pipeline );
+      }
+    }
+  }
+
+  private static FilteredPipeline scan( final Collection<FilteredPipeline> pipelines, final HttpRequest request ) {
+    for ( final FilteredPipeline pipeline : pipelines ) {
+      if ( pipeline.checkAccepts( request ) ) {
+        return pipeline;
+      }
+    }
+    return null;
+  }
+
+  private static List<FilteredPipeline> pipelines( final int count ) {
+    final List<FilteredPipeline> pipelines = Lists.newArrayList( );
+    for ( int i = 0; i < count; i++ ) {
+      final String path = "/services/Service" + i;
+      final String host = "service" + i + ".localhost";
+      pipelines.add( new TestPipeline( "service-" + i + "-query",
+          PipelineDispatch.pathPrefixes( PipelineDispatch.RequestType.NonSoap, ImmutableSet.of( path ), true ), false, path, host ) );
+      pipelines.add( new TestPipeline( "service-" + i + "-soap",
+          PipelineDispatch.pathSuffixes( PipelineDispatch.RequestType.Soap, ImmutableSet.of( path ), true ), true, path, host ) );
+    }
+    return pipelines;
+  }
+
+  private static HttpRequest request( final String uri, final boolean soap ) {
+    final HttpRequest request = new DefaultHttpRequest( HttpVersion.HTTP_1_1, soap ? HttpMethod.POST : HttpMethod.GET, uri );
+    if ( soap ) {
+      request.setHeader( "SOAPAction", "" );
+    }
+    return request;
+  }
+
+  private static String name( final FilteredPipeline pipeline ) {
+    return pipeline == null ? null : pipeline.getName( );
+  }
+
+  private static final class TestPipeline extends FilteredPipeline {
+    private final String name;
+    private final PipelineDispatch dispatch;
+    private final Boolean soap;
+    private final String path;
+    private final String host;
+
+    private TestPipeline( final String name, final PipelineDispatch dispatch, final Boolean soap, final String path ) {
+      this( name, dispatch, soap, path, null );
+    }
+
+    private TestPipeline( final String name, final PipelineDispatch dispatch, final Boolean soap, final String path, final String host ) {
+      this.name = name;
+      this.dispatch = dispatch;
+      this.soap = soap;
+      this.path = path;
+      this.host = host;
+    }
+
+    @Override
+    public String getName( ) {
+      return name;
+    }
+
+    @Override
+    public PipelineDispatch getDispatch( ) {
+      return dispatch;
+    }
+
+    @Override
+    public ChannelPipeline addHandlers( final ChannelPipeline pipeline ) {
+      return pipeline;
+    }
+
+    @Override
+    public boolean checkAccepts( final HttpRequest message ) {
+      final String uri = message.getUri( );
+      final boolean soapRequest = message.getHeaderNames( ).contains( "SOAPAction" );
+      if ( soap != null && soap != soapRequest ) {
+        return false;
+      }
+      if ( path == null ) {
+        return true;
+      }
+      final boolean usesServicePath = Boolean.TRUE.equals( soap ) ? uri.endsWith( path ) : uri.startsWith( path );
+      final boolean noPath = uri.isEmpty( ) || uri.equals( "/" ) || uri.startsWith( "/?" );
+      return usesServicePath || ( noPath && host != null && host.equals( message.getHeader( "Host" ) ) );
+    }
+  }
+}
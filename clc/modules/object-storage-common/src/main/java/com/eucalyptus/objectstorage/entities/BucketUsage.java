@@ -0,0 +1,122 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.entities;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Usage counters for a bucket, maintained as objects and parts change state.
+ *
+ * Object bytes and part bytes include records in creating and extant states, the object count includes only extant objects.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_osg")
+@Table(name = "bucket_usage")
+public class BucketUsage extends AbstractPersistent {
+
+  @Column(name = "bucket_uuid", unique = true, nullable = false)
+  private String bucketUuid;
+
+  @Column(name = "object_count", nullable = false)
+  private Long objectCount;
+
+  @Column(name = "object_bytes", nullable = false)
+  private Long objectBytes;
+
+  @Column(name = "mpu_part_bytes", nullable = false)
+  private Long mpuPartBytes;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "reconciled")
+  private Date reconciled;
+
+  public BucketUsage() {}
+
+  public BucketUsage(String bucketUuid) {
+    this.bucketUuid = bucketUuid;
+    this.objectCount = 0L;
+    this.objectBytes = 0L;
+    this.mpuPartBytes = 0L;
+  }
+
+  public BucketUsage withUuid(String bucketUuid) {
+    this.setBucketUuid(bucketUuid);
+    return this;
+  }
+
+  public String getBucketUuid() {
+    return bucketUuid;
+  }
+
+  public void setBucketUuid(String bucketUuid) {
+    this.bucketUuid = bucketUuid;
+  }
+
+  public Long getObjectCount() {
+    return objectCount;
+  }
+
+  public void setObjectCount(Long objectCount) {
+    this.objectCount = objectCount;
+  }
+
+  public Long getObjectBytes() {
+    return objectBytes;
+  }
+
+  public void setObjectBytes(Long objectBytes) {
+    this.objectBytes = objectBytes;
+  }
+
+  public Long getMpuPartBytes() {
+    return mpuPartBytes;
+  }
+
+  public void setMpuPartBytes(Long mpuPartBytes) {
+    this.mpuPartBytes = mpuPartBytes;
+  }
+
+  public Date getReconciled() {
+    return reconciled;
+  }
+
+  public void setReconciled(Date reconciled) {
+    this.reconciled = reconciled;
+  }
+
+  /**
+   * Total bytes used by objects and uploaded parts
+   */
+  public long getTotalBytes() {
+    return (objectBytes == null ? 0 : objectBytes) + (mpuPartBytes == null ? 0 : mpuPartBytes);
+  }
+
+  @Override
+  public String toString() {
+    return "[BucketUuid: " + bucketUuid + ", ObjectCount: " + objectCount + ", ObjectBytes: " + objectBytes + ", MpuPartBytes: " + mpuPartBytes
+        + "]";
+  }
+}
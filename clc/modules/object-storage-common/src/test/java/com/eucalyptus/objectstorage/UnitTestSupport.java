@@ -36,6 +36,7 @@ import com.eucalyptus.entities.PersistenceContextConfiguration;
 import com.eucalyptus.entities.PersistenceContexts;
 import com.eucalyptus.objectstorage.entities.Bucket;
 import com.eucalyptus.objectstorage.entities.BucketTags;
+import com.eucalyptus.objectstorage.entities.BucketUsage;
 import com.eucalyptus.objectstorage.entities.LifecycleRule;
 import com.eucalyptus.objectstorage.entities.ObjectEntity;
 import com.eucalyptus.objectstorage.entities.ObjectStorageGlobalConfiguration;
@@ -69,7 +70,7 @@ public class UnitTestSupport {
     PersistenceContextConfiguration config = new PersistenceContextConfiguration(
         "eucalyptus_osg",
         ImmutableList.<Class<?>>builder( ).add(Bucket.class).add(ObjectEntity.class)
-            .add(PartEntity.class).add(TorrentInfo.class).add(BucketTags.class)
+            .add(PartEntity.class).add(TorrentInfo.class).add(BucketTags.class).add(BucketUsage.class)
             .add(LifecycleRule.class).add(ScheduledJob.class).add(ObjectStorageGlobalConfiguration.class)
             .add( S3AccessControlledEntity.class ).add( S3ProviderConfiguration.class ).build( ),
         props
@@ -134,6 +135,7 @@ public class UnitTestSupport {
     EntityTransaction trans = Entities.get(Bucket.class);
     try {
       Entities.deleteAll(Bucket.class);
+      Entities.deleteAll(BucketUsage.class);
       trans.commit();
     } catch (Throwable f) {
       throw new Exception("Error flushing bucket records " + f.getMessage());
@@ -148,6 +150,7 @@ public class UnitTestSupport {
     EntityTransaction trans = Entities.get(ObjectEntity.class);
     try {
       Entities.deleteAll(ObjectEntity.class);
+      Entities.deleteAll(BucketUsage.class);
       trans.commit();
     } catch (Throwable f) {
       throw new Exception("Error flushing bucket records " + f.getMessage());
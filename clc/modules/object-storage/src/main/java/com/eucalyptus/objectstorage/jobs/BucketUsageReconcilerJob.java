@@ -0,0 +1,79 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.objectstorage.jobs;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.quartz.InterruptableJob;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.UnableToInterruptJobException;
+
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.objectstorage.BucketMetadataManagers;
+import com.eucalyptus.objectstorage.BucketState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.metadata.BucketUsages;
+
+/**
+ * Periodically recalculates bucket usage counters so that any drift from the object and part records is corrected.
+ */
+public class BucketUsageReconcilerJob implements InterruptableJob {
+
+  private static Logger LOG = Logger.getLogger(BucketUsageReconcilerJob.class);
+
+  private volatile boolean interrupted = false;
+
+  @Override
+  public void execute(JobExecutionContext jobExecutionContext) throws JobExecutionException {
+    if ( Databases.isVolatile( ) ) {
+      LOG.warn( "Skipping job due to database not available" );
+      return;
+    }
+    final List<Bucket> buckets;
+    try {
+      buckets = BucketMetadataManagers.getInstance().lookupBucketsByState(BucketState.extant);
+    } catch (Exception e) {
+      LOG.warn("Error listing buckets for usage reconciliation, will retry later", e);
+      return;
+    }
+    int reconciled = 0;
+    for (Bucket bucket : buckets) {
+      if (interrupted) {
+        LOG.debug("Bucket usage reconciliation interrupted after " + reconciled + " buckets");
+        return;
+      }
+      try {
+        BucketUsages.reconcile(bucket);
+        reconciled++;
+      } catch (Exception e) {
+        LOG.warn("Error reconciling usage for bucket " + bucket.getBucketName() + ", will retry later", e);
+      }
+    }
+    try {
+      final int removed = BucketUsages.removeOrphans();
+      LOG.debug("Reconciled usage for " + reconciled + " buckets, removed " + removed + " orphaned usage records");
+    } catch (Exception e) {
+      LOG.warn("Error removing orphaned bucket usage records", e);
+    }
+  }
+
+  @Override
+  public void interrupt() throws UnableToInterruptJobException {
+    interrupted = true;
+  }
+}
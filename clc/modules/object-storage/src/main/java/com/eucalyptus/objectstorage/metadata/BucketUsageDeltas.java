@@ -0,0 +1,127 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.metadata;
+
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Usage counter changes for committed object and part state transitions that are not yet applied to the bucket usage records.
+ *
+ * Changes for a bucket are merged and applied in the background with a single update, so concurrent PUTs to a bucket do not each take the
+ * bucket usage row lock.
+ */
+class BucketUsageDeltas {
+  private static final Logger LOG = Logger.getLogger(BucketUsageDeltas.class);
+
+  private final ConcurrentMap<String, Delta> deltas = Maps.newConcurrentMap();
+
+  interface Updater {
+    void update(String bucketUuid, Delta delta) throws Exception;
+  }
+
+  void add(String bucketUuid, Delta delta) {
+    if (!delta.isZero()) {
+      deltas.merge(bucketUuid, delta, Delta::plus);
+    }
+  }
+
+  /**
+   * Get the unapplied change for a bucket.
+   */
+  @Nullable
+  Delta get(String bucketUuid) {
+    return deltas.get(bucketUuid);
+  }
+
+  /**
+   * Remove the unapplied change for a bucket, used when the counters are recalculated.
+   */
+  @Nullable
+  Delta remove(String bucketUuid) {
+    return deltas.remove(bucketUuid);
+  }
+
+  boolean isEmpty() {
+    return deltas.isEmpty();
+  }
+
+  /**
+   * Apply all changes using the given updater, failed changes are retained for the next attempt.
+   *
+   * @return The number of buckets updated
+   */
+  synchronized int apply(Updater updater) {
+    int applied = 0;
+    for (String bucketUuid : deltas.keySet()) {
+      Delta delta = deltas.remove(bucketUuid);
+      if (delta == null || delta.isZero()) continue;
+      try {
+        updater.update(bucketUuid, delta);
+        applied++;
+      } catch (Exception e) {
+        LOG.warn("Error updating usage for bucket " + bucketUuid + ", will retry later", e);
+        add(bucketUuid, delta);
+      }
+    }
+    return applied;
+  }
+
+  static final class Delta {
+    static final Delta ZERO = new Delta(0L, 0L, 0L);
+
+    private final long objectCount;
+    private final long objectBytes;
+    private final long mpuPartBytes;
+
+    Delta(long objectCount, long objectBytes, long mpuPartBytes) {
+      this.objectCount = objectCount;
+      this.objectBytes = objectBytes;
+      this.mpuPartBytes = mpuPartBytes;
+    }
+
+    long getObjectCount() {
+      return objectCount;
+    }
+
+    long getObjectBytes() {
+      return objectBytes;
+    }
+
+    long getMpuPartBytes() {
+      return mpuPartBytes;
+    }
+
+    boolean isZero() {
+      return objectCount == 0 && objectBytes == 0 && mpuPartBytes == 0;
+    }
+
+    Delta plus(Delta other) {
+      return new Delta(objectCount + other.objectCount, objectBytes + other.objectBytes, mpuPartBytes + other.mpuPartBytes);
+    }
+
+    @Override
+    public String toString() {
+      return "[ObjectCount: " + objectCount + ", ObjectBytes: " + objectBytes + ", MpuPartBytes: " + mpuPartBytes + "]";
+    }
+  }
+}
@@ -0,0 +1,321 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.metadata;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Criteria;
+import org.hibernate.LockMode;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.objectstorage.ObjectState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.entities.BucketUsage;
+import com.eucalyptus.objectstorage.entities.ObjectEntity;
+import com.eucalyptus.objectstorage.entities.PartEntity;
+import com.eucalyptus.objectstorage.metadata.BucketUsageDeltas.Delta;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Per-bucket usage counters for quota checks.
+ *
+ * Counter changes are recorded when the object or part state transition commits and are applied to the counters in the background, lookups
+ * include changes not yet applied on this host. Counters are periodically reconciled against the object and part records, which also
+ * corrects for changes lost on shutdown or applied concurrently with reconciliation. Buckets without counters (e.g. buckets created before
+ * counters were added) are reconciled on first lookup.
+ */
+public class BucketUsages {
+  private static final Logger LOG = Logger.getLogger(BucketUsages.class);
+  private static final int LOOKUP_BATCH_SIZE = 500;
+  private static final BucketUsageDeltas pending = new BucketUsageDeltas();
+
+  /**
+   * Precondition for object record deletion that removes the object from the usage counters.
+   */
+  static final Predicate<ObjectEntity> OBJECT_REMOVED = new Predicate<ObjectEntity>() {
+    @Override
+    public boolean apply(@Nullable ObjectEntity entity) {
+      if (entity != null) {
+        objectChanged(entity.getBucket(), entity.getState(), entity.getSize(), null, null);
+      }
+      return true;
+    }
+  };
+
+  /**
+   * Precondition for part record deletion that removes the part from the usage counters.
+   */
+  static final Predicate<PartEntity> PART_REMOVED = new Predicate<PartEntity>() {
+    @Override
+    public boolean apply(@Nullable PartEntity entity) {
+      if (entity != null) {
+        partChanged(entity.getBucket(), entity.getState(), entity.getSize(), null, null);
+      }
+      return true;
+    }
+  };
+
+  /**
+   * Create zeroed counters for a new bucket, must be called in a transaction.
+   */
+  static void bucketCreated(@Nonnull Bucket bucket) {
+    Entities.persist(new BucketUsage(bucket.getBucketUuid()));
+  }
+
+  /**
+   * Remove counters for a deleted bucket, must be called in a transaction.
+   */
+  static void bucketDeleted(@Nonnull Bucket bucket) {
+    Entities.deleteAllMatching(BucketUsage.class, "WHERE bucketUuid = :bucketUuid",
+        Collections.singletonMap("bucketUuid", bucket.getBucketUuid()));
+  }
+
+  /**
+   * Update counters for an object state change, must be called in a transaction.
+   */
+  static void objectChanged(@Nullable Bucket bucket, @Nullable ObjectState fromState, @Nullable Long fromSize, @Nullable ObjectState toState,
+      @Nullable Long toSize) {
+    update(bucket, objectDelta(fromState, fromSize, toState, toSize));
+  }
+
+  /**
+   * Update counters for a part state change, must be called in a transaction.
+   */
+  static void partChanged(@Nullable Bucket bucket, @Nullable ObjectState fromState, @Nullable Long fromSize, @Nullable ObjectState toState,
+      @Nullable Long toSize) {
+    update(bucket, partDelta(fromState, fromSize, toState, toSize));
+  }
+
+  /**
+   * Update counters for bulk removal of parts, must be called in a transaction.
+   */
+  static void partsRemoved(@Nullable Bucket bucket, long size) {
+    update(bucket, new Delta(0L, 0L, -size));
+  }
+
+  /**
+   * Apply counter changes recorded on this host.
+   *
+   * @return The number of buckets updated
+   */
+  public static int flush() {
+    return pending.apply((bucketUuid, delta) -> {
+      try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+        // Counters are created on reconciliation if not present
+        Entities.updateAllMatching(BucketUsage.class, "SET objectCount = objectCount + :objectCount, objectBytes = objectBytes + :objectBytes, "
+            + "mpuPartBytes = mpuPartBytes + :mpuPartBytes WHERE bucketUuid = :bucketUuid", ImmutableMap.<String, Object>of("objectCount",
+            delta.getObjectCount(), "objectBytes", delta.getObjectBytes(), "mpuPartBytes", delta.getMpuPartBytes(), "bucketUuid", bucketUuid));
+        trans.commit();
+      }
+    });
+  }
+
+  /**
+   * Lookup the usage for a bucket.
+   */
+  @Nonnull
+  public static BucketUsage lookup(@Nonnull Bucket bucket) throws Exception {
+    return lookup(Collections.singleton(bucket)).get(bucket.getBucketUuid());
+  }
+
+  /**
+   * Lookup the usage for the given buckets.
+   *
+   * @return The usage by bucket uuid
+   */
+  @Nonnull
+  public static Map<String, BucketUsage> lookup(@Nonnull Collection<Bucket> buckets) throws Exception {
+    final Map<String, BucketUsage> usages = Maps.newHashMap();
+    for (final List<Bucket> bucketBatch : Iterables.partition(buckets, LOOKUP_BATCH_SIZE)) {
+      final List<String> bucketUuids = Lists.newArrayList();
+      for (final Bucket bucket : bucketBatch) {
+        bucketUuids.add(bucket.getBucketUuid());
+      }
+      try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+        @SuppressWarnings("unchecked")
+        final List<BucketUsage> results =
+            Entities.createCriteria(BucketUsage.class).add(Restrictions.in("bucketUuid", bucketUuids)).setReadOnly(true).list();
+        for (final BucketUsage usage : results) {
+          usages.put(usage.getBucketUuid(), withPending(usage));
+        }
+        trans.commit();
+      }
+    }
+    for (final Bucket bucket : buckets) {
+      if (!usages.containsKey(bucket.getBucketUuid())) {
+        BucketUsage usage;
+        try {
+          usage = reconcile(bucket);
+        } catch (Exception e) {
+          // most likely a concurrent reconcile creating the counters
+          LOG.debug("Unable to create usage counters for bucket " + bucket.getBucketName() + ", using calculated usage", e);
+          try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+            usage = calculate(bucket, new BucketUsage(bucket.getBucketUuid()));
+            trans.commit();
+          }
+        }
+        usages.put(bucket.getBucketUuid(), usage);
+      }
+    }
+    return usages;
+  }
+
+  /**
+   * Recalculate the usage counters for a bucket from the object and part records.
+   */
+  @Nonnull
+  public static BucketUsage reconcile(@Nonnull Bucket bucket) throws Exception {
+    try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+      // Lock before calculating so counter updates are not overwritten by the calculated values. Changes applied from other hosts while
+      // calculating may be counted twice until the next reconciliation.
+      BucketUsage usage =
+          (BucketUsage) Entities.createCriteria(BucketUsage.class).add(Restrictions.eq("bucketUuid", bucket.getBucketUuid()))
+              .setLockMode(LockMode.PESSIMISTIC_WRITE).uniqueResult();
+      if (usage == null) {
+        usage = Entities.persist(new BucketUsage(bucket.getBucketUuid()));
+      }
+      // Changes recorded on this host are for committed transitions so are included in the calculation
+      pending.remove(bucket.getBucketUuid());
+      final long objectCount = Objects.firstNonNull(usage.getObjectCount(), 0L);
+      final long objectBytes = Objects.firstNonNull(usage.getObjectBytes(), 0L);
+      final long mpuPartBytes = Objects.firstNonNull(usage.getMpuPartBytes(), 0L);
+      calculate(bucket, usage);
+      if (objectCount != usage.getObjectCount() || objectBytes != usage.getObjectBytes() || mpuPartBytes != usage.getMpuPartBytes()) {
+        LOG.debug("Reconciled usage for bucket " + bucket.getBucketName() + " from object count " + objectCount + ", object bytes "
+            + objectBytes + ", part bytes " + mpuPartBytes + " to " + usage);
+      }
+      usage.setReconciled(new Date());
+      trans.commit();
+      return usage;
+    }
+  }
+
+  /**
+   * Remove counters for buckets that no longer exist.
+   */
+  public static int removeOrphans() {
+    try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+      final int removed =
+          Entities.deleteAllMatching(BucketUsage.class, "WHERE bucketUuid NOT IN (SELECT b.bucketUuid FROM " + Bucket.class.getName() + " b)",
+              Collections.<String, Object>emptyMap());
+      trans.commit();
+      return removed;
+    }
+  }
+
+  private static BucketUsage calculate(Bucket bucket, BucketUsage usage) {
+    final Criteria countCriteria =
+        Entities.createCriteria(ObjectEntity.class).add(Restrictions.eq("state", ObjectState.extant)).setProjection(Projections.rowCount());
+    final Criteria objectSizeCriteria =
+        Entities.createCriteria(ObjectEntity.class).add(Restrictions.in("state", new Object[] {ObjectState.creating, ObjectState.extant}))
+            .setProjection(Projections.sum("size"));
+    final Criteria partSizeCriteria =
+        Entities.createCriteria(PartEntity.class).add(Restrictions.in("state", new Object[] {ObjectState.creating, ObjectState.extant}))
+            .setProjection(Projections.sum("size"));
+    usage.setObjectCount(longResult(DbObjectMetadataManagerImpl.getSearchByBucket(countCriteria, bucket)));
+    usage.setObjectBytes(longResult(DbObjectMetadataManagerImpl.getSearchByBucket(objectSizeCriteria, bucket)));
+    usage.setMpuPartBytes(longResult(DbMpuPartMetadataManagerImpl.getSearchByBucket(partSizeCriteria, bucket)));
+    return usage;
+  }
+
+  private static long longResult(Criteria criteria) {
+    return Objects.firstNonNull((Number) criteria.setReadOnly(true).uniqueResult(), 0L).longValue();
+  }
+
+  private static BucketUsage withPending(BucketUsage usage) {
+    final Delta delta = pending.get(usage.getBucketUuid());
+    if (delta == null) {
+      return usage;
+    }
+    final BucketUsage pendingUsage = new BucketUsage(usage.getBucketUuid());
+    pendingUsage.setObjectCount(Objects.firstNonNull(usage.getObjectCount(), 0L) + delta.getObjectCount());
+    pendingUsage.setObjectBytes(Objects.firstNonNull(usage.getObjectBytes(), 0L) + delta.getObjectBytes());
+    pendingUsage.setMpuPartBytes(Objects.firstNonNull(usage.getMpuPartBytes(), 0L) + delta.getMpuPartBytes());
+    pendingUsage.setReconciled(usage.getReconciled());
+    return pendingUsage;
+  }
+
+  static Delta objectDelta(@Nullable ObjectState fromState, @Nullable Long fromSize, @Nullable ObjectState toState, @Nullable Long toSize) {
+    return new Delta(count(toState) - count(fromState), bytes(toState, toSize) - bytes(fromState, fromSize), 0L);
+  }
+
+  static Delta partDelta(@Nullable ObjectState fromState, @Nullable Long fromSize, @Nullable ObjectState toState, @Nullable Long toSize) {
+    return new Delta(0L, 0L, bytes(toState, toSize) - bytes(fromState, fromSize));
+  }
+
+  private static long count(@Nullable ObjectState state) {
+    return ObjectState.extant.equals(state) ? 1L : 0L;
+  }
+
+  private static long bytes(@Nullable ObjectState state, @Nullable Long size) {
+    return (ObjectState.creating.equals(state) || ObjectState.extant.equals(state)) && size != null ? size : 0L;
+  }
+
+  private static void update(@Nullable Bucket bucket, final Delta delta) {
+    if (bucket != null && !delta.isZero()) {
+      final String bucketUuid = bucket.getBucketUuid();
+      Entities.registerSynchronization(BucketUsage.class, new Synchronization() {
+        @Override
+        public void beforeCompletion() {}
+
+        @Override
+        public void afterCompletion(int status) {
+          if (status == Status.STATUS_COMMITTED) {
+            pending.add(bucketUuid, delta);
+          }
+        }
+      });
+    }
+  }
+
+  public static class BucketUsageFlushEventListener implements EventListener<ClockTick> {
+    public static void register() {
+      Listeners.register(ClockTick.class, new BucketUsageFlushEventListener());
+    }
+
+    @Override
+    public void fireEvent(final ClockTick event) {
+      if (Bootstrap.isOperational() && !Databases.isVolatile() && !pending.isEmpty()) {
+        final int updated = flush();
+        LOG.trace("Updated usage counters for " + updated + " buckets");
+      }
+    }
+  }
+}
@@ -218,7 +218,7 @@ public class DbMpuPartMetadataManagerImpl implements MpuPartMetadataManager {
   @Override
   public void delete(final @Nonnull PartEntity objectToDelete) throws IllegalResourceStateException, MetadataOperationFailureException {
     try {
-      Transactions.delete(objectToDelete);
+      Transactions.delete(objectToDelete, BucketUsages.PART_REMOVED);
     } catch (MetadataOperationFailureException | IllegalResourceStateException e) {
       throw e;
     } catch (Exception e) {
@@ -252,11 +252,14 @@ public class DbMpuPartMetadataManagerImpl implements MpuPartMetadataManager {
       public boolean apply(String uploadId) {
         try (TransactionResource db = Entities.transactionFor(PartEntity.class)) {
           // Calculate the sum size of the parts to update the bucket size.
-          PartEntity searchExample = new PartEntity().withUploadId(uploadId).withState(ObjectState.extant);
+          PartEntity searchExample = new PartEntity().withUploadId(uploadId);
           long size =
               Objects.firstNonNull(
-                  (Number) Entities.createCriteria(PartEntity.class).add(Example.create(searchExample)).setProjection(Projections.sum("size"))
-                      .setReadOnly(true).uniqueResult(), 0).longValue();
+                  (Number) Entities.createCriteria(PartEntity.class).add(Example.create(searchExample))
+                      .add(Restrictions.in("state", new Object[] {ObjectState.creating, ObjectState.extant}))
+                      .add(Restrictions.isNotNull("partNumber")).setProjection(Projections.sum("size")).setReadOnly(true).uniqueResult(), 0)
+                  .longValue();
+          BucketUsages.partsRemoved(bucket, size);
 
           // Remove all part records with this upload id
           Entities.deleteAllMatching(PartEntity.class, "where part_number IS NOT NULL and upload_id=:uploadId",
@@ -282,9 +285,14 @@ public class DbMpuPartMetadataManagerImpl implements MpuPartMetadataManager {
       search.add(Example.create(searchExample));
       search = getSearchByBucket(search, bucket);
       List<PartEntity> uploads = search.list();
+      long size = 0;
       for (PartEntity e : uploads) {
+        if (e.getSize() != null && (ObjectState.creating.equals(e.getState()) || ObjectState.extant.equals(e.getState()))) {
+          size += e.getSize();
+        }
         Entities.delete(e);
       }
+      BucketUsages.partsRemoved(bucket, size);
       db.commit();
     }
   }
@@ -369,7 +369,7 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     try {
       // Delete markers can be just removed not state transitioned.
       if (objectToDelete.getIsDeleteMarker()) {
-        Transactions.delete(objectToDelete);
+        Transactions.delete(objectToDelete, BucketUsages.OBJECT_REMOVED);
         return;
       }
 
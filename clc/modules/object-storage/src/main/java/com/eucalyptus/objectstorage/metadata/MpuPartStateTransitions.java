@@ -80,7 +80,9 @@ public class MpuPartStateTransitions {
           initializedObject.setBucket(extantBucket);
           initializedObject.setState(ObjectState.creating);
           initializedObject.updateCreationExpiration();
-          return Entities.persist(initializedObject);
+          PartEntity persistedPart = Entities.persist(initializedObject);
+          BucketUsages.partChanged(extantBucket, null, null, ObjectState.creating, persistedPart.getSize());
+          return persistedPart;
         }
 
       }
@@ -101,12 +103,15 @@ public class MpuPartStateTransitions {
           PartEntity updatingEntity = Entities.uniqueResult(new PartEntity().withUuid(entity.getPartUuid()));
           if (!ObjectState.deleting.equals(entity.getState())) {
             // Set the new part state
+            ObjectState fromState = updatingEntity.getState();
+            Long fromSize = updatingEntity.getSize();
             updatingEntity.setState(ObjectState.extant);
             updatingEntity.setCreationExpiration(null);
             updatingEntity.setObjectModifiedTimestamp(entity.getObjectModifiedTimestamp());
             updatingEntity.setIsLatest(true);
             updatingEntity.seteTag(entity.geteTag());
             updatingEntity.setSize(entity.getSize());
+            BucketUsages.partChanged(updatingEntity.getBucket(), fromState, fromSize, ObjectState.extant, updatingEntity.getSize());
 
             // Remove old versions and update bucket size within this transaction.
             MpuPartMetadataManagers.getInstance().cleanupInvalidParts(entity.getBucket(), entity.getObjectKey(), entity.getUploadId(),
@@ -149,6 +154,7 @@ public class MpuPartStateTransitions {
             entity = objectToUpdate;
           }
 
+          BucketUsages.partChanged(entity.getBucket(), entity.getState(), entity.getSize(), ObjectState.deleting, entity.getSize());
           entity.setState(ObjectState.deleting);
           return entity;
         } catch (NoSuchElementException e) {
@@ -75,7 +75,6 @@ import com.google.common.io.BaseEncoding;
 import org.apache.log4j.Logger;
 import org.apache.xml.security.utils.Base64;
 
-import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.MessageDigest;
 
@@ -112,7 +111,7 @@ public class ObjectStorageLoginModule extends BaseLoginModule<ObjectStorageWrapp
 
   private boolean authV4(ObjectStorageWrappedCredentials credentials) throws Exception {
     AccessKey accessKey = lookupAccessKey(credentials.credential.getAccessKeyId(), credentials.securityToken);
-    byte[] signatureKey = Hmacv4LoginModule.getSignatureKey(accessKey.getSecretKey(), credentials.credential);
+    byte[] signatureKey = Hmacv4LoginModule.getCachedSignatureKey(accessKey.getSecretKey(), credentials.credential);
     byte[] computedSig = Hmacv4LoginModule.getHmacSHA256(signatureKey, credentials.getLoginData());
     byte[] providedSig = BaseEncoding.base16().lowerCase().decode(credentials.signature);
 
@@ -139,9 +138,7 @@ public class ObjectStorageLoginModule extends BaseLoginModule<ObjectStorageWrapp
   private static String getHmacSHA1(final String secretKey, final String subject) throws AuthenticationException {
     try {
       SecretKeySpec signingKey = new SecretKeySpec(secretKey.getBytes("UTF-8"), Hmac.HmacSHA1.toString());
-      Mac mac = Mac.getInstance(Hmac.HmacSHA1.toString());
-      mac.init(signingKey);
-      byte[] rawHmac = mac.doFinal(subject.getBytes("UTF-8"));
+      byte[] rawHmac = Hmac.HmacSHA1.digestBinary(signingKey, subject.getBytes("UTF-8"));
       return Base64.encode(rawHmac).replaceAll("=", "");
     } catch (Exception e) {
       LOG.error(e, e);
@@ -166,14 +166,16 @@ public final class S3V4Authentication {
 
   static void buildCanonicalQueryString(MappingHttpRequest request, StringBuilder sb) {
     boolean firstParam = true;
-    for (String parameter : Ordering.natural().sortedCopy(request.getParameters().keySet())) {
+    Map<String, String> parameters = request.getParameters();
+    Iterable<String> parameterNames = parameters.size() <= 1 ? parameters.keySet() : Ordering.natural().sortedCopy(parameters.keySet());
+    for (String parameter : parameterNames) {
       // Ignore signature parameters
       if (SecurityParameter.X_Amz_Signature.parameter().equals(parameter))
         continue;
 
       if (!firstParam)
         sb.append('&');
-      String value = request.getParameters().get(parameter);
+      String value = parameters.get(parameter);
       sb.append(S3Authentication.urlEncode(parameter, false));
       sb.append('=');
 
@@ -191,10 +193,14 @@ public final class S3V4Authentication {
 
   static void buildCanonicalHeaders(MappingHttpRequest request, String signedHeaders, StringBuilder sb) {
     for (String header : signedHeaders.split(";")) {
-      List<String> values = Lists.transform(request.getHeaders(header), text -> text != null ? text.trim() : null);
+      List<String> values = request.getHeaders(header);
       sb.append(header.toLowerCase());
       sb.append(':');
-      sb.append(Joiner.on(',').join(Ordering.<String>natural().sortedCopy(values)));
+      if (values.size() == 1 && values.get(0) != null) {
+        sb.append(values.get(0).trim());
+      } else {
+        sb.append(Joiner.on(',').join(Ordering.<String>natural().sortedCopy(Lists.transform(values, text -> text != null ? text.trim() : null))));
+      }
       sb.append('\n');
     }
   }
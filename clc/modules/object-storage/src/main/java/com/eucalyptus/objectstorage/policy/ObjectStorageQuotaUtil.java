@@ -72,6 +72,8 @@ import com.eucalyptus.objectstorage.BucketMetadataManagers;
 import com.eucalyptus.objectstorage.MpuPartMetadataManagers;
 import com.eucalyptus.objectstorage.ObjectMetadataManagers;
 import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.entities.BucketUsage;
+import com.eucalyptus.objectstorage.metadata.BucketUsages;
 
 public class ObjectStorageQuotaUtil {
 
@@ -93,7 +95,7 @@ public class ObjectStorageQuotaUtil {
 
   public static long countBucketObjects(String bucketName) throws AuthException {
     try {
-      return ObjectMetadataManagers.getInstance().countValid(BucketMetadataManagers.getInstance().lookupBucket(bucketName));
+      return BucketUsages.lookup(BucketMetadataManagers.getInstance().lookupBucket(bucketName)).getObjectCount();
     } catch (Exception e) {
       throw new AuthException("Failed to search object", e);
     }
@@ -102,9 +104,7 @@ public class ObjectStorageQuotaUtil {
   public static long getBucketSize(String bucketName) throws AuthException {
     try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
       Bucket bucket = BucketMetadataManagers.getInstance().lookupBucket(bucketName);
-      long objectSize = ObjectMetadataManagers.getInstance().getTotalSize(bucket);
-      long mpuPartsSize = MpuPartMetadataManagers.getInstance().getTotalSize(bucket);
-      return objectSize + mpuPartsSize;
+      return BucketUsages.lookup(bucket).getTotalBytes();
     } catch (Exception e) {
       throw new AuthException("Failed to get bucket total size", e);
     }
@@ -114,12 +114,7 @@ public class ObjectStorageQuotaUtil {
     String canonicalId = Accounts.lookupCanonicalIdByAccountId(accountId);
     try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
       List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByOwner(canonicalId);
-      long size = 0;
-      for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
-      }
-      return size;
+      return totalBytes(bucketList);
     } catch (Exception e) {
       throw new AuthException("Failed to search bucket", e);
     }
@@ -128,17 +123,20 @@ public class ObjectStorageQuotaUtil {
   public static long getTotalObjectsSizeByUser(String userId) throws AuthException {
     try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
       List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByUser(userId);
-      long size = 0;
-      for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
-      }
-      return size;
+      return totalBytes(bucketList);
     } catch (Exception e) {
       throw new AuthException("Failed to search bucket", e);
     }
   }
 
+  private static long totalBytes(List<Bucket> buckets) throws Exception {
+    long size = 0;
+    for (BucketUsage usage : BucketUsages.lookup(buckets).values()) {
+      size += usage.getTotalBytes();
+    }
+    return size;
+  }
+
   /**
    * Return the total size in bytes of objects in the ObjectStorage.
    *
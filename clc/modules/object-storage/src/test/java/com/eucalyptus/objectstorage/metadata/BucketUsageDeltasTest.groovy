@@ -0,0 +1,111 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.objectstorage.metadata
+
+import static org.junit.Assert.*
+import org.junit.Test
+import com.eucalyptus.objectstorage.ObjectState
+import com.eucalyptus.objectstorage.metadata.BucketUsageDeltas.Delta
+
+/**
+ * Unit tests for bucket usage counter changes
+ */
+class BucketUsageDeltasTest {
+
+  @Test
+  void testObjectPut() {
+    assertDelta('Create', 0, 100, 0, BucketUsages.objectDelta(null, null, ObjectState.creating, 100L))
+    assertDelta('Commit', 1, 0, 0, BucketUsages.objectDelta(ObjectState.creating, 100L, ObjectState.extant, 100L))
+    assertDelta('Commit with size change', 1, 20, 0, BucketUsages.objectDelta(ObjectState.creating, 100L, ObjectState.extant, 120L))
+    assertDelta('Commit without size', 1, -100, 0, BucketUsages.objectDelta(ObjectState.creating, 100L, ObjectState.extant, null))
+  }
+
+  @Test
+  void testObjectOverwrite() {
+    BucketUsageDeltas deltas = new BucketUsageDeltas()
+    deltas.add('bucket', BucketUsages.objectDelta(null, null, ObjectState.creating, 300L))
+    deltas.add('bucket', BucketUsages.objectDelta(ObjectState.creating, 300L, ObjectState.extant, 300L))
+    deltas.add('bucket', BucketUsages.objectDelta(ObjectState.extant, 100L, ObjectState.deleting, 100L))
+    assertDelta('Overwrite', 0, 200, 0, deltas.get('bucket'))
+  }
+
+  @Test
+  void testObjectDelete() {
+    assertDelta('Delete', -1, -100, 0, BucketUsages.objectDelta(ObjectState.extant, 100L, ObjectState.deleting, 100L))
+    assertDelta('Delete record', 0, 0, 0, BucketUsages.objectDelta(ObjectState.deleting, 100L, null, null))
+    assertDelta('Delete marker', -1, 0, 0, BucketUsages.objectDelta(ObjectState.extant, null, null, null))
+    assertDelta('Abandoned upload', 0, -100, 0, BucketUsages.objectDelta(ObjectState.creating, 100L, ObjectState.deleting, 100L))
+    assertDelta('Initiated multipart upload', 0, -100, 0, BucketUsages.objectDelta(ObjectState.creating, 100L, ObjectState.mpu_pending, 100L))
+  }
+
+  @Test
+  void testParts() {
+    assertDelta('Create', 0, 0, 100, BucketUsages.partDelta(null, null, ObjectState.creating, 100L))
+    assertDelta('Commit', 0, 0, 20, BucketUsages.partDelta(ObjectState.creating, 100L, ObjectState.extant, 120L))
+    assertDelta('Delete', 0, 0, -120, BucketUsages.partDelta(ObjectState.extant, 120L, ObjectState.deleting, 120L))
+    assertDelta('Delete record', 0, 0, 0, BucketUsages.partDelta(ObjectState.deleting, 120L, null, null))
+  }
+
+  @Test
+  void testAccumulate() {
+    BucketUsageDeltas deltas = new BucketUsageDeltas()
+    deltas.add('bucket-1', new Delta(1, 100, 0))
+    deltas.add('bucket-1', new Delta(1, 200, 50))
+    deltas.add('bucket-2', new Delta(-1, -100, 0))
+    deltas.add('bucket-3', Delta.ZERO)
+    assertDelta('Bucket 1', 2, 300, 50, deltas.get('bucket-1'))
+    assertDelta('Bucket 2', -1, -100, 0, deltas.get('bucket-2'))
+    assertNull('Bucket 3', deltas.get('bucket-3'))
+
+    Map<String,Delta> updates = [:]
+    assertEquals('Applied', 2, deltas.apply({ String bucketUuid, Delta delta ->
+      assertNull('Duplicate update', updates.put(bucketUuid, delta))
+    } as BucketUsageDeltas.Updater))
+    assertEquals('Updated buckets', [ 'bucket-1', 'bucket-2' ] as Set, updates.keySet())
+    assertDelta('Bucket 1 update', 2, 300, 50, updates.get('bucket-1'))
+    assertTrue('Empty after apply', deltas.isEmpty())
+  }
+
+  @Test
+  void testApplyFailure() {
+    BucketUsageDeltas deltas = new BucketUsageDeltas()
+    deltas.add('bucket-1', new Delta(1, 100, 0))
+    deltas.add('bucket-2', new Delta(1, 100, 0))
+    assertEquals('Applied', 1, deltas.apply({ String bucketUuid, Delta delta ->
+      if (bucketUuid == 'bucket-1') throw new Exception('update failed')
+    } as BucketUsageDeltas.Updater))
+    deltas.add('bucket-1', new Delta(1, 100, 0))
+    assertDelta('Retained', 2, 200, 0, deltas.get('bucket-1'))
+    assertNull('Applied', deltas.get('bucket-2'))
+  }
+
+  @Test
+  void testRemove() {
+    BucketUsageDeltas deltas = new BucketUsageDeltas()
+    deltas.add('bucket-1', new Delta(1, 100, 0))
+    assertDelta('Removed', 1, 100, 0, deltas.remove('bucket-1'))
+    assertEquals('Applied', 0, deltas.apply({ String bucketUuid, Delta delta ->
+      fail('Unexpected update')
+    } as BucketUsageDeltas.Updater))
+  }
+
+  private static void assertDelta(String desc, long objectCount, long objectBytes, long mpuPartBytes, Delta delta) {
+    assertNotNull("${desc} delta", delta)
+    assertEquals("${desc} object count", objectCount, delta.objectCount)
+    assertEquals("${desc} object bytes", objectBytes, delta.objectBytes)
+    assertEquals("${desc} part bytes", mpuPartBytes, delta.mpuPartBytes)
+  }
+}
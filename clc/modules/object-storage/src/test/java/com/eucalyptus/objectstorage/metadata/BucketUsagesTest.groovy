@@ -0,0 +1,112 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.objectstorage.metadata
+
+import static org.junit.Assert.*
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Test
+import com.eucalyptus.auth.Accounts
+import com.eucalyptus.auth.principal.UserPrincipal
+import com.eucalyptus.objectstorage.BucketMetadataManagers
+import com.eucalyptus.objectstorage.BucketState
+import com.eucalyptus.objectstorage.ObjectMetadataManagers
+import com.eucalyptus.objectstorage.ObjectState
+import com.eucalyptus.objectstorage.UnitTestSupport
+import com.eucalyptus.objectstorage.entities.Bucket
+import com.eucalyptus.objectstorage.entities.BucketUsage
+import com.eucalyptus.objectstorage.entities.ObjectEntity
+
+/**
+ * Tests for bucket usage counter maintenance on object state transitions
+ */
+class BucketUsagesTest {
+
+  private static UserPrincipal user
+
+  @BeforeClass
+  static void setup() {
+    UnitTestSupport.setupAuthPersistenceContext()
+    UnitTestSupport.setupOsgPersistenceContext()
+    UnitTestSupport.initializeAuth(1, 1)
+    user = Accounts.lookupPrincipalByUserId(
+        UnitTestSupport.getUsersByAccountName(UnitTestSupport.getTestAccounts().first()).first())
+  }
+
+  @AfterClass
+  static void teardown() {
+    BucketUsages.flush()
+    UnitTestSupport.tearDownOsgPersistenceContext()
+    UnitTestSupport.tearDownAuthPersistenceContext()
+  }
+
+  @Test
+  void testPutOverwriteDelete() {
+    Bucket bucket = bucket('usagebucket')
+    assertUsage('Created bucket', bucket, 0, 0)
+
+    ObjectEntity object = put(bucket, 'key', 100)
+    assertUsage('Put', bucket, 1, 100)
+
+    put(bucket, 'key2', 50)
+    assertUsage('Second put', bucket, 2, 150)
+
+    object = put(bucket, 'key', 300)
+    assertUsage('Overwrite', bucket, 2, 350)
+
+    ObjectMetadataManagers.getInstance().transitionObjectToState(object, ObjectState.deleting)
+    assertUsage('Delete', bucket, 1, 50)
+
+    BucketUsage reconciled = BucketUsages.reconcile(bucket)
+    assertEquals('Reconciled object count', 1L, reconciled.objectCount)
+    assertEquals('Reconciled bytes', 50L, reconciled.totalBytes)
+  }
+
+  @Test
+  void testUncommittedPut() {
+    Bucket bucket = bucket('usagebucket2')
+    ObjectEntity object = ObjectEntity.newInitializedForCreate(bucket, 'key', 100, user)
+    ObjectMetadataManagers.getInstance().transitionObjectToState(object, ObjectState.creating)
+    assertUsage('Uploading', bucket, 0, 100)
+  }
+
+  private static Bucket bucket(String name) {
+    Bucket bucket = Bucket.getInitializedBucket(name, user.getCanonicalId(), user.getAccountAlias(), user.getUserId(), '', '')
+    bucket = BucketMetadataManagers.getInstance().transitionBucketToState(bucket, BucketState.creating)
+    BucketMetadataManagers.getInstance().transitionBucketToState(bucket, BucketState.extant)
+  }
+
+  private static ObjectEntity put(Bucket bucket, String key, long size) {
+    ObjectEntity object = ObjectEntity.newInitializedForCreate(bucket, key, size, user)
+    object = ObjectMetadataManagers.getInstance().transitionObjectToState(object, ObjectState.creating)
+    object.setObjectModifiedTimestamp(new Date())
+    object.seteTag('etag')
+    ObjectMetadataManagers.getInstance().transitionObjectToState(object, ObjectState.extant)
+  }
+
+  /**
+   * Check usage before and after the changes are applied to the counters
+   */
+  private static void assertUsage(String desc, Bucket bucket, long objectCount, long bytes) {
+    BucketUsage usage = BucketUsages.lookup(bucket)
+    assertEquals("${desc} object count", objectCount, usage.objectCount)
+    assertEquals("${desc} bytes", bytes, usage.totalBytes)
+    BucketUsages.flush()
+    usage = BucketUsages.lookup(bucket)
+    assertEquals("${desc} applied object count", objectCount, usage.objectCount)
+    assertEquals("${desc} applied bytes", bytes, usage.totalBytes)
+  }
+}
@@ -29,7 +29,9 @@ import com.eucalyptus.objectstorage.ObjectMetadataManagers
 import com.eucalyptus.objectstorage.ObjectState
 import com.eucalyptus.objectstorage.UnitTestSupport
 import com.eucalyptus.objectstorage.entities.Bucket
+import com.eucalyptus.objectstorage.entities.BucketUsage
 import com.eucalyptus.objectstorage.entities.ObjectEntity
+import com.eucalyptus.objectstorage.metadata.BucketUsages
 import com.google.common.collect.Lists
 import groovy.transform.CompileStatic
 import org.junit.After
@@ -151,6 +153,16 @@ public class ObjectStorageQuotaUtilTest {
     assert(ObjectStorageQuotaUtil.getTotalObjectsSizeByUser(a2u2.getUserId()) == 0)
   }
 
+  @Test
+  public void testReconcileBucketUsage() throws Exception {
+    buckets.each {
+      BucketUsage usage = BucketUsages.reconcile((Bucket)it)
+      assert(usage.getObjectCount() == objectCount)
+      assert(usage.getTotalBytes() == objectCount * size)
+      assert(usage.getReconciled() != null)
+    }
+  }
+
   @Test
   public void testGetTotalObjectSize() throws Exception {
     assert(ObjectStorageQuotaUtil.getTotalObjectSize() == bucketCount * objectCount * size)
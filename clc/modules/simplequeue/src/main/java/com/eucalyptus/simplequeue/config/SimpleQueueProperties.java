@@ -135,6 +135,14 @@ public class SimpleQueueProperties {
     initial = "80", changeListener = MinValuePropertyChangeListener.class )
   @MinValue(min = 1)
   public volatile static int MAX_BATCH_ID_LENGTH = 80;
+  @ConfigurableField( description = "Interval between sweeps of expired and dead letter messages. (secs)",
+    initial = "30", changeListener = MinValuePropertyChangeListener.class )
+  @MinValue(min = 1)
+  public volatile static int MESSAGE_SWEEP_INTERVAL_SECS = 30;
+  @ConfigurableField( description = "Interval after which approximate message counts are recounted from the stored messages. (secs)",
+    initial = "300", changeListener = MinValuePropertyChangeListener.class )
+  @MinValue(min = 1)
+  public volatile static int MESSAGE_COUNTERS_RECOUNT_SECS = 300;
   @ConfigurableField(
     initial = "true",
     description = "Set 'true' to allow CloudWatch Metrics for SQS",
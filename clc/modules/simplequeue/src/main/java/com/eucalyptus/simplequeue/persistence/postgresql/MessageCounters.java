@@ -0,0 +1,347 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.postgresql;
+
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.simplequeue.SimpleQueueService;
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
+import com.eucalyptus.simplequeue.persistence.Queue;
+import com.google.common.collect.Maps;
+import org.apache.log4j.Logger;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Approximate per-queue message counters for queue attributes and metrics.
+ *
+ * Counters are held in memory and updated as messages are sent, received, deleted and have their visibility
+ * changed on this host. Counters are recounted from the message records on first use, when marked stale (e.g.
+ * after a sweep) and periodically, which also picks up changes made on other hosts.
+ */
+final class MessageCounters {
+
+  private static final Logger LOG = Logger.getLogger(MessageCounters.class);
+
+  /**
+   * Maximum number of distinct sent timestamps loaded on recount, older messages beyond this are tracked as one group.
+   */
+  private static final int RECOUNT_SENT_TIMESTAMP_LIMIT = 1000;
+
+  private static final ConcurrentMap<Queue.Key, QueueCounters> counters = Maps.newConcurrentMap();
+
+  private MessageCounters() {
+  }
+
+  static void sent(final Queue.Key queueKey, final long sentTimestampSecs, final long visibleTimestampSecs) {
+    final QueueCounters queueCounters = counters.get(queueKey);
+    if (queueCounters != null) {
+      queueCounters.sent(SimpleQueueService.currentTimeSeconds(), sentTimestampSecs, visibleTimestampSecs);
+    }
+  }
+
+  /**
+   * A visible message was received.
+   *
+   * @param receiveCount The receive count before the message was received
+   */
+  static void received(final Queue.Key queueKey, final int receiveCount, final long receivedTimestampSecs, final long newVisibleTimestampSecs) {
+    visibilityChanged(queueKey, receiveCount, receivedTimestampSecs, receiveCount + 1, newVisibleTimestampSecs);
+  }
+
+  static void visibilityChanged(final Queue.Key queueKey, final int receiveCount, final long visibleTimestampSecs, final long newVisibleTimestampSecs) {
+    visibilityChanged(queueKey, receiveCount, visibleTimestampSecs, receiveCount, newVisibleTimestampSecs);
+  }
+
+  static void deleted(final Queue.Key queueKey, final int receiveCount, final long sentTimestampSecs, final long visibleTimestampSecs) {
+    final QueueCounters queueCounters = counters.get(queueKey);
+    if (queueCounters != null) {
+      queueCounters.deleted(SimpleQueueService.currentTimeSeconds(), receiveCount, sentTimestampSecs, visibleTimestampSecs);
+    }
+  }
+
+  /**
+   * Messages for the queue changed in bulk, recount on next use.
+   */
+  static void stale(final Queue.Key queueKey) {
+    final QueueCounters queueCounters = counters.get(queueKey);
+    if (queueCounters != null) {
+      queueCounters.stale = true;
+    }
+  }
+
+  /**
+   * All messages for the queue were deleted.
+   */
+  static void removed(final Queue.Key queueKey) {
+    counters.remove(queueKey);
+  }
+
+  /**
+   * Lookup the counts for a queue, recounting if necessary.
+   */
+  @Nonnull
+  static Counts lookup(final Queue.Key queueKey) {
+    final long nowMillis = System.currentTimeMillis();
+    QueueCounters queueCounters = counters.get(queueKey);
+    if (queueCounters == null || queueCounters.stale ||
+        queueCounters.recountTimestampMillis + TimeUnit.SECONDS.toMillis(SimpleQueueProperties.MESSAGE_COUNTERS_RECOUNT_SECS) < nowMillis) {
+      queueCounters = recount(queueKey);
+      counters.put(queueKey, queueCounters);
+    }
+    return queueCounters.counts(SimpleQueueService.currentTimeSeconds());
+  }
+
+  private static void visibilityChanged(final Queue.Key queueKey,
+                                        final int receiveCount,
+                                        final long visibleTimestampSecs,
+                                        final int newReceiveCount,
+                                        final long newVisibleTimestampSecs) {
+    final QueueCounters queueCounters = counters.get(queueKey);
+    if (queueCounters != null) {
+      queueCounters.visibilityChanged(SimpleQueueService.currentTimeSeconds(),
+          receiveCount, visibleTimestampSecs, newReceiveCount, newVisibleTimestampSecs);
+    }
+  }
+
+  private static QueueCounters recount(final Queue.Key queueKey) {
+    final long now = SimpleQueueService.currentTimeSeconds();
+    final QueueCounters queueCounters = new QueueCounters(System.currentTimeMillis());
+    try (TransactionResource db =
+           Entities.transactionFor(MessageEntity.class)) {
+      // messages with an expiration time of exactly now should expire, so we want the expiration
+      // timestamp to be strictly greater than now
+      final long total = Entities.count(MessageEntity.class)
+          .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
+          .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
+          .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
+          .uniqueResult();
+
+      // messages that are not yet visible, by visibility timestamp and whether they were received
+      @SuppressWarnings("unchecked")
+      final List<Object[]> pendingRows = messageCriteria(queueKey, now)
+          .add(Restrictions.gt("visibleTimestampSecs", now))
+          .setProjection(Projections.projectionList()
+              .add(Projections.groupProperty("visibleTimestampSecs"))
+              .add(Projections.groupProperty("receiveCount"))
+              .add(Projections.rowCount()))
+          .list();
+      long pending = 0;
+      for (final Object[] row : pendingRows) {
+        final long count = ((Number) row[2]).longValue();
+        queueCounters.add(now, ((Number) row[0]).longValue(), ((Number) row[1]).intValue(), count);
+        pending += count;
+      }
+      queueCounters.visible = Math.max(0, total - pending);
+
+      @SuppressWarnings("unchecked")
+      final List<Object[]> sentRows = messageCriteria(queueKey, now)
+          .setProjection(Projections.projectionList()
+              .add(Projections.groupProperty("sentTimestampSecs"))
+              .add(Projections.rowCount()))
+          .addOrder(Order.asc("sentTimestampSecs"))
+          .setMaxResults(RECOUNT_SENT_TIMESTAMP_LIMIT)
+          .list();
+      long sent = 0;
+      long lastSentTimestampSecs = 0;
+      for (final Object[] row : sentRows) {
+        lastSentTimestampSecs = ((Number) row[0]).longValue();
+        final long count = ((Number) row[1]).longValue();
+        queueCounters.addSent(lastSentTimestampSecs, count);
+        sent += count;
+      }
+      if (total > sent) {
+        queueCounters.addSent(lastSentTimestampSecs + 1, total - sent);
+      }
+      db.commit();
+    }
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("Recounted messages for queue " + queueKey.getArn() + ": " + queueCounters.counts(now));
+    }
+    return queueCounters;
+  }
+
+  private static Criteria messageCriteria(final Queue.Key queueKey, final long now) {
+    return Entities.createCriteria(MessageEntity.class)
+        .add(Restrictions.eq("accountId", queueKey.getAccountId()))
+        .add(Restrictions.eq("queueName", queueKey.getQueueName()))
+        .add(Restrictions.gt("expiredTimestampSecs", now))
+        .setReadOnly(true);
+  }
+
+  static final class Counts {
+    private final long visible;
+    private final long delayed;
+    private final long inFlight;
+    private final long ageOfOldestMessage;
+
+    Counts(final long visible, final long delayed, final long inFlight, final long ageOfOldestMessage) {
+      this.visible = visible;
+      this.delayed = delayed;
+      this.inFlight = inFlight;
+      this.ageOfOldestMessage = ageOfOldestMessage;
+    }
+
+    long getVisible() {
+      return visible;
+    }
+
+    long getDelayed() {
+      return delayed;
+    }
+
+    long getInFlight() {
+      return inFlight;
+    }
+
+    long getAgeOfOldestMessage() {
+      return ageOfOldestMessage;
+    }
+
+    @Override
+    public String toString() {
+      return "visible " + visible + ", delayed " + delayed + ", in flight " + inFlight + ", oldest " + ageOfOldestMessage + "s";
+    }
+  }
+
+  /**
+   * Counters for a queue.
+   *
+   * Messages that are not yet visible are counted by the time they become visible, so that they can be moved to
+   * the visible count as time passes. Messages are also counted by sent timestamp for the age of the oldest message.
+   */
+  static final class QueueCounters {
+    private static final int DELAYED = 0;
+    private static final int IN_FLIGHT = 1;
+
+    private final long recountTimestampMillis;
+    private volatile boolean stale;
+    private long visible;
+    private long delayed;
+    private long inFlight;
+    private final NavigableMap<Long, long[]> pending = new TreeMap<>();
+    private final NavigableMap<Long, long[]> sent = new TreeMap<>();
+
+    QueueCounters(final long recountTimestampMillis) {
+      this.recountTimestampMillis = recountTimestampMillis;
+    }
+
+    synchronized void sent(final long now, final long sentTimestampSecs, final long visibleTimestampSecs) {
+      add(now, visibleTimestampSecs, 0, 1);
+      addSent(sentTimestampSecs, 1);
+    }
+
+    synchronized void visibilityChanged(final long now,
+                                        final int receiveCount,
+                                        final long visibleTimestampSecs,
+                                        final int newReceiveCount,
+                                        final long newVisibleTimestampSecs) {
+      remove(now, visibleTimestampSecs, receiveCount);
+      add(now, newVisibleTimestampSecs, newReceiveCount, 1);
+    }
+
+    synchronized void deleted(final long now, final int receiveCount, final long sentTimestampSecs, final long visibleTimestampSecs) {
+      remove(now, visibleTimestampSecs, receiveCount);
+      // count against the group the message was added to, or the oldest group if it was recounted
+      Map.Entry<Long, long[]> sentEntry = sent.floorEntry(sentTimestampSecs);
+      if (sentEntry == null) {
+        sentEntry = sent.firstEntry();
+      }
+      if (sentEntry != null && --sentEntry.getValue()[0] <= 0) {
+        sent.remove(sentEntry.getKey());
+      }
+    }
+
+    synchronized Counts counts(final long now) {
+      advance(now);
+      return new Counts(visible, delayed, inFlight, sent.isEmpty() ? 0L : Math.max(0L, now - sent.firstKey()));
+    }
+
+    synchronized void add(final long now, final long visibleTimestampSecs, final int receiveCount, final long count) {
+      advance(now);
+      // messages with a visibility time of exactly now are visible
+      if (visibleTimestampSecs <= now) {
+        visible += count;
+      } else {
+        long[] pendingCounts = pending.get(visibleTimestampSecs);
+        if (pendingCounts == null) {
+          pending.put(visibleTimestampSecs, pendingCounts = new long[2]);
+        }
+        if (receiveCount == 0) {
+          pendingCounts[DELAYED] += count;
+          delayed += count;
+        } else {
+          pendingCounts[IN_FLIGHT] += count;
+          inFlight += count;
+        }
+      }
+    }
+
+    synchronized void addSent(final long sentTimestampSecs, final long count) {
+      long[] sentCount = sent.get(sentTimestampSecs);
+      if (sentCount == null) {
+        sent.put(sentTimestampSecs, sentCount = new long[1]);
+      }
+      sentCount[0] += count;
+    }
+
+    private void remove(final long now, final long visibleTimestampSecs, final int receiveCount) {
+      advance(now);
+      if (visibleTimestampSecs <= now) {
+        visible = Math.max(0L, visible - 1);
+      } else {
+        final long[] pendingCounts = pending.get(visibleTimestampSecs);
+        if (pendingCounts != null) {
+          if (receiveCount == 0 && pendingCounts[DELAYED] > 0) {
+            pendingCounts[DELAYED]--;
+            delayed--;
+          } else if (receiveCount != 0 && pendingCounts[IN_FLIGHT] > 0) {
+            pendingCounts[IN_FLIGHT]--;
+            inFlight--;
+          }
+          if (pendingCounts[DELAYED] == 0 && pendingCounts[IN_FLIGHT] == 0) {
+            pending.remove(visibleTimestampSecs);
+          }
+        }
+      }
+    }
+
+    /**
+     * Move messages that have become visible to the visible count.
+     */
+    private void advance(final long now) {
+      final Iterator<long[]> visibleIterator = pending.headMap(now, true).values().iterator();
+      while (visibleIterator.hasNext()) {
+        final long[] pendingCounts = visibleIterator.next();
+        visible += pendingCounts[DELAYED] + pendingCounts[IN_FLIGHT];
+        delayed -= pendingCounts[DELAYED];
+        inFlight -= pendingCounts[IN_FLIGHT];
+        visibleIterator.remove();
+      }
+    }
+  }
+}
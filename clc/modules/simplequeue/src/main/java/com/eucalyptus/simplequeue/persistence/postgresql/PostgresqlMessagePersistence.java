@@ -43,14 +43,14 @@ import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
 import com.eucalyptus.simplequeue.persistence.MessageJsonHelper;
 import com.eucalyptus.simplequeue.persistence.MessagePersistence;
 import com.eucalyptus.simplequeue.persistence.Queue;
-import com.eucalyptus.util.Either;
 import com.google.common.base.Function;
-import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -66,116 +66,180 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
     return UUID.randomUUID();
   }
 
+  /**
+   * Number of candidate rows fetched per requested message, so that concurrent
+   * consumers of the same queue do not all contend for the same rows.
+   */
+  private static final int RECEIVE_CANDIDATES_PER_MESSAGE = 4;
+
   @Override
   public Collection<Message> receiveMessages(Queue queue, Map<String, String> receiveAttributes) throws SimpleQueueException {
-    Either<SimpleQueueException, List<Message>> returnValue =
-      Entities.asDistinctTransaction(MessageEntity.class, new Function<Void, Either<SimpleQueueException, List<Message>>>() {
+    final long now = SimpleQueueService.currentTimeSeconds();
+    int visibilityTimeout = queue.getVisibilityTimeout();
+    if (receiveAttributes.containsKey(Constants.VISIBILITY_TIMEOUT)) {
+      visibilityTimeout = Integer.parseInt(receiveAttributes.get(Constants.VISIBILITY_TIMEOUT));
+    }
+    final long newVisibleTimestampSecs = now + visibilityTimeout;
+    boolean deadLetterQueue = false;
+    int maxReceiveCount = 0;
+    try {
+      // the dead letter queue itself is only needed by the sweeper
+      Ern.parse(receiveAttributes.get(Constants.DEAD_LETTER_TARGET_ARN));
+      maxReceiveCount = Integer.parseInt(receiveAttributes.get(Constants.MAX_RECEIVE_COUNT));
+      deadLetterQueue = true;
+    } catch (Exception ignore) {
+    }
+    int maxNumMessages = 1;
+    try {
+      maxNumMessages = Integer.parseInt(receiveAttributes.get(Constants.MAX_NUMBER_OF_MESSAGES));
+    } catch (Exception ignore) {
+    }
+    final boolean useMaxReceiveCount = deadLetterQueue;
+    final int candidateMaxReceiveCount = maxReceiveCount;
+    final int candidateCount = maxNumMessages * RECEIVE_CANDIDATES_PER_MESSAGE;
 
-      @Nullable
+    // Expired messages and messages due for the dead letter queue are left in place
+    // for the PostgresqlMessageSweeper, they are only excluded here.
+    final List<MessageEntity> candidates =
+      Entities.asDistinctTransaction(MessageEntity.class, new Function<Void, List<MessageEntity>>() {
       @Override
-      public Either<SimpleQueueException, List<Message>> apply(@Nullable Void aVoid) {
-        Either<SimpleQueueException, List<Message>> either;
-        long now = SimpleQueueService.currentTimeSeconds();
-        List<Message> messages = Lists.newArrayList();
-        Optional<SimpleQueueException> simpleQueueExceptionOptional;
-        try {
-          List<MessageEntity> messageEntityList = Entities.criteriaQuery(MessageEntity.class)
-            .whereEqual(MessageEntity_.accountId, queue.getAccountId())
-            .whereEqual(MessageEntity_.queueName, queue.getQueueName())
-//      -- Just delete the expired messages here
-//        // messages with an expiration time of exactly now should expire, so we want the expiration
-//        // timestamp to be strictly greater than now
-//        .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-              // messages with a visibility time of exactly now should be visible, so we want the the visibility
-              // timestamp to be less than or equal to now.
-            .where(Entities.restriction(MessageEntity.class).le(MessageEntity_.visibleTimestampSecs, now))
-            .orderBy(MessageEntity_.visibleTimestampSecs)
-              // TODO: consider what happens if this returns too many results.
-            .list();
-          boolean deadLetterQueue = false;
-          String deadLetterQueueAccountId = null;
-          String deadLetterQueueName = null;
-          int maxReceiveCount = 0;
-          long deadLetterQueueMessageRetentionPeriod = 0;
-          try {
-            Ern deadLetterQueueErn = Ern.parse(receiveAttributes.get(Constants.DEAD_LETTER_TARGET_ARN));
-            deadLetterQueueAccountId = deadLetterQueueErn.getAccount();
-            deadLetterQueueName = deadLetterQueueErn.getResourceName();
-            maxReceiveCount = Integer.parseInt(receiveAttributes.get(Constants.MAX_RECEIVE_COUNT));
-            deadLetterQueueMessageRetentionPeriod = Long.parseLong(receiveAttributes.get(Constants.MESSAGE_RETENTION_PERIOD));
-            deadLetterQueue = true;
-          } catch (Exception ignore) {
-          }
-          int numMessages = 0;
-          int maxNumMessages = 1;
-          try {
-            maxNumMessages = Integer.parseInt(receiveAttributes.get(Constants.MAX_NUMBER_OF_MESSAGES));
-          } catch (Exception ignore) {
-          }
-
-          if (messageEntityList != null) {
-            for (MessageEntity messageEntity : messageEntityList) {
-              if (messageEntity.getExpiredTimestampSecs() <= now) {
-                Entities.delete(messageEntity);
-                continue;
-              }
-              if (deadLetterQueue && messageEntity.getLocalReceiveCount() >= maxReceiveCount) {
-                // move to dead letter
-                messageEntity.setLocalReceiveCount(0);
-                messageEntity.setAccountId(deadLetterQueueAccountId);
-                messageEntity.setQueueName(deadLetterQueueName);
-                messageEntity.setExpiredTimestampSecs(messageEntity.getSentTimestampSecs() + deadLetterQueueMessageRetentionPeriod);
-                continue;
-              }
-
-              Message message = MessageJsonHelper.jsonToMessage(messageEntity.getMessageJson());
-              message.setMessageId(messageEntity.getMessageId());
-              // set receive timestamp if first time being received
-              if (messageEntity.getReceiveCount() == 0) {
-                message.getAttribute().add(new Attribute(Constants.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP, "" + now));
-                // add the new attribute
-                messageEntity.setMessageJson(MessageJsonHelper.messageToJson(message));
-              }
-              // update visible timestamp (use visibility timeout)
-              int visibilityTimeout = queue.getVisibilityTimeout();
-              if (receiveAttributes.containsKey(Constants.VISIBILITY_TIMEOUT)) {
-                visibilityTimeout = Integer.parseInt(receiveAttributes.get(Constants.VISIBILITY_TIMEOUT));
-              }
-              messageEntity.setVisibleTimestampSecs(now + visibilityTimeout);
-              // update receive count (not stored in message json as updated often)
-              messageEntity.setLocalReceiveCount(messageEntity.getLocalReceiveCount() + 1);
-              messageEntity.setReceiveCount(messageEntity.getReceiveCount() + 1);
-
-              // Set the 'attributes' that are stored as first class fields
-              message.getAttribute().add(new Attribute(Constants.APPROXIMATE_RECEIVE_COUNT, "" + messageEntity.getReceiveCount()));
-              // send timestamp isn't updated but used in queries.  The attribute is in seconds though, so convert
-              message.getAttribute().add(new Attribute(Constants.SENT_TIMESTAMP, "" + (messageEntity.getSentTimestampSecs())));
-              message.setReceiptHandle(messageEntity.getAccountId() + ":" + messageEntity.getQueueName() + ":" + messageEntity.getMessageId() + ":" + messageEntity.getLocalReceiveCount());
-              messages.add(message);
-              numMessages++;
-              if (numMessages >= maxNumMessages) break;
-            }
-          }
-          either = Either.right(messages);
-        } catch (SimpleQueueException ex) {
-          either = Either.left(ex);
+      public List<MessageEntity> apply(@Nullable Void aVoid) {
+        Entities.EntityCriteriaQuery<MessageEntity, MessageEntity> candidateQuery = Entities.criteriaQuery(MessageEntity.class)
+          .whereEqual(MessageEntity_.accountId, queue.getAccountId())
+          .whereEqual(MessageEntity_.queueName, queue.getQueueName())
+            // messages with a visibility time of exactly now should be visible, so we want the the visibility
+            // timestamp to be less than or equal to now.
+          .where(Entities.restriction(MessageEntity.class).le(MessageEntity_.visibleTimestampSecs, now))
+            // messages with an expiration time of exactly now should expire, so we want the expiration
+            // timestamp to be strictly greater than now
+          .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now));
+        if (useMaxReceiveCount) {
+          candidateQuery = candidateQuery
+            .where(Entities.restriction(MessageEntity.class).lt(MessageEntity_.localReceiveCount, candidateMaxReceiveCount));
         }
-        return either;
+        return candidateQuery
+          .orderBy(MessageEntity_.visibleTimestampSecs)
+          .maxResults(candidateCount)
+          .readonly()
+          .list();
       }
     }).apply(null);
-    if (returnValue.isLeft()) {
-      throw returnValue.getLeft();
-    } else {
-      return returnValue.getRight();
+
+    // Each claim is a separate single row transaction so no row lock is held
+    // while claiming other candidates.
+    final Predicate<MessageEntity> claimTransaction =
+      Entities.asDistinctTransaction(MessageEntity.class, new Predicate<MessageEntity>() {
+      @Override
+      public boolean apply(@Nullable MessageEntity messageEntity) {
+        return claim(messageEntity, now, newVisibleTimestampSecs);
+      }
+    });
+    final List<Message> messages = Lists.newArrayList();
+    final List<Integer> receivedCounts = Lists.newArrayList();
+    for (final MessageEntity messageEntity : claimCandidates(candidates, maxNumMessages, claimTransaction)) {
+      Message message = MessageJsonHelper.jsonToMessage(messageEntity.getMessageJson());
+      message.setMessageId(messageEntity.getMessageId());
+      // receive count is not stored in message json as updated often
+      int receiveCount = messageEntity.getReceiveCount() + 1;
+      int localReceiveCount = messageEntity.getLocalReceiveCount() + 1;
+      // set receive timestamp if first time being received
+      if (receiveCount == 1) {
+        message.getAttribute().add(new Attribute(Constants.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP, "" + now));
+        // add the new attribute, the message is no longer visible to other receivers
+        updateMessageJson(messageEntity, MessageJsonHelper.messageToJson(message));
+      }
+      // Set the 'attributes' that are stored as first class fields
+      message.getAttribute().add(new Attribute(Constants.APPROXIMATE_RECEIVE_COUNT, "" + receiveCount));
+      // send timestamp isn't updated but used in queries.  The attribute is in seconds though, so convert
+      message.getAttribute().add(new Attribute(Constants.SENT_TIMESTAMP, "" + (messageEntity.getSentTimestampSecs())));
+      message.setReceiptHandle(messageEntity.getAccountId() + ":" + messageEntity.getQueueName() + ":" + messageEntity.getMessageId() + ":" + localReceiveCount);
+      messages.add(message);
+      receivedCounts.add(messageEntity.getReceiveCount());
+    }
+    for (Integer receiveCount : receivedCounts) {
+      MessageCounters.received(queue.getKey(), receiveCount, now, newVisibleTimestampSecs);
     }
+    return messages;
+  }
+
+  /**
+   * Claim up to maxNumMessages of the given candidates, in random order.
+   *
+   * A candidate is claimed only if the claim predicate succeeds, losing a
+   * claim to a concurrent receive just moves on to the next candidate. The
+   * predicate should claim in its own transaction, a receive holding locks
+   * on claimed rows while claiming others can deadlock with a concurrent
+   * receive.
+   */
+  static <T> List<T> claimCandidates(final List<T> candidates,
+                                     final int maxNumMessages,
+                                     final Predicate<? super T> claim) {
+    final List<T> shuffledCandidates = Lists.newArrayList(candidates);
+    Collections.shuffle(shuffledCandidates);
+    final List<T> claimed = Lists.newArrayList();
+    for (final T candidate : shuffledCandidates) {
+      if (claimed.size() >= maxNumMessages) break;
+      if (claim.apply(candidate)) {
+        claimed.add(candidate);
+      }
+    }
+    return claimed;
+  }
+
+  /**
+   * Conditionally update the message as received, this fails if the message was
+   * received by another request since the candidate was loaded.
+   *
+   * If another receive holds the row then this waits only for that claim to
+   * commit, after which the condition no longer matches and the message is
+   * skipped.
+   */
+  private static boolean claim(final MessageEntity messageEntity,
+                               final long now,
+                               final long newVisibleTimestampSecs) {
+    final Map<String, Object> parameters = Maps.newHashMap();
+    parameters.put("accountId", messageEntity.getAccountId());
+    parameters.put("queueName", messageEntity.getQueueName());
+    parameters.put("messageId", messageEntity.getMessageId());
+    parameters.put("receiveCount", messageEntity.getReceiveCount());
+    parameters.put("now", now);
+    parameters.put("visibleTimestampSecs", newVisibleTimestampSecs);
+    return Entities.updateAllMatching(MessageEntity.class, CLAIM_UPDATE, parameters) == 1;
+  }
+
+  /**
+   * Update for a message claim, the row is matched on the receive count and
+   * visibility that the candidate was loaded with.
+   */
+  static final String CLAIM_UPDATE =
+    "SET visibleTimestampSecs = :visibleTimestampSecs, receiveCount = receiveCount + 1, " +
+      "localReceiveCount = localReceiveCount + 1, version = version + 1 " +
+      "WHERE accountId = :accountId AND queueName = :queueName AND messageId = :messageId " +
+      "AND receiveCount = :receiveCount AND visibleTimestampSecs <= :now";
+
+  private static void updateMessageJson(final MessageEntity messageEntity, final String messageJson) {
+    Entities.asDistinctTransaction(MessageEntity.class, new Predicate<String>() {
+      @Override
+      public boolean apply(@Nullable String json) {
+        final Map<String, Object> parameters = Maps.newHashMap();
+        parameters.put("accountId", messageEntity.getAccountId());
+        parameters.put("queueName", messageEntity.getQueueName());
+        parameters.put("messageId", messageEntity.getMessageId());
+        parameters.put("messageJson", json);
+        return Entities.updateAllMatching(MessageEntity.class,
+          "SET messageJson = :messageJson " +
+            "WHERE accountId = :accountId AND queueName = :queueName AND messageId = :messageId",
+          parameters) == 1;
+      }
+    }).apply(messageJson);
   }
 
   @Override
   public void sendMessage(Queue queue, Message message, Map<String, String> sendAttributes) {
-    Entities.asDistinctTransaction(MessageEntity.class, new Function<Void, Void>() {
+    MessageEntity sentMessageEntity = Entities.asDistinctTransaction(MessageEntity.class, new Function<Void, MessageEntity>() {
       @Nullable
       @Override
-      public Void apply(@Nullable Void aVoid) {
+      public MessageEntity apply(@Nullable Void aVoid) {
         MessageEntity messageEntity = new MessageEntity();
         messageEntity.setMessageId(message.getMessageId());
         messageEntity.setAccountId(queue.getAccountId());
@@ -197,9 +261,10 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
         messageEntity.setVisibleTimestampSecs(messageEntity.getSentTimestampSecs() + delaySeconds);
         messageEntity.setMessageJson(MessageJsonHelper.messageToJson(message));
         Entities.persist(messageEntity);
-        return null;
+        return messageEntity;
       }
     }).apply(null);
+    MessageCounters.sent(queue.getKey(), sentMessageEntity.getSentTimestampSecs(), sentMessageEntity.getVisibleTimestampSecs());
   }
 
   @Override
@@ -240,6 +305,12 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
         }
       }
       db.commit();
+      if (messageEntityList != null) {
+        for (MessageEntity messageEntity:messageEntityList) {
+          MessageCounters.deleted(queueKey, messageEntity.getReceiveCount(),
+            messageEntity.getSentTimestampSecs(), messageEntity.getVisibleTimestampSecs());
+        }
+      }
     }
     return found;
   }
@@ -275,9 +346,11 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
         .whereEqual(MessageEntity_.receiveCount, receiveCount)
         .list();
       int countedResults = 0;
+      List<Long> previousVisibleTimestamps = Lists.newArrayList();
       if (messageEntityList != null) {
         for (MessageEntity messageEntity:messageEntityList) {
           countedResults++;
+          previousVisibleTimestamps.add(messageEntity.getVisibleTimestampSecs());
           messageEntity.setVisibleTimestampSecs(now + visibilityTimeout);
         }
       }
@@ -285,27 +358,16 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
         throw new InvalidParameterValueException("Value " + receiptHandle + " for parameter ReceiptHandle is invalid. Reason: Message does not exist or is not available for visibility timeout change.");
       }
       db.commit();
+      for (Long previousVisibleTimestamp : previousVisibleTimestamps) {
+        MessageCounters.visibilityChanged(queueKey, receiveCount, previousVisibleTimestamp, now + visibilityTimeout);
+      }
     }
 
   }
 
   @Override
   public Long getApproximateAgeOfOldestMessage(Queue.Key queueKey) {
-    long now = SimpleQueueService.currentTimeSeconds();
-    try ( TransactionResource db =
-            Entities.transactionFor(MessageEntity.class) ) {
-      List<MessageEntity> messageEntities = Entities.criteriaQuery(MessageEntity.class)
-        .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
-        .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
-        // messages with an expiration time of exactly now should expire, so we want the expiration
-        // timestamp to be strictly greater than now
-        .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-        .orderBy(MessageEntity_.sentTimestampSecs)
-        .maxResults(1)
-        .list();
-      if (messageEntities == null || messageEntities.size() == 0) return 0L;
-      return now - messageEntities.get(0).getSentTimestampSecs();
-    }
+    return MessageCounters.lookup(queueKey).getAgeOfOldestMessage();
   }
 
 
@@ -321,64 +383,20 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
       ).delete();
       db.commit();
     }
+    MessageCounters.removed(queueKey);
   }
 
   @Override
   public Map<String, String> getApproximateMessageCounts(Queue.Key queueKey) {
     Map<String, String> result = Maps.newHashMap();
-    long now = SimpleQueueService.currentTimeSeconds();
-    // TODO: see if we can do this with a more efficient query
-    // first get 'in flight' messages (
-    try ( TransactionResource db =
-            Entities.transactionFor(MessageEntity.class) ) {
-      // ApproximateNumberOfMessagesDelayed - returns the approximate number of messages that are pending to be added to the queue.
-      // i.e. not seen yet and not visible yet
-      result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED,
-        Entities.count(MessageEntity.class)
-            .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
-            .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
-              // messages with an expiration time of exactly now should expire, so we want the expiration
-              // timestamp to be strictly greater than now
-            .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-              // messages that is delayed is not yet visible, so we want the visibility timestamp to be
-              // strictly greater than now
-            .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.visibleTimestampSecs, now))
-            .whereEqual(MessageEntity_.receiveCount, 0)
-            .uniqueResult()
-            .toString()
-      );
-      // ApproximateNumberOfMessagesNotVisible - returns the approximate number of messages that are not timed-out and not deleted. For more information, see Resources Required to Process Messages in the Amazon SQS Developer Guide.
-      result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE,
-        Entities.count(MessageEntity.class)
-          .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
-          .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
-            // messages with an expiration time of exactly now should expire, so we want the expiration
-            // timestamp to be strictly greater than now
-          .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-            // messages that are not visible are not delayed.  A message that is not visible must
-            // have been received at least once.  (Because otherwise it is delayed, visible, or expired)
-          .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.visibleTimestampSecs, now))
-          .where(Entities.restriction(MessageEntity.class).notEqual(MessageEntity_.receiveCount, 0))
-          .uniqueResult()
-          .toString()
-      );
-      //      ApproximateNumberOfMessages - returns the approximate number of visible messages in a queue.      result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE,
-      result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES,
-        Entities.count(MessageEntity.class)
-          .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
-          .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
-            // messages with an expiration time of exactly now should expire, so we want the expiration
-            // timestamp to be strictly greater than now
-          .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-            // messages with a visibility time of exactly now should be visible, so we want the the visibility
-            // timestamp to be less than or equal to now.
-          .where(Entities.restriction(MessageEntity.class).le(MessageEntity_.visibleTimestampSecs, now))
-          .uniqueResult()
-          .toString()
-      );
-      // TODO: there is probably a more efficient or clever query we could make to group the above
-      // in one query.  It may or may not be worth it.
-    }
+    MessageCounters.Counts counts = MessageCounters.lookup(queueKey);
+    // ApproximateNumberOfMessagesDelayed - returns the approximate number of messages that are pending to be added to the queue.
+    // i.e. not seen yet and not visible yet
+    result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED, String.valueOf(counts.getDelayed()));
+    // ApproximateNumberOfMessagesNotVisible - returns the approximate number of messages that are not timed-out and not deleted. For more information, see Resources Required to Process Messages in the Amazon SQS Developer Guide.
+    result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE, String.valueOf(counts.getInFlight()));
+    // ApproximateNumberOfMessages - returns the approximate number of visible messages in a queue.
+    result.put(Constants.APPROXIMATE_NUMBER_OF_MESSAGES, String.valueOf(counts.getVisible()));
     return result;
   }
 
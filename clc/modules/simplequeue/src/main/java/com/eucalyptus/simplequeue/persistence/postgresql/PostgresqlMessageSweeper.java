@@ -0,0 +1,165 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.postgresql;
+
+import com.eucalyptus.auth.policy.ern.Ern;
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.simplequeue.Constants;
+import com.eucalyptus.simplequeue.SimpleQueue;
+import com.eucalyptus.simplequeue.SimpleQueueService;
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
+import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.system.Threads;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.log4j.Logger;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes expired messages and moves messages over their maximum receive count
+ * to the dead letter queue, so that receiving messages does not have to.
+ */
+public class PostgresqlMessageSweeper implements EventListener<ClockTick> {
+
+  private static final Logger LOG = Logger.getLogger(PostgresqlMessageSweeper.class);
+
+  private static final AtomicBoolean running = new AtomicBoolean(false);
+  private static final AtomicLong lastRun = new AtomicLong(System.currentTimeMillis());
+
+  public static void register() {
+    Listeners.register(ClockTick.class, new PostgresqlMessageSweeper());
+  }
+
+  @Override
+  public void fireEvent(final ClockTick event) {
+    if (Topology.isEnabledLocally(SimpleQueue.class) && !Databases.isVolatile() &&
+      !"cassandra".equalsIgnoreCase(SimpleQueueProperties.DB_TO_USE)) {
+      final long now = System.currentTimeMillis();
+      final long last = lastRun.get();
+      if (last + TimeUnit.SECONDS.toMillis(SimpleQueueProperties.MESSAGE_SWEEP_INTERVAL_SECS) < now &&
+        lastRun.compareAndSet(last, now) && running.compareAndSet(false, true)) {
+        try {
+          Threads.lookup(SimpleQueue.class, PostgresqlMessageSweeper.class).limitTo(1).submit(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                sweep();
+              } catch (final Throwable t) {
+                LOG.error("Error sweeping messages", t);
+              } finally {
+                running.set(false);
+              }
+            }
+          });
+        } catch (final Throwable t) {
+          running.set(false);
+          LOG.error("Error submitting message sweep", t);
+        }
+      }
+    }
+  }
+
+  static void sweep() {
+    final long now = SimpleQueueService.currentTimeSeconds();
+    try (TransactionResource db =
+           Entities.transactionFor(MessageEntity.class)) {
+      @SuppressWarnings("unchecked")
+      final List<Object[]> expiredQueues = Entities.createCriteria(MessageEntity.class)
+        .add(Restrictions.le("expiredTimestampSecs", now))
+        .setProjection(Projections.distinct(Projections.projectionList()
+          .add(Projections.property("accountId"))
+          .add(Projections.property("queueName"))))
+        .setReadOnly(true)
+        .list();
+      // messages with an expiration time of exactly now should expire
+      final int expired = Entities.deleteAllMatching(MessageEntity.class,
+        "WHERE expiredTimestampSecs <= :now", ImmutableMap.of("now", now));
+      db.commit();
+      for (final Object[] expiredQueue : expiredQueues) {
+        MessageCounters.stale(new Queue.Key((String) expiredQueue[0], (String) expiredQueue[1]));
+      }
+      if (expired > 0) {
+        LOG.debug("Deleted " + expired + " expired messages");
+      }
+    }
+
+    final Map<Queue.Key, Queue> queues = Maps.newHashMap();
+    try (TransactionResource db =
+           Entities.transactionFor(QueueEntity.class)) {
+      final List<QueueEntity> queueEntities = Entities.criteriaQuery(QueueEntity.class).readonly().list();
+      for (final QueueEntity queueEntity : queueEntities) {
+        final Queue queue = PostgresqlQueuePersistence.queueFromQueueEntity(queueEntity);
+        queues.put(queue.getKey(), queue);
+      }
+    }
+
+    for (final Queue queue : queues.values()) {
+      final String deadLetterTargetArn = queue.getDeadLetterTargetArn();
+      if (deadLetterTargetArn == null) continue;
+      try {
+        final Ern deadLetterQueueErn = Ern.parse(deadLetterTargetArn);
+        final Queue deadLetterQueue =
+          queues.get(new Queue.Key(deadLetterQueueErn.getAccount(), deadLetterQueueErn.getResourceName()));
+        final JsonNode maxReceiveCountJsonNode = queue.getRedrivePolicy().get(Constants.MAX_RECEIVE_COUNT);
+        final int maxReceiveCount = maxReceiveCountJsonNode == null ? 0 : maxReceiveCountJsonNode.asInt();
+        if (deadLetterQueue == null || maxReceiveCount <= 0) {
+          // malformed or nonexistent redrive policy, just leave the messages where they are
+          continue;
+        }
+        final Map<String, Object> parameters = Maps.newHashMap();
+        parameters.put("accountId", queue.getAccountId());
+        parameters.put("queueName", queue.getQueueName());
+        parameters.put("maxReceiveCount", maxReceiveCount);
+        parameters.put("now", now);
+        parameters.put("deadLetterAccountId", deadLetterQueue.getAccountId());
+        parameters.put("deadLetterQueueName", deadLetterQueue.getQueueName());
+        parameters.put("deadLetterRetentionPeriod", (long) deadLetterQueue.getMessageRetentionPeriod());
+        try (TransactionResource db =
+               Entities.transactionFor(MessageEntity.class)) {
+          // only messages that are visible again, in flight messages may still be deleted by the consumer
+          final int moved = Entities.updateAllMatching(MessageEntity.class,
+            "SET localReceiveCount = 0, accountId = :deadLetterAccountId, queueName = :deadLetterQueueName, " +
+              "expiredTimestampSecs = sentTimestampSecs + :deadLetterRetentionPeriod, version = version + 1 " +
+              "WHERE accountId = :accountId AND queueName = :queueName " +
+              "AND localReceiveCount >= :maxReceiveCount AND visibleTimestampSecs <= :now",
+            parameters);
+          db.commit();
+          if (moved > 0) {
+            MessageCounters.stale(queue.getKey());
+            MessageCounters.stale(deadLetterQueue.getKey());
+            LOG.debug("Moved " + moved + " messages from " + queue.getArn() + " to dead letter queue " + deadLetterTargetArn);
+          }
+        }
+      } catch (final Exception e) {
+        LOG.error("Error moving messages to dead letter queue for " + queue.getArn(), e);
+      }
+    }
+  }
+}
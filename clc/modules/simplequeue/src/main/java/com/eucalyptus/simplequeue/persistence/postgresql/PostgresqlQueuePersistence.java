@@ -110,7 +110,7 @@ public class PostgresqlQueuePersistence implements QueuePersistence {
     }
   }
 
-  private Queue queueFromQueueEntity(QueueEntity queueEntity) {
+  static Queue queueFromQueueEntity(QueueEntity queueEntity) {
     Queue queue = new Queue();
     queue.setAccountId(queueEntity.getAccountId());
     queue.setQueueName(queueEntity.getQueueName());
@@ -119,7 +119,7 @@ public class PostgresqlQueuePersistence implements QueuePersistence {
     return queue;
   }
 
-  private Map<String, String> convertJsonToAttributeMap(String attributes) {
+  private static Map<String, String> convertJsonToAttributeMap(String attributes) {
     Map<String, String> attributeMap = Maps.newTreeMap();
     try {
       JsonNode jsonNode = new ObjectMapper().readTree(attributes);
@@ -0,0 +1,60 @@
+package com.eucalyptus.simplequeue.persistence.postgresql
+
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+
+/**
+ *
+ */
+class MessageCountersTest {
+
+  @Test
+  void testMessageLifecycle( ) {
+    MessageCounters.QueueCounters counters = new MessageCounters.QueueCounters( 0 )
+    counters.sent( 100, 100, 100 )   // visible
+    counters.sent( 100, 100, 110 )   // delayed 10 seconds
+    assertCounts( counters.counts( 100 ), 1, 1, 0, 0 )
+
+    // receive the visible message with a 30 second visibility timeout
+    counters.visibilityChanged( 105, 0, 105, 1, 135 )
+    assertCounts( counters.counts( 105 ), 0, 1, 1, 5 )
+
+    // delayed message becomes visible
+    assertCounts( counters.counts( 110 ), 1, 0, 1, 10 )
+
+    // in flight message times out
+    assertCounts( counters.counts( 135 ), 2, 0, 0, 35 )
+
+    // receive and delete both
+    counters.visibilityChanged( 140, 1, 140, 2, 170 )
+    counters.visibilityChanged( 140, 0, 140, 1, 170 )
+    assertCounts( counters.counts( 140 ), 0, 0, 2, 40 )
+    counters.deleted( 141, 2, 100, 170 )
+    counters.deleted( 141, 1, 100, 170 )
+    assertCounts( counters.counts( 141 ), 0, 0, 0, 0 )
+  }
+
+  @Test
+  void testRecountedSentGroup( ) {
+    MessageCounters.QueueCounters counters = new MessageCounters.QueueCounters( 0 )
+    counters.add( 200, 100, 0, 3 )
+    counters.addSent( 50, 1 )
+    counters.addSent( 51, 2 )   // group for messages beyond the recount limit
+    counters.sent( 200, 200, 200 )
+    assertCounts( counters.counts( 200 ), 4, 0, 0, 150 )
+
+    counters.deleted( 200, 0, 50, 100 )
+    assertCounts( counters.counts( 200 ), 3, 0, 0, 149 )
+    counters.deleted( 200, 0, 75, 100 )
+    counters.deleted( 200, 0, 90, 100 )
+    assertCounts( counters.counts( 200 ), 1, 0, 0, 0 )
+  }
+
+  private static void assertCounts( MessageCounters.Counts counts, long visible, long delayed, long inFlight, long age ) {
+    assertEquals( 'Visible', visible, counts.visible )
+    assertEquals( 'Delayed', delayed, counts.delayed )
+    assertEquals( 'In flight', inFlight, counts.inFlight )
+    assertEquals( 'Age of oldest message', age, counts.ageOfOldestMessage )
+  }
+}
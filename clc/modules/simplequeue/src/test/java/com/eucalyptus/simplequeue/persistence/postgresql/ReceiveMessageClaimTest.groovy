@@ -0,0 +1,133 @@
+package com.eucalyptus.simplequeue.persistence.postgresql
+
+import com.google.common.base.Predicate
+import groovy.sql.Sql
+import org.junit.Assume
+import org.junit.Test
+
+import java.sql.Connection
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ * Concurrent receives from one hot queue using the claim update against
+ * PostgreSQL.
+ *
+ * The database test runs when simplequeue.test.postgresql.url (and optionally
+ * .user and .password) is set, a temporary messages table is created in that
+ * database.
+ */
+class ReceiveMessageClaimTest {
+
+  private static final int MESSAGES = 2000
+  private static final int CONSUMERS = 32
+  private static final int MAX_NUMBER_OF_MESSAGES = 10
+
+  @Test
+  void testClaimCandidatesLimit( ) {
+    List<Integer> claimed = PostgresqlMessagePersistence.claimCandidates( (1..40).toList( ), 10, { Integer i -> i % 2 == 0 } as Predicate<Integer> )
+    assertEquals( 'Claimed count', 10, claimed.size( ) )
+    assertTrue( 'Only claimable candidates', claimed.every{ Integer i -> i % 2 == 0 } )
+    assertEquals( 'Claimed when fewer candidates', 3,
+        PostgresqlMessagePersistence.claimCandidates( [ 1, 2, 3 ], 10, { Integer i -> true } as Predicate<Integer> ).size( ) )
+  }
+
+  @Test
+  void testClaimUpdateSql( ) {
+    assertEquals(
+        'UPDATE messages_test SET visible_timestamp_secs = :visibleTimestampSecs, receive_count = receive_count + 1, ' +
+            'local_receive_count = local_receive_count + 1, version = version + 1 ' +
+            'WHERE account_id = :accountId AND queue_name = :queueName AND message_id = :messageId ' +
+            'AND receive_count = :receiveCount AND visible_timestamp_secs <= :now',
+        claimSql( 'messages_test' ) )
+  }
+
+  @Test
+  void testConcurrentClaimsPostgresql( ) {
+    String url = System.getProperty( 'simplequeue.test.postgresql.url' )
+    Assume.assumeTrue( 'PostgreSQL not configured', url != null )
+    String table = "messages_claim_test_${System.currentTimeMillis( )}".toString( )
+    Closure<Sql> connect = {
+      Sql.newInstance( url,
+          System.getProperty( 'simplequeue.test.postgresql.user', 'eucalyptus' ),
+          System.getProperty( 'simplequeue.test.postgresql.password', '' ),
+          'org.postgresql.Driver' )
+    }
+    Sql setup = connect( )
+    try {
+      setup.execute( """CREATE TABLE ${table} ( account_id varchar(255) NOT NULL, queue_name varchar(255) NOT NULL,
+          message_id varchar(255) NOT NULL, visible_timestamp_secs bigint NOT NULL, receive_count integer NOT NULL,
+          local_receive_count integer NOT NULL, version integer NOT NULL, PRIMARY KEY ( account_id, queue_name, message_id ) )""".toString( ) )
+      setup.withBatch( 500, "INSERT INTO ${table} VALUES ( '000000000000', 'queue', ?, 0, 0, 0, 0 )".toString( ) ) { stmt ->
+        ( 0..<MESSAGES ).each { int i -> stmt.addBatch( [ String.format( '%08d', i ) ] ) }
+      }
+
+      String candidateSql = "SELECT message_id, receive_count FROM ${table} WHERE account_id = '000000000000' AND queue_name = 'queue' " +
+          "AND visible_timestamp_secs <= 1 ORDER BY visible_timestamp_secs LIMIT ${MAX_NUMBER_OF_MESSAGES * 4}"
+      String claimSql = claimSql( table )
+      ConcurrentHashMap<String,Integer> delivered = new ConcurrentHashMap<>( )
+      ExecutorService executor = Executors.newFixedThreadPool( CONSUMERS )
+      CountDownLatch start = new CountDownLatch( 1 )
+      try {
+        List<Future<?>> futures = ( 1..CONSUMERS ).collect {
+          executor.submit( {
+            Sql sql = connect( )
+            try {
+              start.await( )
+              while ( true ) {
+                List<Map<String,Object>> candidates = sql.rows( candidateSql.toString( ) ) as List<Map<String,Object>>
+                if ( candidates.isEmpty( ) ) break
+                List<Map<String,Object>> claimed = PostgresqlMessagePersistence.claimCandidates( candidates, MAX_NUMBER_OF_MESSAGES, { Map<String,Object> candidate ->
+                  // one transaction per claim, as for the persistence claim
+                  int updated = 0
+                  sql.withTransaction { Connection connection ->
+                    updated = sql.executeUpdate( [
+                        accountId: '000000000000',
+                        queueName: 'queue',
+                        messageId: candidate.message_id,
+                        receiveCount: candidate.receive_count,
+                        now: 1L,
+                        visibleTimestampSecs: 1000L ], claimSql )
+                  }
+                  updated == 1
+                } as Predicate<Map<String,Object>> )
+                for ( Map<String,Object> message : claimed ) {
+                  assertEquals( "Message ${message.message_id} delivered more than once".toString( ),
+                      null, delivered.put( message.message_id as String, 1 ) )
+                }
+              }
+            } finally {
+              sql.close( )
+            }
+          } as Runnable )
+        } as List<Future<?>>
+        start.countDown( )
+        futures*.get( 5, TimeUnit.MINUTES ) // fails on deadlock or any other database error
+      } finally {
+        executor.shutdownNow( )
+      }
+      assertEquals( 'Delivered messages', MESSAGES, delivered.size( ) )
+      assertEquals( 'Receive counts', MESSAGES, setup.firstRow( "SELECT sum(receive_count) AS total FROM ${table}".toString( ) ).total as int )
+    } finally {
+      setup.execute( "DROP TABLE IF EXISTS ${table}".toString( ) )
+      setup.close( )
+    }
+  }
+
+  /**
+   * SQL for the persistence claim update against the given table
+   */
+  private static String claimSql( final String table ) {
+    String columns = PostgresqlMessagePersistence.CLAIM_UPDATE.replaceAll( /(?<!:)\b([a-z]+[A-Z][A-Za-z]*)\b/ ) { String match, String property ->
+      property.replaceAll( /([A-Z])/ ) { String upper, String letter -> '_' + letter.toLowerCase( ) }
+    }
+    "UPDATE ${table} ${columns}".toString( )
+  }
+}
@@ -26,10 +26,14 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
 import javax.persistence.Table;
@@ -52,7 +56,9 @@ import com.google.common.collect.Lists;
  */
 @Entity
 @PersistenceContext( name = "eucalyptus_simpleworkflow" )
-@Table( name = "swf_activity_task" )
+@Table( name = "swf_activity_task", indexes = {
+    @Index( name = "swf_activity_task_timeout_idx", columnList = "timeout_timestamp" )
+} )
 public class ActivityTask extends AbstractOwnedPersistent implements ActivityTaskMetadata {
   private static final long serialVersionUID = 1L;
 
@@ -412,4 +418,22 @@ public class ActivityTask extends AbstractOwnedPersistent implements ActivityTas
     updateTimeStamps( );
     setTimeoutTimestamp( Optional.fromNullable( calculateNextTimeout( ) ).transform( Pair.<String,Date>right( ) ).orNull( ) );
   }
+
+  @PostPersist
+  protected void queuePendingTask( ) {
+    if ( getState( ) == State.Pending ) {
+      PendingTasks.activityPending( this );
+    }
+    scheduleTimeout( );
+  }
+
+  @PostUpdate
+  protected void scheduleTimeout( ) {
+    TimeoutSchedule.activityTaskUpdated( this );
+  }
+
+  @PostRemove
+  protected void cancelTimeout( ) {
+    TimeoutSchedule.activityTaskRemoved( this );
+  }
 }
@@ -0,0 +1,281 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.apache.log4j.Logger;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList;
+import com.eucalyptus.simpleworkflow.common.SimpleWorkflow;
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Local queues of pending decision and activity tasks for each task list.
+ *
+ * Tasks are queued when the transaction that makes them pending commits and
+ * pollers claim tasks from the queue rather than scanning all pending tasks.
+ * A queue is built from the database when first used and rebuilt when it has
+ * been empty for the rebuild interval, this picks up tasks made pending on
+ * other hosts or before a failover. Queued tasks are only hints, a claim must
+ * check that the task is still pending.
+ */
+public class PendingTasks {
+
+  private static final Logger logger = Logger.getLogger( PendingTasks.class );
+
+  private static final ConcurrentMap<NotifyTaskList,TaskQueue> queues = Maps.newConcurrentMap( );
+
+  /**
+   * Queue the decision task for the workflow execution when the current transaction commits.
+   */
+  static void decisionPending( final WorkflowExecution workflowExecution ) {
+    pendingOnCommit(
+        WorkflowExecution.class,
+        NotifyTaskList.of(
+            workflowExecution.getOwnerAccountNumber( ),
+            workflowExecution.getDomainName( ),
+            "decision",
+            workflowExecution.getTaskList( ) ),
+        new PendingTask( workflowExecution.getDomainUuid( ), workflowExecution.getDisplayName( ), null ) );
+  }
+
+  /**
+   * Queue the activity task when the current transaction commits.
+   */
+  static void activityPending( final ActivityTask activityTask ) {
+    pendingOnCommit(
+        ActivityTask.class,
+        NotifyTaskList.of(
+            activityTask.getOwnerAccountNumber( ),
+            activityTask.getDomain( ),
+            "activity",
+            activityTask.getTaskList( ) ),
+        new PendingTask( activityTask.getDomainUuid( ), activityTask.getWorkflowRunId( ), activityTask.getScheduledEventId( ) ) );
+  }
+
+  /**
+   * Queue a task, tasks are only queued for task lists that are in use locally.
+   */
+  static void pending( final NotifyTaskList taskList, final PendingTask task ) {
+    final TaskQueue queue = queues.get( taskList );
+    if ( queue != null ) {
+      queue.offer( task );
+    }
+  }
+
+  /**
+   * Claim a task from the queue for the task list.
+   *
+   * The claim function returns null if the task was not claimed, a task that
+   * is still pending but could not be claimed should be queued again.
+   *
+   * @param taskList The task list to claim from
+   * @param loader Loads all pending tasks for the task list from the database
+   * @param claim Function to claim a task
+   * @return The claim result or null if no task was claimed
+   */
+  @Nullable
+  static <R> R claim( final NotifyTaskList taskList,
+                      final Supplier<? extends Iterable<PendingTask>> loader,
+                      final Function<? super PendingTask, R> claim ) {
+    final TaskQueue queue = queue( taskList, loader );
+    for ( int attempts = queue.size( ); attempts > 0; attempts-- ) {
+      final PendingTask task = queue.poll( );
+      if ( task == null ) break;
+      final R result = claim.apply( task );
+      if ( result != null ) {
+        return result;
+      }
+    }
+    return null;
+  }
+
+  static void clear( ) {
+    queues.clear( );
+  }
+
+  private static TaskQueue queue( final NotifyTaskList taskList,
+                                  final Supplier<? extends Iterable<PendingTask>> loader ) {
+    TaskQueue queue = queues.get( taskList );
+    if ( queue == null ) {
+      final TaskQueue newQueue = new TaskQueue( );
+      queue = MoreObjects.firstNonNull( queues.putIfAbsent( taskList, newQueue ), newQueue );
+    }
+    if ( queue.startRebuild( System.currentTimeMillis( ), SimpleWorkflowProperties.getPendingTaskRebuildDurationMillis( ) ) ) {
+      try {
+        // tasks committed while loading are queued directly, duplicates are ignored
+        for ( final PendingTask task : loader.get( ) ) {
+          queue.offer( task );
+        }
+      } catch ( final RuntimeException e ) {
+        queue.rebuildFailed( );
+        throw e;
+      }
+    }
+    return queue;
+  }
+
+  private static void pendingOnCommit( final Class<?> type,
+                                       final NotifyTaskList taskList,
+                                       final PendingTask task ) {
+    try {
+      if ( Entities.hasTransaction( type ) ) {
+        Entities.registerSynchronization( type, new Synchronization( ) {
+          @Override
+          public void beforeCompletion( ) {
+          }
+
+          @Override
+          public void afterCompletion( final int status ) {
+            if ( status == Status.STATUS_COMMITTED ) {
+              pending( taskList, task );
+            }
+          }
+        } );
+      } else {
+        pending( taskList, task );
+      }
+    } catch ( final Exception e ) {
+      // the task will be found on the next rebuild
+      logger.error( "Error queueing pending task for " + taskList.getChannelName( ), e );
+    }
+  }
+
+  public static final class PendingTask {
+    private final String domainUuid;
+    private final String runId;
+    private final Long scheduledEventId;
+
+    PendingTask( final String domainUuid,
+                 final String runId,
+                 @Nullable final Long scheduledEventId ) {
+      this.domainUuid = domainUuid;
+      this.runId = runId;
+      this.scheduledEventId = scheduledEventId;
+    }
+
+    public String getDomainUuid( ) {
+      return domainUuid;
+    }
+
+    public String getRunId( ) {
+      return runId;
+    }
+
+    /**
+     * The scheduled event identifier for an activity task, null for a decision task.
+     */
+    @Nullable
+    public Long getScheduledEventId( ) {
+      return scheduledEventId;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final PendingTask that = (PendingTask) o;
+      return Objects.equal( domainUuid, that.domainUuid ) &&
+          Objects.equal( runId, that.runId ) &&
+          Objects.equal( scheduledEventId, that.scheduledEventId );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( domainUuid, runId, scheduledEventId );
+    }
+
+    @Override
+    public String toString( ) {
+      return MoreObjects.toStringHelper( this )
+          .add( "domainUuid", domainUuid )
+          .add( "runId", runId )
+          .add( "scheduledEventId", scheduledEventId )
+          .omitNullValues( )
+          .toString( );
+    }
+  }
+
+  private static final class TaskQueue {
+    private final Set<PendingTask> tasks = Sets.newLinkedHashSet( );
+    private boolean built;
+    private long lastBuilt;
+
+    synchronized void offer( final PendingTask task ) {
+      tasks.add( task );
+    }
+
+    @Nullable
+    synchronized PendingTask poll( ) {
+      final Iterator<PendingTask> taskIterator = tasks.iterator( );
+      if ( taskIterator.hasNext( ) ) {
+        final PendingTask task = taskIterator.next( );
+        taskIterator.remove( );
+        return task;
+      }
+      return null;
+    }
+
+    synchronized int size( ) {
+      return tasks.size( );
+    }
+
+    /**
+     * Check if the queue should be built or rebuilt, if so the caller must load the tasks.
+     */
+    synchronized boolean startRebuild( final long now, final long rebuildInterval ) {
+      if ( !built || ( tasks.isEmpty( ) && ( lastBuilt + rebuildInterval ) < now ) ) {
+        built = true;
+        lastBuilt = now;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized void rebuildFailed( ) {
+      built = false;
+    }
+  }
+
+  public static class PendingTasksCleanup implements EventListener<ClockTick> {
+
+    public static void register( ) {
+      Listeners.register( ClockTick.class, new PendingTasksCleanup( ) );
+    }
+
+    @Override
+    public void fireEvent( final ClockTick event ) {
+      // queues must be rebuilt if the service is enabled here again
+      if ( !queues.isEmpty( ) && !Topology.isEnabledLocally( SimpleWorkflow.class ) ) {
+        clear( );
+      }
+    }
+  }
+}
@@ -90,6 +90,12 @@ public class SimpleWorkflowProperties {
       changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
   public static volatile String deprecatedDomainRetentionDuration = "1d";
 
+  @ConfigurableField(
+      initial = "10s",
+      description = "Minimum time between rebuilds of an empty pending task queue from the database.",
+      changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
+  public static volatile String pendingTaskRebuildDuration = "10s";
+
   private static AtomicLong workflowExecutionDurationMillis =
       new AtomicLong( Intervals.parse( workflowExecutionDuration, TimeUnit.DAYS.toMillis( 365 ) ) );
 
@@ -105,6 +111,9 @@ public class SimpleWorkflowProperties {
   private static AtomicLong deprecatedDomainRetentionDurationMillis =
       new AtomicLong( Intervals.parse( deprecatedDomainRetentionDuration, TimeUnit.DAYS.toMillis( 1 ) ) );
 
+  private static AtomicLong pendingTaskRebuildDurationMillis =
+      new AtomicLong( Intervals.parse( pendingTaskRebuildDuration, TimeUnit.SECONDS.toMillis( 10 ) ) );
+
   public static boolean isSystemOnly() {
     return systemOnly;
   }
@@ -153,6 +162,10 @@ public class SimpleWorkflowProperties {
     return deprecatedDomainRetentionDurationMillis.get();
   }
 
+  public static long getPendingTaskRebuildDurationMillis() {
+    return pendingTaskRebuildDurationMillis.get();
+  }
+
   public static final class SimpleWorkflowIntervalPropertyChangeListener implements PropertyChangeListener {
     @Override
     public void fireChange( final ConfigurableProperty configurableProperty,
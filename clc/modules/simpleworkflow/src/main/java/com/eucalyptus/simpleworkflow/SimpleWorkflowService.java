@@ -832,33 +832,44 @@ public class SimpleWorkflowService {
 
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
+    final NotifyTaskList pendingTaskList = NotifyTaskList.of( accountFullName, domain, "activity", taskList );
+    final Supplier<List<PendingTasks.PendingTask>> pendingLoader = () -> {
+      try {
+        final List<ActivityTask> pending = activityTasks.listByExample(
+            ActivityTask.examplePending( accountFullName, domain, taskList ),
+            Predicates.alwaysTrue( ),
+            Functions.identity( ) );
+        Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
+        return Lists.newArrayList( Lists.transform( pending, task -> new PendingTasks.PendingTask(
+            task.getDomainUuid( ),
+            task.getWorkflowRunId( ),
+            task.getScheduledEventId( ) ) ) );
+      } catch ( SwfMetadataException e ) {
+        throw up( e );
+      }
+    };
     final Callable<com.eucalyptus.simpleworkflow.common.model.ActivityTask> taskCallable =
-        () -> {
-          com.eucalyptus.simpleworkflow.common.model.ActivityTask activityTask = null;
-          final List<ActivityTask> pending = activityTasks.listByExample(
-              ActivityTask.examplePending( accountFullName, domain, taskList ),
-              accessible,
-              Functions.identity( ) );
-          Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
-          for ( final List<ActivityTask> pendingSegment : shufflePartitions( pending ) ) {
-            for ( final ActivityTask pendingTask : pendingSegment ) {
-              if ( activityTask != null ) break;
+        () -> PendingTasks.claim( pendingTaskList, pendingLoader, pendingTask -> {
               try ( final WorkflowLock lock = WorkflowLock.tryLock(
                   accountFullName,
                   pendingTask.getDomainUuid( ),
-                  pendingTask.getWorkflowRunId() ) ) {
+                  pendingTask.getRunId( ) ) ) {
                 if ( !lock.isHeldByCurrentThread( ) ) {
-                  continue;
+                  PendingTasks.pending( pendingTaskList, pendingTask );
+                  return null;
                 }
-                activityTask = activityTasks.updateByExample(
-                    pendingTask,
+                return activityTasks.updateByExample(
+                    ActivityTask.exampleWithUniqueName( accountFullName, pendingTask.getRunId( ), pendingTask.getScheduledEventId( ) ),
                     accountFullName,
-                    pendingTask.getDisplayName(),
+                    pendingTask.getRunId( ) + "/" + pendingTask.getScheduledEventId( ),
                     new Function<ActivityTask,com.eucalyptus.simpleworkflow.common.model.ActivityTask>(){
                       @Nullable
                       @Override
                       public com.eucalyptus.simpleworkflow.common.model.ActivityTask apply( final ActivityTask activityTask ) {
-                        if ( activityTask.getState( ) == ActivityTask.State.Pending ) {
+                        if ( !accessible.apply( activityTask ) ) {
+                          // leave for another poller
+                          PendingTasks.pending( pendingTaskList, pendingTask );
+                        } else if ( activityTask.getState( ) == ActivityTask.State.Pending ) {
                           final WorkflowExecution workflowExecution = activityTask.getWorkflowExecution( );
                           final Long startedId = workflowExecution.addHistoryEvent(
                               WorkflowHistoryEvent.create( workflowExecution, new ActivityTaskStartedEventAttributes( )
@@ -896,17 +907,18 @@ public class SimpleWorkflowService {
                 logger.info( "Activity task for domain " + domain + ", list " + taskList + " not found" );
               } catch ( Exception e ) {
                 if ( PersistenceExceptions.isStaleUpdate( e ) ) {
+                  // queue again, claiming will check that the task is still pending
                   logger.info( "Activity task for domain " + domain + ", list " + taskList + " already taken"  );
+                  PendingTasks.pending( pendingTaskList, pendingTask );
                 } else if (  PersistenceExceptions.isLockError( e ) ) {
                   logger.info( "Activity task for domain " + domain + ", list " + taskList + " locking error" );
+                  PendingTasks.pending( pendingTaskList, pendingTask );
                 } else {
                   logger.error( "Error taking activity task for domain " + domain + ", list " + taskList, e );
                 }
               }
-            }
-          }
-          return activityTask;
-        };
+              return null;
+            } );
 
     try {
       return handleTaskPolling( accountFullName, domain, "activity", taskList, request.getCorrelationId( ), new com.eucalyptus.simpleworkflow.common.model.ActivityTask( ), taskCallable );
@@ -1170,36 +1182,52 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    if ( request.getNextPageToken( ) != null ) {
+      return request.reply( pollForDecisionTaskPage( request, accountFullName, accessible ) );
+    }
+
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
-    final Callable<DecisionTask> taskCallable = () -> {
-      final List<WorkflowExecution> pending = workflowExecutions.listByExample(
-          WorkflowExecution.exampleWithPendingDecision( accountFullName, domain, taskList ),
-          accessible,
-          Functions.identity( ) );
-      Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
-      DecisionTask decisionTask = null;
-      for ( final List<WorkflowExecution> pendingSegment : shufflePartitions( pending ) ) {
-        for ( final WorkflowExecution execution : pendingSegment ) {
-          if ( decisionTask != null ) break;
+    final boolean reverse = MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
+    final int pageSize = WorkflowHistoryPages.pageSize( request.getMaximumPageSize( ) );
+    final NotifyTaskList pendingTaskList = NotifyTaskList.of( accountFullName, domain, "decision", taskList );
+    final Supplier<List<PendingTasks.PendingTask>> pendingLoader = () -> {
+      try {
+        final List<WorkflowExecution> pending = workflowExecutions.listByExample(
+            WorkflowExecution.exampleWithPendingDecision( accountFullName, domain, taskList ),
+            Predicates.alwaysTrue( ),
+            Functions.identity( ) );
+        Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
+        return Lists.newArrayList( Lists.transform( pending, execution -> new PendingTasks.PendingTask(
+            execution.getDomainUuid( ),
+            execution.getDisplayName( ),
+            null ) ) );
+      } catch ( SwfMetadataException e ) {
+        throw up( e );
+      }
+    };
+    final Callable<DecisionTask> taskCallable = () -> PendingTasks.claim( pendingTaskList, pendingLoader, pendingTask -> {
           try ( final WorkflowLock lock = WorkflowLock.tryLock(
               accountFullName,
-              execution.getDomainUuid( ),
-              execution.getDisplayName( ) ) ) {
+              pendingTask.getDomainUuid( ),
+              pendingTask.getRunId( ) ) ) {
             if ( !lock.isHeldByCurrentThread( ) ) {
-              continue;
+              PendingTasks.pending( pendingTaskList, pendingTask );
+              return null;
             }
-            decisionTask = workflowExecutions.updateByExample(
-                WorkflowExecution.exampleWithUniqueName( accountFullName, execution.getDomainName( ), execution.getDisplayName( ) ),
+            return workflowExecutions.updateByExample(
+                WorkflowExecution.exampleWithUniqueName( accountFullName, domain, pendingTask.getRunId( ) ),
                 accountFullName,
-                execution.getDisplayName(),
+                pendingTask.getRunId( ),
                 new Function<WorkflowExecution,DecisionTask>( ) {
                   @Nullable
                   @Override
                   public DecisionTask apply( final WorkflowExecution workflowExecution ) {
-                    if ( workflowExecution.getDecisionStatus( ) == Pending ) {
-                      final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                      final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
+                    if ( !accessible.apply( workflowExecution ) ) {
+                      // leave for another poller
+                      PendingTasks.pending( pendingTaskList, pendingTask );
+                    } else if ( workflowExecution.getDecisionStatus( ) == Pending ) {
+                      final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( workflowExecution.getWorkflowHistory( ) );
                       final WorkflowHistoryEvent scheduled = Iterables.find(
                           reverseEvents,
                           CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
@@ -1214,48 +1242,43 @@ public class SimpleWorkflowService {
                               .withIdentity( request.getIdentity() )
                               .withScheduledEventId( scheduled.getEventId() ) );
                       workflowExecution.addHistoryEvent( started );
-                      return new DecisionTask( )
-                          .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
-                              .withWorkflowId( workflowExecution.getWorkflowId( ) )
-                              .withRunId( workflowExecution.getDisplayName( ) ) )
-                          .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
-                              .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
-                              .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
-                          .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
+                      return decisionTask(
+                          workflowExecution,
+                          taskTokenManager.encryptTaskToken( new TaskToken(
                               accountFullName.getAccountNumber( ),
                               workflowExecution.getDomain( ).getNaturalId( ),
                               workflowExecution.getDisplayName( ),
                               scheduled.getEventId( ),
                               started.getEventId( ),
                               System.currentTimeMillis( ),
-                              System.currentTimeMillis( ) ) ) )  //TODO:STEVE: token expiry date
-                          .withStartedEventId( started.getEventId() )
-                          .withPreviousStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).or( 0L ) )
-                          .withEvents( Collections2.transform(
-                              MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                              TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                          ) );
+                              System.currentTimeMillis( ) ) ),  //TODO:STEVE: token expiry date
+                          started.getEventId( ),
+                          previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).or( 0L ),
+                          WorkflowHistoryPages.page( workflowExecution, null, reverse, pageSize ) );
                     }
                     return null;
                   }
                 } );
+          } catch ( SwfMetadataNotFoundException e ) {
+            logger.debug( "Workflow " + pendingTask.getRunId( ) + " not found for decision task" );
           } catch ( Exception e ) {
             final StaleObjectStateException stale = Exceptions.findCause( e, StaleObjectStateException.class );
             if ( stale != null ) try {
               Entities.evictCache( Class.forName( stale.getEntityName( ) ) );
             } catch ( ClassNotFoundException ce ) { /* eviction failure */ }
             if ( PersistenceExceptions.isStaleUpdate( e ) ) {
-              logger.info( "Decision task for workflow " + execution.getDisplayName() + " already taken" );
+              // queue again, claiming will check that the decision is still pending
+              logger.info( "Decision task for workflow " + pendingTask.getRunId( ) + " already taken" );
+              PendingTasks.pending( pendingTaskList, pendingTask );
             } else if (  PersistenceExceptions.isLockError( e ) ) {
-              logger.info( "Decision task for workflow " + execution.getDisplayName() + " locking error" );
+              logger.info( "Decision task for workflow " + pendingTask.getRunId( ) + " locking error" );
+              PendingTasks.pending( pendingTaskList, pendingTask );
             } else {
-              logger.error( "Error taking decision task for workflow " + execution.getDisplayName( ), e );
+              logger.error( "Error taking decision task for workflow " + pendingTask.getRunId( ), e );
             }
           }
-        }
-      }
-      return decisionTask;
-    };
+          return null;
+        } );
 
     try {
       return handleTaskPolling( accountFullName, domain, "decision", taskList, request.getCorrelationId(), new DecisionTask(), taskCallable );
@@ -1264,6 +1287,71 @@ public class SimpleWorkflowService {
     }
   }
 
+  /**
+   * Get a further page of history for a decision task, the task is not changed.
+   */
+  private DecisionTask pollForDecisionTaskPage( final PollForDecisionTaskRequest request,
+                                                final AccountFullName accountFullName,
+                                                final Predicate<? super WorkflowExecution> accessible ) throws SimpleWorkflowException {
+    final WorkflowHistoryPages.DecisionPageToken pageToken =
+        WorkflowHistoryPages.decisionPageToken( request.getNextPageToken( ) );
+    if ( pageToken == null ) {
+      throw new SimpleWorkflowClientException( "ValidationError", "Invalid next page token" );
+    }
+    final boolean reverse = MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
+    final int pageSize = WorkflowHistoryPages.pageSize( request.getMaximumPageSize( ) );
+    try {
+      final TaskToken token =
+          taskTokenManager.decryptTaskToken( accountFullName.getAccountNumber( ), pageToken.getTaskToken( ) );
+      return workflowExecutions.lookupByExample(
+          WorkflowExecution.exampleWithUniqueName( accountFullName, request.getDomain( ), token.getRunId( ) ),
+          accountFullName,
+          token.getRunId( ),
+          accessible,
+          workflowExecution -> {
+            if ( !token.getDomainUuid( ).equals( workflowExecution.getDomainUuid( ) ) ) {
+              throw upClient( "ValidationError", "Invalid next page token" );
+            }
+            return decisionTask(
+                workflowExecution,
+                pageToken.getTaskToken( ),
+                token.getStartedEventId( ),
+                pageToken.getPreviousStartedEventId( ),
+                WorkflowHistoryPages.page( workflowExecution, pageToken.getLastEventId( ), reverse, pageSize ) );
+          } );
+    } catch ( SwfMetadataNotFoundException e ) {
+      throw new SimpleWorkflowClientException(
+          "UnknownResourceFault",
+          "Unknown execution for next page token" );
+    } catch ( Exception e ) {
+      throw handleException( e );
+    }
+  }
+
+  private static DecisionTask decisionTask( final WorkflowExecution workflowExecution,
+                                            final String taskToken,
+                                            final Long startedEventId,
+                                            final Long previousStartedEventId,
+                                            final WorkflowHistoryPages.HistoryPage page ) {
+    return new DecisionTask( )
+        .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
+            .withWorkflowId( workflowExecution.getWorkflowId( ) )
+            .withRunId( workflowExecution.getDisplayName( ) ) )
+        .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
+            .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
+            .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
+        .withTaskToken( taskToken )
+        .withStartedEventId( startedEventId )
+        .withPreviousStartedEventId( previousStartedEventId )
+        .withEvents( Collections2.transform(
+            page.getEvents( ),
+            TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
+        ) )
+        .withNextPageToken( page.getLastEventId( ) == null ?
+            null :
+            WorkflowHistoryPages.decisionPageToken( taskToken, previousStartedEventId, page.getLastEventId( ) ) );
+  }
+
   public SimpleWorkflowMessage respondDecisionTaskCompleted( final RespondDecisionTaskCompletedRequest request ) throws SimpleWorkflowException {
     final Context ctx = Contexts.lookup( );
     final UserFullName userFullName = ctx.getUserFullName( );
@@ -2044,6 +2132,18 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    final Long afterEventId;
+    if ( request.getNextPageToken( ) != null ) {
+      afterEventId = WorkflowHistoryPages.historyPageEventId(
+          request.getExecution( ).getRunId( ),
+          request.getNextPageToken( ) );
+      if ( afterEventId == null ) {
+        throw new SimpleWorkflowClientException( "ValidationError", "Invalid next page token" );
+      }
+    } else {
+      afterEventId = null;
+    }
+
     final History history;
     try {
       history = workflowExecutions.lookupByExample(
@@ -2052,13 +2152,19 @@ public class SimpleWorkflowService {
           request.getExecution().getRunId(),
           accessible,
           workflowExecution -> {
-            final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-            final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
+            final WorkflowHistoryPages.HistoryPage page = WorkflowHistoryPages.page(
+                workflowExecution,
+                afterEventId,
+                MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ),
+                WorkflowHistoryPages.pageSize( request.getMaximumPageSize( ) ) );
             return new History( )
                 .withEvents( Collections2.transform(
-                    MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
+                    page.getEvents( ),
                     TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                ) );
+                ) )
+                .withNextPageToken( page.getLastEventId( ) == null ?
+                    null :
+                    WorkflowHistoryPages.historyPageToken( workflowExecution.getDisplayName( ), page.getLastEventId( ) ) );
           }
       );
     } catch ( SwfMetadataNotFoundException e ) {
@@ -2250,12 +2356,6 @@ public class SimpleWorkflowService {
     return MoreObjects.firstNonNull( value, defaultValue );
   }
 
-  private static <T> Iterable<List<T>> shufflePartitions( final List<T> pending ) {
-    return Iterables.transform(
-        Iterables.partition( pending, 40 ),
-        segment -> { List<T> copy = Lists.newArrayList( segment ); Collections.shuffle( copy ); return copy; } );
-  }
-
   private static void noteTaskListActivity( final AccountFullName accountFullName,
                                             final String domain,
                                             final String type,
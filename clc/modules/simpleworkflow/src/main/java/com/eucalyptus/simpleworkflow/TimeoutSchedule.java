@@ -0,0 +1,317 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import static com.eucalyptus.simpleworkflow.SimpleWorkflowProperties.getWorkflowExecutionDurationMillis;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.apache.log4j.Logger;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.google.common.base.Objects;
+
+/**
+ * Schedule of activity task, timer and workflow execution deadlines.
+ *
+ * The schedule is active only where timeouts are processed. On activation
+ * every deadline is loaded into a timing wheel, deadlines are then updated
+ * when entities are persisted, updated or removed locally. Changes made on
+ * other hosts are found by periodically scheduling the earliest stored
+ * deadline of each type.
+ *
+ * When a deadline passes the timeouts of that type are due, the deadlines
+ * are only hints so processing must check the stored timeout.
+ */
+public class TimeoutSchedule {
+
+  private static final Logger logger = Logger.getLogger( TimeoutSchedule.class );
+
+  public static final long TICK_MILLIS = 100L;
+  private static final int WHEEL_SIZE = 512;
+  private static final String NEXT_STORED = "";
+
+  public enum TimeoutType {
+    ActivityTask,
+    Timer,
+    WorkflowExecution,
+  }
+
+  private static final Object lock = new Object( );
+  private static TimingWheel<DeadlineKey> wheel; // null when inactive
+  private static final Set<TimeoutType> due = EnumSet.noneOf( TimeoutType.class );
+
+  public static boolean isActive( ) {
+    synchronized ( lock ) {
+      return wheel != null;
+    }
+  }
+
+  /**
+   * Activate the schedule, all timeout types are due on activation.
+   */
+  public static void activate( ) {
+    final long now = System.currentTimeMillis( );
+    final TimingWheel<DeadlineKey> loaded = new TimingWheel<>( TICK_MILLIS, WHEEL_SIZE, now );
+    int count = 0;
+    try ( final TransactionResource db = Entities.transactionFor( WorkflowExecution.class ) ) {
+      count += load( loaded, TimeoutType.ActivityTask, loadDeadlines( ActivityTask.class ) );
+      count += load( loaded, TimeoutType.Timer, loadDeadlines( Timer.class ) );
+      count += load( loaded, TimeoutType.WorkflowExecution, loadWorkflowExecutionDeadlines( ) );
+      db.commit( );
+    }
+    synchronized ( lock ) {
+      wheel = loaded;
+      due.addAll( EnumSet.allOf( TimeoutType.class ) );
+    }
+    logger.info( "Activated timeout schedule with " + count + " deadlines" );
+  }
+
+  public static void deactivate( ) {
+    synchronized ( lock ) {
+      if ( wheel != null ) {
+        wheel.clear( );
+        wheel = null;
+        due.clear( );
+        logger.info( "Deactivated timeout schedule" );
+      }
+    }
+  }
+
+  /**
+   * Schedule the earliest stored deadline for each type.
+   */
+  public static void refresh( ) {
+    if ( isActive( ) ) {
+      final Date activityTaskDeadline;
+      final Date timerDeadline;
+      final Date workflowExecutionDeadline;
+      try ( final TransactionResource db = Entities.transactionFor( WorkflowExecution.class ) ) {
+        activityTaskDeadline = earliestDeadline( ActivityTask.class, "timeoutTimestamp" );
+        timerDeadline = earliestDeadline( Timer.class, "timeoutTimestamp" );
+        workflowExecutionDeadline = earliest(
+            earliestDeadline( WorkflowExecution.class, "timeoutTimestamp" ),
+            workflowExecutionMaximumDeadline( earliestDeadline( WorkflowExecution.class, "creationTimestamp" ) ) );
+        db.commit( );
+      }
+      schedule( new DeadlineKey( TimeoutType.ActivityTask, NEXT_STORED ), activityTaskDeadline );
+      schedule( new DeadlineKey( TimeoutType.Timer, NEXT_STORED ), timerDeadline );
+      schedule( new DeadlineKey( TimeoutType.WorkflowExecution, NEXT_STORED ), workflowExecutionDeadline );
+    }
+  }
+
+  /**
+   * Advance the schedule.
+   *
+   * @return The timeout types that are due
+   */
+  public static Set<TimeoutType> advance( final long now ) {
+    synchronized ( lock ) {
+      final Set<TimeoutType> dueTypes = EnumSet.noneOf( TimeoutType.class );
+      if ( wheel != null ) {
+        for ( final DeadlineKey key : wheel.advance( now ) ) {
+          due.add( key.type );
+        }
+        dueTypes.addAll( due );
+        due.clear( );
+      }
+      return dueTypes;
+    }
+  }
+
+  static void activityTaskUpdated( final ActivityTask activityTask ) {
+    scheduleOnCommit(
+        ActivityTask.class,
+        new DeadlineKey( TimeoutType.ActivityTask, activityTask.getNaturalId( ) ),
+        activityTask.getTimeoutTimestamp( ) );
+  }
+
+  static void activityTaskRemoved( final ActivityTask activityTask ) {
+    scheduleOnCommit(
+        ActivityTask.class,
+        new DeadlineKey( TimeoutType.ActivityTask, activityTask.getNaturalId( ) ),
+        null );
+  }
+
+  static void timerUpdated( final Timer timer ) {
+    scheduleOnCommit(
+        Timer.class,
+        new DeadlineKey( TimeoutType.Timer, timer.getNaturalId( ) ),
+        timer.getTimeoutTimestamp( ) );
+  }
+
+  static void timerRemoved( final Timer timer ) {
+    scheduleOnCommit(
+        Timer.class,
+        new DeadlineKey( TimeoutType.Timer, timer.getNaturalId( ) ),
+        null );
+  }
+
+  static void workflowExecutionUpdated( final WorkflowExecution workflowExecution ) {
+    scheduleOnCommit(
+        WorkflowExecution.class,
+        new DeadlineKey( TimeoutType.WorkflowExecution, workflowExecution.getNaturalId( ) ),
+        workflowExecution.getState( ) == WorkflowExecution.ExecutionStatus.Open ?
+            earliest(
+                workflowExecution.getTimeoutTimestamp( ),
+                workflowExecutionMaximumDeadline( workflowExecution.getCreationTimestamp( ) ) ) :
+            null );
+  }
+
+  static void workflowExecutionRemoved( final WorkflowExecution workflowExecution ) {
+    scheduleOnCommit(
+        WorkflowExecution.class,
+        new DeadlineKey( TimeoutType.WorkflowExecution, workflowExecution.getNaturalId( ) ),
+        null );
+  }
+
+  private static void scheduleOnCommit( final Class<?> type,
+                                        final DeadlineKey key,
+                                        @Nullable final Date deadline ) {
+    if ( !isActive( ) ) return;
+    try {
+      if ( Entities.hasTransaction( type ) ) {
+        Entities.registerSynchronization( type, new Synchronization( ) {
+          @Override
+          public void beforeCompletion( ) {
+          }
+
+          @Override
+          public void afterCompletion( final int status ) {
+            if ( status == Status.STATUS_COMMITTED ) {
+              schedule( key, deadline );
+            }
+          }
+        } );
+      } else {
+        schedule( key, deadline );
+      }
+    } catch ( final Exception e ) {
+      // the deadline will be found when the stored deadlines are refreshed
+      logger.error( "Error scheduling deadline for " + key, e );
+    }
+  }
+
+  private static void schedule( final DeadlineKey key, @Nullable final Date deadline ) {
+    synchronized ( lock ) {
+      if ( wheel != null ) {
+        if ( deadline == null ) {
+          wheel.cancel( key );
+        } else if ( !wheel.schedule( key, deadline.getTime( ) ) ) {
+          due.add( key.type );
+        }
+      }
+    }
+  }
+
+  private static int load( final TimingWheel<DeadlineKey> wheel,
+                           final TimeoutType type,
+                           final List<Object[]> deadlines ) {
+    for ( final Object[] deadline : deadlines ) {
+      // expired deadlines are handled as all types are due on activation
+      wheel.schedule( new DeadlineKey( type, (String) deadline[ 0 ] ), ( (Date) deadline[ 1 ] ).getTime( ) );
+    }
+    return deadlines.size( );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static List<Object[]> loadDeadlines( final Class<?> type ) {
+    return (List<Object[]>) Entities.createCriteria( type )
+        .add( Restrictions.isNotNull( "timeoutTimestamp" ) )
+        .setProjection( Projections.projectionList( )
+            .add( Projections.property( "naturalId" ) )
+            .add( Projections.property( "timeoutTimestamp" ) ) )
+        .setReadOnly( true )
+        .list( );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static List<Object[]> loadWorkflowExecutionDeadlines( ) {
+    final List<Object[]> executions = (List<Object[]>) Entities.createCriteria( WorkflowExecution.class )
+        .add( Restrictions.eq( "state", WorkflowExecution.ExecutionStatus.Open ) )
+        .setProjection( Projections.projectionList( )
+            .add( Projections.property( "naturalId" ) )
+            .add( Projections.property( "timeoutTimestamp" ) )
+            .add( Projections.property( "creationTimestamp" ) ) )
+        .setReadOnly( true )
+        .list( );
+    for ( final Object[] execution : executions ) {
+      execution[ 1 ] = earliest( (Date) execution[ 1 ], workflowExecutionMaximumDeadline( (Date) execution[ 2 ] ) );
+    }
+    return executions;
+  }
+
+  @Nullable
+  private static Date earliestDeadline( final Class<?> type, final String property ) {
+    final Criteria criteria = Entities.createCriteria( type )
+        .setProjection( Projections.min( property ) )
+        .setReadOnly( true );
+    if ( WorkflowExecution.class.equals( type ) ) {
+      criteria.add( Restrictions.eq( "state", WorkflowExecution.ExecutionStatus.Open ) );
+    }
+    return (Date) criteria.uniqueResult( );
+  }
+
+  @Nullable
+  private static Date workflowExecutionMaximumDeadline( @Nullable final Date creation ) {
+    final long maximumDurationMillis = getWorkflowExecutionDurationMillis( );
+    return creation == null || maximumDurationMillis <= 0 ?
+        null :
+        new Date( creation.getTime( ) + maximumDurationMillis );
+  }
+
+  @Nullable
+  private static Date earliest( @Nullable final Date date1, @Nullable final Date date2 ) {
+    if ( date1 == null ) return date2;
+    if ( date2 == null ) return date1;
+    return date1.before( date2 ) ? date1 : date2;
+  }
+
+  private static final class DeadlineKey {
+    private final TimeoutType type;
+    private final String id;
+
+    private DeadlineKey( final TimeoutType type, final String id ) {
+      this.type = type;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final DeadlineKey that = (DeadlineKey) o;
+      return type == that.type && id.equals( that.id );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( type, id );
+    }
+
+    @Override
+    public String toString( ) {
+      return type + "/" + id;
+    }
+  }
+}
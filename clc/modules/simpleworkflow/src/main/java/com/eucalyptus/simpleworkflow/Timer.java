@@ -23,10 +23,13 @@ import java.util.Date;
 import java.util.concurrent.TimeUnit;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
 import javax.persistence.Table;
@@ -42,7 +45,9 @@ import com.eucalyptus.auth.principal.OwnerFullName;
  */
 @Entity
 @PersistenceContext( name = "eucalyptus_simpleworkflow" )
-@Table( name = "swf_timer" )
+@Table( name = "swf_timer", indexes = {
+    @Index( name = "swf_timer_timeout_idx", columnList = "timeout_timestamp" )
+} )
 public class Timer extends AbstractOwnedPersistent implements SimpleWorkflowMetadata.ActivityTaskMetadata {
   private static final long serialVersionUID = 1L;
 
@@ -238,4 +243,14 @@ public class Timer extends AbstractOwnedPersistent implements SimpleWorkflowMeta
     updateTimeStamps( );
     setTimeoutTimestamp( calculateTimeout( ) );
   }
+
+  @PostPersist
+  protected void scheduleTimeout( ) {
+    TimeoutSchedule.timerUpdated( this );
+  }
+
+  @PostRemove
+  protected void cancelTimeout( ) {
+    TimeoutSchedule.timerRemoved( this );
+  }
 }
@@ -0,0 +1,191 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Hierarchical timing wheel of deadlines.
+ *
+ * Each level of the wheel has a fixed number of buckets spanning one tick of
+ * the level, the span of a level is the tick of the next (overflow) level.
+ * Scheduling and cancelling are constant time and advancing the wheel only
+ * visits the buckets for the elapsed ticks, entries in higher levels move to
+ * lower levels as their deadline approaches.
+ *
+ * Each key has at most one deadline, scheduling a key again replaces the
+ * deadline. Deadlines expire once the wheel has advanced past them, so never
+ * early and at most two ticks late. The wheel is not thread safe.
+ */
+public class TimingWheel<K> {
+
+  private final Map<K,Entry<K>> entries = Maps.newHashMap( );
+  private final long tickMillis;
+  private final Level<K> wheel;
+
+  /**
+   * Create a wheel.
+   *
+   * @param tickMillis The duration of a tick for the lowest level
+   * @param wheelSize The number of buckets for each level
+   * @param startMillis The start time for the wheel
+   */
+  public TimingWheel( final long tickMillis,
+                      final int wheelSize,
+                      final long startMillis ) {
+    Preconditions.checkArgument( tickMillis > 0, "Invalid tick: %s", tickMillis );
+    Preconditions.checkArgument( wheelSize > 1, "Invalid wheel size: %s", wheelSize );
+    this.tickMillis = tickMillis;
+    this.wheel = new Level<>( tickMillis, wheelSize, startMillis );
+  }
+
+  /**
+   * Schedule the deadline for the key, replacing any existing deadline.
+   *
+   * @return True if scheduled, false if the deadline has already passed
+   */
+  public boolean schedule( final K key, final long deadlineMillis ) {
+    cancel( key );
+    // expire in the tick following the deadline
+    final Entry<K> entry = new Entry<>( key, deadlineMillis + tickMillis );
+    if ( wheel.add( entry ) ) {
+      entries.put( key, entry );
+      return true;
+    }
+    return false;
+  }
+
+  public boolean cancel( final K key ) {
+    final Entry<K> entry = entries.remove( key );
+    if ( entry != null ) {
+      entry.bucket.remove( entry );
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Advance the wheel to the given time.
+   *
+   * @return The keys for deadlines that have passed, in no particular order
+   */
+  public List<K> advance( final long nowMillis ) {
+    final List<Entry<K>> drained = Lists.newArrayList( );
+    for ( Level<K> level = wheel; level != null; level = level.overflow ) {
+      level.drain( nowMillis, drained );
+    }
+    final List<K> expired = Lists.newArrayList( );
+    for ( final Entry<K> entry : drained ) {
+      if ( !wheel.add( entry ) ) {
+        entries.remove( entry.key );
+        expired.add( entry.key );
+      }
+    }
+    return expired;
+  }
+
+  public boolean isScheduled( final K key ) {
+    return entries.containsKey( key );
+  }
+
+  public int size( ) {
+    return entries.size( );
+  }
+
+  public void clear( ) {
+    for ( final Entry<K> entry : entries.values( ) ) {
+      entry.bucket.remove( entry );
+    }
+    entries.clear( );
+  }
+
+  private static final class Entry<K> {
+    private final K key;
+    private final long expiry;
+    private Set<Entry<K>> bucket;
+
+    private Entry( final K key, final long expiry ) {
+      this.key = key;
+      this.expiry = expiry;
+    }
+  }
+
+  private static final class Level<K> {
+    private final long tick;
+    private final long span;
+    private final Set<Entry<K>>[] buckets;
+    private long currentTime;
+    private Level<K> overflow;
+
+    @SuppressWarnings( "unchecked" )
+    private Level( final long tick, final int size, final long startTime ) {
+      this.tick = tick;
+      this.span = tick * size;
+      this.buckets = new Set[ size ];
+      this.currentTime = startTime - ( startTime % tick );
+    }
+
+    /**
+     * Add to this or a higher level, false if expired.
+     */
+    private boolean add( final Entry<K> entry ) {
+      if ( entry.expiry < currentTime + tick ) {
+        return false;
+      } else if ( entry.expiry < currentTime + span ) {
+        final int index = (int) ( ( entry.expiry / tick ) % buckets.length );
+        Set<Entry<K>> bucket = buckets[ index ];
+        if ( bucket == null ) {
+          bucket = buckets[ index ] = Sets.newHashSet( );
+        }
+        bucket.add( entry );
+        entry.bucket = bucket;
+        return true;
+      } else {
+        if ( overflow == null ) {
+          overflow = new Level<>( span, buckets.length, currentTime );
+        }
+        return overflow.add( entry );
+      }
+    }
+
+    /**
+     * Remove entries for buckets whose tick has started.
+     */
+    private void drain( final long now, final Collection<Entry<K>> drained ) {
+      final long time = now - ( now % tick );
+      for ( long bucketTime = currentTime + tick, count = 0;
+            bucketTime <= time && count < buckets.length;
+            bucketTime += tick, count++ ) {
+        final int index = (int) ( ( bucketTime / tick ) % buckets.length );
+        final Set<Entry<K>> bucket = buckets[ index ];
+        if ( bucket != null && !bucket.isEmpty( ) ) {
+          drained.addAll( bucket );
+          bucket.clear( );
+        }
+      }
+      if ( time > currentTime ) {
+        currentTime = time;
+      }
+    }
+  }
+}
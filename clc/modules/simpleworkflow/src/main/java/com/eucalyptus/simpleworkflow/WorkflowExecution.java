@@ -40,6 +40,9 @@ import javax.persistence.OneToMany;
 import javax.persistence.OrderBy;
 import javax.persistence.OrderColumn;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
 import javax.persistence.Table;
@@ -73,6 +76,16 @@ import com.google.common.collect.Lists;
         create = "create index swf_workflow_execution_open_pending_idx on ${schema}.swf_workflow_execution ( metadata_account_id, domain, task_list, metadata_state, decision_status ) where metadata_state = 'Open' and decision_status = 'Pending'",
         drop = "drop index if exists ${schema}.swf_workflow_execution_open_pending_idx"
     ),
+    @AuxiliaryDatabaseObject(
+        dialect = "org.hibernate.dialect.PostgreSQLDialect",
+        create = "create index swf_workflow_execution_open_timeout_idx on ${schema}.swf_workflow_execution ( timeout_timestamp ) where metadata_state = 'Open'",
+        drop = "drop index if exists ${schema}.swf_workflow_execution_open_timeout_idx"
+    ),
+    @AuxiliaryDatabaseObject(
+        dialect = "org.hibernate.dialect.PostgreSQLDialect",
+        create = "create index swf_workflow_execution_open_creation_idx on ${schema}.swf_workflow_execution ( creation_timestamp ) where metadata_state = 'Open'",
+        drop = "drop index if exists ${schema}.swf_workflow_execution_open_creation_idx"
+    ),
 })
 public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionStatus> implements WorkflowExecutionMetadata {
   private static final long serialVersionUID = 1L;
@@ -545,6 +558,20 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
     setTimeoutTimestamp( calculateNextTimeout( ) );
   }
 
+  @PostUpdate
+  @PostPersist
+  protected void updated( ) {
+    if ( getState( ) == ExecutionStatus.Open && getDecisionStatus( ) == DecisionStatus.Pending ) {
+      PendingTasks.decisionPending( this );
+    }
+    TimeoutSchedule.workflowExecutionUpdated( this );
+  }
+
+  @PostRemove
+  protected void cancelTimeout( ) {
+    TimeoutSchedule.workflowExecutionRemoved( this );
+  }
+
   public static final class WorkflowHistorySizeLimitException extends RuntimeException {
     private static final long serialVersionUID = 1L;
 
@@ -19,6 +19,7 @@
  ************************************************************************/
 package com.eucalyptus.simpleworkflow;
 
+import java.util.concurrent.Callable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Index;
@@ -27,12 +28,16 @@ import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
+import org.apache.log4j.Logger;
 import org.hibernate.annotations.Type;
 import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.simpleworkflow.common.SimpleWorkflow;
 import com.eucalyptus.simpleworkflow.common.model.WorkflowEventAttributes;
+import com.eucalyptus.upgrade.Upgrades;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.Strings;
 import com.google.common.base.Objects;
+import groovy.sql.Sql;
 
 /**
  *
@@ -40,7 +45,7 @@ import com.google.common.base.Objects;
 @Entity
 @PersistenceContext( name = "eucalyptus_simpleworkflow" )
 @Table( name = "swf_workflow_history_event", indexes = {
-    @Index( name = "swf_workflow_history_event_execution_id_idx", columnList = "workflow_execution_id" )
+    @Index( name = "swf_workflow_history_event_execution_order_idx", columnList = "workflow_execution_id,event_order" )
 } )
 public class WorkflowHistoryEvent extends AbstractPersistent {
   private static final long serialVersionUID = 1L;
@@ -121,4 +126,29 @@ public class WorkflowHistoryEvent extends AbstractPersistent {
   public void setEventAttributes( final String eventAttributes ) {
     this.eventAttributes = eventAttributes;
   }
+
+  /**
+   * The execution index was replaced by an (execution, event order) index
+   */
+  @Upgrades.PreUpgrade( value = SimpleWorkflow.class, since = Upgrades.Version.v5_0_0 )
+  public static class WorkflowHistoryEventPreUpgrade500 implements Callable<Boolean> {
+    private static final Logger logger = Logger.getLogger( WorkflowHistoryEventPreUpgrade500.class );
+
+    @Override
+    public Boolean call( ) throws Exception {
+      Sql sql = null;
+      try {
+        sql = Upgrades.DatabaseFilters.NEWVERSION.getConnection( "eucalyptus_simpleworkflow" );
+        sql.execute( "drop index if exists swf_workflow_history_event_execution_id_idx" );
+        return true;
+      } catch ( Exception ex ) {
+        logger.error( "Error dropping workflow history event index", ex );
+        return false;
+      } finally {
+        if ( sql != null ) {
+          sql.close( );
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,221 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.crypto.util.B64;
+import com.eucalyptus.entities.Entities;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+
+/**
+ * Paging for workflow execution history.
+ *
+ * A page token identifies the last event returned so the following page is
+ * read with a range query on the (execution, event order) index rather than
+ * by loading the full history. When the history is already loaded (e.g. when
+ * a decision task is started) the page is taken from the loaded events.
+ */
+final class WorkflowHistoryPages {
+
+  /**
+   * Default and maximum page size, as per the maximumPageSize range
+   */
+  static final int MAXIMUM_PAGE_SIZE = 1000;
+
+  private WorkflowHistoryPages( ) { }
+
+  static int pageSize( @Nullable final Integer maximumPageSize ) {
+    return maximumPageSize == null || maximumPageSize < 1 ?
+        MAXIMUM_PAGE_SIZE :
+        Math.min( maximumPageSize, MAXIMUM_PAGE_SIZE );
+  }
+
+  /**
+   * Get a page of events following (or preceding when reversed) the given event.
+   */
+  static HistoryPage page( @Nonnull final WorkflowExecution workflowExecution,
+                           @Nullable final Long afterEventId,
+                           final boolean reverse,
+                           final int pageSize ) {
+    final List<WorkflowHistoryEvent> history = workflowExecution.getWorkflowHistory( );
+    return page(
+        Hibernate.isInitialized( history ) ?
+            slice( history, afterEventId, reverse, pageSize + 1 ) :
+            query( workflowExecution, afterEventId, reverse, pageSize + 1 ),
+        pageSize );
+  }
+
+  static HistoryPage page( @Nonnull final List<WorkflowHistoryEvent> events,
+                           final int pageSize ) {
+    if ( events.size( ) > pageSize ) {
+      final List<WorkflowHistoryEvent> pageEvents = events.subList( 0, pageSize );
+      return new HistoryPage( pageEvents, Iterables.getLast( pageEvents ).getEventId( ) );
+    } else {
+      return new HistoryPage( events, null );
+    }
+  }
+
+  /**
+   * Slice of events from a complete history ordered by event identifier.
+   */
+  static List<WorkflowHistoryEvent> slice( final List<WorkflowHistoryEvent> history,
+                                           @Nullable final Long afterEventId,
+                                           final boolean reverse,
+                                           final int limit ) {
+    // event identifiers are one based and contiguous
+    final int size = history.size( );
+    if ( reverse ) {
+      final int to = afterEventId == null ? size : (int) Math.max( 0, Math.min( afterEventId - 1, size ) );
+      return Lists.reverse( history.subList( Math.max( 0, to - limit ), to ) );
+    } else {
+      final int from = afterEventId == null ? 0 : (int) Math.max( 0, Math.min( afterEventId, size ) );
+      return history.subList( from, Math.min( size, from + limit ) );
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static List<WorkflowHistoryEvent> query( final WorkflowExecution workflowExecution,
+                                                   @Nullable final Long afterEventId,
+                                                   final boolean reverse,
+                                                   final int limit ) {
+    final Criteria criteria = Entities.createCriteria( WorkflowHistoryEvent.class )
+        .add( Restrictions.eq( "workflowExecution", workflowExecution ) )
+        .addOrder( reverse ? Order.desc( "eventOrder" ) : Order.asc( "eventOrder" ) )
+        .setMaxResults( limit )
+        .setReadOnly( true );
+    if ( afterEventId != null ) {
+      final long afterEventOrder = afterEventId - 1;
+      criteria.add( reverse ?
+          Restrictions.lt( "eventOrder", afterEventOrder ) :
+          Restrictions.gt( "eventOrder", afterEventOrder ) );
+    }
+    return (List<WorkflowHistoryEvent>) criteria.list( );
+  }
+
+  /**
+   * Token for the next page of a GetWorkflowExecutionHistory request.
+   */
+  static String historyPageToken( final String runId, final Long lastEventId ) {
+    return B64.url.encString( runId + ":" + lastEventId );
+  }
+
+  /**
+   * Get the last event identifier from a GetWorkflowExecutionHistory page token.
+   *
+   * @return The event identifier or null if the token is not valid for the run
+   */
+  @Nullable
+  static Long historyPageEventId( final String runId, final String pageToken ) {
+    final List<String> parts = decode( pageToken, 2 );
+    return parts.size( ) == 2 && parts.get( 0 ).equals( runId ) ?
+        Longs.tryParse( parts.get( 1 ) ) :
+        null;
+  }
+
+  /**
+   * Token for the next page of a decision task.
+   */
+  static String decisionPageToken( final String taskToken,
+                                   final Long previousStartedEventId,
+                                   final Long lastEventId ) {
+    return B64.url.encString( lastEventId + ":" + previousStartedEventId + ":" + taskToken );
+  }
+
+  /**
+   * Decode a decision task page token.
+   *
+   * @return The page token or null if not valid
+   */
+  @Nullable
+  static DecisionPageToken decisionPageToken( final String pageToken ) {
+    final List<String> parts = decode( pageToken, 3 );
+    if ( parts.size( ) == 3 ) {
+      final Long lastEventId = Longs.tryParse( parts.get( 0 ) );
+      final Long previousStartedEventId = Longs.tryParse( parts.get( 1 ) );
+      if ( lastEventId != null && previousStartedEventId != null ) {
+        return new DecisionPageToken( parts.get( 2 ), previousStartedEventId, lastEventId );
+      }
+    }
+    return null;
+  }
+
+  private static List<String> decode( final String pageToken, final int parts ) {
+    try {
+      return Splitter.on( ':' ).limit( parts ).splitToList( B64.url.decString( pageToken ) );
+    } catch ( RuntimeException e ) {
+      return Collections.emptyList( );
+    }
+  }
+
+  static final class HistoryPage {
+    private final List<WorkflowHistoryEvent> events;
+    private final Long lastEventId;
+
+    HistoryPage( final List<WorkflowHistoryEvent> events,
+                 @Nullable final Long lastEventId ) {
+      this.events = events;
+      this.lastEventId = lastEventId;
+    }
+
+    List<WorkflowHistoryEvent> getEvents( ) {
+      return events;
+    }
+
+    /**
+     * The last event identifier for the page if there are further pages.
+     */
+    @Nullable
+    Long getLastEventId( ) {
+      return lastEventId;
+    }
+  }
+
+  static final class DecisionPageToken {
+    private final String taskToken;
+    private final Long previousStartedEventId;
+    private final Long lastEventId;
+
+    DecisionPageToken( final String taskToken,
+                       final Long previousStartedEventId,
+                       final Long lastEventId ) {
+      this.taskToken = taskToken;
+      this.previousStartedEventId = previousStartedEventId;
+      this.lastEventId = lastEventId;
+    }
+
+    String getTaskToken( ) {
+      return taskToken;
+    }
+
+    Long getPreviousStartedEventId( ) {
+      return previousStartedEventId;
+    }
+
+    Long getLastEventId( ) {
+      return lastEventId;
+    }
+  }
+}
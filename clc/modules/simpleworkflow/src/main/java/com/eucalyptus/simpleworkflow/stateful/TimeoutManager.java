@@ -27,6 +27,10 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 
 import com.eucalyptus.simpleworkflow.common.stateful.PolledNotifications;
@@ -46,6 +50,7 @@ import com.eucalyptus.simpleworkflow.Domains;
 import com.eucalyptus.simpleworkflow.NotifyClient;
 import com.eucalyptus.simpleworkflow.SwfMetadataException;
 import com.eucalyptus.simpleworkflow.SwfMetadataNotFoundException;
+import com.eucalyptus.simpleworkflow.TimeoutSchedule;
 import com.eucalyptus.simpleworkflow.Timer;
 import com.eucalyptus.simpleworkflow.Timers;
 import com.eucalyptus.simpleworkflow.WorkflowExecution;
@@ -67,6 +72,7 @@ import com.eucalyptus.simpleworkflow.persist.PersistenceDomains;
 import com.eucalyptus.simpleworkflow.persist.PersistenceTimers;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowExecutions;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowTypes;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.CollectionUtils;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.Pair;
@@ -96,6 +102,21 @@ public class TimeoutManager {
     timeoutDecisionTasksAndWorkflows( );
   }
 
+  /**
+   * Process timeouts and timers of the given types.
+   */
+  public void doTimeouts( final Set<TimeoutSchedule.TimeoutType> types ) {
+    if ( types.contains( TimeoutSchedule.TimeoutType.ActivityTask ) ) {
+      timeoutActivityTasks( );
+    }
+    if ( types.contains( TimeoutSchedule.TimeoutType.WorkflowExecution ) ) {
+      timeoutDecisionTasksAndWorkflows( );
+    }
+    if ( types.contains( TimeoutSchedule.TimeoutType.Timer ) ) {
+      doTimers( );
+    }
+  }
+
   public void doTimers( ) {
     final Set<NotifyTaskList> taskLists = Sets.newHashSet( );
     try {
@@ -367,7 +388,10 @@ public class TimeoutManager {
   }
 
   public static class TimeoutManagerEventListener implements EventListener<ClockTick> {
-    private final TimeoutManager timeoutManager = new TimeoutManager();
+    private static final TimeoutManager timeoutManager = new TimeoutManager();
+    private static final ScheduledExecutorService scheduleExecutor =
+        Executors.newSingleThreadScheduledExecutor( Threads.threadFactory( "swf-timeout-schedule-%d" ) );
+    private static final AtomicBoolean scheduleStarted = new AtomicBoolean( false );
 
     public static void register( ) {
       Listeners.register( ClockTick.class, new TimeoutManagerEventListener( ) );
@@ -378,9 +402,42 @@ public class TimeoutManager {
       if ( Bootstrap.isOperational( ) &&
           Topology.isEnabledLocally( PolledNotifications.class ) &&
           Topology.isEnabled( SimpleWorkflow.class ) ) {
-        timeoutManager.doTimeouts( );
-        timeoutManager.doTimers( );
+        try {
+          if ( !TimeoutSchedule.isActive( ) ) {
+            TimeoutSchedule.activate( );
+            startSchedule( );
+          } else {
+            TimeoutSchedule.refresh( );
+          }
+        } catch ( final Exception e ) {
+          logger.error( "Error updating timeout schedule", e );
+        }
+        if ( !TimeoutSchedule.isActive( ) ) {
+          // process on the clock tick until the schedule is available
+          timeoutManager.doTimeouts( );
+          timeoutManager.doTimers( );
+        }
         timeoutManager.doExpunge( );
+      } else {
+        TimeoutSchedule.deactivate( );
+      }
+    }
+
+    private static void startSchedule( ) {
+      if ( scheduleStarted.compareAndSet( false, true ) ) {
+        scheduleExecutor.scheduleWithFixedDelay( new Runnable( ) {
+          @Override
+          public void run( ) {
+            try {
+              final Set<TimeoutSchedule.TimeoutType> due = TimeoutSchedule.advance( System.currentTimeMillis( ) );
+              if ( !due.isEmpty( ) ) {
+                timeoutManager.doTimeouts( due );
+              }
+            } catch ( final Exception e ) {
+              logger.error( "Error processing timeout schedule", e );
+            }
+          }
+        }, TimeoutSchedule.TICK_MILLIS, TimeoutSchedule.TICK_MILLIS, TimeUnit.MILLISECONDS );
       }
     }
   }
@@ -30,6 +30,7 @@ import com.eucalyptus.http.MappingHttpRequest;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflow;
 import com.eucalyptus.util.Strings;
 import com.eucalyptus.ws.server.FilteredPipeline;
+import com.eucalyptus.ws.server.PipelineDispatch;
 import com.eucalyptus.ws.stages.HmacUserAuthenticationStage;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -72,4 +73,9 @@ public class SimpleWorkflowPipeline extends FilteredPipeline {
     return false;
 
   }
+
+  @Override
+  public PipelineDispatch getDispatch( ) {
+    return PipelineDispatch.pathPrefixes( PipelineDispatch.RequestType.Any, servicePathPrefixes, true );
+  }
 }
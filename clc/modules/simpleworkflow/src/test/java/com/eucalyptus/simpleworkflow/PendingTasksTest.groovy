@@ -0,0 +1,79 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList
+import com.google.common.base.Function
+import com.google.common.base.Supplier
+import org.junit.After
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+class PendingTasksTest {
+
+  private final NotifyTaskList taskList = NotifyTaskList.of( '000000000000', 'domain', 'decision', 'list' )
+
+  @After
+  void clear( ) {
+    PendingTasks.clear( )
+  }
+
+  @Test
+  void testClaimInOrder( ) {
+    int loads = 0
+    Supplier<List<PendingTasks.PendingTask>> loader = {
+      loads++
+      [ task( 'run-1' ), task( 'run-2' ) ]
+    } as Supplier<List<PendingTasks.PendingTask>>
+    assertEquals( 'First claim', 'run-1', claim( loader, { PendingTasks.PendingTask t -> t.runId } ) )
+    PendingTasks.pending( taskList, task( 'run-3' ) )
+    PendingTasks.pending( taskList, task( 'run-3' ) )
+    assertEquals( 'Second claim', 'run-2', claim( loader, { PendingTasks.PendingTask t -> t.runId } ) )
+    assertEquals( 'Third claim', 'run-3', claim( loader, { PendingTasks.PendingTask t -> t.runId } ) )
+    assertEquals( 'Loads', 1, loads )
+  }
+
+  @Test
+  void testPendingIgnoredForUnusedTaskList( ) {
+    PendingTasks.pending( taskList, task( 'run-1' ) )
+    assertNull( 'Claim', claim( { [ ] } as Supplier<List<PendingTasks.PendingTask>>, { PendingTasks.PendingTask t -> t.runId } ) )
+  }
+
+  @Test
+  void testUnclaimedTaskQueuedAgain( ) {
+    Supplier<List<PendingTasks.PendingTask>> loader = {
+      [ task( 'run-1' ), task( 'run-2' ) ]
+    } as Supplier<List<PendingTasks.PendingTask>>
+    List<String> attempts = [ ]
+    // busy tasks are queued again, each task is attempted once per claim
+    assertNull( 'Claim', claim( loader, { PendingTasks.PendingTask t ->
+      attempts << t.runId
+      PendingTasks.pending( taskList, t )
+      null
+    } ) )
+    assertEquals( 'Attempts', [ 'run-1', 'run-2' ], attempts )
+    assertEquals( 'Claim after busy', 'run-1', claim( loader, { PendingTasks.PendingTask t -> t.runId } ) )
+  }
+
+  private String claim( Supplier<List<PendingTasks.PendingTask>> loader, Closure<String> claim ) {
+    PendingTasks.claim( taskList, loader, claim as Function<PendingTasks.PendingTask,String> )
+  }
+
+  private static PendingTasks.PendingTask task( String runId ) {
+    new PendingTasks.PendingTask( 'domain-uuid', runId, null )
+  }
+}
@@ -0,0 +1,113 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ * Timing wheel tests, including a simulation of many concurrent timers.
+ */
+@CompileStatic
+class TimingWheelTest {
+
+  private static final long TICK = 100L
+  private static final int SIZE = 512
+
+  @Test
+  void testFiresAfterDeadline( ) {
+    TimingWheel<String> wheel = new TimingWheel<>( TICK, SIZE, 0L )
+    assertTrue( 'Scheduled', wheel.schedule( 'a', 250L ) )
+    assertEquals( 'Before deadline', [ ], wheel.advance( 200L ) )
+    assertEquals( 'At deadline', [ ], wheel.advance( 250L ) )
+    assertEquals( 'After deadline', [ 'a' ], wheel.advance( 300L ) )
+    assertEquals( 'Size', 0, wheel.size( ) )
+  }
+
+  @Test
+  void testExpiredDeadline( ) {
+    TimingWheel<String> wheel = new TimingWheel<>( TICK, SIZE, 1000L )
+    assertFalse( 'Scheduled', wheel.schedule( 'a', 500L ) )
+    assertEquals( 'Size', 0, wheel.size( ) )
+  }
+
+  @Test
+  void testCancelAndReplace( ) {
+    TimingWheel<String> wheel = new TimingWheel<>( TICK, SIZE, 0L )
+    wheel.schedule( 'a', 1000L )
+    wheel.schedule( 'b', 1000L )
+    assertTrue( 'Cancelled', wheel.cancel( 'a' ) )
+    wheel.schedule( 'b', 5000L )
+    assertEquals( 'Fired', [ ], wheel.advance( 2000L ) )
+    assertEquals( 'Fired replaced', [ 'b' ], wheel.advance( 5100L ) )
+  }
+
+  @Test
+  void testOverflowLevels( ) {
+    TimingWheel<String> wheel = new TimingWheel<>( TICK, SIZE, 0L )
+    long deadline = TimeUnit.DAYS.toMillis( 365 )
+    wheel.schedule( 'year', deadline )
+    assertEquals( 'Before deadline', [ ], wheel.advance( deadline - TICK ) )
+    assertEquals( 'After deadline', [ 'year' ], wheel.advance( deadline + TICK ) )
+  }
+
+  /**
+   * Simulate 100k concurrent timers with deadlines over an hour, some are
+   * cancelled and some replaced. Every timer must fire once, not before its
+   * deadline and within two ticks of it.
+   */
+  @Test
+  void testManyConcurrentTimers( ) {
+    int timers = 100000
+    long start = 1_000_000L
+    long window = TimeUnit.HOURS.toMillis( 1 )
+    Random random = new Random( 42 )
+    TimingWheel<Integer> wheel = new TimingWheel<>( TICK, SIZE, start )
+    Map<Integer,Long> deadlines = [ : ]
+    for ( int i = 0; i < timers; i++ ) {
+      long deadline = start + 1 + (long) ( random.nextDouble( ) * window )
+      wheel.schedule( i, deadline )
+      deadlines.put( i, deadline )
+    }
+    for ( int i = 0; i < timers; i += 10 ) {
+      wheel.cancel( i )
+      deadlines.remove( i )
+    }
+    for ( int i = 5; i < timers; i += 10 ) {
+      long deadline = start + 1 + (long) ( random.nextDouble( ) * window )
+      wheel.schedule( i, deadline )
+      deadlines.put( i, deadline )
+    }
+    assertEquals( 'Scheduled', deadlines.size( ), wheel.size( ) )
+
+    Set<Integer> fired = new HashSet<>( )
+    for ( long now = start; now <= start + window + 2 * TICK; now += TICK ) {
+      for ( Integer key : wheel.advance( now ) ) {
+        assertTrue( "Timer ${key} fired more than once".toString( ), fired.add( key ) )
+        long deadline = deadlines.get( key )
+        assertTrue( "Timer ${key} fired early at ${now} for ${deadline}".toString( ), now > deadline )
+        assertTrue( "Timer ${key} fired late at ${now} for ${deadline}".toString( ), now - deadline <= 2 * TICK )
+      }
+    }
+
+    assertEquals( 'Fired', deadlines.keySet( ), fired )
+    assertEquals( 'Remaining', 0, wheel.size( ) )
+  }
+}
@@ -0,0 +1,231 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.auth.principal.OwnerFullName
+import com.eucalyptus.auth.principal.Principals
+import com.eucalyptus.entities.Entities
+import com.eucalyptus.entities.PersistenceContextConfiguration
+import com.eucalyptus.entities.PersistenceContexts
+import com.eucalyptus.entities.TransactionResource
+import com.eucalyptus.simpleworkflow.common.model.ActivityTaskScheduledEventAttributes
+import com.eucalyptus.simpleworkflow.common.model.HistoryEvent
+import com.eucalyptus.simpleworkflow.common.model.TaskList
+import com.eucalyptus.simpleworkflow.common.model.WorkflowEventAttributes
+import com.google.common.collect.Collections2
+import org.hibernate.Hibernate
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Ignore
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ * Paging of workflow history and decision latency against history length.
+ */
+class WorkflowHistoryPagesTest {
+
+  private static final OwnerFullName OWNER = Principals.systemFullName( )
+
+  @BeforeClass
+  static void setup( ) {
+    Map<String,String> props = [
+        'hibernate.ejb.interceptor.session_scoped': 'com.eucalyptus.entities.DelegatingInterceptor',
+        'hibernate.show_sql': 'false',
+        'hibernate.format_sql': 'false',
+        'hibernate.generate_statistics': 'false',
+        'hibernate.bytecode.use_reflection_optimizer': 'true',
+        'javax.persistence.jdbc.driver': 'org.apache.derby.jdbc.EmbeddedDriver',
+        'javax.persistence.jdbc.user': 'root',
+        'javax.persistence.jdbc.password': 'root',
+        'hibernate.hbm2ddl.auto': 'create',
+        'hibernate.cache.use_second_level_cache': 'false',
+        'hibernate.dialect': 'org.hibernate.dialect.DerbyDialect',
+        'hibernate.connection.url': 'jdbc:derby:memory:workflowhistorypagestest;create=true',
+    ]
+    PersistenceContexts.registerPersistenceContext( new PersistenceContextConfiguration(
+        'eucalyptus_simpleworkflow',
+        [ Domain, WorkflowType, ActivityType, WorkflowExecution, WorkflowHistoryEvent, ActivityTask, Timer ] as List<Class<?>>,
+        props
+    ) )
+  }
+
+  @AfterClass
+  static void teardown( ) {
+    PersistenceContexts.shutdown( )
+  }
+
+  @Test
+  void testPageSize( ) {
+    assertEquals( 'Default page size', 1000, WorkflowHistoryPages.pageSize( null ) )
+    assertEquals( 'Zero page size', 1000, WorkflowHistoryPages.pageSize( 0 ) )
+    assertEquals( 'Page size', 100, WorkflowHistoryPages.pageSize( 100 ) )
+  }
+
+  @Test
+  void testForwardPages( ) {
+    List<WorkflowHistoryEvent> history = history( 25 )
+    assertEquals( 'Event identifiers', ( 1L..25L ).toList( ), pages( history, false, 10 ) )
+  }
+
+  @Test
+  void testReversePages( ) {
+    List<WorkflowHistoryEvent> history = history( 25 )
+    assertEquals( 'Event identifiers', ( 25L..1L ).toList( ), pages( history, true, 10 ) )
+  }
+
+  @Test
+  void testExactPage( ) {
+    WorkflowHistoryPages.HistoryPage page = page( history( 10 ), null, false, 10 )
+    assertEquals( 'Event count', 10, page.events.size( ) )
+    assertNull( 'Last event identifier', page.lastEventId )
+  }
+
+  @Test
+  void testHistoryPageToken( ) {
+    String token = WorkflowHistoryPages.historyPageToken( 'run-1', 100L )
+    assertEquals( 'Event identifier', 100L, WorkflowHistoryPages.historyPageEventId( 'run-1', token ) )
+    assertNull( 'Other run', WorkflowHistoryPages.historyPageEventId( 'run-2', token ) )
+    assertNull( 'Invalid token', WorkflowHistoryPages.historyPageEventId( 'run-1', 'invalid' ) )
+  }
+
+  @Test
+  void testDecisionPageToken( ) {
+    String token = WorkflowHistoryPages.decisionPageToken( 'task:token', 7L, 1000L )
+    WorkflowHistoryPages.DecisionPageToken pageToken = WorkflowHistoryPages.decisionPageToken( token )
+    assertNotNull( 'Page token', pageToken )
+    assertEquals( 'Task token', 'task:token', pageToken.taskToken )
+    assertEquals( 'Previous started event identifier', 7L, pageToken.previousStartedEventId )
+    assertEquals( 'Last event identifier', 1000L, pageToken.lastEventId )
+    assertNull( 'Invalid token', WorkflowHistoryPages.decisionPageToken( 'invalid' ) )
+  }
+
+  @Test
+  void testDatabasePages( ) {
+    String runId = persistExecution( 25 )
+    assertEquals( 'Forward pages', [ ( 1L..10L ).toList( ), ( 11L..20L ).toList( ), ( 21L..25L ).toList( ) ],
+        databasePages( runId, false, 10 ) )
+    assertEquals( 'Reverse pages', [ ( 25L..16L ).toList( ), ( 15L..6L ).toList( ), ( 5L..1L ).toList( ) ],
+        databasePages( runId, true, 10 ) )
+    assertEquals( 'Exact pages', [ ( 1L..25L ).toList( ) ], databasePages( runId, false, 25 ) )
+  }
+
+  @Ignore( "Manual development test" )
+  @Test
+  void testDecisionLatencyByHistoryLength( ) {
+    for ( int length : [ 100, 1000, 10000 ] ) {
+      List<WorkflowHistoryEvent> history = history( length )
+      long fullNanos = time {
+        decisionEvents( history )
+      }
+      long pageNanos = time {
+        decisionEvents( page( history, null, false, 100 ).events )
+      }
+      assertTrue( "History of ${length} events, full ${TimeUnit.NANOSECONDS.toMicros( fullNanos )}us, " +
+          "first page of 100 ${TimeUnit.NANOSECONDS.toMicros( pageNanos )}us", pageNanos <= fullNanos )
+    }
+  }
+
+  private static List<Long> pages( List<WorkflowHistoryEvent> history, boolean reverse, int pageSize ) {
+    List<Long> eventIds = [ ]
+    Long lastEventId = null
+    while ( true ) {
+      WorkflowHistoryPages.HistoryPage page = page( history, lastEventId, reverse, pageSize )
+      eventIds.addAll( page.events*.eventId )
+      if ( page.lastEventId == null ) break
+      lastEventId = page.lastEventId
+    }
+    eventIds
+  }
+
+  /**
+   * Page through the stored history of an execution using page tokens, each
+   * page is read in a new transaction so events are queried by range.
+   */
+  private static List<List<Long>> databasePages( String runId, boolean reverse, int pageSize ) {
+    List<List<Long>> pages = [ ]
+    String pageToken = null
+    while ( true ) {
+      Long afterEventId = pageToken == null ? null : WorkflowHistoryPages.historyPageEventId( runId, pageToken )
+      assertTrue( 'Valid page token', pageToken == null || afterEventId != null )
+      TransactionResource db = Entities.transactionFor( WorkflowExecution )
+      try {
+        WorkflowExecution execution = Entities.uniqueResult( WorkflowExecution.exampleWithName( OWNER, runId ) )
+        WorkflowHistoryPages.HistoryPage page = WorkflowHistoryPages.page( execution, afterEventId, reverse, pageSize )
+        assertFalse( 'History loaded', Hibernate.isInitialized( execution.workflowHistory ) )
+        pages << page.events*.eventId
+        if ( page.lastEventId == null ) break
+        pageToken = WorkflowHistoryPages.historyPageToken( runId, page.lastEventId )
+      } finally {
+        db.close( )
+      }
+    }
+    pages
+  }
+
+  private static String persistExecution( int length ) {
+    String runId = UUID.randomUUID( ).toString( )
+    TransactionResource db = Entities.transactionFor( WorkflowExecution )
+    try {
+      Domain domain = Entities.persist( Domain.create( OWNER, "domain-${runId}".toString( ), null, 1 ) )
+      WorkflowType workflowType = Entities.persist(
+          WorkflowType.create( OWNER, 'workflow', '1', domain, null, 'list', 'TERMINATE', 3600, 60 ) )
+      Entities.persist( WorkflowExecution.create( OWNER, runId, domain, workflowType, 'workflow', 'TERMINATE', 'list',
+          3600, 60, [ ], ( 0..<length ).collect { int index -> attributes( index ) } ) )
+      db.commit( )
+    } finally {
+      db.close( )
+    }
+    runId
+  }
+
+  private static WorkflowHistoryPages.HistoryPage page( List<WorkflowHistoryEvent> history, Long afterEventId, boolean reverse, int pageSize ) {
+    WorkflowHistoryPages.page( WorkflowHistoryPages.slice( history, afterEventId, reverse, pageSize + 1 ), pageSize )
+  }
+
+  private static List<HistoryEvent> decisionEvents( List<WorkflowHistoryEvent> events ) {
+    // transformed when the response is serialized
+    new ArrayList<>( Collections2.transform( events, WorkflowExecutions.WorkflowHistoryEventToHistoryEventTransform.INSTANCE ) )
+  }
+
+  private static long time( Closure<?> closure ) {
+    closure.call( ) // warm up
+    long before = System.nanoTime( )
+    closure.call( )
+    System.nanoTime( ) - before
+  }
+
+  private static List<WorkflowHistoryEvent> history( int length ) {
+    ( 0..<length ).collect { int index ->
+      WorkflowHistoryEvent event = WorkflowHistoryEvent.create( null, attributes( index ) )
+      event.eventOrder = index as Long
+      event
+    }
+  }
+
+  private static WorkflowEventAttributes attributes( int index ) {
+    new ActivityTaskScheduledEventAttributes(
+        activityId: "activity-${index}".toString( ),
+        activityType: new com.eucalyptus.simpleworkflow.common.model.ActivityType( name: 'type', version: '1' ),
+        taskList: new TaskList( name: 'list' ),
+        input: 'x' * 256,
+        decisionTaskCompletedEventId: index as Long
+    )
+  }
+}
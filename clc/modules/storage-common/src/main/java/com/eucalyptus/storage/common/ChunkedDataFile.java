@@ -66,14 +66,27 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import org.apache.log4j.Logger;
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.handler.stream.ChunkedFile;
 
 import edu.ucsb.eucalyptus.constants.IsData;
 
 public class ChunkedDataFile extends ChunkedFile implements IsData {
   private static Logger LOG = Logger.getLogger(ChunkedDataFile.class);
+  private final RandomAccessFile file;
 
   public ChunkedDataFile(RandomAccessFile file, long offset, long length, int chunkSize) throws IOException {
     super(file, offset, length, chunkSize);
+    this.file = file;
+  }
+
+  /**
+   * Get a region for the remaining (unread) data for zero-copy transfer.
+   *
+   * The region does not release the underlying file, this chunked file must still be closed after transfer.
+   */
+  public FileRegion toFileRegion() {
+    return new DefaultFileRegion(file.getChannel(), getCurrentOffset(), getEndOffset() - getCurrentOffset());
   }
 }
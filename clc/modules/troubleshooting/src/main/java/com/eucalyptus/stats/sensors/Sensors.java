@@ -35,6 +35,7 @@ public class Sensors {
     private static final String COMPONENT_NAME_PREFIX = "euca.components";
     private static final String CONTEXT_SENSOR_NAME = COMPONENT_NAME_PREFIX + ".message_contexts";
     private static final String DB_POOL_SENSOR_NAME = "euca.db.connection_pools";
+    private static final String ACTION_METRICS_SENSOR_NAME = "euca.actions.metrics";
     private static final String MEMORY_NAME_PREFIX = "euca.jvm.memory";
     private static final String THREAD_SENSOR_NAME = "euca.jvm.threads.state";
     private static final String MEMORY_GENERAL_SENSOR_NAME = MEMORY_NAME_PREFIX + ".general";
@@ -195,4 +196,28 @@ public class Sensors {
         }
         return sensors;
     }
+
+    /**
+     * Sensor for windowed metrics of monitored actions
+     * @param pollingInterval
+     * @param ttl
+     * @return
+     */
+    public static List<SensorEntry> ActionMetricsSensor(final int pollingInterval, final long ttl) {
+        List<SensorEntry> sensors = Lists.newArrayList();
+        List<String> tags = Lists.newArrayList();
+        tags.add(pollingIntervalTag(pollingInterval));
+        try {
+            sensors.add(new SensorEntry(BaseStatsSensor.buildSensor(ACTION_METRICS_SENSOR_NAME,
+                    "Count, mean and percentiles for monitored actions",
+                    tags,
+                    ttl,
+                    ActionMetricsSensor.INSTANCE),
+                    pollingInterval));
+        } catch (Exception e) {
+            LOG.error("Error loading action metrics sensor.");
+            throw Exceptions.toUndeclared(e);
+        }
+        return sensors;
+    }
 }
@@ -0,0 +1,167 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.walrus;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.walrus.entities.ObjectInfo;
+import com.google.common.base.Strings;
+
+/**
+ * Compaction of completed multipart objects into single object files.
+ *
+ * Only the current upload of an object is compacted, parts of replaced or abandoned uploads are not candidates. An object is switched to its
+ * compacted file only if it was not modified during compaction. Parts of compacted objects are released on switching and deleted at the start of
+ * the next pass so that in progress reads of the parts can complete.
+ */
+final class MultipartCompaction {
+  private static final Logger LOG = Logger.getLogger(MultipartCompaction.class);
+
+  interface Store {
+    /**
+     * Delete parts released by a previous pass.
+     */
+    void deleteReleasedParts();
+
+    /**
+     * Find the current uploads of completed multipart objects, ordered by descending part count.
+     */
+    List<Upload> findUploads(int maxObjects) throws Exception;
+
+    /**
+     * @return The upload id for the object, null if the object does not exist or is not a multipart object
+     */
+    String getUploadId(String bucketName, String objectKey) throws Exception;
+
+    void copyParts(String bucketName, String objectKey, String uploadId, String objectName) throws Exception;
+
+    /**
+     * Switch the object to the given file and release its parts if the object is still the given upload.
+     *
+     * @return True if the object was switched
+     */
+    boolean switchObject(String bucketName, String objectKey, String uploadId, String objectName) throws Exception;
+
+    void deleteObject(String bucketName, String objectName) throws Exception;
+  }
+
+  static final class Upload {
+    private final String bucketName;
+    private final String objectKey;
+    private final String uploadId;
+    private final int partCount;
+
+    Upload(final String bucketName, final String objectKey, final String uploadId, final int partCount) {
+      this.bucketName = bucketName;
+      this.objectKey = objectKey;
+      this.uploadId = uploadId;
+      this.partCount = partCount;
+    }
+
+    String getBucketName() {
+      return bucketName;
+    }
+
+    String getObjectKey() {
+      return objectKey;
+    }
+
+    String getUploadId() {
+      return uploadId;
+    }
+
+    int getPartCount() {
+      return partCount;
+    }
+  }
+
+  private MultipartCompaction() {
+  }
+
+  /**
+   * Run a compaction pass.
+   *
+   * @return The number of objects compacted
+   */
+  static int compact(final Store store, final int minParts, final int maxObjects) {
+    store.deleteReleasedParts();
+
+    final List<Upload> uploads;
+    try {
+      uploads = store.findUploads(maxObjects);
+    } catch (Exception e) {
+      LOG.warn("Failed to find multipart objects for compaction", e);
+      return 0;
+    }
+
+    int compacted = 0;
+    for (final Upload upload : uploads) {
+      if (upload.getPartCount() < minParts) {
+        break;
+      }
+      if (compact(store, upload)) {
+        compacted++;
+      }
+    }
+    return compacted;
+  }
+
+  static boolean compact(final Store store, final Upload upload) {
+    final String bucketName = upload.getBucketName();
+    final String objectKey = upload.getObjectKey();
+    final String uploadId = upload.getUploadId();
+    try {
+      if (!uploadId.equals(store.getUploadId(bucketName, objectKey))) {
+        return false; // object replaced or deleted
+      }
+    } catch (Exception e) {
+      LOG.warn("Failed to look up metadata for object-key=" + objectKey + ", bucket=" + bucketName, e);
+      return false;
+    }
+
+    final String objectName = UUID.randomUUID().toString();
+    boolean updated = false;
+    try {
+      store.copyParts(bucketName, objectKey, uploadId, objectName);
+      updated = store.switchObject(bucketName, objectKey, uploadId, objectName);
+    } catch (Exception e) {
+      LOG.warn("Failed to compact upload-id=" + uploadId + ", object-key=" + objectKey + ", bucket=" + bucketName, e);
+    }
+
+    if (updated) {
+      LOG.debug("Compacted upload-id=" + uploadId + " to file=" + objectName + " for object-key=" + objectKey + ", bucket=" + bucketName);
+    } else {
+      try {
+        store.deleteObject(bucketName, objectName);
+      } catch (Exception e) {
+        LOG.warn("Unable to delete file on disk for compacted object file=" + objectName + ", bucket=" + bucketName + ": " + e.getMessage());
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Check if the current object info is the compacted form of a multipart object info read earlier, in which case the object can be read from
+   * the compacted file.
+   */
+  static boolean isCompacted(final ObjectInfo multipartObjectInfo, final ObjectInfo currentObjectInfo) {
+    return currentObjectInfo != null && !currentObjectInfo.isMultipart() && !Strings.isNullOrEmpty(currentObjectInfo.getObjectName()) && currentObjectInfo.getEtag() != null
+        && currentObjectInfo.getEtag().equals(multipartObjectInfo.getEtag());
+  }
+}
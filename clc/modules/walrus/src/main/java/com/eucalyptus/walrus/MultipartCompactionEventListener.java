@@ -0,0 +1,92 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.walrus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.PropertyChangeListeners;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.system.Threads;
+
+/**
+ * Periodically compacts completed multipart objects into single object files when enabled.
+ */
+@ConfigurableClass(root = "walrusbackend", description = "WalrusBackend multipart object compaction configuration.")
+public class MultipartCompactionEventListener implements EventListener<ClockTick> {
+  private static final Logger LOG = Logger.getLogger(MultipartCompactionEventListener.class);
+
+  @ConfigurableField(initial = "false", description = "Compact completed multipart objects into single object files in the background",
+      displayName = "Multipart compaction", changeListener = PropertyChangeListeners.IsBoolean.class)
+  public static volatile Boolean MULTIPART_COMPACTION_ENABLED = false;
+
+  @ConfigurableField(initial = "60", description = "Interval in minutes between multipart compaction passes",
+      displayName = "Multipart compaction interval", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int MULTIPART_COMPACTION_INTERVAL_MINS = 60;
+
+  @ConfigurableField(initial = "10", description = "Minimum number of parts for a multipart object to be compacted",
+      displayName = "Multipart compaction minimum parts", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int MULTIPART_COMPACTION_MIN_PARTS = 10;
+
+  @ConfigurableField(initial = "100", description = "Maximum number of multipart objects compacted in each pass",
+      displayName = "Multipart compaction maximum objects", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int MULTIPART_COMPACTION_MAX_OBJECTS = 100;
+
+  private static final AtomicBoolean running = new AtomicBoolean(false);
+  private static final AtomicLong lastRun = new AtomicLong(System.currentTimeMillis());
+
+  public static void register() {
+    Listeners.register(ClockTick.class, new MultipartCompactionEventListener());
+  }
+
+  @Override
+  public void fireEvent(final ClockTick event) {
+    if (MULTIPART_COMPACTION_ENABLED && Topology.isEnabledLocally(WalrusBackend.class) && !Databases.isVolatile()) {
+      final long now = System.currentTimeMillis();
+      final long last = lastRun.get();
+      if (last + TimeUnit.MINUTES.toMillis(MULTIPART_COMPACTION_INTERVAL_MINS) < now && lastRun.compareAndSet(last, now)
+          && running.compareAndSet(false, true)) {
+        try {
+          Threads.lookup(WalrusBackend.class, MultipartCompactionEventListener.class).limitTo(1).submit(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                final int compacted = WalrusControl.compactMultipartObjects(MULTIPART_COMPACTION_MIN_PARTS, MULTIPART_COMPACTION_MAX_OBJECTS);
+                LOG.debug("Multipart compaction pass compacted " + compacted + " objects");
+              } catch (final Throwable t) {
+                LOG.error("Error during multipart compaction", t);
+              } finally {
+                running.set(false);
+              }
+            }
+          });
+        } catch (final Throwable t) {
+          running.set(false);
+          LOG.error("Error submitting multipart compaction", t);
+        }
+      }
+    }
+  }
+}
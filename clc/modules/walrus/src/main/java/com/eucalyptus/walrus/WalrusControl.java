@@ -200,6 +200,11 @@ public class WalrusControl implements WalrusService {
     WalrusProperties.enableVirtualHosting = true;
   }
 
+  public static int compactMultipartObjects(int minParts, int maxObjects) {
+    final WalrusManager manager = walrusManager;
+    return manager == null ? 0 : manager.compactMultipartObjects(minParts, maxObjects);
+  }
+
   /**
    * Ensure that only admin can perform action. Walrus is internal-only.
    * 
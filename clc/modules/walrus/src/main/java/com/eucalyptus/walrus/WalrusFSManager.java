@@ -161,10 +161,14 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.bouncycastle.util.encoders.Base64;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Example;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 
 import java.io.File;
@@ -1070,8 +1074,13 @@ public class WalrusFSManager extends WalrusManager {
 
       if (request.getGetData()) {
         // check if this is a multipart object
-        if (objectInfo.isMultipart()) {
-          String inlineData = getMultipartData(objectInfo, request, reply);
+        List<PartInfo> parts = objectInfo.isMultipart() ? findOrderedListOfParts(objectInfo) : null;
+        if (parts != null && parts.isEmpty()) { // compacted since the metadata was read
+          objectName = getCompactedObjectInfo(objectInfo).getObjectName();
+          parts = null;
+        }
+        if (parts != null) {
+          String inlineData = getMultipartData(objectInfo, parts, request, reply);
           if (inlineData != null) {
             reply.setBase64Data(inlineData);
           }
@@ -1237,8 +1246,12 @@ public class WalrusFSManager extends WalrusManager {
       String contentDisposition = objectInfo.getContentDisposition();
 
       if (request.getGetData()) {
-        if (objectInfo.isMultipart()) {
-          List<PartInfo> parts = getOrderedListOfParts(objectInfo);
+        List<PartInfo> parts = objectInfo.isMultipart() ? findOrderedListOfParts(objectInfo) : null;
+        if (parts != null && parts.isEmpty()) { // compacted since the metadata was read
+          objectName = getCompactedObjectInfo(objectInfo).getObjectName();
+          parts = null;
+        }
+        if (parts != null) {
           storageManager.getMultipartObject(reply, parts, request.getIsCompressed(), byteRangeStart, byteRangeEnd);
         } else {
           storageManager.getObject(bucketName, objectName, reply, byteRangeStart, byteRangeEnd + 1, request.getIsCompressed());
@@ -1265,10 +1278,8 @@ public class WalrusFSManager extends WalrusManager {
     }
   }
 
-  private String getMultipartData(ObjectInfo objectInfo, GetObjectType request, GetObjectResponseType response) throws WalrusException {
-    // get all parts
-    List<PartInfo> parts = getOrderedListOfParts(objectInfo);
-
+  private String getMultipartData(ObjectInfo objectInfo, List<PartInfo> parts, GetObjectType request, GetObjectResponseType response)
+      throws WalrusException {
     if (request.getInlineData()) {
       if ((objectInfo.getSize() * 4) > WalrusProperties.MAX_INLINE_DATA_SIZE) {
         throw new InlineDataTooLargeException(request.getBucket() + "/" + request.getKey());
@@ -1359,11 +1370,16 @@ public class WalrusFSManager extends WalrusManager {
 
     try {
       // Copy object
-      if (srcObjectInfo.isMultipart()) {
-        List<PartInfo> parts = getOrderedListOfParts(srcObjectInfo);
+      List<PartInfo> parts = srcObjectInfo.isMultipart() ? findOrderedListOfParts(srcObjectInfo) : null;
+      String srcObjectName = srcObjectInfo.getObjectName();
+      if (parts != null && parts.isEmpty()) { // compacted since the metadata was read
+        srcObjectName = getCompactedObjectInfo(srcObjectInfo).getObjectName();
+        parts = null;
+      }
+      if (parts != null) {
         storageManager.copyMultipartObject(parts, destBucketName, destinationObjectName);
       } else {
-        storageManager.copyObject(srcBucketName, srcObjectInfo.getObjectName(), destBucketName, destinationObjectName);
+        storageManager.copyObject(srcBucketName, srcObjectName, destBucketName, destinationObjectName);
       }
 
       lastModified = new Date();
@@ -1983,6 +1999,21 @@ public class WalrusFSManager extends WalrusManager {
   private void deleteParts(String bucketName) {
     PartInfo searchPart = new PartInfo();
     searchPart.setBucketName(bucketName);
+    deleteParts(searchPart);
+  }
+
+  /**
+   * Clean up parts in all buckets with the given cleanup flag.
+   *
+   * @param cleanupFlag
+   */
+  private void deleteParts(Boolean cleanupFlag) {
+    PartInfo searchPart = new PartInfo();
+    searchPart.setCleanup(cleanupFlag);
+    deleteParts(searchPart);
+  }
+
+  private void deleteParts(PartInfo searchPart) {
 
     try {
       Entities.asTransaction(PartInfo.class, new Function<PartInfo, String>() {
@@ -2019,6 +2050,113 @@ public class WalrusFSManager extends WalrusManager {
     }
   }
 
+  /**
+   * Compacts completed multipart objects with the most parts into single object files. Completion of a multipart upload only records the parts
+   * that make up the object so it is independent of object size, compaction is an optional background step.
+   *
+   * @see MultipartCompaction
+   */
+  @Override
+  public int compactMultipartObjects(final int minParts, final int maxObjects) {
+    return MultipartCompaction.compact(new CompactionStore(), minParts, maxObjects);
+  }
+
+  private class CompactionStore implements MultipartCompaction.Store {
+    @Override
+    public void deleteReleasedParts() {
+      deleteParts(Boolean.TRUE);
+    }
+
+    @Override
+    public List<MultipartCompaction.Upload> findUploads(final int maxObjects) throws Exception {
+      try (TransactionResource tr = Entities.transactionFor(PartInfo.class)) {
+        Criteria uploadCriteria = Entities.createCriteria(PartInfo.class);
+        uploadCriteria.setReadOnly(true);
+        uploadCriteria.add(Restrictions.eq("cleanup", Boolean.FALSE));
+        uploadCriteria.add(Restrictions.isNotNull("partNumber"));
+        // only the current upload for the object, parts of replaced uploads are pending deletion
+        uploadCriteria.add(Subqueries.exists(DetachedCriteria.forClass(ObjectInfo.class, "object")
+            .add(Restrictions.eqProperty("object.bucketName", CriteriaSpecification.ROOT_ALIAS + ".bucketName"))
+            .add(Restrictions.eqProperty("object.objectKey", CriteriaSpecification.ROOT_ALIAS + ".objectKey"))
+            .add(Restrictions.eqProperty("object.uploadId", CriteriaSpecification.ROOT_ALIAS + ".uploadId"))
+            .setProjection(Projections.property("object.uploadId"))));
+        uploadCriteria.setProjection(Projections.projectionList().add(Projections.groupProperty("bucketName"))
+            .add(Projections.groupProperty("objectKey")).add(Projections.groupProperty("uploadId")).add(Projections.rowCount(), "partCount"));
+        uploadCriteria.addOrder(Order.desc("partCount"));
+        uploadCriteria.setMaxResults(maxObjects);
+        List<MultipartCompaction.Upload> uploads = new ArrayList<MultipartCompaction.Upload>();
+        for (Object[] upload : (List<Object[]>) uploadCriteria.list()) {
+          uploads.add(new MultipartCompaction.Upload((String) upload[0], (String) upload[1], (String) upload[2], ((Number) upload[3]).intValue()));
+        }
+        tr.commit();
+        return uploads;
+      }
+    }
+
+    @Override
+    public String getUploadId(final String bucketName, final String objectKey) throws Exception {
+      try {
+        return Transactions.find(new ObjectInfo(bucketName, objectKey)).getUploadId();
+      } catch (NoSuchElementException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public void copyParts(final String bucketName, final String objectKey, final String uploadId, final String objectName) throws Exception {
+      ObjectInfo objectInfo = new ObjectInfo(bucketName, objectKey);
+      objectInfo.setUploadId(uploadId);
+      storageManager.copyMultipartObject(getOrderedListOfParts(objectInfo), bucketName, objectName);
+    }
+
+    @Override
+    public boolean switchObject(final String bucketName, final String objectKey, final String uploadId, final String objectName) throws Exception {
+      boolean updated = false;
+      try (TransactionResource tr = Entities.transactionFor(ObjectInfo.class)) {
+        ObjectInfo currentObjectInfo = Entities.uniqueResult(new ObjectInfo(bucketName, objectKey));
+        if (uploadId.equals(currentObjectInfo.getUploadId())) {
+          currentObjectInfo.setObjectName(objectName);
+          currentObjectInfo.setUploadId(null);
+          for (PartInfo part : Entities.query(new PartInfo(bucketName, objectKey, uploadId))) {
+            part.setCleanup(Boolean.TRUE);
+          }
+          updated = true;
+        }
+        tr.commit();
+      } catch (NoSuchElementException e) {
+        // object deleted
+      }
+      return updated;
+    }
+
+    @Override
+    public void deleteObject(final String bucketName, final String objectName) throws Exception {
+      storageManager.deleteObject(bucketName, objectName);
+    }
+  }
+
+  /**
+   * Lookup the current metadata for a multipart object for which no parts were found. The object may have been compacted after the metadata was
+   * read, in which case the compacted object is returned so it can be read from its compacted file.
+   *
+   * @throws InternalErrorException If the object was not compacted
+   */
+  private ObjectInfo getCompactedObjectInfo(ObjectInfo objectInfo) throws InternalErrorException {
+    ObjectInfo currentObjectInfo = null;
+    try {
+      currentObjectInfo = Transactions.find(new ObjectInfo(objectInfo.getBucketName(), objectInfo.getObjectKey()));
+    } catch (NoSuchElementException e) {
+      // object deleted
+    } catch (Exception e) {
+      throw new InternalErrorException("Failed to look up metadata for object-key=" + objectInfo.getObjectKey() + ", bucket="
+          + objectInfo.getBucketName(), e);
+    }
+    if (!MultipartCompaction.isCompacted(objectInfo, currentObjectInfo)) {
+      throw new InternalErrorException("No parts found for object " + objectInfo.getObjectKey());
+    }
+    return currentObjectInfo;
+  }
+
   /**
    * Utility method for fetching ordered listing of parts that make up an object. Use this method against objects that have been previously created
    * and persisted to the database.
@@ -2028,6 +2166,21 @@ public class WalrusFSManager extends WalrusManager {
    * @throws InternalErrorException
    */
   private List<PartInfo> getOrderedListOfParts(ObjectInfo objectInfo) throws InternalErrorException {
+    List<PartInfo> parts = findOrderedListOfParts(objectInfo);
+    if (parts.isEmpty()) {
+      throw new InternalErrorException("No parts found for object " + objectInfo.getObjectKey());
+    }
+    return parts;
+  }
+
+  /**
+   * Fetch the ordered listing of parts that make up an object. The listing is empty if the parts were released by compaction.
+   *
+   * @param objectInfo
+   * @return
+   * @throws InternalErrorException
+   */
+  private List<PartInfo> findOrderedListOfParts(ObjectInfo objectInfo) throws InternalErrorException {
 
     if (objectInfo != null && !Strings.isNullOrEmpty(objectInfo.getUploadId())) {
       PartInfo searchPart = new PartInfo(objectInfo.getBucketName(), objectInfo.getObjectKey(), objectInfo.getUploadId());
@@ -2041,11 +2194,7 @@ public class WalrusFSManager extends WalrusManager {
         partCriteria.addOrder(Order.asc("partNumber"));
         parts = partCriteria.list();
         tr.commit();
-
-        if (parts == null || parts.isEmpty()) {
-          throw new InternalErrorException("No parts found for object " + objectInfo.getObjectKey());
-        }
-        return parts;
+        return parts == null ? new ArrayList<PartInfo>() : parts;
       }
     } else {
       throw new InternalErrorException("Object may not be uploaded using multipart upload");
@@ -111,4 +111,13 @@ public abstract class WalrusManager {
   public abstract AbortMultipartUploadResponseType abortMultipartUpload(AbortMultipartUploadType request) throws EucalyptusCloudException;
 
   public abstract UploadPartResponseType uploadPart(UploadPartType request) throws EucalyptusCloudException;
+
+  /**
+   * Compact completed multipart objects so they are stored as a single object.
+   * 
+   * @param minParts The minimum number of parts for an object to be compacted
+   * @param maxObjects The maximum number of objects to compact
+   * @return The number of objects compacted
+   */
+  public abstract int compactMultipartObjects(int minParts, int maxObjects);
 }
@@ -72,15 +72,18 @@ import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
 import com.eucalyptus.http.MappingHttpResponse;
+import com.eucalyptus.storage.common.ChunkedDataFile;
 import com.eucalyptus.storage.common.DateFormatter;
 import com.eucalyptus.storage.msgs.s3.MetaDataEntry;
 import com.eucalyptus.walrus.exceptions.HeadExceptionInterface;
@@ -92,6 +95,7 @@ import com.eucalyptus.walrus.msgs.WalrusDataResponseType;
 import com.eucalyptus.walrus.msgs.WalrusDeleteResponseType;
 import com.eucalyptus.walrus.msgs.WalrusErrorMessageType;
 import com.eucalyptus.walrus.msgs.WalrusHeadResponseType;
+import com.eucalyptus.walrus.util.WalrusDataTransferProperties;
 import com.eucalyptus.walrus.util.WalrusProperties;
 import com.eucalyptus.walrus.util.WalrusUtil;
 import com.eucalyptus.ws.WebServicesException;
@@ -232,8 +236,10 @@ public class WalrusOutboundHandler extends MessageStackHandler {
       Channels.write(ctx, writeFuture, httpResponse);
       List<ChunkedInput> dataStreams = response.getDataInputStream();
       if (dataStreams != null) {
+        final boolean zeroCopy = isZeroCopy(ctx.getPipeline());
         for (final ChunkedInput dataStream : dataStreams) {
-          channel.write(dataStream).addListener(new ChannelFutureListener() {
+          final Object data = zeroCopy && dataStream instanceof ChunkedDataFile ? ((ChunkedDataFile) dataStream).toFileRegion() : dataStream;
+          channel.write(data).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
               dataStream.close();
@@ -246,6 +252,13 @@ public class WalrusOutboundHandler extends MessageStackHandler {
     }
   }
 
+  /**
+   * Zero-copy transfer bypasses any handler that would transform the data, so is only used for plain connections.
+   */
+  static boolean isZeroCopy(final ChannelPipeline pipeline) {
+    return WalrusDataTransferProperties.ZERO_COPY_GET && pipeline.get(SslHandler.class) == null;
+  }
+
   // TODO: zhill - this should all be done in bindings, just need 2-way bindings
   protected DefaultHttpResponse createHttpResponse(WalrusDataGetResponseType reply) {
     DefaultHttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
@@ -90,6 +90,7 @@ import com.eucalyptus.walrus.entities.PartInfo;
 import com.eucalyptus.walrus.entities.WalrusInfo;
 import com.eucalyptus.walrus.exceptions.WalrusException;
 import com.eucalyptus.walrus.msgs.WalrusDataGetResponseType;
+import com.eucalyptus.walrus.util.WalrusDataTransferProperties;
 
 import edu.ucsb.eucalyptus.util.StreamConsumer;
 import edu.ucsb.eucalyptus.util.SystemUtil;
@@ -245,7 +246,7 @@ public class FileSystemStorageManager implements StorageManager {
         fileIn = fileInputStream.getChannel();
         fileOutputStream = new FileOutputStream(newObjectFile);
         fileOut = fileOutputStream.getChannel();
-        fileIn.transferTo(0, fileIn.size(), fileOut);
+        transferFully(fileIn, fileOut);
       } catch (IOException ex) {
         LOG.error(ex);
         Logs.extreme().error(ex, ex);
@@ -279,6 +280,21 @@ public class FileSystemStorageManager implements StorageManager {
     }
   }
 
+  /**
+   * Transfer the entire input file, a single transferTo call may transfer fewer bytes than requested.
+   */
+  private static void transferFully(final FileChannel fileIn, final FileChannel fileOut) throws IOException {
+    final long size = fileIn.size();
+    long position = 0;
+    while (position < size) {
+      final long transferred = fileIn.transferTo(position, size - position, fileOut);
+      if (transferred <= 0) {
+        throw new IOException("Unexpected end of file at " + position + " of " + size + " bytes");
+      }
+      position += transferred;
+    }
+  }
+
   @Override
   public void copyMultipartObject(List<PartInfo> parts, String destinationBucket, String destinationObject) throws Exception {
     Iterator<PartInfo> partIterator = null;
@@ -303,7 +319,7 @@ public class FileSystemStorageManager implements StorageManager {
                 new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + part.getBucketName() + FILE_SEPARATOR + part.getObjectName());
             fileInputStream = new FileInputStream(partFile);
             fileIn = fileInputStream.getChannel();
-            fileIn.transferTo(0, fileIn.size(), fileOut);
+            transferFully(fileIn, fileOut);
 
             // Get ready for next iteration
             try {
@@ -411,7 +427,7 @@ public class FileSystemStorageManager implements StorageManager {
       if (isCompressed) {
         file = new CompressedChunkedFile(raf, size);
       } else {
-        file = new ChunkedDataFile(raf, 0, size, 8192);
+        file = new ChunkedDataFile(raf, 0, size, WalrusDataTransferProperties.chunkSize(size));
       }
       List<ChunkedInput> dataStreams = new ArrayList<ChunkedInput>();
       dataStreams.add(file);
@@ -431,7 +447,9 @@ public class FileSystemStorageManager implements StorageManager {
       if (isCompressed) {
         file = new CompressedChunkedFile(raf, byteRangeStart, byteRangeEnd, (int) Math.min((byteRangeEnd - byteRangeStart), 8192));
       } else {
-        file = new ChunkedDataFile(raf, byteRangeStart, (int) (byteRangeEnd - byteRangeStart), (int) Math.min((byteRangeEnd - byteRangeStart), 8192));
+        file =
+            new ChunkedDataFile(raf, byteRangeStart, byteRangeEnd - byteRangeStart,
+                WalrusDataTransferProperties.chunkSize(byteRangeEnd - byteRangeStart));
       }
       List<ChunkedInput> dataStreams = new ArrayList<>();
       dataStreams.add(file);
@@ -452,7 +470,7 @@ public class FileSystemStorageManager implements StorageManager {
         if (isCompressed) {
           file = new CompressedChunkedFile(raf, part.getSize());
         } else {
-          file = new ChunkedDataFile(raf, 0, part.getSize(), 8192);
+          file = new ChunkedDataFile(raf, 0, part.getSize(), WalrusDataTransferProperties.chunkSize(part.getSize()));
         }
         dataStreams.add(file);
       }
@@ -506,7 +524,7 @@ public class FileSystemStorageManager implements StorageManager {
         if (isCompressed) {
           file = new CompressedChunkedFile(raf, startMarker, tempLength, (int) Math.min(tempLength, 8192));
         } else {
-          file = new ChunkedDataFile(raf, startMarker, tempLength, (int) Math.min(tempLength, 8192));
+          file = new ChunkedDataFile(raf, startMarker, tempLength, WalrusDataTransferProperties.chunkSize(tempLength));
         }
 
         dataStreams.add(file);
@@ -0,0 +1,42 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.walrus.util;
+
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.PropertyChangeListeners;
+
+/**
+ * Configuration for object data transfer from the WalrusBackend filesystem storage.
+ */
+@ConfigurableClass(root = "walrusbackend", description = "WalrusBackend data transfer configuration.")
+public class WalrusDataTransferProperties {
+
+  @ConfigurableField(initial = "true", description = "Use zero-copy file transfer for uncompressed object data on unencrypted connections",
+      displayName = "Zero-copy GET", changeListener = PropertyChangeListeners.IsBoolean.class)
+  public static volatile Boolean ZERO_COPY_GET = true;
+
+  @ConfigurableField(initial = "65536", description = "Chunk size in bytes used when object data is streamed through buffers",
+      displayName = "GET chunk size", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int GET_CHUNK_SIZE = 65536;
+
+  /**
+   * Chunk size to use for reading the given number of bytes, at least one.
+   */
+  public static int chunkSize(long length) {
+    return (int) Math.max(1L, Math.min(length, (long) GET_CHUNK_SIZE));
+  }
+}
@@ -0,0 +1,211 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.walrus
+
+import com.eucalyptus.walrus.entities.ObjectInfo
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+class MultipartCompactionTest {
+
+  @Test
+  void testCompaction( ) {
+    TestStore store = new TestStore( )
+    store.addObject( 'bucket', 'key', 'upload-1', 12 )
+
+    assertEquals( 'Compacted', 1, MultipartCompaction.compact( store, 10, 100 ) )
+    ObjectInfo objectInfo = store.objects[ 'bucket/key' ]
+    assertFalse( 'Multipart after compaction', objectInfo.isMultipart( ) )
+    assertTrue( 'Compacted file exists', store.files.contains( objectInfo.objectName ) )
+    assertEquals( 'Compacted file parts', store.parts[ 'upload-1' ], store.fileParts[ objectInfo.objectName ] )
+    assertEquals( 'Released uploads', [ 'upload-1' ] as Set, store.released )
+    assertEquals( 'Parts retained for readers', 12, store.parts[ 'upload-1' ].size( ) )
+  }
+
+  @Test
+  void testCleanupOnNextPass( ) {
+    TestStore store = new TestStore( )
+    store.addObject( 'bucket', 'key', 'upload-1', 12 )
+    MultipartCompaction.compact( store, 10, 100 )
+
+    assertEquals( 'Compacted on next pass', 0, MultipartCompaction.compact( store, 10, 100 ) )
+    assertFalse( 'Parts deleted on next pass', store.parts.containsKey( 'upload-1' ) )
+    assertTrue( 'Released uploads', store.released.isEmpty( ) )
+    assertEquals( 'Files', 1, store.files.size( ) )
+  }
+
+  @Test
+  void testMinimumParts( ) {
+    TestStore store = new TestStore( )
+    store.addObject( 'bucket', 'key-1', 'upload-1', 12 )
+    store.addObject( 'bucket', 'key-2', 'upload-2', 9 )
+
+    assertEquals( 'Compacted', 1, MultipartCompaction.compact( store, 10, 100 ) )
+    assertFalse( 'Object with enough parts compacted', store.objects[ 'bucket/key-1' ].isMultipart( ) )
+    assertTrue( 'Object with too few parts not compacted', store.objects[ 'bucket/key-2' ].isMultipart( ) )
+  }
+
+  /**
+   * A candidate that is no longer the current upload for the object is not copied.
+   */
+  @Test
+  void testUploadIdMismatchSkipped( ) {
+    TestStore store = new TestStore( )
+    store.addObject( 'bucket', 'key', 'upload-2', 12 )
+    store.addParts( 'bucket', 'key', 'upload-1', 20 )
+
+    assertFalse( 'Compacted', MultipartCompaction.compact( store, new MultipartCompaction.Upload( 'bucket', 'key', 'upload-1', 20 ) ) )
+    assertTrue( 'Copied uploads', store.copied.isEmpty( ) )
+    assertTrue( 'Files', store.files.isEmpty( ) )
+    assertEquals( 'Upload id', 'upload-2', store.objects[ 'bucket/key' ].uploadId )
+  }
+
+  /**
+   * An object replaced while its parts are copied is not switched and the copy is deleted.
+   */
+  @Test
+  void testReplacedDuringCompaction( ) {
+    TestStore store = new TestStore( )
+    store.addObject( 'bucket', 'key', 'upload-1', 12 )
+    store.onCopy = { store.addObject( 'bucket', 'key', 'upload-2', 2 ) }
+
+    assertEquals( 'Compacted', 0, MultipartCompaction.compact( store, 10, 100 ) )
+    assertEquals( 'Copied uploads', [ 'upload-1' ], store.copied )
+    assertTrue( 'Copy deleted', store.files.isEmpty( ) )
+    assertEquals( 'Upload id', 'upload-2', store.objects[ 'bucket/key' ].uploadId )
+    assertTrue( 'Released uploads', store.released.isEmpty( ) )
+  }
+
+  @Test
+  void testFailedCopyDeleted( ) {
+    TestStore store = new TestStore( )
+    store.addObject( 'bucket', 'key', 'upload-1', 12 )
+    store.onCopy = { throw new IOException( 'disk full' ) }
+
+    assertEquals( 'Compacted', 0, MultipartCompaction.compact( store, 10, 100 ) )
+    assertTrue( 'Copy deleted', store.files.isEmpty( ) )
+    assertTrue( 'Multipart after failure', store.objects[ 'bucket/key' ].isMultipart( ) )
+  }
+
+  /**
+   * A reader that read the multipart metadata before compaction reads the compacted file.
+   */
+  @Test
+  void testReadAfterCompaction( ) {
+    TestStore store = new TestStore( )
+    ObjectInfo read = copyOf( store.addObject( 'bucket', 'key', 'upload-1', 12 ) )
+    MultipartCompaction.compact( store, 10, 100 )
+
+    assertTrue( 'Compacted', MultipartCompaction.isCompacted( read, store.objects[ 'bucket/key' ] ) )
+  }
+
+  @Test
+  void testReadAfterReplace( ) {
+    TestStore store = new TestStore( )
+    ObjectInfo read = copyOf( store.addObject( 'bucket', 'key', 'upload-1', 12 ) )
+    ObjectInfo replaced = new ObjectInfo( 'bucket', 'key' )
+    replaced.objectName = 'object-2'
+    replaced.etag = 'etag-2'
+
+    assertFalse( 'Replaced', MultipartCompaction.isCompacted( read, replaced ) )
+    assertFalse( 'Replaced by upload', MultipartCompaction.isCompacted( read, store.addObject( 'bucket', 'key', 'upload-2', 2 ) ) )
+    assertFalse( 'Deleted', MultipartCompaction.isCompacted( read, null ) )
+  }
+
+  private static ObjectInfo copyOf( ObjectInfo objectInfo ) {
+    ObjectInfo copy = new ObjectInfo( objectInfo.bucketName, objectInfo.objectKey )
+    copy.uploadId = objectInfo.uploadId
+    copy.objectName = objectInfo.objectName
+    copy.etag = objectInfo.etag
+    copy
+  }
+
+  private static class TestStore implements MultipartCompaction.Store {
+    final Map<String,ObjectInfo> objects = [:]
+    final Map<String,List<Integer>> parts = [:]
+    final Set<String> released = [] as Set
+    final Set<String> files = [] as Set
+    final Map<String,List<Integer>> fileParts = [:]
+    final List<String> copied = []
+    Closure<?> onCopy = { }
+
+    ObjectInfo addObject( String bucketName, String objectKey, String uploadId, int partCount ) {
+      addParts( bucketName, objectKey, uploadId, partCount )
+      ObjectInfo objectInfo = new ObjectInfo( bucketName, objectKey )
+      objectInfo.uploadId = uploadId
+      objectInfo.etag = "etag-${uploadId}"
+      objects[ "${bucketName}/${objectKey}" as String ] = objectInfo
+      objectInfo
+    }
+
+    void addParts( String bucketName, String objectKey, String uploadId, int partCount ) {
+      parts[ uploadId ] = ( 1..partCount ).toList( )
+    }
+
+    @Override
+    void deleteReleasedParts( ) {
+      released.each { String uploadId -> parts.remove( uploadId ) }
+      released.clear( )
+    }
+
+    @Override
+    List<MultipartCompaction.Upload> findUploads( int maxObjects ) {
+      objects.values( ).findAll{ ObjectInfo objectInfo ->
+        objectInfo.isMultipart( ) && !released.contains( objectInfo.uploadId )
+      }.collect{ ObjectInfo objectInfo ->
+        new MultipartCompaction.Upload( objectInfo.bucketName, objectInfo.objectKey, objectInfo.uploadId, parts[ objectInfo.uploadId ].size( ) )
+      }.sort{ MultipartCompaction.Upload upload -> -upload.getPartCount( ) }.take( maxObjects )
+    }
+
+    @Override
+    String getUploadId( String bucketName, String objectKey ) {
+      objects[ "${bucketName}/${objectKey}" as String ]?.uploadId
+    }
+
+    @Override
+    void copyParts( String bucketName, String objectKey, String uploadId, String objectName ) {
+      copied << uploadId
+      files << objectName
+      fileParts[ objectName ] = parts[ uploadId ]
+      onCopy.call( )
+    }
+
+    @Override
+    boolean switchObject( String bucketName, String objectKey, String uploadId, String objectName ) {
+      ObjectInfo objectInfo = objects[ "${bucketName}/${objectKey}" as String ]
+      if ( objectInfo?.uploadId == uploadId ) {
+        objectInfo.objectName = objectName
+        objectInfo.uploadId = null
+        released << uploadId
+        true
+      } else {
+        false
+      }
+    }
+
+    @Override
+    void deleteObject( String bucketName, String objectName ) {
+      files.remove( objectName )
+      fileParts.remove( objectName )
+    }
+  }
+}
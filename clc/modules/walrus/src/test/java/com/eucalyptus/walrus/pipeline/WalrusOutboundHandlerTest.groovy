@@ -0,0 +1,57 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.walrus.pipeline
+
+import com.eucalyptus.walrus.util.WalrusDataTransferProperties
+import groovy.transform.CompileStatic
+import org.jboss.netty.channel.ChannelPipeline
+import org.jboss.netty.channel.Channels
+import org.jboss.netty.handler.ssl.SslHandler
+import org.junit.After
+import org.junit.Test
+
+import javax.net.ssl.SSLContext
+
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+/**
+ * Unit tests for the Walrus outbound handler.
+ */
+@CompileStatic
+class WalrusOutboundHandlerTest {
+
+  private final Boolean zeroCopyGet = WalrusDataTransferProperties.ZERO_COPY_GET
+
+  @After
+  void restoreProperties( ) {
+    WalrusDataTransferProperties.ZERO_COPY_GET = zeroCopyGet
+  }
+
+  @Test
+  void testZeroCopy( ) {
+    final ChannelPipeline plain = Channels.pipeline( )
+    final ChannelPipeline secure = Channels.pipeline( )
+    secure.addLast( 'ssl', new SslHandler( SSLContext.getDefault( ).createSSLEngine( ) ) )
+
+    WalrusDataTransferProperties.ZERO_COPY_GET = true
+    assertTrue( 'Zero-copy for plain connection', WalrusOutboundHandler.isZeroCopy( plain ) )
+    assertFalse( 'Zero-copy for SSL connection', WalrusOutboundHandler.isZeroCopy( secure ) )
+
+    WalrusDataTransferProperties.ZERO_COPY_GET = false
+    assertFalse( 'Zero-copy when disabled', WalrusOutboundHandler.isZeroCopy( plain ) )
+  }
+}
@@ -0,0 +1,180 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.walrus.storage
+
+import com.eucalyptus.storage.common.ChunkedDataFile
+import com.eucalyptus.walrus.util.WalrusDataTransferProperties
+import groovy.transform.CompileStatic
+import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.channel.FileRegion
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Ignore
+import org.junit.Test
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
+
+import static org.junit.Assert.assertArrayEquals
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ * Compares chunked and zero-copy transfer of object data for whole object, range and multipart GETs.
+ */
+@CompileStatic
+class DataTransferBenchmarkTest {
+
+  private static final int FILE_SIZE = 32 * 1024 * 1024
+  private static final int PART_COUNT = 4
+  private static final int ITERATIONS = 5
+
+  private static File data
+
+  @BeforeClass
+  static void setup( ) {
+    data = File.createTempFile( 'walrus-transfer', '.dat' )
+    final Random random = new Random( 42 )
+    final byte[] buffer = new byte[ 1024 * 1024 ]
+    data.withOutputStream { OutputStream out ->
+      for ( int i = 0; i < FILE_SIZE.intdiv( buffer.length ); i++ ) {
+        random.nextBytes( buffer )
+        out.write( buffer )
+      }
+    }
+  }
+
+  @AfterClass
+  static void teardown( ) {
+    data?.delete( )
+  }
+
+  @Test
+  void testRangeContent( ) {
+    final long start = 12345
+    final long length = 3 * 1024 * 1024 + 17
+    final ByteArrayOutputStream chunked = new ByteArrayOutputStream( )
+    final ByteArrayOutputStream zeroCopy = new ByteArrayOutputStream( )
+    transferChunked( [ open( start, length ) ], Channels.newChannel( chunked ) )
+    transferZeroCopy( [ open( start, length ) ], Channels.newChannel( zeroCopy ) )
+    assertEquals( 'Chunked length', length, chunked.size( ) )
+    assertArrayEquals( 'Zero-copy content', chunked.toByteArray( ), zeroCopy.toByteArray( ) )
+  }
+
+  @Test
+  void testRegionAfterPartialRead( ) {
+    final ChunkedDataFile file = open( 0, 1024 * 1024 )
+    try {
+      file.nextChunk( )
+      final FileRegion region = file.toFileRegion( )
+      assertEquals( 'Region position', (long) WalrusDataTransferProperties.chunkSize( 1024 * 1024 ), region.getPosition( ) )
+      assertEquals( 'Region count', 1024 * 1024 - region.getPosition( ), region.getCount( ) )
+    } finally {
+      file.close( )
+    }
+  }
+
+  @Ignore("Manual development test")
+  @Test
+  void testThroughput( ) {
+    final long partSize = FILE_SIZE.intdiv( PART_COUNT )
+    final Map<String,Closure<List<ChunkedDataFile>>> requests = [
+        'whole'    : { [ open( 0, FILE_SIZE ) ] },
+        'range'    : { [ open( 1024, FILE_SIZE.intdiv( 2 ) ) ] },
+        'multipart': { ( 0..<PART_COUNT ).collect { Integer part -> open( part * partSize, partSize ) } },
+    ] as Map<String,Closure<List<ChunkedDataFile>>>
+    requests.each { String request, Closure<List<ChunkedDataFile>> files ->
+      final CountingChannel chunkedSink = new CountingChannel( )
+      final CountingChannel zeroCopySink = new CountingChannel( )
+      long chunkedNanos = 0
+      long zeroCopyNanos = 0
+      for ( int i = 0; i < ITERATIONS; i++ ) {
+        long before = System.nanoTime( )
+        transferChunked( files.call( ), chunkedSink )
+        chunkedNanos += System.nanoTime( ) - before
+        before = System.nanoTime( )
+        transferZeroCopy( files.call( ), zeroCopySink )
+        zeroCopyNanos += System.nanoTime( ) - before
+      }
+      assertEquals( "${request} zero-copy bytes".toString( ), chunkedSink.count, zeroCopySink.count )
+      assertTrue( "${request} GET zero-copy ${mbps( zeroCopySink.count, zeroCopyNanos )} MiB/s slower than chunked ${mbps( chunkedSink.count, chunkedNanos )} MiB/s".toString( ),
+          zeroCopyNanos <= chunkedNanos )
+    }
+  }
+
+  private static ChunkedDataFile open( long offset, long length ) {
+    new ChunkedDataFile( new RandomAccessFile( data, 'r' ), offset, length, WalrusDataTransferProperties.chunkSize( length ) )
+  }
+
+  private static long transferChunked( List<ChunkedDataFile> files, WritableByteChannel out ) {
+    long transferred = 0
+    for ( ChunkedDataFile file : files ) {
+      try {
+        while ( file.hasNextChunk( ) ) {
+          final ChannelBuffer chunk = (ChannelBuffer) file.nextChunk( )
+          transferred += chunk.readableBytes( )
+          chunk.readBytes( out, chunk.readableBytes( ) )
+        }
+      } finally {
+        file.close( )
+      }
+    }
+    transferred
+  }
+
+  private static long transferZeroCopy( List<ChunkedDataFile> files, WritableByteChannel out ) {
+    long transferred = 0
+    for ( ChunkedDataFile file : files ) {
+      try {
+        final FileRegion region = file.toFileRegion( )
+        long position = 0
+        while ( position < region.getCount( ) ) {
+          position += region.transferTo( out, position )
+        }
+        transferred += position
+      } finally {
+        file.close( )
+      }
+    }
+    transferred
+  }
+
+  private static final class CountingChannel implements WritableByteChannel {
+    long count
+
+    @Override
+    int write( final ByteBuffer src ) {
+      final int written = src.remaining( )
+      src.position( src.limit( ) )
+      count += written
+      written
+    }
+
+    @Override
+    boolean isOpen( ) {
+      true
+    }
+
+    @Override
+    void close( ) {
+    }
+  }
+
+  private static long mbps( long bytes, long nanos ) {
+    (long) ( ( bytes / ( 1024d * 1024d ) ) / ( nanos / 1000000000d ) )
+  }
+}
@@ -142,6 +142,12 @@ public abstract class QueryPipeline extends FilteredPipeline {
       return false;
     }
   }
+
+  @Override
+  public PipelineDispatch getDispatch( ) {
+    return PipelineDispatch.pathPrefixes( PipelineDispatch.RequestType.NonSoap, servicePathPrefixes, true );
+  }
+
   @Override
   public String getName( ) {
     return name;
@@ -83,6 +83,11 @@ public abstract class SoapPipeline extends FilteredPipeline {
                 ( noPath && resolvesByHost( message.getHeader( HttpHeaders.Names.HOST ) ) ) );
   }
 
+  @Override
+  public PipelineDispatch getDispatch( ) {
+    return PipelineDispatch.pathSuffixes( PipelineDispatch.RequestType.Soap, servicePaths, true );
+  }
+
   @Override
   public String getName( ) {
     return name;